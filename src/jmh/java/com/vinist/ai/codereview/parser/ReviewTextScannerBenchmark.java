@@ -0,0 +1,89 @@
+package com.vinist.ai.codereview.parser;
+
+import com.vinist.ai.codereview.models.CodeIssue;
+import com.vinist.ai.codereview.models.IssueSeverity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文本审查结果解析基准
+ * 对比单遍扫描器与原来按行分割、多次转小写的解析方式，响应为合成的大量问题行和总结行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReviewTextScannerBenchmark {
+
+    private static final String[] TEMPLATES = {
+            "ERROR: Line %d possible null dereference of 'result' before the check",
+            "- **Warning**: L%d unused local variable 'buffer'",
+            "%d. [CRITICAL] lines %d-%d build SQL with string concatenation",
+            "INFO: consider extracting the loop at line: %d into a helper method",
+            "Error handling in this section looks fine overall.",
+            "The class is well structured and the naming is consistent."
+    };
+
+    @Param({"100", "5000"})
+    public int lines;
+
+    private String response;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            int line = random.nextInt(2000) + 1;
+            String template = TEMPLATES[random.nextInt(TEMPLATES.length)];
+            sb.append(String.format(template, line, line, line + 3)).append('\n');
+        }
+        response = sb.toString();
+    }
+
+    @Benchmark
+    public void scanner(Blackhole blackhole) {
+        StringBuilder summary = new StringBuilder();
+        ReviewTextScanner.scan(response, blackhole::consume, summary);
+        blackhole.consume(summary);
+    }
+
+    /**
+     * 原来的解析方式：split后每行最多调用8次toLowerCase，不解析行号
+     */
+    @Benchmark
+    public void splitAndLowercase(Blackhole blackhole) {
+        StringBuilder summary = new StringBuilder();
+        for (String rawLine : response.split("\n")) {
+            String line = rawLine.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.toLowerCase().contains("error") || line.toLowerCase().contains("错误")) {
+                blackhole.consume(new CodeIssue(line, IssueSeverity.ERROR));
+            } else if (line.toLowerCase().contains("warning") || line.toLowerCase().contains("警告")) {
+                blackhole.consume(new CodeIssue(line, IssueSeverity.WARNING));
+            } else if (line.toLowerCase().contains("critical") || line.toLowerCase().contains("严重")) {
+                blackhole.consume(new CodeIssue(line, IssueSeverity.CRITICAL));
+            } else if (line.toLowerCase().contains("info") || line.toLowerCase().contains("信息")
+                    || line.toLowerCase().contains("建议")) {
+                blackhole.consume(new CodeIssue(line, IssueSeverity.INFO));
+            } else {
+                if (summary.length() > 0) {
+                    summary.append("\n");
+                }
+                summary.append(line);
+            }
+        }
+        blackhole.consume(summary);
+    }
+}
@@ -10,13 +10,19 @@ import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.changes.ChangeListManager;
 import com.intellij.openapi.vcs.CommitMessageI;
 import com.vinist.ai.codereview.icons.AIReviewIcons;
+import com.vinist.ai.codereview.models.ReviewTarget;
 import com.vinist.ai.codereview.services.CodeAnalysisService;
+import com.vinist.ai.codereview.services.LLMClientService;
 import com.vinist.ai.codereview.services.LLMConfigService;
+import com.vinist.ai.codereview.services.ParallelReviewService;
 import com.vinist.ai.codereview.services.ReportGenerationService;
+import com.vinist.ai.codereview.services.ReviewSettingsService;
+import com.vinist.ai.codereview.utils.GitUtils;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -111,38 +117,26 @@ public class CommitMessageAIReviewAction extends AnAction {
         
         CodeAnalysisService codeAnalysisService = CodeAnalysisService.getInstance();
         ReportGenerationService reportGenerationService = ReportGenerationService.getInstance();
+        ParallelReviewService parallelReviewService = ParallelReviewService.getInstance();
         
         CompletableFuture.supplyAsync(() -> {
             try {
-                // 构建要分析的代码内容
-                StringBuilder codeContent = new StringBuilder();
-                for (Change change : changes) {
-                    if (change.getAfterRevision() != null && change.getAfterRevision().getFile() != null) {
-                        String fileName = change.getAfterRevision().getFile().getName();
-                        if (codeAnalysisService.shouldReviewFile(fileName)) {
-                            try {
-                                String content = change.getAfterRevision().getContent();
-                                if (content != null) {
-                                    codeContent.append("File: ").append(fileName).append("\n");
-                                    codeContent.append(content).append("\n\n");
-                                }
-                            } catch (Exception e) {
-                                // 忽略单个文件的错误
-                            }
-                        }
-                    }
-                }
-                
-                if (codeContent.length() == 0) {
+                // 收集要审查的文件
+                ReviewSettingsService reviewSettingsService = ReviewSettingsService.getInstance();
+                List<ReviewTarget> targets = GitUtils.getReviewTargets(changes,
+                        reviewSettingsService.isDiffOnlyReview(), reviewSettingsService.getDiffContextLines(),
+                        reviewSettingsService.isLocalPreScreen());
+                if (targets.stream().noneMatch(target -> codeAnalysisService.shouldReviewFile(target.getFileName()))) {
                     throw new RuntimeException("No reviewable files found");
                 }
                 
-                return codeAnalysisService.analyzeCode(codeContent.toString(), "commit-review");
+                // 按文件并发审查并合并报告
+                return parallelReviewService.reviewTargets(targets, null);
                 
             } catch (Exception e) {
                 throw new RuntimeException("Code analysis failed: " + e.getMessage(), e);
             }
-        }).whenComplete((report, throwable) -> {
+        }, LLMClientService.getInstance().getAsyncExecutor()).whenComplete((report, throwable) -> {
             SwingUtilities.invokeLater(() -> {
                 reviewInProgress.set(false);
                 
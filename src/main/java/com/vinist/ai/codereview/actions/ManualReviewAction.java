@@ -52,18 +52,20 @@ public class ManualReviewAction extends AnAction {
             return;
         }
         
-        // 异步执行代码审查
-        analysisService.analyzeCodeAsync(file.getName(), fileContent, new CodeAnalysisService.AnalysisCallback() {
+        // 异步执行代码审查，审查过程中实时显示已发现的问题
+        ReportGenerationService.LiveReport liveReport =
+                ReportGenerationService.getInstance().startLiveReport(project, file.getName());
+        analysisService.analyzeCodeAsync(file.getName(), fileContent, liveReport, new CodeAnalysisService.AnalysisCallback() {
             @Override
             public void onSuccess(ReviewReport report) {
                 // 显示审查结果
-                ReportGenerationService reportService = ReportGenerationService.getInstance();
-                reportService.showReport(project, report);
+                liveReport.complete(report);
             }
             
             @Override
             public void onError(String error) {
                 // 显示错误信息
+                liveReport.fail(error);
             }
         });
     }
@@ -0,0 +1,319 @@
+package com.vinist.ai.codereview.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 磁盘审查结果存储
+ * 数据文件只追加写入，索引文件为定长记录（键哈希 + 偏移 + 长度），启动时把索引读入内存，
+ * 查询只需一次哈希查找和一次定位读取。数据文件超过上限时保留最近使用的条目进行压缩。
+ * 每次写入先把数据记录落盘再追加索引，断电或崩溃后索引不会指向未写完的数据。
+ */
+public class DiskReviewStore implements Closeable {
+
+    private static final String DATA_FILE = "reviews.dat";
+    private static final String INDEX_FILE = "reviews.idx";
+
+    /**
+     * 键为SHA-256的十六进制字符串，落盘时以32字节原始哈希保存
+     */
+    private static final int KEY_BYTES = 32;
+    private static final int INDEX_ENTRY_BYTES = KEY_BYTES + Long.BYTES + Integer.BYTES;
+    private static final int RECORD_HEADER_BYTES = KEY_BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private long maxDataBytes;
+
+    /**
+     * 访问顺序的索引，压缩时优先保留最近使用的条目
+     */
+    private final LinkedHashMap<String, Location> index = new LinkedHashMap<>(256, 0.75f, true);
+
+    private FileChannel dataChannel;
+    private FileChannel indexChannel;
+
+    private static final class Location {
+        private final long offset;
+        private final int length;
+
+        private Location(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    public DiskReviewStore(@NotNull Path directory, long maxDataBytes) throws IOException {
+        this.directory = directory;
+        this.maxDataBytes = maxDataBytes;
+
+        Files.createDirectories(directory);
+        open();
+    }
+
+    /**
+     * 打开数据和索引文件并加载索引
+     */
+    private void open() throws IOException {
+        dataChannel = FileChannel.open(directory.resolve(DATA_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        indexChannel = FileChannel.open(directory.resolve(INDEX_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        loadIndex();
+    }
+
+    /**
+     * 读取索引文件，丢弃指向数据文件之外的条目（上次写入未完成），
+     * 并截掉数据文件末尾没有索引的部分，使后续追加从最后一条完整记录之后开始
+     */
+    private void loadIndex() throws IOException {
+        index.clear();
+        long dataSize = dataChannel.size();
+        long dataEnd = 0;
+        long indexSize = indexChannel.size() - indexChannel.size() % INDEX_ENTRY_BYTES;
+
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_ENTRY_BYTES * 1024);
+        long position = 0;
+        while (position < indexSize) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), indexSize - position));
+            int read = indexChannel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            position += read;
+            buffer.flip();
+
+            byte[] key = new byte[KEY_BYTES];
+            while (buffer.remaining() >= INDEX_ENTRY_BYTES) {
+                buffer.get(key);
+                long offset = buffer.getLong();
+                int length = buffer.getInt();
+                long end = offset + RECORD_HEADER_BYTES + length;
+                if (offset >= 0 && length >= 0 && end <= dataSize) {
+                    index.put(toHex(key), new Location(offset, length));
+                    dataEnd = Math.max(dataEnd, end);
+                }
+            }
+        }
+
+        // 截掉不完整的尾部记录，保证后续追加按条目对齐
+        if (indexChannel.size() != indexSize) {
+            indexChannel.truncate(indexSize);
+        }
+        if (dataSize > dataEnd) {
+            dataChannel.truncate(dataEnd);
+        }
+    }
+
+    /**
+     * 查询审查结果
+     */
+    @Nullable
+    public synchronized String get(@NotNull String key) throws IOException {
+        Location location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + location.length);
+        while (buffer.hasRemaining()) {
+            int read = dataChannel.read(buffer, location.offset + buffer.position());
+            if (read < 0) {
+                index.remove(key);
+                return null;
+            }
+        }
+
+        // 记录头与索引不一致（崩溃后截断的数据被新记录覆盖）时丢弃该条目
+        buffer.flip();
+        byte[] recordKey = new byte[KEY_BYTES];
+        buffer.get(recordKey);
+        if (!Arrays.equals(recordKey, fromHex(key)) || buffer.getInt() != location.length) {
+            index.remove(key);
+            return null;
+        }
+        return new String(buffer.array(), RECORD_HEADER_BYTES, location.length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 写入审查结果：先追加数据记录并落盘，再追加索引，超出上限时触发压缩
+     */
+    public synchronized void put(@NotNull String key, @NotNull String value) throws IOException {
+        byte[] keyBytes = fromHex(key);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+
+        long offset = dataChannel.size();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + valueBytes.length);
+        record.put(keyBytes).putInt(valueBytes.length).put(valueBytes).flip();
+        writeFully(dataChannel, record, offset);
+        // 追加写入改变了文件大小，需要连同元数据一起落盘，之后写入的索引才不会指向未落盘的数据
+        dataChannel.force(true);
+
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+        entry.put(keyBytes).putLong(offset).putInt(valueBytes.length).flip();
+        writeFully(indexChannel, entry, indexChannel.size());
+        // 索引丢失最后几条只会使对应结果未命中，加载时会截掉没有索引的数据，不必等待元数据落盘
+        indexChannel.force(false);
+
+        index.put(key, new Location(offset, valueBytes.length));
+
+        if (dataChannel.size() > maxDataBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * 压缩：按最近使用顺序保留条目，直到达到上限的一半，然后原子替换数据和索引文件。
+     * 最近使用的条目总是保留，其余放不下的条目跳过，继续挑选更早但较小的条目
+     */
+    private void compact() throws IOException {
+        List<Map.Entry<String, Location>> entries = new ArrayList<>(index.entrySet()); // 由旧到新
+
+        // 从最新的条目往前挑选，直到达到上限的一半
+        long budget = maxDataBytes / 2;
+        long selectedBytes = 0;
+        List<Map.Entry<String, Location>> selected = new ArrayList<>();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            long recordSize = RECORD_HEADER_BYTES + entries.get(i).getValue().length;
+            if (!selected.isEmpty() && selectedBytes + recordSize > budget) {
+                continue;
+            }
+            selected.add(entries.get(i));
+            selectedBytes += recordSize;
+        }
+        Collections.reverse(selected);
+
+        Path dataTemp = directory.resolve(DATA_FILE + ".tmp");
+        Path indexTemp = directory.resolve(INDEX_FILE + ".tmp");
+        LinkedHashMap<String, Location> retained = new LinkedHashMap<>(256, 0.75f, true);
+
+        try (FileChannel newData = FileChannel.open(dataTemp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             FileChannel newIndex = FileChannel.open(indexTemp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            long written = 0;
+            for (Map.Entry<String, Location> entry : selected) {
+                Location location = entry.getValue();
+                ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + location.length);
+                while (record.hasRemaining()) {
+                    if (dataChannel.read(record, location.offset + record.position()) < 0) {
+                        break;
+                    }
+                }
+                if (record.hasRemaining()) {
+                    continue; // 记录不完整，丢弃
+                }
+                record.flip();
+                writeFully(newData, record, written);
+
+                ByteBuffer indexEntry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+                indexEntry.put(fromHex(entry.getKey())).putLong(written).putInt(location.length).flip();
+                writeFully(newIndex, indexEntry, newIndex.size());
+
+                retained.put(entry.getKey(), new Location(written, location.length));
+                written += RECORD_HEADER_BYTES + location.length;
+            }
+
+            newData.force(true);
+            newIndex.force(true);
+        }
+
+        dataChannel.close();
+        indexChannel.close();
+        Files.move(dataTemp, directory.resolve(DATA_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(indexTemp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+
+        // 重新加载后的索引丢失了访问顺序，用压缩时的顺序替换
+        index.clear();
+        index.putAll(retained);
+    }
+
+    /**
+     * 更新数据文件上限，当前数据已超出新上限时立即压缩
+     */
+    public synchronized void setMaxDataBytes(long maxDataBytes) throws IOException {
+        if (this.maxDataBytes == maxDataBytes) {
+            return;
+        }
+        this.maxDataBytes = maxDataBytes;
+        if (dataChannel.size() > maxDataBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * 清空存储
+     */
+    public synchronized void clear() throws IOException {
+        dataChannel.truncate(0);
+        indexChannel.truncate(0);
+        index.clear();
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * 获取数据文件大小（字节）
+     */
+    public synchronized long getDataSize() throws IOException {
+        return dataChannel.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            dataChannel.close();
+        } finally {
+            indexChannel.close();
+        }
+    }
+
+    private static void writeFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            current += channel.write(buffer, current);
+        }
+    }
+
+    @NotNull
+    private static String toHex(@NotNull byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    @NotNull
+    private static byte[] fromHex(@NotNull String hex) {
+        if (hex.length() != KEY_BYTES * 2) {
+            throw new IllegalArgumentException("Key must be a SHA-256 hex string: " + hex);
+        }
+
+        byte[] bytes = new byte[KEY_BYTES];
+        for (int i = 0; i < KEY_BYTES; i++) {
+            bytes[i] = (byte) ((Character.digit(hex.charAt(i * 2), 16) << 4) | Character.digit(hex.charAt(i * 2 + 1), 16));
+        }
+        return bytes;
+    }
+}
@@ -1,18 +1,31 @@
 package com.vinist.ai.codereview.handlers;
 
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.vcs.CheckinProjectPanel;
+import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.changes.CommitContext;
 import com.intellij.openapi.vcs.checkin.CheckinHandler;
 import com.intellij.openapi.vcs.checkin.CheckinHandlerFactory;
 import com.intellij.openapi.vcs.ui.RefreshableOnComponent;
 import com.intellij.util.PairConsumer;
+import com.vinist.ai.codereview.models.CodeIssue;
 import com.vinist.ai.codereview.models.IssueSeverity;
 import com.vinist.ai.codereview.models.ReviewReport;
+import com.vinist.ai.codereview.models.ReviewTarget;
 import com.vinist.ai.codereview.services.CodeAnalysisService;
+import com.vinist.ai.codereview.services.LLMClientService;
 import com.vinist.ai.codereview.services.LLMConfigService;
+import com.vinist.ai.codereview.services.ParallelReviewService;
 import com.vinist.ai.codereview.services.ReviewSettingsService;
+import com.vinist.ai.codereview.services.TokenUsageLedgerService;
+import com.vinist.ai.codereview.utils.GitUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -20,8 +33,19 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * AI代码审查提交处理器
@@ -65,6 +89,12 @@ public class AIReviewCheckinHandler extends CheckinHandler {
             return result == Messages.YES ? ReturnResult.COMMIT : ReturnResult.CANCEL;
         }
         
+        // LLM服务熔断中，直接提交，不等待连接超时
+        if (!LLMClientService.getInstance().isProviderAvailable()) {
+            notifyReviewSkipped();
+            return ReturnResult.COMMIT;
+        }
+        
         // 如果正在审查中，询问用户是否等待
         if (reviewInProgress.get()) {
             int result = Messages.showYesNoDialog(
@@ -86,6 +116,8 @@ public class AIReviewCheckinHandler extends CheckinHandler {
     
     /**
      * 执行代码审查
+     * 提交需要等待审查结果，因此审查在可取消的模态进度任务中运行：读取变更内容、生成差异片段和审查都在工作线程中进行，
+     * 界面线程只显示进度（已审查的文件数）并响应取消
      */
     @NotNull
     private ReturnResult performCodeReview() {
@@ -94,35 +126,37 @@ public class AIReviewCheckinHandler extends CheckinHandler {
         }
         
         try {
-            // 获取要提交的文件
-            String changedFiles = getChangedFilesContent();
-            if (changedFiles.trim().isEmpty()) {
-                return ReturnResult.COMMIT; // 没有需要审查的文件
+            // 获取要提交的变更，读取内容在审查任务中进行
+            Collection<Change> changes = checkinPanel.getSelectedChanges();
+            if (changes.isEmpty()) {
+                return ReturnResult.COMMIT;
             }
             
-            // 显示进度对话框
-            ProgressDialog progressDialog = new ProgressDialog(project);
-            progressDialog.setVisible(true);
-            
-            CompletableFuture<ReviewReport> reviewFuture = CompletableFuture.supplyAsync(() -> {
-                try {
-                    return codeAnalysisService.analyzeCode(changedFiles, "commit-review");
-                } catch (Exception e) {
-                    throw new RuntimeException("Code review failed: " + e.getMessage(), e);
-                }
-            });
-            
             try {
-                // 等待审查完成（最多30秒）
-                ReviewReport report = reviewFuture.get(30, java.util.concurrent.TimeUnit.SECONDS);
-                progressDialog.dispose();
-                
+                ReviewReport report = ProgressManager.getInstance().run(new ReviewTask(changes));
+                if (report == null) {
+                    return ReturnResult.COMMIT; // 没有需要审查的文件
+                }
+                TokenUsageLedgerService.getInstance(project).record(report);
+                if (isProviderUnavailable(report)) {
+                    notifyReviewSkipped();
+                    return ReturnResult.COMMIT;
+                }
+                notifyRequestsSkipped(report);
                 return handleReviewResult(report);
                 
-            } catch (java.util.concurrent.TimeoutException e) {
-                progressDialog.dispose();
-                reviewFuture.cancel(true);
+            } catch (ProcessCanceledException e) {
+                int result = Messages.showYesNoDialog(
+                    project,
+                    "Code review was cancelled. Do you want to proceed with commit?",
+                    "AI Code Review",
+                    "Proceed",
+                    "Cancel",
+                    Messages.getQuestionIcon()
+                );
+                return result == Messages.YES ? ReturnResult.COMMIT : ReturnResult.CANCEL;
                 
+            } catch (TimeoutException e) {
                 int result = Messages.showYesNoDialog(
                     project,
                     "Code review is taking too long. Do you want to proceed with commit?",
@@ -134,8 +168,6 @@ public class AIReviewCheckinHandler extends CheckinHandler {
                 return result == Messages.YES ? ReturnResult.COMMIT : ReturnResult.CANCEL;
                 
             } catch (Exception e) {
-                progressDialog.dispose();
-                
                 int result = Messages.showYesNoDialog(
                     project,
                     "Code review failed: " + e.getMessage() + "\nDo you want to proceed with commit?",
@@ -152,6 +184,190 @@ public class AIReviewCheckinHandler extends CheckinHandler {
         }
     }
     
+    /**
+     * 报告元数据：发现严重问题后提前停止了审查
+     */
+    private static final String METADATA_STOPPED_EARLY = "stoppedEarly";
+    
+    /**
+     * 提前停止后等待进行中的请求断开并合并结果的时间，超过后直接使用已收到的问题
+     */
+    private static final long STOP_GRACE_MILLIS = 1000;
+    
+    /**
+     * 审查任务
+     * 先在工作线程中读取变更内容并生成审查目标，没有需要审查的文件时返回null；
+     * 随后并发审查各文件，当前线程只负责响应取消和检查超时：
+     * 超过配置的超时时间仍没有任何进展（新问题或文件完成）时视为超时。
+     * 启用提前停止时，解析出第一个ERROR/CRITICAL问题即可确定需要询问用户，随即取消尚未开始的请求并断开进行中的流式响应。
+     * 提前停止依赖流式响应才能断开进行中的请求，因此启用时总是以流式方式请求；请求失败生成的错误不会触发停止
+     */
+    private class ReviewTask extends Task.WithResult<ReviewReport, Exception> {
+        
+        private final Collection<Change> changes;
+        
+        ReviewTask(@NotNull Collection<Change> changes) {
+            super(project, "AI Code Review", true);
+            this.changes = changes;
+        }
+        
+        @Override
+        @Nullable
+        protected ReviewReport compute(@NotNull ProgressIndicator indicator) throws Exception {
+            indicator.setIndeterminate(true);
+            indicator.setText("Collecting " + changes.size() + " change(s)...");
+            List<ReviewTarget> targets = getReviewTargets(changes);
+            if (targets.isEmpty()) {
+                return null;
+            }
+            
+            indicator.setIndeterminate(false);
+            indicator.setFraction(0);
+            indicator.setText("Reviewing " + targets.size() + " file(s) with AI...");
+            
+            AtomicInteger issueCount = new AtomicInteger();
+            AtomicInteger blockingCount = new AtomicInteger();
+            AtomicLong lastActivity = new AtomicLong(System.nanoTime());
+            AtomicBoolean timedOut = new AtomicBoolean(false);
+            boolean stopOnBlockingIssue = reviewSettingsService.isStopOnBlockingIssue();
+            Queue<CodeIssue> blockingIssues = new ConcurrentLinkedQueue<>();
+            AtomicLong blockedAt = new AtomicLong();
+            Queue<ReviewReport> completedReports = new ConcurrentLinkedQueue<>();
+            AtomicInteger requestCount = new AtomicInteger();
+            
+            ParallelReviewService.ReviewProgressListener listener = new ParallelReviewService.ReviewProgressListener() {
+                @Override
+                public void onIssue(@NotNull CodeIssue issue) {
+                    lastActivity.set(System.nanoTime());
+                    // 问题在响应流式返回过程中逐个解析出来，严重问题立即显示，不等待整个审查完成
+                    int blocking = blockingCount.get();
+                    if (issue.getSeverity().getLevel() >= IssueSeverity.ERROR.getLevel()
+                        && !CodeAnalysisService.isFailureIssue(issue)) {
+                        blockingIssues.add(issue);
+                        blockedAt.compareAndSet(0, System.nanoTime());
+                        blocking = blockingCount.incrementAndGet();
+                    }
+                    indicator.setText2("Issues found: " + issueCount.incrementAndGet()
+                        + (blocking > 0 ? " (" + blocking + " blocking)" : ""));
+                }
+                
+                @Override
+                public void onProgress(int reviewedFiles, int totalFiles) {
+                    lastActivity.set(System.nanoTime());
+                    indicator.setText("Reviewed " + reviewedFiles + "/" + totalFiles + " files");
+                    indicator.setFraction(totalFiles == 0 ? 1 : (double) reviewedFiles / totalFiles);
+                }
+                
+                @Override
+                public void onRequestComplete(@NotNull ReviewReport groupReport, int total) {
+                    requestCount.set(total);
+                    completedReports.add(groupReport);
+                }
+                
+                @Override
+                public boolean isCancelled() {
+                    return indicator.isCanceled() || timedOut.get()
+                        || stopOnBlockingIssue && blockingCount.get() > 0;
+                }
+                
+                @Override
+                public boolean isStreamingRequired() {
+                    return stopOnBlockingIssue;
+                }
+            };
+            
+            CompletableFuture<ReviewReport> reviewFuture = CompletableFuture.supplyAsync(
+                () -> ParallelReviewService.getInstance().reviewTargets(targets, listener),
+                LLMClientService.getInstance().getAsyncExecutor());
+            
+            long timeoutNanos = TimeUnit.SECONDS.toNanos(Math.max(1, llmConfigService.getTimeout()));
+            while (true) {
+                indicator.checkCanceled();
+                
+                try {
+                    ReviewReport report = reviewFuture.get(100, TimeUnit.MILLISECONDS);
+                    if (stopOnBlockingIssue && blockedAt.get() != 0) {
+                        report.addMetadata(METADATA_STOPPED_EARLY, true);
+                    }
+                    return report;
+                } catch (TimeoutException e) {
+                    if (stopOnBlockingIssue && blockedAt.get() != 0) {
+                        indicator.setText("Blocking issue found, stopping review...");
+                        if (System.nanoTime() - blockedAt.get() > TimeUnit.MILLISECONDS.toNanos(STOP_GRACE_MILLIS)) {
+                            // 进行中的请求没能及时断开，不再等待，直接使用已收到的严重问题和已完成请求的统计
+                            return createStoppedReport(blockingIssues, completedReports, requestCount.get());
+                        }
+                        continue;
+                    }
+                    if (System.nanoTime() - lastActivity.get() > timeoutNanos) {
+                        timedOut.set(true); // 通知工作线程停止
+                        throw e;
+                    }
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    throw new RuntimeException(cause.getMessage(), cause);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 提前停止且未能及时合并结果时，以已收到的严重问题构成报告，
+     * 并保留已完成请求的请求数、失败数、尝试次数和Token用量，用于熔断判断和用量记录
+     */
+    @NotNull
+    private ReviewReport createStoppedReport(@NotNull Collection<CodeIssue> blockingIssues,
+                                             @NotNull Collection<ReviewReport> completedReports, int requestCount) {
+        ReviewReport report = new ReviewReport("AI Code Review", "");
+        blockingIssues.forEach(report::addIssue);
+        report.setSummary("发现严重问题，已提前停止审查");
+        report.addMetadata(METADATA_STOPPED_EARLY, true);
+        ParallelReviewService.recordRequests(report, completedReports, Math.max(requestCount, completedReports.size()));
+        return report;
+    }
+    
+    /**
+     * 所有请求都失败或因熔断被跳过，且服务已熔断时，审查结果只有连接错误，视为跳过审查
+     */
+    private boolean isProviderUnavailable(@NotNull ReviewReport report) {
+        int requestCount = getCount(report, "requestCount");
+        return requestCount > 0
+            && getCount(report, "failedRequestCount") + getCount(report, "skippedRequestCount") >= requestCount
+            && !LLMClientService.getInstance().isProviderAvailable();
+    }
+    
+    private static int getCount(@NotNull ReviewReport report, @NotNull String key) {
+        Object value = report.getMetadata().get(key);
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+    
+    /**
+     * 部分请求因熔断被跳过时提示审查不完整，已完成部分的结果照常处理
+     */
+    private void notifyRequestsSkipped(@NotNull ReviewReport report) {
+        int skipped = getCount(report, "skippedRequestCount");
+        if (skipped == 0) {
+            return;
+        }
+        NotificationGroupManager.getInstance()
+            .getNotificationGroup("AI Code Review")
+            .createNotification("AI code review incomplete: " + skipped + " of "
+                    + getCount(report, "requestCount") + " request(s) skipped, provider unavailable",
+                LLMClientService.getInstance().getCircuitBreakerStatus(), NotificationType.WARNING)
+            .notify(project);
+    }
+    
+    /**
+     * 提示本次提交跳过了代码审查
+     */
+    private void notifyReviewSkipped() {
+        NotificationGroupManager.getInstance()
+            .getNotificationGroup("AI Code Review")
+            .createNotification("AI code review skipped: provider unavailable",
+                LLMClientService.getInstance().getCircuitBreakerStatus(), NotificationType.WARNING)
+            .notify(project);
+    }
+    
     /**
      * 处理审查结果
      */
@@ -206,6 +422,10 @@ public class AIReviewCheckinHandler extends CheckinHandler {
             message.append("\n... and more issues");
         }
         
+        if (Boolean.TRUE.equals(report.getMetadata().get(METADATA_STOPPED_EARLY))) {
+            message.append("\nReview stopped at the first blocking issue; other files may not have been fully reviewed.\n");
+        }
+        
         message.append("\nDo you want to proceed with commit?");
         
         String[] options = {"Fix Issues", "Proceed Anyway", "Cancel"};
@@ -271,61 +491,22 @@ public class AIReviewCheckinHandler extends CheckinHandler {
     }
     
     /**
-     * 获取变更文件内容
+     * 获取要审查的文件（提交面板中选中的变更），读取Git内容和计算差异较慢，只在工作线程中调用
      */
     @NotNull
-    private String getChangedFilesContent() {
-        StringBuilder content = new StringBuilder();
-        
+    private List<ReviewTarget> getReviewTargets(@NotNull Collection<Change> changes) {
         try {
-            // 这里需要根据实际的IntelliJ IDEA API来获取变更的文件内容
-            // 由于API可能因版本而异，这里提供一个基本的实现框架
-            
-            // 获取变更的文件列表
-            // Collection<Change> changes = checkinPanel.getSelectedChanges();
-            
-            // 遍历变更并获取内容
-            // for (Change change : changes) {
-            //     VirtualFile file = change.getVirtualFile();
-            //     if (file != null && codeAnalysisService.shouldReviewFile(file.getName())) {
-            //         String fileContent = VfsUtil.loadText(file);
-            //         content.append("File: ").append(file.getName()).append("\n");
-            //         content.append(fileContent).append("\n\n");
-            //     }
-            // }
-            
+            List<ReviewTarget> targets = GitUtils.getReviewTargets(changes,
+                reviewSettingsService.isDiffOnlyReview(), reviewSettingsService.getDiffContextLines(),
+                reviewSettingsService.isLocalPreScreen());
+            return targets.stream()
+                .filter(target -> codeAnalysisService.shouldReviewFile(target.getFileName()))
+                .collect(Collectors.toList());
+        } catch (ProcessCanceledException e) {
+            throw e;
         } catch (Exception e) {
             // 静默处理异常
-        }
-        
-        return content.toString();
-    }
-    
-    /**
-     * 进度对话框
-     */
-    private static class ProgressDialog extends JDialog {
-        
-        public ProgressDialog(@NotNull Project project) {
-            super();
-            setTitle("AI Code Review");
-            setModal(true);
-            setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
-            
-            JPanel panel = new JPanel(new BorderLayout());
-            panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
-            
-            JLabel label = new JLabel("Analyzing code with AI...");
-            label.setHorizontalAlignment(SwingConstants.CENTER);
-            panel.add(label, BorderLayout.CENTER);
-            
-            JProgressBar progressBar = new JProgressBar();
-            progressBar.setIndeterminate(true);
-            panel.add(progressBar, BorderLayout.SOUTH);
-            
-            setContentPane(panel);
-            setSize(300, 120);
-            setLocationRelativeTo(null);
+            return Collections.emptyList();
         }
     }
     
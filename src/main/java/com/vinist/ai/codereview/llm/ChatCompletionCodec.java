@@ -0,0 +1,379 @@
+package com.vinist.ai.codereview.llm;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Chat Completions请求/响应编解码器
+ * 基于Jackson流式API：请求直接写入请求体缓冲区，响应边读取边解析，不构建完整的JSON字符串或对象树。
+ * 提示词可以分为固定的前缀（system消息）和变化的后缀（user消息），前缀在多次请求间保持不变，
+ * 可以命中提供方的前缀缓存；响应中的usage字段解析为TokenUsage
+ */
+public class ChatCompletionCodec {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * 请求体缓冲区，直接以内部数组作为请求体发送，避免再复制一份
+     */
+    public static final class RequestBody extends ByteArrayOutputStream {
+
+        private RequestBody(int initialSize) {
+            super(initialSize);
+        }
+
+        @NotNull
+        public HttpRequest.BodyPublisher toBodyPublisher() {
+            return HttpRequest.BodyPublishers.ofByteArray(buf, 0, count);
+        }
+
+        /**
+         * gzip压缩后的请求体，需要同时设置 Content-Encoding: gzip
+         */
+        @NotNull
+        public HttpRequest.BodyPublisher toGzipBodyPublisher() throws IOException {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(count / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192)) {
+                gzip.write(buf, 0, count);
+            }
+            return HttpRequest.BodyPublishers.ofByteArray(compressed.toByteArray());
+        }
+    }
+
+    /**
+     * 非流式响应的内容及Token用量
+     */
+    public static final class Completion {
+        private final String content;
+        private final TokenUsage usage;
+
+        public Completion(@NotNull String content, @Nullable TokenUsage usage) {
+            this.content = content;
+            this.usage = usage;
+        }
+
+        @NotNull
+        public String getContent() {
+            return content;
+        }
+
+        /**
+         * 响应中没有usage字段时返回null
+         */
+        @Nullable
+        public TokenUsage getUsage() {
+            return usage;
+        }
+    }
+
+    /**
+     * 流式响应中的一个数据块：内容增量，以及最后一个数据块中的Token用量
+     */
+    public static final class StreamChunk {
+        private final String delta;
+        private final TokenUsage usage;
+
+        private StreamChunk(@Nullable String delta, @Nullable TokenUsage usage) {
+            this.delta = delta;
+            this.usage = usage;
+        }
+
+        @Nullable
+        public String getDelta() {
+            return delta;
+        }
+
+        @Nullable
+        public TokenUsage getUsage() {
+            return usage;
+        }
+    }
+
+    /**
+     * 编码请求体，整个提示词作为一条user消息
+     */
+    @NotNull
+    public static RequestBody writeRequest(@NotNull String model, @NotNull String prompt, int maxTokens,
+                                           double temperature, boolean stream) throws IOException {
+        return writeRequest(model, null, prompt, maxTokens, temperature, stream, false, false);
+    }
+
+    /**
+     * 编码请求体
+     *
+     * @param prefix       固定的提示词前缀，作为system消息发送；为null或空时只有user消息
+     * @param streamUsage  流式请求是否附加 stream_options.include_usage，要求在最后一个数据块中返回Token用量；
+     *                     部分兼容OpenAI格式的服务不认识该参数，会返回400
+     * @param cacheControl 是否为前缀附加 cache_control 缓存标记（Anthropic格式，OpenRouter等网关转发给Claude模型）
+     */
+    @NotNull
+    public static RequestBody writeRequest(@NotNull String model, @Nullable String prefix, @NotNull String prompt,
+                                           int maxTokens, double temperature, boolean stream,
+                                           boolean streamUsage, boolean cacheControl) throws IOException {
+        boolean hasPrefix = prefix != null && !prefix.isEmpty();
+        // 预留提示词长度的空间，ASCII内容不需要扩容
+        RequestBody body = new RequestBody((hasPrefix ? prefix.length() : 0) + prompt.length() + 256);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(body)) {
+            generator.writeStartObject();
+            generator.writeStringField("model", model);
+
+            generator.writeArrayFieldStart("messages");
+            if (hasPrefix) {
+                generator.writeStartObject();
+                generator.writeStringField("role", "system");
+                if (cacheControl) {
+                    generator.writeArrayFieldStart("content");
+                    generator.writeStartObject();
+                    generator.writeStringField("type", "text");
+                    generator.writeStringField("text", prefix);
+                    generator.writeObjectFieldStart("cache_control");
+                    generator.writeStringField("type", "ephemeral");
+                    generator.writeEndObject();
+                    generator.writeEndObject();
+                    generator.writeEndArray();
+                } else {
+                    generator.writeStringField("content", prefix);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeStartObject();
+            generator.writeStringField("role", "user");
+            generator.writeStringField("content", prompt);
+            generator.writeEndObject();
+            generator.writeEndArray();
+
+            generator.writeNumberField("max_tokens", maxTokens);
+            generator.writeNumberField("temperature", temperature);
+            if (stream) {
+                generator.writeBooleanField("stream", true);
+                if (streamUsage) {
+                    generator.writeObjectFieldStart("stream_options");
+                    generator.writeBooleanField("include_usage", true);
+                    generator.writeEndObject();
+                }
+            }
+            generator.writeEndObject();
+        }
+        return body;
+    }
+
+    /**
+     * 模型是否支持显式的 cache_control 缓存标记
+     * OpenAI等提供方自动缓存较长的相同前缀，不需要标记；Claude模型只缓存标记之前的内容
+     */
+    public static boolean supportsCacheControl(@NotNull String model) {
+        return model.toLowerCase().contains("claude");
+    }
+
+    /**
+     * 从响应流中读取choices[0].message.content和usage
+     */
+    @NotNull
+    public static Completion readCompletion(@NotNull InputStream responseBody) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(responseBody)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new MalformedResponseException("解析响应失败：响应不是JSON对象");
+            }
+
+            StringBuilder content = new StringBuilder();
+            boolean found = false;
+            String error = null;
+            TokenUsage usage = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("choices".equals(name) && value == JsonToken.START_ARRAY) {
+                    found = readChoices(parser, "message", content);
+                } else if ("usage".equals(name) && value == JsonToken.START_OBJECT) {
+                    usage = readUsage(parser);
+                } else if ("error".equals(name)) {
+                    error = readErrorMessage(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (!found) {
+                throw new MalformedResponseException(error != null ? "LLM API返回错误: " + error : "解析响应失败：未找到content字段");
+            }
+            return new Completion(content.toString(), usage);
+        }
+    }
+
+    /**
+     * 解析流式响应中的一个数据块：choices[0].delta.content和usage，都没有或无法解析时返回null
+     */
+    @Nullable
+    public static StreamChunk readStreamChunk(@NotNull String data) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            StringBuilder content = new StringBuilder();
+            boolean found = false;
+            TokenUsage usage = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("choices".equals(name) && value == JsonToken.START_ARRAY) {
+                    found = readChoices(parser, "delta", content);
+                } else if ("usage".equals(name) && value == JsonToken.START_OBJECT) {
+                    usage = readUsage(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return found || usage != null ? new StreamChunk(found ? content.toString() : null, usage) : null;
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 读取usage对象，兼容OpenAI（prompt_tokens、prompt_tokens_details.cached_tokens）、
+     * Anthropic（input_tokens、cache_read_input_tokens、cache_creation_input_tokens）
+     * 和DeepSeek（prompt_cache_hit_tokens）的字段名
+     * 调用时解析器位于对象开始处，返回时位于对象结束处
+     */
+    @NotNull
+    private static TokenUsage readUsage(@NotNull JsonParser parser) throws IOException {
+        long promptTokens = -1;
+        long inputTokens = 0;
+        long completionTokens = 0;
+        long cachedTokens = 0;
+        long cacheWriteTokens = 0;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT && "prompt_tokens_details".equals(name)) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String detail = parser.getCurrentName();
+                    JsonToken detailValue = parser.nextToken();
+                    if ("cached_tokens".equals(detail) && detailValue == JsonToken.VALUE_NUMBER_INT) {
+                        cachedTokens = parser.getLongValue();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                continue;
+            }
+            if (value != JsonToken.VALUE_NUMBER_INT) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (name) {
+                case "prompt_tokens":
+                    promptTokens = parser.getLongValue();
+                    break;
+                case "input_tokens":
+                    inputTokens = parser.getLongValue();
+                    break;
+                case "completion_tokens":
+                case "output_tokens":
+                    completionTokens = parser.getLongValue();
+                    break;
+                case "cache_read_input_tokens":
+                case "prompt_cache_hit_tokens":
+                    cachedTokens = parser.getLongValue();
+                    break;
+                case "cache_creation_input_tokens":
+                    cacheWriteTokens = parser.getLongValue();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // Anthropic的input_tokens不包括读取和写入缓存的Token
+        if (promptTokens < 0) {
+            promptTokens = inputTokens + cachedTokens + cacheWriteTokens;
+        }
+        return new TokenUsage(promptTokens, completionTokens, cachedTokens, cacheWriteTokens);
+    }
+
+    /**
+     * 读取choices数组，只取第一个choice中指定对象（message或delta）的content字段
+     * 调用时解析器位于数组开始处，返回时位于数组结束处
+     */
+    private static boolean readChoices(@NotNull JsonParser parser, @NotNull String field,
+                                       @NotNull StringBuilder content) throws IOException {
+        boolean found = false;
+        boolean first = true;
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT || !first) {
+                parser.skipChildren();
+                continue;
+            }
+            first = false;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals(name) && value == JsonToken.START_OBJECT) {
+                    found = readContentField(parser, content);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 读取对象中的content字段，直接从解析器的字符缓冲区追加，不创建中间字符串
+     */
+    private static boolean readContentField(@NotNull JsonParser parser, @NotNull StringBuilder content) throws IOException {
+        boolean found = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("content".equals(name) && value == JsonToken.VALUE_STRING) {
+                content.append(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                found = true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 读取error字段中的错误信息，可能是字符串或包含message的对象
+     */
+    @Nullable
+    private static String readErrorMessage(@NotNull JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+
+        String message = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("message".equals(name) && value == JsonToken.VALUE_STRING) {
+                message = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return message;
+    }
+}
@@ -0,0 +1,325 @@
+package com.vinist.ai.codereview.llm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * LLM服务熔断器
+ * CLOSED：正常放行，连续失败达到阈值后进入OPEN；
+ * OPEN：立即拒绝请求，间隔到期后在后台探测服务，探测成功恢复CLOSED，失败继续OPEN，每次重新进入OPEN时间隔指数增长；
+ * 探测无法判断服务状态（如返回401、404）或没有配置探测时进入HALF_OPEN；
+ * HALF_OPEN：只放行一个真实的审查请求作为试探，其他请求等待试探结果，成功则恢复CLOSED，失败则重新进入OPEN
+ */
+public class CircuitBreaker {
+
+    private static final long MAX_OPEN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 后台探测的结果
+     */
+    public enum ProbeResult {
+        /**
+         * 服务已恢复
+         */
+        RECOVERED,
+        /**
+         * 服务仍然故障：连接失败、超时或5xx
+         */
+        FAILED,
+        /**
+         * 无法判断，交由下一个真实请求试探
+         */
+        UNKNOWN
+    }
+
+    /**
+     * 服务可用性探测，在后台线程中调用，不应消耗审查请求的额度
+     */
+    public interface Probe {
+        @NotNull
+        ProbeResult probe();
+    }
+
+    /**
+     * 熔断中，请求被直接拒绝
+     */
+    public static class OpenException extends IOException {
+        public OpenException(@NotNull String message) {
+            super(message);
+        }
+    }
+
+    private final ScheduledExecutorService scheduler;
+    private final Probe probe;
+
+    private boolean enabled = true;
+    private int failureThreshold = 5;
+    private long openMillis = TimeUnit.SECONDS.toMillis(30);
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int openCount;
+    private long trialAt;
+    private boolean trialInFlight;
+    private boolean probePending;
+    private ScheduledFuture<?> probeTask;
+    private String lastError;
+
+    /**
+     * 不进行后台探测，OPEN间隔到期后由下一个请求试探
+     */
+    public CircuitBreaker() {
+        this(null, null);
+    }
+
+    /**
+     * OPEN间隔到期后通过scheduler执行probe，探测期间保持OPEN，提交不会等待探测
+     */
+    public CircuitBreaker(@Nullable ScheduledExecutorService scheduler, @Nullable Probe probe) {
+        this.scheduler = scheduler;
+        this.probe = probe;
+    }
+
+    /**
+     * 更新配置，禁用时立即恢复CLOSED
+     */
+    public synchronized void configure(boolean enabled, int failureThreshold, long openMillis) {
+        this.enabled = enabled;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = Math.max(1, openMillis);
+        if (!enabled) {
+            close();
+        }
+    }
+
+    /**
+     * 检查是否放行请求，放行HALF_OPEN的试探请求后，调用方必须报告结果
+     *
+     * @throws OpenException 熔断中
+     */
+    public synchronized void checkAllowed() throws OpenException {
+        if (!enabled || state == State.CLOSED) {
+            return;
+        }
+        halfOpenIfDue();
+        if (state == State.HALF_OPEN && !trialInFlight) {
+            trialInFlight = true;
+            return;
+        }
+        throw new OpenException(state == State.OPEN
+                ? String.format("LLM服务暂时不可用，已暂停请求（%d秒后重新试探）: %s", getRetryInMillis() / 1000, lastError)
+                : "LLM服务暂时不可用，正在试探恢复: " + lastError);
+    }
+
+    /**
+     * 与checkAllowed相同，但HALF_OPEN的试探请求进行中时最多等待maxWaitMillis，
+     * 试探成功则放行，失败或等待超时则拒绝。并发审查的其他请求因此不会因为没抢到试探名额而直接失败
+     *
+     * @param cancelled 返回true时停止等待
+     * @throws OpenException 熔断中
+     */
+    public synchronized void awaitAllowed(long maxWaitMillis, @NotNull BooleanSupplier cancelled)
+            throws OpenException, InterruptedException {
+        long waitUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+        while (enabled && trialInFlight && getState() == State.HALF_OPEN && !cancelled.getAsBoolean()) {
+            long remaining = waitUntil - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(100)));
+        }
+        checkAllowed();
+    }
+
+    /**
+     * 服务有响应（包括4xx、429等非服务端故障的响应）
+     */
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            close();
+        }
+    }
+
+    /**
+     * 服务故障：连接失败、超时或5xx
+     */
+    public synchronized void onFailure(@Nullable String error) {
+        if (!enabled) {
+            return;
+        }
+        lastError = error;
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * 请求结束但无法判断服务状态（如被取消），释放试探名额
+     */
+    public synchronized void onIgnored() {
+        trialInFlight = false;
+        notifyAll();
+    }
+
+    /**
+     * 根据请求异常报告结果
+     */
+    public void onError(@NotNull Throwable error) {
+        if (error instanceof OpenException) {
+            return;
+        }
+        if (isProviderFailure(error)) {
+            onFailure(error.getMessage());
+        } else if (error instanceof LLMApiException) {
+            onSuccess();
+        } else {
+            onIgnored();
+        }
+    }
+
+    /**
+     * 服务是否可用（未处于OPEN状态）
+     */
+    public synchronized boolean isAvailable() {
+        halfOpenIfDue();
+        return !enabled || state != State.OPEN;
+    }
+
+    @NotNull
+    public synchronized State getState() {
+        halfOpenIfDue();
+        return state;
+    }
+
+    /**
+     * 距离放行下一个试探请求的时间（毫秒），非OPEN状态时为0
+     */
+    public synchronized long getRetryInMillis() {
+        return state == State.OPEN ? Math.max(0, trialAt - currentTimeMillis()) : 0;
+    }
+
+    @Nullable
+    public synchronized String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * 是否为服务端故障：5xx响应，以及连接失败、连接重置、超时等网络异常
+     */
+    public static boolean isProviderFailure(@NotNull Throwable error) {
+        if (error instanceof LLMApiException) {
+            return ((LLMApiException) error).getStatusCode() >= 500;
+        }
+        if (error instanceof JsonProcessingException || error instanceof MalformedResponseException
+                || error instanceof RateLimiter.QueueTimeoutException || error instanceof OpenException) {
+            return false;
+        }
+        return error instanceof IOException;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        trialInFlight = false;
+        consecutiveFailures = 0;
+        long delay = Math.min(MAX_OPEN_MILLIS, openMillis << Math.min(openCount, 10));
+        openCount++;
+        trialAt = currentTimeMillis() + delay;
+        scheduleProbe(delay);
+        notifyAll();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        trialInFlight = false;
+        consecutiveFailures = 0;
+        openCount = 0;
+        cancelProbe();
+        notifyAll();
+    }
+
+    /**
+     * OPEN间隔到期后进入HALF_OPEN，等待下一个请求作为试探；后台探测尚未得出结果时保持OPEN
+     */
+    private void halfOpenIfDue() {
+        if (state == State.OPEN && !probePending && currentTimeMillis() >= trialAt) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+    }
+
+    private void scheduleProbe(long delayMillis) {
+        cancelProbe();
+        if (scheduler == null || probe == null) {
+            return;
+        }
+        try {
+            probeTask = scheduler.schedule(this::runProbe, delayMillis, TimeUnit.MILLISECONDS);
+            probePending = true;
+        } catch (RejectedExecutionException e) {
+            // 应用关闭中，退化为由下一个请求试探
+        }
+    }
+
+    private void cancelProbe() {
+        if (probeTask != null) {
+            probeTask.cancel(false);
+            probeTask = null;
+        }
+        probePending = false;
+    }
+
+    /**
+     * 后台探测：恢复则CLOSED，故障则重新OPEN并延长间隔，无法判断则进入HALF_OPEN由下一个请求试探
+     */
+    void runProbe() {
+        synchronized (this) {
+            if (state != State.OPEN || !probePending) {
+                return;
+            }
+        }
+
+        ProbeResult result;
+        try {
+            result = probe.probe();
+        } catch (RuntimeException e) {
+            result = ProbeResult.UNKNOWN;
+        }
+
+        synchronized (this) {
+            if (state != State.OPEN || !probePending) {
+                return;
+            }
+            probeTask = null;
+            probePending = false;
+            if (result == ProbeResult.RECOVERED) {
+                close();
+            } else if (result == ProbeResult.FAILED) {
+                open();
+            } else {
+                halfOpenIfDue();
+            }
+        }
+    }
+
+    /**
+     * 当前时间，测试中可以覆盖
+     */
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,289 @@
+package com.vinist.ai.codereview.llm;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LLM服务连通性探测
+ * 优先请求模型列表，服务不提供模型列表时发送一个max_tokens为1的补全请求，不进行完整的代码审查。
+ * HttpClient不暴露连接各阶段的耗时，因此直接通过Socket发送HTTP/1.1请求，分别记录DNS解析、TCP连接、TLS握手和首字节时间
+ */
+public class ConnectivityProbe {
+
+    /**
+     * 探测方式
+     */
+    public enum Mode {
+        /**
+         * GET 模型列表
+         */
+        MODELS,
+        /**
+         * 只生成1个Token的补全请求
+         */
+        COMPLETION
+    }
+
+    /**
+     * 探测结果，各阶段耗时单位为毫秒，未执行到的阶段为-1
+     */
+    public static final class Result {
+        private final Mode mode;
+        private final int statusCode;
+        private final long dnsMillis;
+        private final long connectMillis;
+        private final long tlsMillis;
+        private final long firstByteMillis;
+        private final long totalMillis;
+        private final String error;
+
+        private Result(@NotNull Mode mode, int statusCode, long dnsMillis, long connectMillis, long tlsMillis,
+                       long firstByteMillis, long totalMillis, @Nullable String error) {
+            this.mode = mode;
+            this.statusCode = statusCode;
+            this.dnsMillis = dnsMillis;
+            this.connectMillis = connectMillis;
+            this.tlsMillis = tlsMillis;
+            this.firstByteMillis = firstByteMillis;
+            this.totalMillis = totalMillis;
+            this.error = error;
+        }
+
+        /**
+         * 服务可访问且认证通过
+         */
+        public boolean isSuccess() {
+            return statusCode >= 200 && statusCode < 300;
+        }
+
+        @NotNull
+        public Mode getMode() {
+            return mode;
+        }
+
+        /**
+         * HTTP状态码，未收到响应时为0
+         */
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public long getDnsMillis() {
+            return dnsMillis;
+        }
+
+        public long getConnectMillis() {
+            return connectMillis;
+        }
+
+        /**
+         * TLS握手耗时，http端点为-1
+         */
+        public long getTlsMillis() {
+            return tlsMillis;
+        }
+
+        /**
+         * 从发出请求到收到第一个字节的时间
+         */
+        public long getFirstByteMillis() {
+            return firstByteMillis;
+        }
+
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        @Nullable
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(mode).append(": ").append(statusCode > 0 ? "HTTP " + statusCode : "no response");
+            sb.append(", DNS ").append(format(dnsMillis));
+            sb.append(", connect ").append(format(connectMillis));
+            sb.append(", TLS ").append(format(tlsMillis));
+            sb.append(", TTFB ").append(format(firstByteMillis));
+            sb.append(", total ").append(totalMillis).append("ms");
+            if (error != null) {
+                sb.append(" (").append(error).append(')');
+            }
+            return sb.toString();
+        }
+
+        private static String format(long millis) {
+            return millis >= 0 ? millis + "ms" : "-";
+        }
+    }
+
+    private final int timeoutMillis;
+
+    /**
+     * @param timeoutMillis 连接和读取各自的超时时间
+     */
+    public ConnectivityProbe(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 探测端点：能推导出模型列表地址时先请求模型列表，返回404/405时改用1个Token的补全请求
+     */
+    @NotNull
+    public Result probe(@NotNull LLMEndpoint endpoint) {
+        String modelsUrl = getModelsUrl(endpoint.getUrl());
+        if (modelsUrl != null) {
+            Result result = probe(endpoint, Mode.MODELS);
+            if (result.getStatusCode() != 404 && result.getStatusCode() != 405) {
+                return result;
+            }
+        }
+        return probe(endpoint, Mode.COMPLETION);
+    }
+
+    /**
+     * 按指定方式探测端点
+     */
+    @NotNull
+    public Result probe(@NotNull LLMEndpoint endpoint, @NotNull Mode mode) {
+        long start = System.nanoTime();
+        long dns = -1;
+        long connect = -1;
+        long tls = -1;
+        long firstByte = -1;
+
+        try {
+            String url = mode == Mode.MODELS ? getModelsUrl(endpoint.getUrl()) : endpoint.getUrl();
+            if (url == null) {
+                throw new IOException("无法推导模型列表地址");
+            }
+            URI uri = URI.create(url);
+            boolean https = "https".equalsIgnoreCase(uri.getScheme());
+            if (!https && !"http".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null) {
+                throw new IOException("不支持的API URL: " + url);
+            }
+            int port = uri.getPort() > 0 ? uri.getPort() : https ? 443 : 80;
+
+            long phase = System.nanoTime();
+            InetAddress address = InetAddress.getByName(uri.getHost());
+            dns = elapsedMillis(phase);
+
+            phase = System.nanoTime();
+            try (Socket plain = new Socket()) {
+                plain.connect(new InetSocketAddress(address, port), timeoutMillis);
+                plain.setSoTimeout(timeoutMillis);
+                connect = elapsedMillis(phase);
+
+                Socket socket = plain;
+                if (https) {
+                    phase = System.nanoTime();
+                    SSLSocket ssl = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                            .createSocket(plain, uri.getHost(), port, true);
+                    ssl.startHandshake();
+                    tls = elapsedMillis(phase);
+                    socket = ssl;
+                }
+
+                byte[] request = buildRequest(uri, endpoint, mode);
+                phase = System.nanoTime();
+                OutputStream out = socket.getOutputStream();
+                out.write(request);
+                out.flush();
+
+                InputStream in = socket.getInputStream();
+                int first = in.read();
+                if (first < 0) {
+                    throw new IOException("连接被服务端关闭");
+                }
+                firstByte = elapsedMillis(phase);
+
+                int statusCode = readStatusCode(first, in);
+                return new Result(mode, statusCode, dns, connect, tls, firstByte, elapsedMillis(start), null);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return new Result(mode, 0, dns, connect, tls, firstByte, elapsedMillis(start), error);
+        }
+    }
+
+    /**
+     * 由补全地址推导模型列表地址，如 .../v1/chat/completions -> .../v1/models，无法推导时返回null
+     */
+    @Nullable
+    static String getModelsUrl(@NotNull String completionUrl) {
+        for (String suffix : new String[]{"/chat/completions", "/messages", "/completions"}) {
+            if (completionUrl.endsWith(suffix)) {
+                return completionUrl.substring(0, completionUrl.length() - suffix.length()) + "/models";
+            }
+        }
+        return null;
+    }
+
+    @NotNull
+    private static byte[] buildRequest(@NotNull URI uri, @NotNull LLMEndpoint endpoint, @NotNull Mode mode)
+            throws IOException {
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+        byte[] body = mode == Mode.COMPLETION
+                ? ChatCompletionCodec.writeRequest(endpoint.getModel(), "ping", 1, 0, false).toByteArray()
+                : new byte[0];
+
+        StringBuilder head = new StringBuilder();
+        head.append(mode == Mode.COMPLETION ? "POST " : "GET ").append(path).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(uri.getHost()).append(uri.getPort() > 0 ? ":" + uri.getPort() : "").append("\r\n");
+        head.append("Authorization: Bearer ").append(endpoint.getApiKey()).append("\r\n");
+        head.append("Accept: application/json\r\n");
+        head.append("Connection: close\r\n");
+        if (mode == Mode.COMPLETION) {
+            head.append("Content-Type: application/json\r\n");
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        head.append("\r\n");
+
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] request = new byte[headBytes.length + body.length];
+        System.arraycopy(headBytes, 0, request, 0, headBytes.length);
+        System.arraycopy(body, 0, request, headBytes.length, body.length);
+        return request;
+    }
+
+    /**
+     * 读取状态行 "HTTP/1.1 200 OK" 中的状态码
+     */
+    private static int readStatusCode(int first, @NotNull InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder().append((char) first);
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n' && line.length() < 256) {
+            line.append((char) c);
+        }
+        String[] parts = line.toString().trim().split(" ");
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("无效的HTTP响应: " + line.toString().trim());
+        }
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("无效的HTTP状态码: " + parts[1]);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,363 @@
+package com.vinist.ai.codereview.llm;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多端点负载均衡器
+ * 按策略在可用端点间分配请求，并根据请求结果做被动健康检查：连续失败的端点被暂时摘除，摘除时间指数增长，
+ * 到期后只放行一个试探请求，试探成功才恢复正常分配，失败则再次摘除。所有端点都被摘除时忽略摘除状态，避免完全不可用
+ */
+public class EndpointBalancer {
+
+    /**
+     * 连续失败多少次后摘除端点
+     */
+    private static final int FAILURE_THRESHOLD = 3;
+
+    private static final long BASE_EJECTION_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long MAX_EJECTION_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    /**
+     * 试探请求的名额在选中后没有结束（如请求未能发出）时，超过该时间释放
+     */
+    private static final long PROBE_EXPIRY_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    /**
+     * 延迟EWMA的平滑系数，越大越偏重最近的请求
+     */
+    private static final double EWMA_ALPHA = 0.3;
+
+    /**
+     * 负载均衡策略
+     */
+    public enum Strategy {
+        /**
+         * 按配置顺序优先使用主端点，其后的端点只用于故障转移和对冲请求
+         */
+        PRIORITY,
+        /**
+         * 选择进行中请求最少的端点
+         */
+        LEAST_OUTSTANDING,
+        /**
+         * 选择 延迟EWMA * (进行中请求数 + 1) 最小的端点，没有延迟数据的端点优先尝试
+         */
+        EWMA
+    }
+
+    private final Map<LLMEndpoint, EndpointState> states = new ConcurrentHashMap<>();
+    private final AtomicInteger rotation = new AtomicInteger();
+    private volatile Strategy strategy = Strategy.PRIORITY;
+
+    /**
+     * 端点的运行状态
+     */
+    private static final class EndpointState {
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private double ewmaNanos;
+        private int consecutiveFailures;
+        private int ejections;
+        private long ejectedUntil;
+        private long successCount;
+        private long failureCount;
+        private boolean probeInFlight;
+        private boolean probeBound;
+        private long probeStartedAt;
+
+        private synchronized boolean isEjected(long now) {
+            return ejections > 0 && now - ejectedUntil < 0;
+        }
+
+        /**
+         * 摘除到期但还没有请求成功，只允许一个试探请求
+         */
+        private synchronized boolean isOnProbation(long now) {
+            return ejections > 0 && now - ejectedUntil >= 0;
+        }
+
+        private synchronized boolean isAdmissible(long now) {
+            if (isEjected(now)) {
+                return false;
+            }
+            return !isOnProbation(now) || !probeInFlight || now - probeStartedAt >= PROBE_EXPIRY_NANOS;
+        }
+
+        /**
+         * 选中端点时占用名额，处于试探期的端点占用唯一的试探名额；不可用时返回false
+         */
+        private synchronized boolean tryClaim(long now) {
+            if (!isAdmissible(now)) {
+                return false;
+            }
+            if (isOnProbation(now)) {
+                probeInFlight = true;
+                probeBound = false;
+                probeStartedAt = now;
+            }
+            return true;
+        }
+
+        /**
+         * 开始请求时认领选中时占用的试探名额，返回该请求是否为试探请求
+         */
+        private synchronized boolean bindProbe() {
+            if (probeInFlight && !probeBound) {
+                probeBound = true;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 释放选中后没有发出请求的试探名额
+         */
+        private synchronized void cancelClaim() {
+            if (probeInFlight && !probeBound) {
+                endProbe();
+            }
+        }
+
+        private synchronized void endProbe() {
+            probeInFlight = false;
+            probeBound = false;
+        }
+
+        private synchronized double getScore() {
+            return ewmaNanos * (outstanding.get() + 1);
+        }
+
+        private synchronized void onSuccess(long latencyNanos) {
+            ewmaNanos = successCount == 0 && ewmaNanos == 0
+                    ? latencyNanos : EWMA_ALPHA * latencyNanos + (1 - EWMA_ALPHA) * ewmaNanos;
+            consecutiveFailures = 0;
+            ejections = 0;
+            successCount++;
+        }
+
+        private synchronized void onFailure(long now) {
+            failureCount++;
+            consecutiveFailures++;
+            // 摘除到期后的试探请求失败时立即再次摘除
+            if (consecutiveFailures >= FAILURE_THRESHOLD || ejections > 0) {
+                long duration = Math.min(MAX_EJECTION_NANOS, BASE_EJECTION_NANOS << Math.min(ejections, 10));
+                ejectedUntil = now + duration;
+                ejections++;
+                consecutiveFailures = 0;
+            }
+        }
+    }
+
+    /**
+     * 一次请求的记录，请求结束时必须调用其中一个结束方法
+     */
+    public final class Call {
+        private final EndpointState state;
+        private final long start = nanoTime();
+        private final boolean probe;
+        private boolean finished;
+
+        private Call(@NotNull EndpointState state) {
+            this.state = state;
+            this.probe = state.bindProbe();
+            state.outstanding.incrementAndGet();
+        }
+
+        /**
+         * 请求成功，记录延迟
+         */
+        public void succeeded() {
+            if (finish()) {
+                state.onSuccess(nanoTime() - start);
+            }
+        }
+
+        /**
+         * 端点故障：连接失败、超时、5xx或限流
+         */
+        public void failed() {
+            if (finish()) {
+                state.onFailure(nanoTime());
+            }
+        }
+
+        /**
+         * 请求结束但不反映端点健康状况，如被取消或请求本身有误（4xx）
+         */
+        public void released() {
+            finish();
+        }
+
+        private synchronized boolean finish() {
+            if (finished) {
+                return false;
+            }
+            finished = true;
+            state.outstanding.decrementAndGet();
+            if (probe) {
+                state.endProbe();
+            }
+            return true;
+        }
+    }
+
+    public void setStrategy(@NotNull Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    @NotNull
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * 选择一个端点，优先选择不在exclude中且未被摘除的端点；摘除到期的端点同一时间只会被选中一次作为试探，
+     * 选中后必须用begin()开始请求
+     */
+    @NotNull
+    public LLMEndpoint select(@NotNull List<LLMEndpoint> endpoints, @NotNull Collection<LLMEndpoint> exclude) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("没有可用的LLM端点");
+        }
+        if (endpoints.size() == 1) {
+            return endpoints.get(0);
+        }
+
+        long now = nanoTime();
+        List<LLMEndpoint> candidates = new ArrayList<>();
+        for (LLMEndpoint endpoint : endpoints) {
+            if (!exclude.contains(endpoint) && getState(endpoint).isAdmissible(now)) {
+                candidates.add(endpoint);
+            }
+        }
+        // 试探名额可能在筛选后被其他线程占用，占用失败时换下一个端点
+        while (!candidates.isEmpty()) {
+            LLMEndpoint best = choose(candidates);
+            if (getState(best).tryClaim(now)) {
+                return best;
+            }
+            candidates.remove(best);
+        }
+
+        for (LLMEndpoint endpoint : endpoints) {
+            if (!exclude.contains(endpoint)) {
+                candidates.add(endpoint);
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates.addAll(endpoints);
+        }
+        return choose(candidates);
+    }
+
+    /**
+     * 按策略从候选端点中选择一个
+     */
+    @NotNull
+    private LLMEndpoint choose(@NotNull List<LLMEndpoint> candidates) {
+        if (strategy == Strategy.PRIORITY || candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        // 从轮转位置开始比较，得分相同时请求分散到各端点
+        int offset = Math.floorMod(rotation.getAndIncrement(), candidates.size());
+        LLMEndpoint best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < candidates.size(); i++) {
+            LLMEndpoint endpoint = candidates.get((offset + i) % candidates.size());
+            EndpointState state = getState(endpoint);
+            double score = strategy == Strategy.EWMA ? state.getScore() : state.outstanding.get();
+            if (best == null || score < bestScore) {
+                best = endpoint;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 开始一次发往指定端点的请求
+     */
+    @NotNull
+    public Call begin(@NotNull LLMEndpoint endpoint) {
+        return new Call(getState(endpoint));
+    }
+
+    /**
+     * 选中的端点最终没有发出请求时调用，释放选中时占用的试探名额
+     */
+    public void cancel(@NotNull LLMEndpoint endpoint) {
+        EndpointState state = states.get(endpoint);
+        if (state != null) {
+            state.cancelClaim();
+        }
+    }
+
+    /**
+     * 端点是否处于摘除状态
+     */
+    public boolean isEjected(@NotNull LLMEndpoint endpoint) {
+        EndpointState state = states.get(endpoint);
+        return state != null && state.isEjected(nanoTime());
+    }
+
+    /**
+     * 获取各端点的状态描述
+     */
+    @NotNull
+    public String getStatus(@NotNull List<LLMEndpoint> endpoints) {
+        long now = nanoTime();
+        StringBuilder sb = new StringBuilder("Strategy: ").append(strategy);
+        for (LLMEndpoint endpoint : endpoints) {
+            EndpointState state = getState(endpoint);
+            synchronized (state) {
+                sb.append('\n').append(endpoint.getUrl())
+                        .append(": outstanding ").append(state.outstanding.get())
+                        .append(", latency ").append(TimeUnit.NANOSECONDS.toMillis((long) state.ewmaNanos)).append("ms")
+                        .append(", ok ").append(state.successCount)
+                        .append(", failed ").append(state.failureCount);
+                if (state.isEjected(now)) {
+                    sb.append(", ejected for ").append(TimeUnit.NANOSECONDS.toSeconds(state.ejectedUntil - now)).append('s');
+                } else if (state.isOnProbation(now)) {
+                    sb.append(", probing");
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    @NotNull
+    private EndpointState getState(@NotNull LLMEndpoint endpoint) {
+        return states.computeIfAbsent(endpoint, key -> new EndpointState());
+    }
+
+    /**
+     * 当前时间（纳秒），测试中可以覆盖
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * 按名称解析策略，无法识别时使用PRIORITY
+     */
+    @NotNull
+    public static Strategy parseStrategy(@Nullable String name) {
+        if (name != null) {
+            for (Strategy value : Strategy.values()) {
+                if (value.name().equalsIgnoreCase(name.trim())) {
+                    return value;
+                }
+            }
+        }
+        return Strategy.PRIORITY;
+    }
+}
@@ -0,0 +1,31 @@
+package com.vinist.ai.codereview.llm;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * LLM API返回非200状态码
+ */
+public class LLMApiException extends IOException {
+
+    private final int statusCode;
+    private final long retryAfterNanos;
+
+    public LLMApiException(int statusCode, @NotNull String responseBody, long retryAfterNanos) {
+        super("LLM API调用失败，状态码: " + statusCode + ", 响应: " + responseBody);
+        this.statusCode = statusCode;
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * 服务端通过Retry-After要求的等待时间（纳秒），没有时为0
+     */
+    public long getRetryAfterNanos() {
+        return retryAfterNanos;
+    }
+}
@@ -0,0 +1,54 @@
+package com.vinist.ai.codereview.llm;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * LLM服务端点：完整的API地址、API密钥和模型
+ */
+public final class LLMEndpoint {
+
+    private final String url;
+    private final String apiKey;
+    private final String model;
+
+    public LLMEndpoint(@NotNull String url, @NotNull String apiKey, @NotNull String model) {
+        this.url = url;
+        this.apiKey = apiKey;
+        this.model = model;
+    }
+
+    @NotNull
+    public String getUrl() {
+        return url;
+    }
+
+    @NotNull
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    @NotNull
+    public String getModel() {
+        return model;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LLMEndpoint that = (LLMEndpoint) o;
+        return url.equals(that.url) && apiKey.equals(that.apiKey) && model.equals(that.model);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(url, apiKey, model);
+    }
+
+    @Override
+    public String toString() {
+        return url + " (" + model + ")";
+    }
+}
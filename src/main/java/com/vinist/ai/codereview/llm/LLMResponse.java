@@ -0,0 +1,134 @@
+package com.vinist.ai.codereview.llm;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * LLM调用结果：响应内容及每次尝试的记录
+ */
+public class LLMResponse {
+
+    private final String content;
+    private final List<Attempt> attempts;
+    private final long latencyMillis;
+    private final TokenUsage usage;
+
+    /**
+     * 一次请求尝试
+     */
+    public static final class Attempt {
+        private final int number;
+        private final int statusCode;
+        private final long latencyMillis;
+        private final String error;
+
+        public Attempt(int number, int statusCode, long latencyMillis, @Nullable String error) {
+            this.number = number;
+            this.statusCode = statusCode;
+            this.latencyMillis = latencyMillis;
+            this.error = error;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        /**
+         * HTTP状态码，未收到响应（连接失败、超时）时为0
+         */
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public long getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        @Nullable
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("#").append(number).append(' ')
+                    .append(statusCode > 0 ? String.valueOf(statusCode) : "-")
+                    .append(' ').append(latencyMillis).append("ms");
+            if (error != null) {
+                sb.append(' ').append(error.length() > 120 ? error.substring(0, 120) + "..." : error);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 所有尝试均失败，附带每次尝试的记录
+     */
+    public static class FailedException extends IOException {
+        private final List<Attempt> attempts;
+
+        public FailedException(@NotNull Throwable cause, @NotNull List<Attempt> attempts) {
+            super(attempts.size() > 1 ? cause.getMessage() + "（共尝试" + attempts.size() + "次）" : cause.getMessage(), cause);
+            this.attempts = Collections.unmodifiableList(new ArrayList<>(attempts));
+        }
+
+        @NotNull
+        public List<Attempt> getAttempts() {
+            return attempts;
+        }
+    }
+
+    public LLMResponse(@NotNull String content, @NotNull List<Attempt> attempts, long latencyMillis) {
+        this(content, attempts, latencyMillis, null);
+    }
+
+    public LLMResponse(@NotNull String content, @NotNull List<Attempt> attempts, long latencyMillis,
+                       @Nullable TokenUsage usage) {
+        this.content = content;
+        this.attempts = Collections.unmodifiableList(new ArrayList<>(attempts));
+        this.latencyMillis = latencyMillis;
+        this.usage = usage;
+    }
+
+    /**
+     * 命中缓存的结果，没有实际请求
+     */
+    @NotNull
+    public static LLMResponse cached(@NotNull String content) {
+        return new LLMResponse(content, Collections.emptyList(), 0);
+    }
+
+    @NotNull
+    public String getContent() {
+        return content;
+    }
+
+    @NotNull
+    public List<Attempt> getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * 从第一次尝试开始到得到结果的总耗时，包括排队和重试等待
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * 成功的那次请求的Token用量，命中缓存或提供方没有返回usage时为null
+     */
+    @Nullable
+    public TokenUsage getUsage() {
+        return usage;
+    }
+
+    public boolean isCached() {
+        return attempts.isEmpty();
+    }
+}
@@ -0,0 +1,56 @@
+package com.vinist.ai.codereview.llm;
+
+import java.util.Arrays;
+
+/**
+ * 响应延迟统计
+ * 保存最近若干次成功请求的延迟，用于计算百分位数（如p95）作为对冲请求的触发时间
+ */
+public class LatencyTracker {
+
+    private static final int DEFAULT_CAPACITY = 200;
+
+    /**
+     * 样本数少于该值时百分位数不可靠，不返回结果
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    private final long[] samples;
+    private int count;
+    private int next;
+
+    public LatencyTracker() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LatencyTracker(int capacity) {
+        this.samples = new long[Math.max(MIN_SAMPLES, capacity)];
+    }
+
+    /**
+     * 记录一次延迟（纳秒），超出容量时覆盖最旧的样本
+     */
+    public synchronized void record(long latencyNanos) {
+        samples[next] = Math.max(0, latencyNanos);
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * 获取延迟的百分位数（纳秒），percentile取值0-100；样本不足时返回-1
+     */
+    public synchronized long getPercentileNanos(double percentile) {
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    public synchronized int getSampleCount() {
+        return count;
+    }
+}
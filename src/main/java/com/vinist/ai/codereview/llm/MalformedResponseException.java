@@ -0,0 +1,16 @@
+package com.vinist.ai.codereview.llm;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * LLM API返回了成功状态码，但响应内容无法使用：不是JSON对象、缺少content字段或包含error对象。
+ * 重新发送同一请求不会得到不同的结果，因此不重试，也不计为服务端故障
+ */
+public class MalformedResponseException extends IOException {
+
+    public MalformedResponseException(@NotNull String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,506 @@
+package com.vinist.ai.codereview.llm;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * LLM请求限流器
+ * 每分钟请求数和每分钟Token数两个令牌桶加一个并发上限，额度不足时调用方排队等待。
+ * 容量会根据服务端返回的 x-ratelimit-* 和 Retry-After 响应头自动调整，多人共用一个API Key时以服务端剩余额度为准。
+ * 排队使用ReentrantLock而非synchronized，虚拟线程排队等待时不会占住平台线程
+ */
+public class RateLimiter {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * 收到429但没有Retry-After时的默认暂停时间
+     */
+    private static final long DEFAULT_THROTTLE_PAUSE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * OpenAI格式的重置时间，如 "1s"、"6m0s"、"20ms"
+     */
+    private static final Pattern DURATION_PART_PATTERN = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Bucket requestBucket = new Bucket();
+    private final Bucket tokenBucket = new Bucket();
+
+    private int maxConcurrent = 1;
+    private int inFlight;
+    private int queued;
+    private long blockedUntil;
+
+    private long throttledCount;
+    private long waitedCount;
+    private long totalWaitNanos;
+
+    /**
+     * 令牌桶，容量为每分钟额度，按时间连续补充；容量为0表示不限制
+     */
+    private static final class Bucket {
+        private long configuredCapacity;
+        private long serverCapacity;
+        private double available;
+        private long lastRefill;
+
+        private long getCapacity() {
+            if (configuredCapacity > 0 && serverCapacity > 0) {
+                return Math.min(configuredCapacity, serverCapacity);
+            }
+            return Math.max(configuredCapacity, serverCapacity);
+        }
+
+        private void refill(long now) {
+            long capacity = getCapacity();
+            if (capacity > 0) {
+                available = Math.min(capacity, available + (double) (now - lastRefill) * capacity / NANOS_PER_MINUTE);
+            }
+            lastRefill = now;
+        }
+
+        /**
+         * 获取满足需求还需等待的时间（纳秒），需求超过容量时等到桶满即可
+         */
+        private long getWaitNanos(long amount) {
+            long capacity = getCapacity();
+            if (capacity <= 0) {
+                return 0;
+            }
+
+            double required = Math.min(amount, capacity);
+            if (available >= required) {
+                return 0;
+            }
+            return (long) Math.ceil((required - available) * NANOS_PER_MINUTE / capacity);
+        }
+
+        private void take(long amount) {
+            if (getCapacity() > 0) {
+                available -= amount;
+            }
+        }
+
+        private void setConfiguredCapacity(long capacity) {
+            long previous = getCapacity();
+            configuredCapacity = Math.max(0, capacity);
+            onCapacityChanged(previous);
+        }
+
+        private void setServerCapacity(long capacity) {
+            long previous = getCapacity();
+            serverCapacity = Math.max(0, capacity);
+            onCapacityChanged(previous);
+        }
+
+        private void onCapacityChanged(long previous) {
+            long capacity = getCapacity();
+            if (previous <= 0 && capacity > 0) {
+                available = capacity; // 从不限制变为限制时，从满额度开始
+            } else if (capacity > 0) {
+                available = Math.min(available, capacity);
+            }
+        }
+
+        /**
+         * 服务端报告的剩余额度比本地少（其他人也在用同一个Key）时以服务端为准
+         */
+        private void clampAvailable(long remaining) {
+            if (getCapacity() > 0) {
+                available = Math.min(available, remaining);
+            }
+        }
+
+        /**
+         * 额度用尽时，服务端在重置时间后恢复满额度，调整可用量使本地补充进度在重置时刻追上服务端
+         */
+        private void resetAfter(long resetNanos) {
+            long capacity = getCapacity();
+            if (capacity > 0) {
+                available = capacity - (double) resetNanos * capacity / NANOS_PER_MINUTE;
+            }
+        }
+    }
+
+    /**
+     * 排队等待超时，额度在等待上限内无法恢复
+     */
+    public static class QueueTimeoutException extends IOException {
+        public QueueTimeoutException(@NotNull String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 请求许可，请求结束后必须关闭以释放并发额度
+     */
+    public final class Permit implements Closeable {
+        private boolean released;
+
+        private Permit() {
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (!released) {
+                    released = true;
+                    inFlight--;
+                    changed.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 限流器状态快照
+     */
+    public static final class Status {
+        private final long requestsPerMinute;
+        private final double availableRequests;
+        private final long tokensPerMinute;
+        private final double availableTokens;
+        private final int inFlight;
+        private final int maxConcurrent;
+        private final int queued;
+        private final long blockedMillis;
+        private final long throttledCount;
+        private final long waitedCount;
+        private final long totalWaitMillis;
+
+        private Status(RateLimiter limiter, long now) {
+            this.requestsPerMinute = limiter.requestBucket.getCapacity();
+            this.availableRequests = limiter.requestBucket.available;
+            this.tokensPerMinute = limiter.tokenBucket.getCapacity();
+            this.availableTokens = limiter.tokenBucket.available;
+            this.inFlight = limiter.inFlight;
+            this.maxConcurrent = limiter.maxConcurrent;
+            this.queued = limiter.queued;
+            this.blockedMillis = Math.max(0, TimeUnit.NANOSECONDS.toMillis(limiter.blockedUntil - now));
+            this.throttledCount = limiter.throttledCount;
+            this.waitedCount = limiter.waitedCount;
+            this.totalWaitMillis = TimeUnit.NANOSECONDS.toMillis(limiter.totalWaitNanos);
+        }
+
+        public long getRequestsPerMinute() {
+            return requestsPerMinute;
+        }
+
+        public double getAvailableRequests() {
+            return availableRequests;
+        }
+
+        public long getTokensPerMinute() {
+            return tokensPerMinute;
+        }
+
+        public double getAvailableTokens() {
+            return availableTokens;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public long getBlockedMillis() {
+            return blockedMillis;
+        }
+
+        public long getThrottledCount() {
+            return throttledCount;
+        }
+
+        public long getWaitedCount() {
+            return waitedCount;
+        }
+
+        public long getTotalWaitMillis() {
+            return totalWaitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Requests/min: %s (available %.0f), Tokens/min: %s (available %.0f), "
+                            + "In flight: %d/%d, Queued: %d, Blocked: %dms, Throttled: %d, Waited: %d (%dms)",
+                    requestsPerMinute > 0 ? String.valueOf(requestsPerMinute) : "unlimited", availableRequests,
+                    tokensPerMinute > 0 ? String.valueOf(tokensPerMinute) : "unlimited", availableTokens,
+                    inFlight, maxConcurrent, queued, blockedMillis, throttledCount, waitedCount, totalWaitMillis);
+        }
+    }
+
+    /**
+     * 更新本地配置的额度，0表示不限制（仍会根据响应头自动限制）
+     */
+    public void configure(long requestsPerMinute, long tokensPerMinute, int maxConcurrent) {
+        lock.lock();
+        try {
+            long now = nanoTime();
+            requestBucket.refill(now);
+            tokenBucket.refill(now);
+            requestBucket.setConfiguredCapacity(requestsPerMinute);
+            tokenBucket.setConfiguredCapacity(tokensPerMinute);
+
+            int previous = this.maxConcurrent;
+            this.maxConcurrent = Math.max(1, maxConcurrent);
+            if (this.maxConcurrent > previous) {
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取请求许可，额度不足时最多等待maxWaitMillis
+     *
+     * @param estimatedTokens 本次请求预计消耗的Token（输入加最大输出）
+     * @throws QueueTimeoutException 等待超时或预计等待时间超出上限
+     */
+    @NotNull
+    public Permit acquire(long estimatedTokens, long maxWaitMillis)
+            throws QueueTimeoutException, InterruptedException {
+        long start = nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+        boolean waited = false;
+        lock.lockInterruptibly();
+        queued++;
+
+        try {
+            while (true) {
+                long now = nanoTime();
+                requestBucket.refill(now);
+                tokenBucket.refill(now);
+
+                long waitNanos = Math.max(blockedUntil - now,
+                        Math.max(requestBucket.getWaitNanos(1), tokenBucket.getWaitNanos(estimatedTokens)));
+                boolean concurrencyFull = inFlight >= maxConcurrent;
+
+                if (waitNanos <= 0 && !concurrencyFull) {
+                    requestBucket.take(1);
+                    tokenBucket.take(estimatedTokens);
+                    inFlight++;
+                    if (waited) {
+                        waitedCount++;
+                        totalWaitNanos += now - start;
+                    }
+                    return new Permit();
+                }
+
+                // 额度恢复需要的时间已超出等待上限时直接失败，不必空等
+                if (now + Math.max(0, waitNanos) > deadline || (concurrencyFull && now >= deadline)) {
+                    throw new QueueTimeoutException(String.format("LLM请求被限流，排队等待超时（%s）", new Status(this, now)));
+                }
+
+                long sleepNanos = concurrencyFull && waitNanos <= 0 ? deadline - now : Math.min(waitNanos, deadline - now);
+                waited = true;
+                changed.awaitNanos(Math.max(1, sleepNanos));
+            }
+        } finally {
+            queued--;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 额度充足且没有其他请求在排队时立即获取许可，否则返回null，不等待
+     */
+    @Nullable
+    public Permit tryAcquire(long estimatedTokens) {
+        lock.lock();
+        try {
+            long now = nanoTime();
+            requestBucket.refill(now);
+            tokenBucket.refill(now);
+
+            if (queued > 0 || inFlight >= maxConcurrent || blockedUntil - now > 0
+                    || requestBucket.getWaitNanos(1) > 0 || tokenBucket.getWaitNanos(estimatedTokens) > 0) {
+                return null;
+            }
+            requestBucket.take(1);
+            tokenBucket.take(estimatedTokens);
+            inFlight++;
+            return new Permit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 根据响应状态和响应头调整额度
+     */
+    public void onResponse(int statusCode, @NotNull HttpHeaders headers) {
+        lock.lock();
+        try {
+            long now = nanoTime();
+            requestBucket.refill(now);
+            tokenBucket.refill(now);
+
+            adaptBucket(requestBucket, headers, now,
+                    firstLong(headers, "x-ratelimit-limit-requests", "anthropic-ratelimit-requests-limit"),
+                    firstLong(headers, "x-ratelimit-remaining-requests", "anthropic-ratelimit-requests-remaining"),
+                    firstValue(headers, "x-ratelimit-reset-requests", "anthropic-ratelimit-requests-reset"));
+            adaptBucket(tokenBucket, headers, now,
+                    firstLong(headers, "x-ratelimit-limit-tokens", "anthropic-ratelimit-tokens-limit"),
+                    firstLong(headers, "x-ratelimit-remaining-tokens", "anthropic-ratelimit-tokens-remaining"),
+                    firstValue(headers, "x-ratelimit-reset-tokens", "anthropic-ratelimit-tokens-reset"));
+
+            if (statusCode == 429 || statusCode == 503) {
+                Long retryAfter = parseRetryAfter(headers.firstValue("retry-after").orElse(null));
+                if (statusCode == 429) {
+                    throttledCount++;
+                    requestBucket.clampAvailable(0);
+                }
+                if (retryAfter != null || statusCode == 429) {
+                    block(now, retryAfter != null ? retryAfter : DEFAULT_THROTTLE_PAUSE_NANOS);
+                }
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @NotNull
+    public Status getStatus() {
+        lock.lock();
+        try {
+            long now = nanoTime();
+            requestBucket.refill(now);
+            tokenBucket.refill(now);
+            return new Status(this, now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adaptBucket(@NotNull Bucket bucket, @NotNull HttpHeaders headers, long now,
+                             @Nullable Long limit, @Nullable Long remaining, @Nullable String reset) {
+        if (limit != null && limit > 0) {
+            bucket.setServerCapacity(limit);
+        }
+        if (remaining != null) {
+            bucket.clampAvailable(remaining);
+            if (remaining <= 0) {
+                Long resetNanos = parseReset(reset);
+                if (resetNanos != null) {
+                    bucket.resetAfter(resetNanos);
+                    block(now, resetNanos);
+                }
+            }
+        }
+    }
+
+    private void block(long now, long durationNanos) {
+        blockedUntil = Math.max(blockedUntil, now + durationNanos);
+    }
+
+    /**
+     * 当前时间（纳秒），测试中可以覆盖
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Nullable
+    private static String firstValue(@NotNull HttpHeaders headers, @NotNull String... names) {
+        for (String name : names) {
+            Optional<String> value = headers.firstValue(name);
+            if (value.isPresent()) {
+                return value.get().trim();
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Long firstLong(@NotNull HttpHeaders headers, @NotNull String... names) {
+        String value = firstValue(headers, names);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解析Retry-After：秒数或HTTP日期，返回纳秒
+     */
+    @Nullable
+    public static Long parseRetryAfter(@Nullable String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return TimeUnit.MILLISECONDS.toNanos((long) (Double.parseDouble(value.trim()) * 1000));
+        } catch (NumberFormatException e) {
+            return parseDateDelay(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+        }
+    }
+
+    /**
+     * 解析额度重置时间：OpenAI的时长格式（如 "6m0s"）或Anthropic的RFC 3339时间，返回纳秒
+     */
+    @Nullable
+    static Long parseReset(@Nullable String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+
+        Matcher matcher = DURATION_PART_PATTERN.matcher(value);
+        double millis = 0;
+        int matchedLength = 0;
+        while (matcher.find()) {
+            double amount = Double.parseDouble(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "h": millis += amount * 3600000; break;
+                case "m": millis += amount * 60000; break;
+                case "s": millis += amount * 1000; break;
+                default: millis += amount;
+            }
+            matchedLength += matcher.group().length();
+        }
+        if (matchedLength == value.length()) {
+            return TimeUnit.MILLISECONDS.toNanos((long) Math.ceil(millis));
+        }
+        return parseDateDelay(value, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+    }
+
+    @Nullable
+    private static Long parseDateDelay(@NotNull String value, @NotNull DateTimeFormatter formatter) {
+        try {
+            long delayMillis = ZonedDateTime.parse(value, formatter).toInstant().toEpochMilli() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.vinist.ai.codereview.llm;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * LLM请求使用的执行器
+ * 运行时支持虚拟线程（Java 21+）时每个任务一个虚拟线程，等待LLM响应期间不占用平台线程；
+ * 插件按Java 17编译，因此通过反射创建
+ */
+public final class RequestExecutors {
+
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+
+    private RequestExecutors() {
+    }
+
+    /**
+     * 运行时是否支持虚拟线程
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的执行器，不支持虚拟线程时返回null
+     *
+     * @param namePrefix 线程名前缀，线程名后附加序号
+     */
+    @Nullable
+    public static ExecutorService newVirtualThreadExecutor(@NotNull String namePrefix) {
+        if (OF_VIRTUAL == null) {
+            return null;
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Method findMethod(@NotNull Class<?> type, @NotNull String name) {
+        try {
+            return type.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.vinist.ai.codereview.llm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LLM请求重试策略
+ * 按状态码和异常类型判断是否可重试，重试间隔为带完全抖动的指数退避：random(0, min(上限, 基础间隔 * 2^(n-1)))
+ */
+public class RetryPolicy {
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseDelayMillis = Math.max(1, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * 判断第attempt次尝试（从1开始）失败后是否应该重试
+     */
+    public boolean shouldRetry(@NotNull Throwable error, int attempt) {
+        return attempt <= maxRetries && isRetryable(error);
+    }
+
+    /**
+     * 可重试的状态码：请求超时、限流、服务端错误和过载
+     */
+    public static boolean isRetryableStatus(int statusCode) {
+        return statusCode == 408 || statusCode == 409 || statusCode == 425 || statusCode == 429
+                || (statusCode >= 500 && statusCode != 501 && statusCode != 505);
+    }
+
+    /**
+     * 可重试的异常：可重试状态码的API错误，以及连接失败、连接重置、超时等网络异常。
+     * 响应格式错误、限流排队超时和熔断重试也不会成功
+     */
+    public static boolean isRetryable(@NotNull Throwable error) {
+        if (error instanceof LLMApiException) {
+            return isRetryableStatus(((LLMApiException) error).getStatusCode());
+        }
+        if (error instanceof JsonProcessingException || error instanceof MalformedResponseException
+                || error instanceof RateLimiter.QueueTimeoutException
+                || error instanceof CircuitBreaker.OpenException) {
+            return false;
+        }
+        return error instanceof IOException;
+    }
+
+    /**
+     * 获取第attempt次尝试失败后的等待时间，服务端要求的Retry-After作为下限
+     */
+    public long getDelayNanos(int attempt, long retryAfterNanos) {
+        int shift = Math.min(30, Math.max(0, attempt - 1));
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << shift);
+        long jittered = TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        return Math.max(jittered, Math.max(0, retryAfterNanos));
+    }
+}
@@ -0,0 +1,78 @@
+package com.vinist.ai.codereview.llm;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 一次请求的Token用量，来自响应中的usage字段
+ * promptTokens为提示词的全部Token，包括从提供方前缀缓存读取的cachedTokens和写入缓存的cacheWriteTokens
+ */
+public final class TokenUsage {
+
+    private final long promptTokens;
+    private final long completionTokens;
+    private final long cachedTokens;
+    private final long cacheWriteTokens;
+
+    public TokenUsage(long promptTokens, long completionTokens, long cachedTokens, long cacheWriteTokens) {
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.cachedTokens = cachedTokens;
+        this.cacheWriteTokens = cacheWriteTokens;
+    }
+
+    public long getPromptTokens() {
+        return promptTokens;
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens;
+    }
+
+    /**
+     * 命中提供方前缀缓存的提示词Token
+     */
+    public long getCachedTokens() {
+        return cachedTokens;
+    }
+
+    /**
+     * 写入提供方前缀缓存的提示词Token（Anthropic）
+     */
+    public long getCacheWriteTokens() {
+        return cacheWriteTokens;
+    }
+
+    public long getTotalTokens() {
+        return promptTokens + completionTokens;
+    }
+
+    /**
+     * 合并两次用量，任一为null时返回另一个
+     */
+    @Nullable
+    public static TokenUsage add(@Nullable TokenUsage a, @Nullable TokenUsage b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return new TokenUsage(a.promptTokens + b.promptTokens, a.completionTokens + b.completionTokens,
+                a.cachedTokens + b.cachedTokens, a.cacheWriteTokens + b.cacheWriteTokens);
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("prompt ").append(promptTokens)
+                .append(", completion ").append(completionTokens);
+        if (cachedTokens > 0) {
+            sb.append(", cached ").append(cachedTokens);
+        }
+        if (cacheWriteTokens > 0) {
+            sb.append(", cache write ").append(cacheWriteTokens);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,113 @@
+package com.vinist.ai.codereview.models;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 审查目标模型类
+ * 表示一次审查请求中的单个文件，内容可以是完整文件，也可以是差异片段或大文件的一个分块
+ */
+public class ReviewTarget {
+
+    private final String fileName;
+    private final String filePath;
+    private final String content;
+    private final int[] lineMapping;
+    private final TrivialChange trivialChange;
+
+    public ReviewTarget(@NotNull String fileName, @Nullable String filePath, @NotNull String content) {
+        this(fileName, filePath, content, null);
+    }
+
+    /**
+     * @param lineMapping 行号映射，lineMapping[i]为内容第i+1行对应的文件行号；完整文件时为null
+     */
+    public ReviewTarget(@NotNull String fileName, @Nullable String filePath, @NotNull String content,
+                        @Nullable int[] lineMapping) {
+        this(fileName, filePath, content, lineMapping, null);
+    }
+
+    /**
+     * @param trivialChange 本地预检识别出的简单变更类型，需要审查或未预检时为null
+     */
+    public ReviewTarget(@NotNull String fileName, @Nullable String filePath, @NotNull String content,
+                        @Nullable int[] lineMapping, @Nullable TrivialChange trivialChange) {
+        this.fileName = fileName;
+        this.filePath = filePath;
+        this.content = content;
+        this.lineMapping = lineMapping != null ? lineMapping.clone() : null;
+        this.trivialChange = trivialChange;
+    }
+
+    @NotNull
+    public String getFileName() {
+        return fileName;
+    }
+
+    @Nullable
+    public String getFilePath() {
+        return filePath;
+    }
+
+    @NotNull
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * 内容是否只是文件的一部分（差异片段或分块），行号需要经过映射
+     */
+    public boolean hasLineMapping() {
+        return lineMapping != null;
+    }
+
+    /**
+     * 本地预检识别出的简单变更类型，为null时需要LLM审查
+     */
+    @Nullable
+    public TrivialChange getTrivialChange() {
+        return trivialChange;
+    }
+
+    /**
+     * 将内容中的行号（从1开始）映射为文件中的实际行号，无法映射时原样返回
+     */
+    public int mapLine(int contentLine) {
+        if (lineMapping == null || contentLine < 1 || contentLine > lineMapping.length) {
+            return contentLine;
+        }
+        return lineMapping[contentLine - 1];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ReviewTarget that = (ReviewTarget) o;
+        return Objects.equals(fileName, that.fileName) &&
+               Objects.equals(filePath, that.filePath) &&
+               Objects.equals(content, that.content) &&
+               Arrays.equals(lineMapping, that.lineMapping) &&
+               trivialChange == that.trivialChange;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hash(fileName, filePath, content, trivialChange) + Arrays.hashCode(lineMapping);
+    }
+
+    @Override
+    public String toString() {
+        return "ReviewTarget{" +
+                "fileName='" + fileName + '\'' +
+                ", filePath='" + filePath + '\'' +
+                ", length=" + content.length() +
+                ", partial=" + hasLineMapping() +
+                ", trivialChange=" + trivialChange +
+                '}';
+    }
+}
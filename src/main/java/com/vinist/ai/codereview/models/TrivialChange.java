@@ -0,0 +1,42 @@
+package com.vinist.ai.codereview.models;
+
+/**
+ * 无需LLM审查的简单变更类型，由本地预检识别
+ */
+public enum TrivialChange {
+    
+    /**
+     * 内容未变化，如仅重命名或移动
+     */
+    UNCHANGED("内容未变化"),
+    
+    /**
+     * 仅行内空白、空行或缩进变化
+     */
+    WHITESPACE_ONLY("仅空白变化"),
+    
+    /**
+     * 仅导入语句顺序变化
+     */
+    IMPORTS_ONLY("仅导入顺序变化"),
+    
+    /**
+     * 仅版本声明或依赖坐标中的版本号变化
+     */
+    VERSION_BUMP("仅版本号变化"),
+    
+    /**
+     * 生成的文件，如压缩后的脚本、protobuf生成的代码、带生成标记的代码
+     */
+    GENERATED("生成的文件");
+    
+    private final String displayName;
+    
+    TrivialChange(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    public String getDisplayName() {
+        return displayName;
+    }
+}
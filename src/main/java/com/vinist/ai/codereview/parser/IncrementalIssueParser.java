@@ -0,0 +1,151 @@
+package com.vinist.ai.codereview.parser;
+
+import com.vinist.ai.codereview.models.CodeIssue;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * 增量审查结果解析器
+ * 按收到的顺序逐段输入响应文本，分段位置任意（可以在一行或一个JSON字符串的中间），
+ * 每个问题行结束或问题对象闭合时立即通过监听器回调，不等待完整的响应。
+ * 结构化输出时先按JSON解析，JSON无效时改用文本解析：尚未回调过问题时重新解析已收到的全部文本，
+ * 否则只解析之后收到的文本，避免重复的问题
+ */
+public class IncrementalIssueParser {
+
+    private final Consumer<CodeIssue> listener;
+    private final StringBuilder summary = new StringBuilder();
+    private final StringBuilder line = new StringBuilder();
+    private final JsonIssueParser jsonParser;
+    private final StringBuilder received;
+    /**
+     * 上一行解析出的问题，之后的续行追加到它的修复建议
+     */
+    private CodeIssue lastIssue;
+    private boolean textMode;
+    private boolean skipPartialLine;
+    private boolean finished;
+
+    /**
+     * @param structured 响应是否为结构化输出（JSON）
+     */
+    public IncrementalIssueParser(boolean structured, @NotNull Consumer<CodeIssue> listener) {
+        this.listener = listener;
+        this.jsonParser = structured ? new JsonIssueParser(listener) : null;
+        this.received = structured ? new StringBuilder() : null;
+        this.textMode = !structured;
+    }
+
+    /**
+     * 输入一段响应文本
+     */
+    public void feed(@NotNull CharSequence chunk) {
+        if (finished || chunk.length() == 0) {
+            return;
+        }
+        if (textMode) {
+            feedText(chunk);
+            return;
+        }
+
+        received.append(chunk);
+        jsonParser.feed(chunk);
+        if (jsonParser.isFailed()) {
+            switchToText(chunk);
+        }
+    }
+
+    /**
+     * 响应结束，解析最后一行。被取消时响应不完整，不再改用文本解析，也不解析被截断的最后一行
+     */
+    public void finish(boolean cancelled) {
+        if (finished) {
+            return;
+        }
+        if (!textMode) {
+            jsonParser.finish();
+            if (jsonParser.isFailed() && !cancelled) {
+                switchToText("");
+            }
+        }
+        if (textMode && !cancelled) {
+            parseLine();
+        }
+        line.setLength(0);
+        finished = true;
+    }
+
+    /**
+     * 总体评价：结构化输出的summary字段，或文本中问题行以外的内容，没有时返回null
+     */
+    @Nullable
+    public String getSummary() {
+        if (!textMode && jsonParser.getSummary() != null) {
+            return jsonParser.getSummary();
+        }
+        return summary.length() > 0 ? summary.toString() : null;
+    }
+
+    /**
+     * 结构化输出中不符合格式被跳过的问题数
+     */
+    public int getRejectedCount() {
+        return textMode ? 0 : jsonParser.getRejectedCount();
+    }
+
+    /**
+     * 是否已改用（或一开始就是）文本解析
+     */
+    public boolean isTextMode() {
+        return textMode;
+    }
+
+    /**
+     * @param current JSON解析出错时正在输入的文本
+     */
+    private void switchToText(@NotNull CharSequence current) {
+        textMode = true;
+        if (jsonParser.getIssueCount() == 0) {
+            feedText(received);
+        } else {
+            // 出错的那一行已部分按JSON解析，从下一行开始按文本解析
+            skipPartialLine = true;
+            feedText(current);
+        }
+        received.setLength(0);
+    }
+
+    private void feedText(@NotNull CharSequence chunk) {
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            if (c == '\n') {
+                if (skipPartialLine) {
+                    skipPartialLine = false;
+                    line.setLength(0);
+                } else {
+                    parseLine();
+                }
+            } else if (c != '\r') {
+                line.append(c);
+            }
+        }
+    }
+
+    private void parseLine() {
+        if (skipPartialLine) {
+            line.setLength(0);
+            return;
+        }
+        if (lastIssue != null && ReviewTextScanner.appendContinuation(line, 0, line.length(), lastIssue)) {
+            line.setLength(0);
+            return;
+        }
+        lastIssue = ReviewTextScanner.parseLine(line, 0, line.length(), summary);
+        line.setLength(0);
+        if (lastIssue != null) {
+            listener.accept(lastIssue);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.vinist.ai.codereview.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.vinist.ai.codereview.models.CodeIssue;
+import com.vinist.ai.codereview.models.IssueSeverity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * 结构化审查结果解析器
+ * 模型按以下格式返回审查结果（允许包裹在```json代码块中）：
+ * <pre>
+ * {"issues": [{"severity": "ERROR", "line": 12, "category": "bugs", "message": "...",
+ *              "suggestion": "...", "ruleId": "..."}],
+ *  "summary": "..."}
+ * </pre>
+ * 基于Jackson非阻塞解析器，响应可以分块输入，每个问题对象结束时立即回调，整个响应只扫描一遍。
+ * JSON对象之前的说明文字中出现的 '{' 不会导致解析失败：读到顶层字段之前出错时从下一个 '{' 重新开始。
+ * 缺少message、severity不是INFO/WARNING/ERROR/CRITICAL或line超出范围的问题不符合格式，跳过并计数；
+ * JSON语法错误或响应中没有JSON对象时解析失败，由调用方改用文本解析
+ */
+public class JsonIssueParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * 超出int范围的行号
+     */
+    private static final int INVALID_LINE = Integer.MIN_VALUE;
+
+    private final Consumer<CodeIssue> listener;
+    private JsonParser parser;
+    private ByteArrayFeeder feeder;
+
+    /**
+     * 从当前 '{' 开始收到的文本，读到顶层字段（确认是审查结果对象）之前保留，用于重新开始解析
+     */
+    private final StringBuilder candidate = new StringBuilder();
+    private boolean committed;
+    private boolean started;
+    private boolean finished;
+    private boolean failed;
+    private int depth;
+    private int issuesDepth = -1;
+    private String field;
+    private IssueFields issue;
+    private String summary;
+    private int issueCount;
+    private int rejectedCount;
+
+    /**
+     * 正在解析的问题对象的字段
+     */
+    private static final class IssueFields {
+        String message;
+        String severity;
+        int line = -1;
+        String category;
+        String suggestion;
+        String ruleId;
+        String code;
+    }
+
+    public JsonIssueParser(@NotNull Consumer<CodeIssue> listener) {
+        this.listener = listener;
+        resetParser();
+    }
+
+    /**
+     * 一次性解析完整的响应
+     *
+     * @return 解析器，通过isFailed判断是否需要改用文本解析
+     */
+    @NotNull
+    public static JsonIssueParser parse(@NotNull CharSequence content, @NotNull Consumer<CodeIssue> listener) {
+        JsonIssueParser jsonParser = new JsonIssueParser(listener);
+        jsonParser.feed(content);
+        jsonParser.finish();
+        return jsonParser;
+    }
+
+    /**
+     * 输入一段响应文本。JSON对象之前的内容（如代码块标记）和对象结束之后的内容被忽略
+     */
+    public void feed(@NotNull CharSequence chunk) {
+        if (finished || failed || chunk.length() == 0) {
+            return;
+        }
+        if (committed) {
+            failed = !feedInput(chunk);
+            return;
+        }
+
+        candidate.append(chunk);
+        if (!started) {
+            startAt(0);
+        } else if (!feedInput(chunk)) {
+            if (committed) {
+                failed = true;
+            } else {
+                startAt(1);
+            }
+        }
+    }
+
+    /**
+     * 从已收到文本中from之后的第一个 '{' 开始解析，不是审查结果对象时继续尝试下一个，没有时等待后续输入
+     */
+    private void startAt(int from) {
+        while (true) {
+            int start = indexOf(candidate, '{', from);
+            if (start < 0) {
+                candidate.setLength(0);
+                started = false;
+                return;
+            }
+            candidate.delete(0, start);
+            resetParser();
+            started = true;
+            boolean parsed = feedInput(candidate);
+            if (committed) {
+                failed = !parsed;
+                return;
+            }
+            if (parsed) {
+                return;
+            }
+            from = 1;
+        }
+    }
+
+    /**
+     * 输入文本并处理可用的记号，JSON语法错误或在读到顶层字段前对象就已结束（如说明文字中的 "{}"）时返回false
+     */
+    private boolean feedInput(@NotNull CharSequence text) {
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            JsonToken token;
+            while (!finished && (token = parser.nextToken()) != JsonToken.NOT_AVAILABLE && token != null) {
+                handle(token);
+                if (depth == 0 && !committed) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void resetParser() {
+        try {
+            parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        depth = 0;
+        field = null;
+    }
+
+    private static int indexOf(@NotNull CharSequence text, char c, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 响应结束。没有找到JSON对象或对象不完整时标记为解析失败
+     */
+    public void finish() {
+        if (!finished) {
+            failed = true;
+        }
+        feeder.endOfInput();
+        try {
+            parser.close();
+        } catch (IOException ignored) {
+            // 非阻塞解析器没有底层输入流
+        }
+    }
+
+    /**
+     * 响应不是有效的结构化结果，需要改用文本解析
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * 是否已解析到完整的JSON对象
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * 总体评价，没有时返回null
+     */
+    @Nullable
+    public String getSummary() {
+        return summary;
+    }
+
+    /**
+     * 已回调的问题数
+     */
+    public int getIssueCount() {
+        return issueCount;
+    }
+
+    /**
+     * 不符合格式被跳过的问题数
+     */
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    private void handle(@NotNull JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT:
+                depth++;
+                if (issuesDepth > 0 && depth == issuesDepth + 1) {
+                    issue = new IssueFields();
+                }
+                break;
+            case END_OBJECT:
+                if (issue != null && depth == issuesDepth + 1) {
+                    emit(issue);
+                    issue = null;
+                }
+                depth--;
+                finished = depth == 0 && committed;
+                break;
+            case START_ARRAY:
+                depth++;
+                if (depth == 2 && "issues".equals(field)) {
+                    issuesDepth = depth;
+                }
+                break;
+            case END_ARRAY:
+                if (depth == issuesDepth) {
+                    issuesDepth = -1;
+                }
+                depth--;
+                break;
+            case FIELD_NAME:
+                field = parser.currentName();
+                if (depth == 1 && !committed) {
+                    committed = true;
+                    candidate.setLength(0);
+                }
+                break;
+            default:
+                if (token.isScalarValue()) {
+                    readValue(token);
+                }
+                break;
+        }
+    }
+
+    private void readValue(@NotNull JsonToken token) throws IOException {
+        if (depth == 1 && "summary".equals(field) && token == JsonToken.VALUE_STRING) {
+            summary = parser.getText();
+            return;
+        }
+        if (issue == null || depth != issuesDepth + 1 || field == null) {
+            return;
+        }
+
+        if ("line".equals(field)) {
+            issue.line = readLine(token);
+            return;
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            return;
+        }
+        String text = parser.getText();
+        switch (field) {
+            case "message":
+                issue.message = text;
+                break;
+            case "severity":
+                issue.severity = text;
+                break;
+            case "category":
+                issue.category = text;
+                break;
+            case "suggestion":
+                issue.suggestion = text;
+                break;
+            case "ruleId":
+                issue.ruleId = text;
+                break;
+            case "code":
+                issue.code = text;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 行号可以是整数或数字字符串，超出int范围时返回INVALID_LINE，其余视为没有行号
+     */
+    private int readLine(@NotNull JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            if (parser.getNumberType() != JsonParser.NumberType.INT) {
+                return INVALID_LINE;
+            }
+            return parser.getIntValue() > 0 ? parser.getIntValue() : -1;
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            String text = parser.getText().trim();
+            try {
+                int line = Integer.parseInt(text);
+                return line > 0 ? line : -1;
+            } catch (NumberFormatException e) {
+                return !text.isEmpty() && text.chars().allMatch(Character::isDigit) ? INVALID_LINE : -1;
+            }
+        }
+        return -1;
+    }
+
+    private void emit(@NotNull IssueFields fields) {
+        IssueSeverity severity = toSeverity(fields.severity);
+        if (severity == null || fields.message == null || fields.message.trim().isEmpty()
+                || fields.line == INVALID_LINE) {
+            rejectedCount++;
+            return;
+        }
+
+        issueCount++;
+        listener.accept(new CodeIssue.Builder(fields.message.trim(), severity)
+                .lineNumber(fields.line)
+                .category(emptyToNull(fields.category))
+                .suggestion(emptyToNull(fields.suggestion))
+                .ruleId(emptyToNull(fields.ruleId))
+                .codeSnippet(emptyToNull(fields.code))
+                .build());
+    }
+
+    @Nullable
+    private static IssueSeverity toSeverity(@Nullable String name) {
+        if (name == null) {
+            return null;
+        }
+        for (IssueSeverity severity : IssueSeverity.values()) {
+            if (severity.name().equalsIgnoreCase(name.trim())) {
+                return severity;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String emptyToNull(@Nullable String value) {
+        return value == null || value.trim().isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,283 @@
+package com.vinist.ai.codereview.parser;
+
+import com.vinist.ai.codereview.models.CodeIssue;
+import com.vinist.ai.codereview.models.IssueSeverity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * 文本格式审查结果扫描器
+ * 对响应文本单遍扫描，不分割字符串、不生成小写副本：只有以严重级别开头的行才是问题行，
+ * 如 "ERROR: ..."、"- **Warning**: ..."、"2. [CRITICAL] ..."、"错误：..."，级别不区分大小写；
+ * 提到 "error" 的普通句子不再被当成问题。问题行中的 "Line 12"、"lines 3-5"、"L123"、"第12行" 解析为行号。
+ * 问题行之后紧接的缩进行或 "Suggestion:"、"建议：" 等标签行是该问题的续行，内容追加到修复建议
+ */
+public final class ReviewTextScanner {
+
+    private static final String[] KEYWORDS = {"CRITICAL", "ERROR", "WARNING", "INFO", "严重", "错误", "警告", "信息", "建议"};
+    private static final IssueSeverity[] KEYWORD_SEVERITIES = {IssueSeverity.CRITICAL, IssueSeverity.ERROR,
+            IssueSeverity.WARNING, IssueSeverity.INFO, IssueSeverity.CRITICAL, IssueSeverity.ERROR,
+            IssueSeverity.WARNING, IssueSeverity.INFO, IssueSeverity.INFO};
+    private static final String[] SUGGESTION_LABELS = {"SUGGESTION", "FIX", "修复建议", "建议", "修复"};
+
+    private ReviewTextScanner() {
+    }
+
+    /**
+     * 扫描完整的响应，问题行回调给issueConsumer，其余非空行按行追加到summary
+     */
+    public static void scan(@NotNull CharSequence text, @NotNull Consumer<CodeIssue> issueConsumer,
+                            @NotNull StringBuilder summary) {
+        int length = text.length();
+        int start = 0;
+        CodeIssue previous = null;
+        while (start < length) {
+            int end = start;
+            while (end < length && text.charAt(end) != '\n') {
+                end++;
+            }
+            if (previous == null || !appendContinuation(text, start, end, previous)) {
+                previous = parseLine(text, start, end, summary);
+                if (previous != null) {
+                    issueConsumer.accept(previous);
+                }
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * text中[start, end)范围的一行是否为issue的续行：缩进且不以严重级别开头的行，或以修复建议标签开头的行。
+     * 是续行时将内容（去掉标签）追加到issue的修复建议并返回true。空行不是续行，调用方应以此结束续行
+     */
+    public static boolean appendContinuation(@NotNull CharSequence text, int start, int end, @NotNull CodeIssue issue) {
+        boolean indented = start < end && (text.charAt(start) == ' ' || text.charAt(start) == '\t');
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return false;
+        }
+
+        int contentStart = matchSuggestionLabel(text, skipMarkers(text, start, end), end);
+        if (contentStart < 0) {
+            if (!indented || matchSeverity(text, start, end) != null) {
+                return false;
+            }
+            contentStart = start;
+        }
+        if (contentStart < end) {
+            String content = text.subSequence(contentStart, end).toString();
+            String suggestion = issue.getSuggestion();
+            issue.setSuggestion(suggestion == null || suggestion.isEmpty() ? content : suggestion + "\n" + content);
+        }
+        return true;
+    }
+
+    /**
+     * 行首为 "Suggestion:"、"**建议**：" 这样的标签时返回标签后内容的起始位置，否则返回-1
+     */
+    private static int matchSuggestionLabel(@NotNull CharSequence text, int i, int end) {
+        for (String label : SUGGESTION_LABELS) {
+            if (!regionMatchesIgnoreCase(text, i, end, label)) {
+                continue;
+            }
+            int j = i + label.length();
+            while (j < end && (text.charAt(j) == '*' || text.charAt(j) == '_' || text.charAt(j) == '`'
+                    || text.charAt(j) == ']' || text.charAt(j) == '】' || text.charAt(j) == ' ')) {
+                j++;
+            }
+            if (j < end && (text.charAt(j) == ':' || text.charAt(j) == '：')) {
+                return skipSpaces(text, j + 1, end);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 解析text中[start, end)范围的一行，问题行返回对应的CodeIssue，其余非空行追加到summary并返回null
+     */
+    @Nullable
+    public static CodeIssue parseLine(@NotNull CharSequence text, int start, int end, @NotNull StringBuilder summary) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+
+        IssueSeverity severity = matchSeverity(text, start, end);
+        if (severity != null) {
+            String line = text.subSequence(start, end).toString();
+            return new CodeIssue(line, severity, findLineNumber(text, start, end));
+        }
+
+        if (summary.length() > 0) {
+            summary.append('\n');
+        }
+        summary.append(text, start, end);
+        return null;
+    }
+
+    /**
+     * 跳过列表序号、项目符号和强调标记后，行首为严重级别关键字时返回对应级别
+     */
+    @Nullable
+    static IssueSeverity matchSeverity(@NotNull CharSequence text, int start, int end) {
+        int i = skipMarkers(text, start, end);
+        for (int k = 0; k < KEYWORDS.length; k++) {
+            String keyword = KEYWORDS[k];
+            if (regionMatchesIgnoreCase(text, i, end, keyword) && isDelimited(text, i + keyword.length(), end)) {
+                return KEYWORD_SEVERITIES[k];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 关键字后（可隔空格）必须是冒号、破折号或闭合的标记，排除 "Error handling looks fine" 这样的句子
+     */
+    private static boolean isDelimited(@NotNull CharSequence text, int i, int end) {
+        i = skipSpaces(text, i, end);
+        if (i == end) {
+            return false;
+        }
+        char c = text.charAt(i);
+        return c == ':' || c == '：' || c == '-' || c == '–' || c == '|' || c == ']' || c == ')' || c == '】'
+                || c == '）' || c == '*' || c == '_' || c == '`';
+    }
+
+    /**
+     * 跳过 "1." "2)" "-" "*" "•" "#" "[" "(" "**" 等行首标记及其后的空白
+     */
+    private static int skipMarkers(@NotNull CharSequence text, int i, int end) {
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == '-' || c == '*' || c == '•' || c == '#' || c == '[' || c == '(' || c == '【' || c == '>'
+                    || c == '_' || c == '`' || Character.isWhitespace(c)) {
+                i++;
+            } else if (c >= '0' && c <= '9') {
+                int j = i;
+                while (j < end && text.charAt(j) >= '0' && text.charAt(j) <= '9') {
+                    j++;
+                }
+                if (j < end && (text.charAt(j) == '.' || text.charAt(j) == ')' || text.charAt(j) == '、')) {
+                    i = j + 1;
+                } else {
+                    return i;
+                }
+            } else {
+                return i;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * 查找行中第一个行号引用，没有时返回-1
+     */
+    static int findLineNumber(@NotNull CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '第') {
+                int number = readLineNumberCn(text, i + 1, end);
+                if (number > 0) {
+                    return number;
+                }
+                continue;
+            }
+            if ((c != 'L' && c != 'l') || i > start && Character.isLetterOrDigit(text.charAt(i - 1))) {
+                continue;
+            }
+            int number = regionMatchesIgnoreCase(text, i, end, "line")
+                    ? readLineNumber(text, i + 4, end)
+                    : c == 'L' ? readDigits(text, i + 1, end, true) : -1;
+            if (number > 0) {
+                return number;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * "Line 12"、"lines 3-5"、"line: 12"、"line #12"
+     */
+    private static int readLineNumber(@NotNull CharSequence text, int i, int end) {
+        if (i < end && (text.charAt(i) == 's' || text.charAt(i) == 'S')) {
+            i++;
+        }
+        i = skipSpaces(text, i, end);
+        if (i < end && (text.charAt(i) == ':' || text.charAt(i) == '#')) {
+            i = skipSpaces(text, i + 1, end);
+        }
+        return readDigits(text, i, end, false);
+    }
+
+    /**
+     * "第12行"、"第 12 行"
+     */
+    private static int readLineNumberCn(@NotNull CharSequence text, int i, int end) {
+        i = skipSpaces(text, i, end);
+        int digitsStart = i;
+        int number = 0;
+        while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9' && number < 10_000_000) {
+            number = number * 10 + text.charAt(i) - '0';
+            i++;
+        }
+        if (i == digitsStart) {
+            return -1;
+        }
+        i = skipSpaces(text, i, end);
+        return i < end && text.charAt(i) == '行' ? number : -1;
+    }
+
+    /**
+     * 读取十进制数字；wordEnd为true时数字后必须是单词边界（用于 "L123"，排除 "L2Cache" 之类）
+     */
+    private static int readDigits(@NotNull CharSequence text, int i, int end, boolean wordEnd) {
+        int digitsStart = i;
+        int number = 0;
+        while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9' && number < 10_000_000) {
+            number = number * 10 + text.charAt(i) - '0';
+            i++;
+        }
+        if (i == digitsStart || wordEnd && i < end && Character.isLetterOrDigit(text.charAt(i))) {
+            return -1;
+        }
+        return number;
+    }
+
+    private static int skipSpaces(@NotNull CharSequence text, int i, int end) {
+        while (i < end && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 按ASCII忽略大小写比较，不生成副本
+     */
+    private static boolean regionMatchesIgnoreCase(@NotNull CharSequence text, int i, int end, @NotNull String keyword) {
+        if (end - i < keyword.length()) {
+            return false;
+        }
+        for (int k = 0; k < keyword.length(); k++) {
+            if (toUpperAscii(text.charAt(i + k)) != toUpperAscii(keyword.charAt(k))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char toUpperAscii(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+}
@@ -0,0 +1,180 @@
+package com.vinist.ai.codereview.prompt;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 预编译的提示词模板
+ * 模板中的 ${name} 为变量，$$ 表示字面的 $。编译时把常量变量（如审查重点、输出格式说明）直接并入文本，
+ * 相邻文本合并为一段，渲染时只需按顺序拼接文本段和剩余变量的值，并预先算好结果长度，不重复生成静态文本。
+ * 第一个变量之前的完整行是固定前缀，对同一模板的每次渲染都相同，可以单独发送以命中提供方的前缀缓存
+ */
+public final class PromptTemplate {
+
+    private final String source;
+    private final String[] literals;
+    private final String[] variables;
+    private final int literalLength;
+    private final String prefix;
+
+    private PromptTemplate(@NotNull String source, @NotNull List<String> literals, @NotNull List<String> variables) {
+        this.source = source;
+        this.literals = literals.toArray(new String[0]);
+        this.variables = variables.toArray(new String[0]);
+        int length = 0;
+        for (String literal : this.literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+        this.prefix = this.variables.length > 0
+                ? this.literals[0].substring(0, this.literals[0].lastIndexOf('\n') + 1) : "";
+    }
+
+    /**
+     * 编译模板
+     *
+     * @param constants 编译时替换的变量，其余变量在渲染时提供
+     * @throws IllegalArgumentException 变量没有闭合的 }（变量名不能跨行）
+     */
+    @NotNull
+    public static PromptTemplate compile(@NotNull String source, @NotNull Map<String, String> constants) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (c == '$' && i + 1 < source.length() && source.charAt(i + 1) == '$') {
+                literal.append('$');
+                i += 2;
+            } else if (c == '$' && i + 1 < source.length() && source.charAt(i + 1) == '{') {
+                int end = findVariableEnd(source, i + 2);
+                if (end < 0) {
+                    throw new IllegalArgumentException("变量没有闭合: " + source.substring(i, Math.min(source.length(), i + 20)));
+                }
+                String name = source.substring(i + 2, end).trim();
+                String constant = constants.get(name);
+                if (constant != null) {
+                    literal.append(constant);
+                } else {
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    variables.add(name);
+                }
+                i = end + 1;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        literals.add(literal.toString());
+
+        return new PromptTemplate(source, literals, variables);
+    }
+
+    /**
+     * 变量名结束的 } 的位置；变量名不能跨行，也不能包含 { 或 $，否则视为没有闭合
+     */
+    private static int findVariableEnd(@NotNull String source, int from) {
+        for (int i = from; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '}') {
+                return i;
+            }
+            if (c == '\n' || c == '{' || c == '$') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 渲染模板，values返回null的变量按空字符串处理
+     */
+    @NotNull
+    public String render(@NotNull Function<String, ? extends CharSequence> values) {
+        return render(values, 0);
+    }
+
+    /**
+     * 渲染固定前缀之后的部分，与getPrefix()拼接后等于render()的结果
+     */
+    @NotNull
+    public String renderSuffix(@NotNull Function<String, ? extends CharSequence> values) {
+        return render(values, prefix.length());
+    }
+
+    /**
+     * 固定前缀：第一个变量之前的完整行，不依赖任何渲染时的变量；没有时返回空字符串
+     */
+    @NotNull
+    public String getPrefix() {
+        return prefix;
+    }
+
+    @NotNull
+    private String render(@NotNull Function<String, ? extends CharSequence> values, int skip) {
+        CharSequence[] resolved = new CharSequence[variables.length];
+        int capacity = literalLength - skip;
+        for (int i = 0; i < variables.length; i++) {
+            CharSequence value = values.apply(variables[i]);
+            resolved[i] = value != null ? value : "";
+            capacity += resolved[i].length();
+        }
+
+        StringBuilder result = new StringBuilder(capacity);
+        result.append(literals[0], skip, literals[0].length());
+        for (int i = 0; i < variables.length; i++) {
+            result.append(resolved[i]).append(literals[i + 1]);
+        }
+        return result.toString();
+    }
+
+    /**
+     * 渲染模板
+     */
+    @NotNull
+    public String render(@NotNull Map<String, ? extends CharSequence> values) {
+        return render(values::get);
+    }
+
+    /**
+     * 渲染时需要提供的变量
+     */
+    @NotNull
+    public Set<String> getVariables() {
+        Set<String> names = new LinkedHashSet<>();
+        Collections.addAll(names, variables);
+        return names;
+    }
+
+    /**
+     * 模板原文
+     */
+    @NotNull
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 检查模板语法，有错误时返回错误信息，否则返回null
+     */
+    @Nullable
+    public static String validate(@NotNull String source) {
+        try {
+            compile(source, Collections.emptyMap());
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.vinist.ai.codereview.prompt;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 渲染后的审查提示词：对同一模板固定不变的前缀（审查说明、输出格式），以及每个文件不同的正文
+ */
+public final class ReviewPrompt {
+
+    private final String prefix;
+    private final String body;
+
+    public ReviewPrompt(@NotNull String prefix, @NotNull String body) {
+        this.prefix = prefix;
+        this.body = body;
+    }
+
+    /**
+     * 固定前缀，没有时为空字符串
+     */
+    @NotNull
+    public String getPrefix() {
+        return prefix;
+    }
+
+    @NotNull
+    public String getBody() {
+        return body;
+    }
+
+    public int length() {
+        return prefix.length() + body.length();
+    }
+
+    /**
+     * 完整的提示词
+     */
+    @NotNull
+    @Override
+    public String toString() {
+        return prefix.isEmpty() ? body : prefix + body;
+    }
+}
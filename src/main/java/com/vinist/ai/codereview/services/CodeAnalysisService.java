@@ -3,13 +3,26 @@ package com.vinist.ai.codereview.services;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.project.Project;
+import com.vinist.ai.codereview.llm.CircuitBreaker;
+import com.vinist.ai.codereview.llm.LLMResponse;
+import com.vinist.ai.codereview.llm.TokenUsage;
 import com.vinist.ai.codereview.models.ReviewReport;
 import com.vinist.ai.codereview.models.CodeIssue;
 import com.vinist.ai.codereview.models.IssueSeverity;
+import com.vinist.ai.codereview.models.ReviewTarget;
+import com.vinist.ai.codereview.models.TrivialChange;
+import com.vinist.ai.codereview.parser.IncrementalIssueParser;
+import com.vinist.ai.codereview.parser.JsonIssueParser;
+import com.vinist.ai.codereview.parser.ReviewTextScanner;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
  * 代码分析服务
@@ -18,6 +31,46 @@ import java.util.concurrent.CompletableFuture;
 @Service
 public final class CodeAnalysisService {
     
+    /**
+     * 报告元数据：LLM请求尝试次数、请求总耗时（毫秒）和每次尝试的记录
+     */
+    public static final String METADATA_LLM_ATTEMPTS = "llmAttempts";
+    public static final String METADATA_LLM_LATENCY = "llmLatencyMillis";
+    public static final String METADATA_LLM_ATTEMPT_LOG = "llmAttemptLog";
+    
+    /**
+     * 报告元数据：LLM请求失败（报告中只有错误信息，没有审查结果）
+     */
+    public static final String METADATA_LLM_FAILED = "llmFailed";
+    
+    /**
+     * LLM请求失败时生成的错误问题的规则ID，这类问题说明的是请求失败，不是代码中的问题
+     */
+    public static final String RULE_LLM_FAILED = "llm-request-failed";
+    
+    /**
+     * 报告元数据：LLM服务熔断中，请求没有发送，报告中没有审查结果，也不视为失败
+     */
+    public static final String METADATA_LLM_SKIPPED = "llmSkipped";
+    
+    /**
+     * 报告元数据：结构化输出中不符合格式被跳过的问题数
+     */
+    public static final String METADATA_REJECTED_ISSUES = "rejectedIssues";
+    
+    /**
+     * 报告元数据：本地预检识别出的简单变更类型（TrivialChange的名称），这类文件没有调用LLM
+     */
+    public static final String METADATA_TRIVIAL_CHANGE = "trivialChange";
+    
+    /**
+     * 报告元数据：提示词、输出、命中和写入提供方前缀缓存的Token数，提供方没有返回用量时不记录
+     */
+    public static final String METADATA_PROMPT_TOKENS = "promptTokens";
+    public static final String METADATA_COMPLETION_TOKENS = "completionTokens";
+    public static final String METADATA_CACHED_TOKENS = "cachedTokens";
+    public static final String METADATA_CACHE_WRITE_TOKENS = "cacheWriteTokens";
+    
     public static CodeAnalysisService getInstance() {
         return ApplicationManager.getApplication().getService(CodeAnalysisService.class);
     }
@@ -30,6 +83,28 @@ public final class CodeAnalysisService {
         void onError(String error);
     }
     
+    /**
+     * 问题监听接口
+     * 流式审查时每解析出一个问题就回调一次
+     */
+    public interface IssueListener {
+        void onIssue(@NotNull CodeIssue issue);
+        
+        /**
+         * 返回true时停止接收剩余的审查结果
+         */
+        default boolean isCancelled() {
+            return false;
+        }
+        
+        /**
+         * 返回true时即使未启用流式响应也以流式方式请求，保证isCancelled能断开进行中的请求
+         */
+        default boolean isStreamingRequired() {
+            return false;
+        }
+    }
+    
     /**
      * 同步分析代码
      */
@@ -37,6 +112,23 @@ public final class CodeAnalysisService {
 //        return analyzeCodeContext(code, fileName);
 //    }
     
+    /**
+     * 本地预检：变更已被识别为无需审查的简单变更时，直接返回没有问题的报告，不调用LLM；否则返回null
+     */
+    @Nullable
+    public ReviewReport preScreen(@NotNull ReviewTarget target) {
+        TrivialChange trivialChange = target.getTrivialChange();
+        if (trivialChange == null) {
+            return null;
+        }
+        
+        ReviewReport report = new ReviewReport(target.getFileName(),
+                target.getFilePath() != null ? target.getFilePath() : "");
+        report.setSummary(target.getFileName() + "：" + trivialChange.getDisplayName() + "，已跳过AI审查");
+        report.addMetadata(METADATA_TRIVIAL_CHANGE, trivialChange.name());
+        return report;
+    }
+    
     /**
      * 同步分析代码（重载方法，支持context参数）
      */
@@ -51,30 +143,210 @@ public final class CodeAnalysisService {
             LLMClientService llmService = LLMClientService.getInstance();
             
             // 调用LLM进行代码审查
-            String reviewResult = llmService.reviewCode(code, context);
+            LLMResponse response = llmService.reviewCode(code, context);
+            recordAttempts(report, response.getAttempts(), response.getLatencyMillis());
+            recordUsage(report, response.getUsage());
             
             // 解析审查结果
-            parseReviewResult(report, reviewResult);
+            parseReviewResult(report, response.getContent());
             
             long endTime = System.currentTimeMillis();
             report.setReviewDuration(endTime - startTime);
             
         } catch (Exception e) {
+            if (isCircuitOpen(e)) {
+                recordSkipped(report, context, e);
+                return report;
+            }
+            recordFailedAttempts(report, e);
             // 添加错误信息到报告
-            CodeIssue errorIssue = new CodeIssue("代码分析过程中发生错误: " + e.getMessage(), IssueSeverity.ERROR);
+            report.addIssue(createFailureIssue(e));
+        }
+        
+        return report;
+    }
+    
+    /**
+     * 以流式方式分析代码
+     * 收到的结果由增量解析器逐段解析，每个问题完整后立刻通知监听器；
+     * 未启用流式响应且监听器不要求流式时退化为同步分析
+     */
+    public ReviewReport analyzeCodeStreaming(@NotNull String code, @NotNull String context,
+                                             @NotNull IssueListener listener) {
+        if (!LLMConfigService.getInstance().isEnableStreaming() && !listener.isStreamingRequired()) {
+            ReviewReport report = analyzeCode(code, context);
+            report.getIssues().forEach(listener::onIssue);
+            return report;
+        }
+        
+        ReviewReport report = new ReviewReport(context, code);
+        report.setReviewTime(LocalDateTime.now());
+        IncrementalIssueParser resultParser = new IncrementalIssueParser(
+                ReviewSettingsService.getInstance().isStructuredOutput(), issue -> {
+                    report.addIssue(issue);
+                    listener.onIssue(issue);
+                });
+        
+        try {
+            long startTime = System.currentTimeMillis();
+            
+            LLMClientService llmService = LLMClientService.getInstance();
+            LLMResponse response = llmService.reviewCodeStreaming(code, context, new LLMClientService.StreamCallback() {
+                @Override
+                public void onText(@NotNull String text) {
+                    resultParser.feed(text);
+                }
+                
+                @Override
+                public boolean isCancelled() {
+                    return listener.isCancelled();
+                }
+            });
+            recordAttempts(report, response.getAttempts(), response.getLatencyMillis());
+            recordUsage(report, response.getUsage());
+            resultParser.finish(listener.isCancelled());
+            if (resultParser.getRejectedCount() > 0) {
+                report.addMetadata(METADATA_REJECTED_ISSUES, resultParser.getRejectedCount());
+            }
+            
+            report.setSummary(resultParser.getSummary() != null ? resultParser.getSummary() : "代码审查完成");
+            
+            long endTime = System.currentTimeMillis();
+            report.setReviewDuration(endTime - startTime);
+            
+        } catch (Exception e) {
+            if (isCircuitOpen(e)) {
+                recordSkipped(report, context, e);
+                return report;
+            }
+            recordFailedAttempts(report, e);
+            CodeIssue errorIssue = createFailureIssue(e);
             report.addIssue(errorIssue);
+            listener.onIssue(errorIssue);
         }
         
         return report;
     }
     
     /**
-     * 异步分析代码
+     * 记录结构化结果中不符合格式被跳过的问题数
+     */
+    private void recordRejectedIssues(@NotNull ReviewReport report, @NotNull JsonIssueParser jsonParser) {
+        if (jsonParser.getRejectedCount() > 0) {
+            report.addMetadata(METADATA_REJECTED_ISSUES, jsonParser.getRejectedCount());
+        }
+    }
+    
+    /**
+     * 将LLM请求的尝试记录写入报告元数据，命中缓存时不记录
+     */
+    private void recordAttempts(@NotNull ReviewReport report, @NotNull List<LLMResponse.Attempt> attempts, long latencyMillis) {
+        if (attempts.isEmpty()) {
+            return;
+        }
+        report.addMetadata(METADATA_LLM_ATTEMPTS, attempts.size());
+        report.addMetadata(METADATA_LLM_LATENCY, latencyMillis);
+        report.addMetadata(METADATA_LLM_ATTEMPT_LOG,
+                attempts.stream().map(LLMResponse.Attempt::toString).collect(Collectors.toList()));
+    }
+    
+    /**
+     * 将Token用量写入报告元数据
+     */
+    public static void recordUsage(@NotNull ReviewReport report, @Nullable TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        report.addMetadata(METADATA_PROMPT_TOKENS, usage.getPromptTokens());
+        report.addMetadata(METADATA_COMPLETION_TOKENS, usage.getCompletionTokens());
+        report.addMetadata(METADATA_CACHED_TOKENS, usage.getCachedTokens());
+        report.addMetadata(METADATA_CACHE_WRITE_TOKENS, usage.getCacheWriteTokens());
+    }
+    
+    /**
+     * 读取报告元数据中的Token用量，没有记录时返回null
+     */
+    @Nullable
+    public static TokenUsage getUsage(@NotNull ReviewReport report) {
+        Map<String, Object> metadata = report.getMetadata();
+        if (metadata == null || !(metadata.get(METADATA_PROMPT_TOKENS) instanceof Number)) {
+            return null;
+        }
+        return new TokenUsage(toLong(metadata.get(METADATA_PROMPT_TOKENS)),
+                toLong(metadata.get(METADATA_COMPLETION_TOKENS)), toLong(metadata.get(METADATA_CACHED_TOKENS)),
+                toLong(metadata.get(METADATA_CACHE_WRITE_TOKENS)));
+    }
+    
+    private static long toLong(@Nullable Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+    
+    private void recordFailedAttempts(@NotNull ReviewReport report, @NotNull Exception e) {
+        report.addMetadata(METADATA_LLM_FAILED, true);
+        if (e instanceof LLMResponse.FailedException) {
+            List<LLMResponse.Attempt> attempts = ((LLMResponse.FailedException) e).getAttempts();
+            recordAttempts(report, attempts, attempts.stream().mapToLong(LLMResponse.Attempt::getLatencyMillis).sum());
+        }
+    }
+    
+    /**
+     * 创建表示LLM请求失败的错误问题
+     */
+    @NotNull
+    public static CodeIssue createFailureIssue(@NotNull Throwable e) {
+        CodeIssue issue = new CodeIssue("代码分析过程中发生错误: " + e.getMessage(), IssueSeverity.ERROR);
+        issue.setRuleId(RULE_LLM_FAILED);
+        return issue;
+    }
+    
+    /**
+     * 问题是否为LLM请求失败生成的错误，而不是审查发现的问题
+     */
+    public static boolean isFailureIssue(@NotNull CodeIssue issue) {
+        return RULE_LLM_FAILED.equals(issue.getRuleId());
+    }
+    
+    /**
+     * 请求是否因熔断被拒绝
+     */
+    private static boolean isCircuitOpen(@NotNull Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CircuitBreaker.OpenException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 熔断拒绝的请求记为跳过，不生成错误问题
+     */
+    private void recordSkipped(@NotNull ReviewReport report, @NotNull String context, @NotNull Exception e) {
+        report.addMetadata(METADATA_LLM_SKIPPED, true);
+        report.setSummary(context + "：LLM服务暂时不可用，已跳过审查");
+        if (e instanceof LLMResponse.FailedException) {
+            List<LLMResponse.Attempt> attempts = ((LLMResponse.FailedException) e).getAttempts();
+            recordAttempts(report, attempts, attempts.stream().mapToLong(LLMResponse.Attempt::getLatencyMillis).sum());
+        }
+    }
+    
+    /**
+     * 异步分析代码，超出模型Token预算的代码会分块并发审查
+     * 在LLM专用执行器上运行，不占用公共ForkJoinPool
      */
     public void analyzeCodeAsync(@NotNull String fileName, @NotNull String code, @NotNull AnalysisCallback callback) {
+        analyzeCodeAsync(fileName, code, null, callback);
+    }
+    
+    /**
+     * 异步分析代码，流式审查时每解析出一个问题就回调progressListener
+     */
+    public void analyzeCodeAsync(@NotNull String fileName, @NotNull String code,
+                                 @Nullable ParallelReviewService.ReviewProgressListener progressListener,
+                                 @NotNull AnalysisCallback callback) {
         CompletableFuture.supplyAsync(() -> {
-            return analyzeCode(fileName, code);
-        }).thenAccept(report -> {
+            return ParallelReviewService.getInstance().reviewTarget(new ReviewTarget(fileName, null, code), progressListener);
+        }, LLMClientService.getInstance().getAsyncExecutor()).thenAccept(report -> {
             ApplicationManager.getApplication().invokeLater(() -> {
                 callback.onSuccess(report);
             });
@@ -95,32 +367,21 @@ public final class CodeAnalysisService {
             return;
         }
         
+        if (ReviewSettingsService.getInstance().isStructuredOutput()) {
+            List<CodeIssue> issues = new ArrayList<>();
+            JsonIssueParser jsonParser = JsonIssueParser.parse(reviewResult, issues::add);
+            if (!jsonParser.isFailed()) {
+                issues.forEach(report::addIssue);
+                recordRejectedIssues(report, jsonParser);
+                report.setSummary(jsonParser.getSummary() != null ? jsonParser.getSummary() : "代码审查完成");
+                return;
+            }
+            // 不是有效的JSON，按文本格式解析
+        }
+        
         try {
-            // 简单的解析逻辑，实际应该根据LLM返回的格式进行解析
-            String[] lines = reviewResult.split("\n");
             StringBuilder summaryBuilder = new StringBuilder();
-            
-            for (String line : lines) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                
-                // 检查是否是问题行
-                if (line.toLowerCase().contains("error") || line.toLowerCase().contains("错误")) {
-                    report.addIssue(new CodeIssue(line, IssueSeverity.ERROR));
-                } else if (line.toLowerCase().contains("warning") || line.toLowerCase().contains("警告")) {
-                    report.addIssue(new CodeIssue(line, IssueSeverity.WARNING));
-                } else if (line.toLowerCase().contains("critical") || line.toLowerCase().contains("严重")) {
-                    report.addIssue(new CodeIssue(line, IssueSeverity.CRITICAL));
-                } else if (line.toLowerCase().contains("info") || line.toLowerCase().contains("信息") || line.toLowerCase().contains("建议")) {
-                    report.addIssue(new CodeIssue(line, IssueSeverity.INFO));
-                } else {
-                    // 作为总结的一部分
-                    if (summaryBuilder.length() > 0) {
-                        summaryBuilder.append("\n");
-                    }
-                    summaryBuilder.append(line);
-                }
-            }
+            ReviewTextScanner.scan(reviewResult, report::addIssue, summaryBuilder);
             
             if (summaryBuilder.length() > 0) {
                 report.setSummary(summaryBuilder.toString());
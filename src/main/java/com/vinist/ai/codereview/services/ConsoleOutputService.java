@@ -54,6 +54,24 @@ public class ConsoleOutputService {
         });
     }
     
+    /**
+     * 开始实时输出：清空控制台并显示正在审查的文件，之后通过outputIssue逐个输出问题，
+     * 审查完成后outputReport以完整报告替换
+     */
+    public void startLiveReport(@NotNull String fileName) {
+        ApplicationManager.getApplication().invokeLater(() -> {
+            try {
+                ensureConsoleExists();
+                if (consoleView != null) {
+                    consoleView.clear();
+                    consoleView.print("Reviewing " + fileName + "...\n", ConsoleViewContentType.LOG_INFO_OUTPUT);
+                }
+            } catch (Exception e) {
+                // 静默处理异常
+            }
+        });
+    }
+    
     /**
      * 输出单个问题到控制台
      */
@@ -2,15 +2,55 @@ package com.vinist.ai.codereview.services;
 
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.Service;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.vinist.ai.codereview.llm.ChatCompletionCodec;
+import com.vinist.ai.codereview.llm.CircuitBreaker;
+import com.vinist.ai.codereview.llm.ConnectivityProbe;
+import com.vinist.ai.codereview.llm.EndpointBalancer;
+import com.vinist.ai.codereview.llm.LatencyTracker;
+import com.vinist.ai.codereview.llm.LLMApiException;
+import com.vinist.ai.codereview.llm.LLMEndpoint;
+import com.vinist.ai.codereview.llm.LLMResponse;
+import com.vinist.ai.codereview.llm.RateLimiter;
+import com.vinist.ai.codereview.llm.RequestExecutors;
+import com.vinist.ai.codereview.llm.RetryPolicy;
+import com.vinist.ai.codereview.llm.TokenUsage;
+import com.vinist.ai.codereview.prompt.ReviewPrompt;
+import com.vinist.ai.codereview.utils.TokenEstimator;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * LLM客户端服务
@@ -19,218 +59,949 @@ import java.util.concurrent.CompletableFuture;
 @Service
 public final class LLMClientService {
     
+    /**
+     * 提示词版本，修改提示词格式时递增以使旧的缓存结果失效
+     */
+    static final String PROMPT_VERSION = "3";
+    
+    /**
+     * 存活检测和连接探测的超时时间
+     */
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(5);
+    
+    /**
+     * 不支持虚拟线程时异步审查使用的平台线程数上限
+     */
+    private static final int MAX_ASYNC_THREADS = 8;
+    
+    private final ExecutorService asyncExecutor;
+    private final boolean virtualThreads;
     private final HttpClient httpClient;
+    private final RateLimiter rateLimiter = new RateLimiter();
+    private final EndpointBalancer endpointBalancer = new EndpointBalancer();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(
+            AppExecutorUtil.getAppScheduledExecutorService(), this::probeEndpoints);
+    private final LatencyTracker completionLatency = new LatencyTracker();
+    private final LatencyTracker streamingLatency = new LatencyTracker();
+    private final AtomicLong hedgedCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+    private final AtomicLong usageResponseCount = new AtomicLong();
+    private final AtomicLong promptTokenCount = new AtomicLong();
+    private final AtomicLong cachedTokenCount = new AtomicLong();
+    private final AtomicLong cacheWriteTokenCount = new AtomicLong();
+    private final Map<String, String> connectionStatus = new ConcurrentHashMap<>();
+    /**
+     * 拒绝 stream_options 参数（返回400）的端点URL，本次会话中发往这些端点的流式请求不再附加该参数
+     */
+    private final Set<String> streamUsageRejected = ConcurrentHashMap.newKeySet();
+    private volatile long lastActivity = System.nanoTime();
+    private ScheduledFuture<?> keepAliveTask;
     
     public LLMClientService() {
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(30))
-                .build();
+        ExecutorService virtualExecutor = RequestExecutors.newVirtualThreadExecutor("AI Code Review LLM");
+        this.virtualThreads = virtualExecutor != null;
+        this.asyncExecutor = virtualExecutor != null ? virtualExecutor
+                : AppExecutorUtil.createBoundedApplicationPoolExecutor("AI Code Review LLM", MAX_ASYNC_THREADS);
+        
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(30));
+        // HttpClient的回调只在虚拟线程上运行：有界线程池中的线程可能都在等待响应，共用会导致死锁
+        if (virtualThreads) {
+            builder.executor(asyncExecutor);
+        }
+        this.httpClient = builder.build();
     }
     
     public static LLMClientService getInstance() {
         return ApplicationManager.getApplication().getService(LLMClientService.class);
     }
     
+    /**
+     * 流式响应回调接口
+     * 每收到一段审查结果就回调一次，分段位置由服务端决定，可能在一行的中间
+     */
+    public interface StreamCallback {
+        void onText(@NotNull String text);
+        
+        /**
+         * 返回true时停止读取剩余的响应并断开连接
+         */
+        default boolean isCancelled() {
+            return false;
+        }
+    }
+    
     /**
      * 审查代码
      */
-    public String reviewCode(@NotNull String code, @NotNull String fileName) throws Exception {
+    public LLMResponse reviewCode(@NotNull String code, @NotNull String fileName) throws Exception {
         LLMConfigService configService = LLMConfigService.getInstance();
         
         if (!configService.isConfigured()) {
             throw new IllegalStateException("LLM配置未完成");
         }
         
-        String prompt = buildReviewPrompt(code, fileName);
-        return callLLM(prompt);
+        String cacheKey = getCacheKey(code, fileName);
+        if (cacheKey != null) {
+            String cached = ReviewCacheService.getInstance().get(cacheKey);
+            if (cached != null) {
+                return LLMResponse.cached(cached);
+            }
+        }
+        
+        ReviewPrompt prompt = buildReviewPrompt(code, fileName);
+        LLMResponse response = callLLM(prompt, null);
+        
+        if (cacheKey != null && !response.getContent().trim().isEmpty()) {
+            ReviewCacheService.getInstance().put(cacheKey, response.getContent());
+        }
+        return response;
+    }
+    
+    /**
+     * 以流式方式审查代码
+     * 逐行回调审查结果，返回完整的响应
+     */
+    public LLMResponse reviewCodeStreaming(@NotNull String code, @NotNull String fileName,
+                                      @NotNull StreamCallback callback) throws Exception {
+        LLMConfigService configService = LLMConfigService.getInstance();
+        
+        if (!configService.isConfigured()) {
+            throw new IllegalStateException("LLM配置未完成");
+        }
+        
+        String cacheKey = getCacheKey(code, fileName);
+        if (cacheKey != null) {
+            String cached = ReviewCacheService.getInstance().get(cacheKey);
+            if (cached != null) {
+                // 命中缓存时一次回放全部结果
+                callback.onText(cached);
+                return LLMResponse.cached(cached);
+            }
+        }
+        
+        ReviewPrompt prompt = buildReviewPrompt(code, fileName);
+        LLMResponse response = callLLM(prompt, callback);
+        
+        // 被取消的流式结果不完整，不写入缓存
+        if (cacheKey != null && !callback.isCancelled() && !response.getContent().trim().isEmpty()) {
+            ReviewCacheService.getInstance().put(cacheKey, response.getContent());
+        }
+        return response;
+    }
+    
+    /**
+     * 获取审查结果的缓存键，未启用缓存时返回null
+     */
+    private String getCacheKey(@NotNull String code, @NotNull String fileName) {
+        ReviewSettingsService settingsService = ReviewSettingsService.getInstance();
+        if (!settingsService.isEnableReviewCache()) {
+            return null;
+        }
+        
+        // 文本和结构化输出的结果格式不同，分别缓存；使用自定义模板时结果随模板内容变化
+        String promptVersion = settingsService.isStructuredOutput() ? PROMPT_VERSION + "-json" : PROMPT_VERSION;
+        String customTemplate = PromptTemplateService.getInstance().getPrompt(fileName).getCustomId();
+        if (customTemplate != null) {
+            promptVersion += "-" + customTemplate;
+        }
+        return ReviewCacheService.buildKey(code, fileName, LLMConfigService.getInstance().getModel(),
+                settingsService.getReviewFocus(), settingsService.getReviewLanguage(), promptVersion);
     }
     
     /**
      * 异步审查代码
+     * 在LLM专用执行器上运行，不占用公共ForkJoinPool
      */
     public CompletableFuture<String> reviewCodeAsync(@NotNull String code, @NotNull String fileName) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                return reviewCode(code, fileName);
+                return reviewCode(code, fileName).getContent();
             } catch (Exception e) {
-                throw new RuntimeException(e);
+                throw new CompletionException(e);
             }
-        });
+        }, asyncExecutor);
     }
     
     /**
-     * 构建审查提示词
+     * LLM专用的异步执行器，用于会阻塞等待LLM响应的后台任务
+     * 支持虚拟线程时每个任务一个虚拟线程，否则为有界的应用线程池
      */
-    private String buildReviewPrompt(@NotNull String code, @NotNull String fileName) {
-        ReviewSettingsService settingsService = ReviewSettingsService.getInstance();
-        String language = settingsService.getReviewLanguage();
-        String focus = settingsService.getReviewFocus();
+    @NotNull
+    public Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+    
+    /**
+     * 创建并发审查使用的执行器，使用完毕后由调用方关闭
+     * 支持虚拟线程时不限制线程数（并发由限流器控制），否则为最多parallelism个线程的应用线程池
+     */
+    @NotNull
+    public ExecutorService createFanOutExecutor(@NotNull String name, int parallelism) {
+        ExecutorService executor = virtualThreads ? RequestExecutors.newVirtualThreadExecutor(name) : null;
+        return executor != null ? executor
+                : AppExecutorUtil.createBoundedApplicationPoolExecutor(name, Math.max(1, parallelism));
+    }
+    
+    /**
+     * 构建审查提示词，模板按当前设置预编译并缓存
+     */
+    private ReviewPrompt buildReviewPrompt(@NotNull String code, @NotNull String fileName) {
+        return PromptTemplateService.getInstance().getPrompt(fileName).renderParts(code, fileName);
+    }
+    
+    /**
+     * 调用LLM服务，callback不为null时以流式方式调用
+     * 每次尝试前先通过限流器排队；可重试的失败按重试策略退避后重新提交同一请求，
+     * 总时长不超过配置的超时时间。流式响应已输出内容后不再重试，避免重复回调。
+     * 配置了多个端点时由负载均衡器选择端点，重试时优先选择本次调用中尚未尝试过的端点
+     */
+    private LLMResponse callLLM(@NotNull ReviewPrompt prompt, @Nullable StreamCallback callback) throws Exception {
+        LLMConfigService configService = LLMConfigService.getInstance();
+        RetryPolicy retryPolicy = new RetryPolicy(configService.getMaxRetries(),
+                configService.getRetryBaseDelayMillis(), configService.getRetryMaxDelayMillis());
+        boolean stream = callback != null;
+        boolean gzip = configService.isEnableRequestCompression();
+        long estimatedTokens = estimateTokens(prompt, configService);
+        circuitBreaker.configure(configService.isEnableCircuitBreaker(),
+                configService.getCircuitBreakerFailureThreshold(),
+                TimeUnit.SECONDS.toMillis(configService.getCircuitBreakerOpenSeconds()));
         
-        StringBuilder prompt = new StringBuilder();
+        List<LLMEndpoint> endpoints = configService.getEndpoints();
+        endpointBalancer.setStrategy(EndpointBalancer.parseStrategy(configService.getLoadBalancingStrategy()));
+        Set<LLMEndpoint> triedEndpoints = new HashSet<>();
+        Map<String, HttpRequest.BodyPublisher> bodies = new HashMap<>();
         
-        if ("Chinese".equals(language)) {
-            prompt.append("请对以下代码进行详细的代码审查，文件名：").append(fileName).append("\n\n");
-            prompt.append("审查重点：");
-            
-            switch (focus) {
-                case "security":
-                    prompt.append("安全性问题");
-                    break;
-                case "performance":
-                    prompt.append("性能优化");
-                    break;
-                case "maintainability":
-                    prompt.append("可维护性");
-                    break;
-                case "bugs":
-                    prompt.append("潜在错误");
-                    break;
-                default:
-                    prompt.append("全面审查（包括安全性、性能、可维护性、潜在错误等）");
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(Math.max(1, configService.getTimeout()));
+        List<LLMResponse.Attempt> attempts = new ArrayList<>();
+        AtomicBoolean delivered = new AtomicBoolean();
+        
+        for (int attempt = 1; ; attempt++) {
+            long attemptStart = System.nanoTime();
+            try {
+                // 其他请求正在试探服务是否恢复时等待试探结果，而不是直接失败
+                circuitBreaker.awaitAllowed(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()),
+                        () -> callback != null && callback.isCancelled());
+                ChatCompletionCodec.Completion completion;
+                try (RateLimiter.Permit permit = acquirePermit(estimatedTokens, configService, deadline)) {
+                    // 主端点和对冲请求使用的备用端点
+                    List<Route> routes = new ArrayList<>();
+                    LLMEndpoint primary = endpointBalancer.select(endpoints, triedEndpoints);
+                    routes.add(createRoute(primary, prompt, bodies, configService, stream, gzip, deadline));
+                    if (endpoints.size() > 1 && configService.isEnableHedging()) {
+                        Set<LLMEndpoint> exclude = new HashSet<>(triedEndpoints);
+                        exclude.add(primary);
+                        LLMEndpoint backup = endpointBalancer.select(endpoints, exclude);
+                        if (!backup.equals(primary)) {
+                            routes.add(createRoute(backup, prompt, bodies, configService, stream, gzip, deadline));
+                        }
+                    }
+                    routes.forEach(route -> triedEndpoints.add(route.endpoint));
+                    completion = stream ? send(routes, estimatedTokens, deadline, callback, delivered)
+                            : send(routes, estimatedTokens, deadline);
+                }
+                circuitBreaker.onSuccess();
+                recordUsage(completion.getUsage());
+                attempts.add(new LLMResponse.Attempt(attempt, 200, elapsedMillis(attemptStart), null));
+                return new LLMResponse(completion.getContent(), attempts, elapsedMillis(start), completion.getUsage());
+            } catch (InterruptedException e) {
+                circuitBreaker.onIgnored();
+                throw e;
+            } catch (StreamUsageRejectedException e) {
+                // 端点不支持 stream_options，去掉该参数立即重试，不计入熔断
+                circuitBreaker.onIgnored();
+                attempts.add(new LLMResponse.Attempt(attempt, e.getStatusCode(), elapsedMillis(attemptStart), e.getMessage()));
+                streamUsageRejected.add(e.endpoint.getUrl());
+                triedEndpoints.remove(e.endpoint);
+            } catch (Exception e) {
+                circuitBreaker.onError(e);
+                int statusCode = e instanceof LLMApiException ? ((LLMApiException) e).getStatusCode() : 0;
+                attempts.add(new LLMResponse.Attempt(attempt, statusCode, elapsedMillis(attemptStart), e.getMessage()));
+                
+                boolean cancelled = callback != null && callback.isCancelled();
+                if (cancelled || delivered.get() || !retryPolicy.shouldRetry(e, attempt)) {
+                    throw new LLMResponse.FailedException(e, attempts);
+                }
+                
+                long retryAfter = e instanceof LLMApiException ? ((LLMApiException) e).getRetryAfterNanos() : 0;
+                long delay = retryPolicy.getDelayNanos(attempt, retryAfter);
+                if (System.nanoTime() + delay >= deadline || !sleep(delay, callback)) {
+                    throw new LLMResponse.FailedException(e, attempts);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 构建发往指定端点的路由，请求体按模型和是否附加 stream_options 在本次调用的各次尝试间共用
+     */
+    @NotNull
+    private Route createRoute(@NotNull LLMEndpoint endpoint, @NotNull ReviewPrompt prompt,
+                              @NotNull Map<String, HttpRequest.BodyPublisher> bodies,
+                              @NotNull LLMConfigService configService, boolean stream, boolean gzip,
+                              long deadline) throws IOException {
+        boolean streamUsage = stream && configService.isEnableStreamUsage()
+                && !streamUsageRejected.contains(endpoint.getUrl());
+        String key = streamUsage ? endpoint.getModel() + "\nstream_options" : endpoint.getModel();
+        HttpRequest.BodyPublisher body = bodies.get(key);
+        if (body == null) {
+            body = buildRequestBody(prompt, endpoint.getModel(), configService, stream, streamUsage, gzip);
+            bodies.put(key, body);
+        }
+        return new Route(endpoint, buildRequest(endpoint, body, stream, gzip, deadline), streamUsage);
+    }
+    
+    /**
+     * 构建一次尝试的请求，超时时间为剩余的总时长
+     */
+    private HttpRequest buildRequest(@NotNull LLMEndpoint endpoint, @NotNull HttpRequest.BodyPublisher body,
+                                     boolean stream, boolean gzip, long deadline) throws HttpTimeoutException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw new HttpTimeoutException("LLM请求超时");
+        }
+        
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(endpoint.getUrl()))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + endpoint.getApiKey())
+                .timeout(Duration.ofNanos(remaining))
+                .POST(body);
+        if (stream) {
+            builder.header("Accept", "text/event-stream");
+        }
+        if (gzip) {
+            builder.header("Content-Encoding", "gzip");
+        }
+        return builder.build();
+    }
+    
+    /**
+     * 发送请求并读取完整响应
+     */
+    private ChatCompletionCodec.Completion send(@NotNull List<Route> routes, long estimatedTokens, long deadline) throws Exception {
+        try (Exchange<InputStream> exchange = exchange(routes, estimatedTokens, deadline,
+                HttpResponse.BodyHandlers.ofInputStream(), completionLatency);
+             InputStream body = exchange.response.body()) {
+            HttpResponse<InputStream> response = exchange.response;
+            if (response.statusCode() != 200) {
+                String errorBody = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                throw createApiException(response, errorBody);
             }
             
-            prompt.append("\n\n请按以下格式返回结果：\n");
-            prompt.append("1. 对于发现的问题，请以'ERROR:'、'WARNING:'、'INFO:'或'CRITICAL:'开头\n");
-            prompt.append("2. 每个问题单独一行\n");
-            prompt.append("3. 在最后提供总体评价\n\n");
-        } else {
-            prompt.append("Please conduct a detailed code review for the following code, file name: ").append(fileName).append("\n\n");
-            prompt.append("Review focus: ");
-            
-            switch (focus) {
-                case "security":
-                    prompt.append("Security issues");
-                    break;
-                case "performance":
-                    prompt.append("Performance optimization");
-                    break;
-                case "maintainability":
-                    prompt.append("Maintainability");
-                    break;
-                case "bugs":
-                    prompt.append("Potential bugs");
-                    break;
-                default:
-                    prompt.append("Comprehensive review (including security, performance, maintainability, potential bugs, etc.)");
+            return ChatCompletionCodec.readCompletion(body);
+        }
+    }
+    
+    /**
+     * 以流式方式发送请求（Server-Sent Events），流式响应读取期间一直占用并发额度
+     * 对冲请求以收到响应头的时间决胜
+     */
+    private ChatCompletionCodec.Completion send(@NotNull List<Route> routes, long estimatedTokens, long deadline,
+                                                @NotNull StreamCallback callback, @NotNull AtomicBoolean delivered) throws Exception {
+        try (Exchange<Stream<String>> exchange = exchange(routes, estimatedTokens, deadline,
+                HttpResponse.BodyHandlers.ofLines(), streamingLatency)) {
+            HttpResponse<Stream<String>> response = exchange.response;
+            if (response.statusCode() != 200) {
+                String errorBody;
+                try (Stream<String> lines = response.body()) {
+                    errorBody = lines.collect(Collectors.joining("\n"));
+                }
+                if (response.statusCode() == 400 && exchange.route.streamUsage) {
+                    throw new StreamUsageRejectedException(exchange.route.endpoint, errorBody);
+                }
+                throw createApiException(response, errorBody);
             }
             
-            prompt.append("\n\nPlease return results in the following format:\n");
-            prompt.append("1. For issues found, please start with 'ERROR:', 'WARNING:', 'INFO:', or 'CRITICAL:'\n");
-            prompt.append("2. Each issue on a separate line\n");
-            prompt.append("3. Provide an overall assessment at the end\n\n");
+            return readStream(response.body(), callback, delivered);
         }
+    }
+    
+    /**
+     * 请求及其目标端点
+     */
+    private static final class Route {
+        private final LLMEndpoint endpoint;
+        private final HttpRequest request;
+        private final boolean streamUsage;
         
-        prompt.append("代码内容/Code content:\n");
-        prompt.append("```\n");
-        prompt.append(code);
-        prompt.append("\n```");
+        private Route(@NotNull LLMEndpoint endpoint, @NotNull HttpRequest request, boolean streamUsage) {
+            this.endpoint = endpoint;
+            this.request = request;
+            this.streamUsage = streamUsage;
+        }
+    }
+    
+    /**
+     * 流式请求附加了 stream_options 时端点返回400，去掉该参数后重试
+     */
+    private static final class StreamUsageRejectedException extends LLMApiException {
+        private final LLMEndpoint endpoint;
         
-        return prompt.toString();
+        private StreamUsageRejectedException(@NotNull LLMEndpoint endpoint, @NotNull String responseBody) {
+            super(400, responseBody, 0);
+            this.endpoint = endpoint;
+        }
     }
     
     /**
-     * 调用LLM服务
+     * 一次请求交换：最终采用的响应及其路由，以及对冲请求占用的限流许可（读取完响应后释放）
      */
-    private String callLLM(@NotNull String prompt) throws Exception {
+    private static final class Exchange<T> implements Closeable {
+        private final HttpResponse<T> response;
+        private final Route route;
+        private final RateLimiter.Permit hedgePermit;
+        
+        private Exchange(@NotNull HttpResponse<T> response, @NotNull Route route,
+                         @Nullable RateLimiter.Permit hedgePermit) {
+            this.response = response;
+            this.route = route;
+            this.hedgePermit = hedgePermit;
+        }
+        
+        @Override
+        public void close() {
+            if (hedgePermit != null) {
+                hedgePermit.close();
+            }
+        }
+    }
+    
+    /**
+     * 发送请求，启用对冲时若主端点超过历史延迟的指定百分位仍未响应，向备用端点发送一份相同的请求，
+     * 采用先返回200的响应并取消另一个；两者都失败时返回主端点的结果，由重试策略处理。
+     * 对冲请求不排队，限流额度不足时不发送。对冲由主请求的完成回调和延迟计时异步触发，调用线程只等待最终结果
+     */
+    @NotNull
+    private <T> Exchange<T> exchange(@NotNull List<Route> routes, long estimatedTokens, long deadline,
+                                     @NotNull HttpResponse.BodyHandler<T> handler,
+                                     @NotNull LatencyTracker latencyTracker) throws Exception {
         LLMConfigService configService = LLMConfigService.getInstance();
+        long hedgeDelay = routes.size() > 1 && configService.isEnableHedging()
+                ? latencyTracker.getPercentileNanos(configService.getHedgePercentile()) : -1;
         
-        String requestBody = buildRequestBody(prompt, configService);
+        HedgedRequest<T> request = new HedgedRequest<>(routes, handler, latencyTracker);
+        try {
+            if (hedgeDelay >= 0) {
+                request.hedgeAfter(hedgeDelay, estimatedTokens);
+            } else {
+                request.decideHedge(false, estimatedTokens);
+            }
+            return request.await(deadline);
+        } finally {
+            request.close();
+        }
+    }
+    
+    /**
+     * 一次可能对冲的请求：先返回200的响应胜出，两者都失败时优先采用主端点的结果。
+     * 状态由HttpClient和延迟执行器线程上的回调更新，用对象锁保护
+     */
+    private final class HedgedRequest<T> {
+        private final List<Route> routes;
+        private final HttpResponse.BodyHandler<T> handler;
+        private final LatencyTracker latencyTracker;
+        private final CompletableFuture<HttpResponse<T>> primary;
+        private final List<CompletableFuture<HttpResponse<T>>> pending = new ArrayList<>(2);
+        private final CompletableFuture<Exchange<T>> result = new CompletableFuture<>();
+        private RateLimiter.Permit hedgePermit;
+        private boolean hedgeDecided;
+        private boolean taken;
+        private boolean closed;
+        private HttpResponse<T> failed;
+        private Route failedRoute;
+        private Throwable error;
         
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(configService.getFullApiUrl()))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Bearer " + configService.getApiKey())
-                .timeout(Duration.ofSeconds(configService.getTimeout()))
-                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                .build();
+        private HedgedRequest(@NotNull List<Route> routes, @NotNull HttpResponse.BodyHandler<T> handler,
+                              @NotNull LatencyTracker latencyTracker) {
+            this.routes = routes;
+            this.handler = handler;
+            this.latencyTracker = latencyTracker;
+            synchronized (this) {
+                hedgeDecided = routes.size() < 2;
+                primary = sendTimed(routes.get(0), handler, latencyTracker);
+                track(primary, routes.get(0));
+            }
+        }
         
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        /**
+         * 主请求在hedgeDelay内没有完成时发送对冲请求，不阻塞调用线程
+         */
+        private void hedgeAfter(long hedgeDelay, long estimatedTokens) {
+            primary.handle((response, e) -> false)
+                    .completeOnTimeout(true, hedgeDelay, TimeUnit.NANOSECONDS)
+                    .thenAccept(due -> decideHedge(due, estimatedTokens));
+        }
+        
+        /**
+         * 决定是否发送对冲请求，只生效一次
+         */
+        private synchronized void decideHedge(boolean due, long estimatedTokens) {
+            if (hedgeDecided) {
+                return;
+            }
+            hedgeDecided = true;
+            if (due && !closed && !result.isDone()) {
+                hedgePermit = rateLimiter.tryAcquire(estimatedTokens);
+                if (hedgePermit != null) {
+                    hedgedCount.incrementAndGet();
+                    track(sendTimed(routes.get(1), handler, latencyTracker), routes.get(1));
+                    return;
+                }
+            }
+            // 没有发出对冲请求，释放选中备用端点时占用的试探名额
+            endpointBalancer.cancel(routes.get(1).endpoint);
+            finishIfDone();
+        }
         
-        if (response.statusCode() != 200) {
-            throw new IOException("LLM API调用失败，状态码: " + response.statusCode() + ", 响应: " + response.body());
+        private void track(@NotNull CompletableFuture<HttpResponse<T>> future, @NotNull Route route) {
+            pending.add(future);
+            future.whenComplete((response, e) -> onComplete(future, route, response, e));
         }
         
-        return parseResponse(response.body());
+        private synchronized void onComplete(@NotNull CompletableFuture<HttpResponse<T>> future, @NotNull Route route,
+                                             @Nullable HttpResponse<T> response, @Nullable Throwable e) {
+            pending.remove(future);
+            if (closed || result.isDone()) {
+                // 已有结果或已放弃，在途的响应到达后直接关闭
+                closeBody(response);
+                return;
+            }
+            
+            boolean isPrimary = future == primary;
+            if (response != null) {
+                rateLimiter.onResponse(response.statusCode(), response.headers());
+                if (response.statusCode() == 200) {
+                    if (!isPrimary) {
+                        hedgeWinCount.incrementAndGet();
+                    }
+                    closeBody(failed);
+                    failed = null;
+                    result.complete(new Exchange<>(response, route, hedgePermit));
+                    hedgePermit = null;
+                    cancelPending();
+                    return;
+                }
+                if (failed == null || isPrimary) {
+                    closeBody(failed);
+                    failed = response;
+                    failedRoute = route;
+                } else {
+                    closeBody(response);
+                }
+            } else if (error == null || isPrimary) {
+                error = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            }
+            finishIfDone();
+        }
+        
+        /**
+         * 所有请求都已完成且不会再发送对冲请求时，以失败的响应或异常结束
+         */
+        private void finishIfDone() {
+            if (!pending.isEmpty() || !hedgeDecided || result.isDone()) {
+                return;
+            }
+            if (failed != null) {
+                result.complete(new Exchange<>(failed, failedRoute, hedgePermit));
+                failed = null;
+                hedgePermit = null;
+            } else {
+                result.completeExceptionally(error != null ? error : new IOException("LLM请求失败"));
+            }
+        }
+        
+        /**
+         * 等待最终结果，到达截止时间（System.nanoTime）时抛出HttpTimeoutException
+         */
+        @NotNull
+        private Exchange<T> await(long deadline) throws Exception {
+            try {
+                Exchange<T> exchange = result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                synchronized (this) {
+                    taken = true;
+                }
+                return exchange;
+            } catch (TimeoutException e) {
+                throw new HttpTimeoutException("LLM请求超时");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : new IOException(cause);
+            }
+        }
+        
+        /**
+         * 结束交换：取消未完成的请求，释放没有交给调用方的响应和限流许可
+         */
+        private synchronized void close() {
+            closed = true;
+            if (!hedgeDecided) {
+                hedgeDecided = true;
+                endpointBalancer.cancel(routes.get(1).endpoint);
+            }
+            cancelPending();
+            closeBody(failed);
+            if (hedgePermit != null) {
+                hedgePermit.close();
+            }
+            Exchange<T> unused = taken ? null : result.getNow(null);
+            if (unused != null) {
+                closeBody(unused.response);
+                unused.close();
+            }
+        }
+        
+        private void cancelPending() {
+            for (CompletableFuture<HttpResponse<T>> future : new ArrayList<>(pending)) {
+                future.cancel(true);
+            }
+        }
+    }
+    
+    /**
+     * 异步发送请求，收到200响应时记录从发送到收到响应头的延迟，并把结果反馈给负载均衡器
+     */
+    @NotNull
+    private <T> CompletableFuture<HttpResponse<T>> sendTimed(@NotNull Route route,
+                                                             @NotNull HttpResponse.BodyHandler<T> handler,
+                                                             @NotNull LatencyTracker latencyTracker) {
+        long start = System.nanoTime();
+        EndpointBalancer.Call call = endpointBalancer.begin(route.endpoint);
+        CompletableFuture<HttpResponse<T>> future = httpClient.sendAsync(route.request, handler);
+        future.whenComplete((response, error) -> {
+            lastActivity = System.nanoTime();
+            if (response != null && response.statusCode() == 200) {
+                latencyTracker.record(System.nanoTime() - start);
+                call.succeeded();
+            } else if (response != null ? isEndpointFailure(response.statusCode())
+                    : !(error instanceof CancellationException)) {
+                call.failed();
+            } else {
+                call.released();
+            }
+        });
+        return future;
+    }
+    
+    /**
+     * 反映端点健康状况的失败状态码：限流和服务端错误
+     */
+    private static boolean isEndpointFailure(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
     }
     
     /**
-     * 构建请求体
+     * 关闭不再使用的响应体以释放连接
      */
-    private String buildRequestBody(@NotNull String prompt, @NotNull LLMConfigService configService) {
-        // 简化的JSON构建，实际应该使用JSON库
-        StringBuilder json = new StringBuilder();
-        json.append("{");
-        json.append("\"model\":\"").append(configService.getModel()).append("\",");
-        json.append("\"messages\":[{");
-        json.append("\"role\":\"user\",");
-        json.append("\"content\":\"").append(escapeJson(prompt)).append("\"");
-        json.append("}],");
-        json.append("\"max_tokens\":").append(configService.getMaxTokens()).append(",");
-        json.append("\"temperature\":").append(configService.getTemperature());
-        json.append("}");
+    private static void closeBody(@Nullable HttpResponse<?> response) {
+        if (response != null && response.body() instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) response.body()).close();
+            } catch (Exception e) {
+                // 忽略
+            }
+        }
+    }
+    
+    @NotNull
+    private LLMApiException createApiException(@NotNull HttpResponse<?> response, @NotNull String errorBody) {
+        Long retryAfter = RateLimiter.parseRetryAfter(response.headers().firstValue("retry-after").orElse(null));
+        return new LLMApiException(response.statusCode(), errorBody, retryAfter != null ? retryAfter : 0);
+    }
+    
+    /**
+     * 读取SSE事件流，逐段回调审查结果，返回完整的响应文本及最后一个数据块中的Token用量
+     */
+    private ChatCompletionCodec.Completion readStream(@NotNull Stream<String> eventStream, @NotNull StreamCallback callback,
+                              @NotNull AtomicBoolean delivered) throws IOException {
+        StringBuilder fullContent = new StringBuilder();
+        TokenUsage usage = null;
+        
+        // 关闭Stream会同时断开底层连接，取消时无需读完剩余的响应
+        try (Stream<String> events = eventStream) {
+            Iterator<String> iterator = events.iterator();
+            while (iterator.hasNext() && !callback.isCancelled()) {
+                String event = iterator.next();
+                if (!event.startsWith("data:")) {
+                    continue;
+                }
+                
+                String data = event.substring("data:".length()).trim();
+                if ("[DONE]".equals(data)) {
+                    break;
+                }
+                
+                ChatCompletionCodec.StreamChunk chunk = ChatCompletionCodec.readStreamChunk(data);
+                if (chunk == null) {
+                    continue;
+                }
+                if (chunk.getUsage() != null) {
+                    usage = chunk.getUsage();
+                }
+                String delta = chunk.getDelta();
+                if (delta == null || delta.isEmpty()) {
+                    continue;
+                }
+                
+                fullContent.append(delta);
+                delivered.set(true);
+                callback.onText(delta);
+            }
+        }
         
-        return json.toString();
+        return new ChatCompletionCodec.Completion(fullContent.toString(), usage);
     }
     
     /**
-     * 解析响应
+     * 轻量的存活检测：向主端点发送一个HEAD请求，返回往返时间（毫秒）
+     * 不调用模型也不消耗Token，比testConnection的完整审查便宜得多；连接池中有空闲连接时直接复用
+     *
+     * @throws IOException 无法连接或服务端返回5xx
      */
-    private String parseResponse(@NotNull String responseBody) {
-        // 简化的JSON解析，实际应该使用JSON库
+    public long ping() throws IOException, InterruptedException {
+        return ping(LLMConfigService.getInstance().getEndpoints().get(0));
+    }
+    
+    private long ping(@NotNull LLMEndpoint endpoint) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(endpoint.getUrl()))
+                .timeout(PROBE_TIMEOUT)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        long start = System.nanoTime();
         try {
-            // 查找content字段
-            String contentMarker = "\"content\":\"";
-            int contentStart = responseBody.indexOf(contentMarker);
-            if (contentStart == -1) {
-                return "解析响应失败：未找到content字段";
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            long latency = elapsedMillis(start);
+            lastActivity = System.nanoTime();
+            if (response.statusCode() >= 500) {
+                throw new IOException("LLM服务不可用，状态码: " + response.statusCode());
             }
-            
-            contentStart += contentMarker.length();
-            int contentEnd = responseBody.indexOf("\"", contentStart);
-            if (contentEnd == -1) {
-                return "解析响应失败：content字段格式错误";
+            connectionStatus.put(endpoint.getUrl(), latency + "ms " + response.version());
+            return latency;
+        } catch (IOException e) {
+            connectionStatus.put(endpoint.getUrl(), "failed: " + e.getMessage());
+            throw e;
+        }
+    }
+    
+    /**
+     * 预热连接：向各端点发送HEAD请求，提前完成DNS解析和TCP、TLS握手，建立的HTTP/2连接留在连接池中供审查请求复用。
+     * 只在插件启动和设置变更时调用；周期保活默认关闭，配置了保活间隔时，连接空闲超过该间隔才再发送一次，
+     * 避免被服务端或代理断开。未启用预热时停止保活
+     */
+    public synchronized void warmUp() {
+        if (keepAliveTask != null) {
+            keepAliveTask.cancel(false);
+            keepAliveTask = null;
+        }
+        
+        LLMConfigService configService = LLMConfigService.getInstance();
+        if (!configService.isEnableConnectionWarmup() || !configService.isConfigured()) {
+            return;
+        }
+        asyncExecutor.execute(this::pingEndpoints);
+        
+        long interval = configService.getKeepAliveIntervalSeconds();
+        if (interval > 0) {
+            keepAliveTask = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(() -> {
+                if (System.nanoTime() - lastActivity >= TimeUnit.SECONDS.toNanos(interval)) {
+                    asyncExecutor.execute(this::pingEndpoints);
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+    
+    private void pingEndpoints() {
+        for (LLMEndpoint endpoint : LLMConfigService.getInstance().getEndpoints()) {
+            try {
+                ping(endpoint);
+            } catch (IOException | IllegalArgumentException e) {
+                // 预热失败不影响审查，状态已记录
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
-            
-            String content = responseBody.substring(contentStart, contentEnd);
-            return unescapeJson(content);
-            
-        } catch (Exception e) {
-            return "解析响应时发生错误: " + e.getMessage();
         }
     }
     
     /**
-     * JSON字符串转义
+     * 获取各端点最近一次预热或存活检测的结果
+     */
+    @NotNull
+    public String getConnectionStatus() {
+        if (connectionStatus.isEmpty()) {
+            return "Not warmed up";
+        }
+        return connectionStatus.entrySet().stream()
+                .map(entry -> entry.getKey() + ": " + entry.getValue())
+                .collect(Collectors.joining("\n"));
+    }
+    
+    /**
+     * 熔断后的后台探测：依次探测各端点，任一端点请求模型列表（或1个Token的补全）成功即视为已恢复；
+     * 所有端点都无法连接或返回5xx时仍为故障，其余响应（如401、429）无法判断
+     */
+    @NotNull
+    private CircuitBreaker.ProbeResult probeEndpoints() {
+        CircuitBreaker.ProbeResult result = CircuitBreaker.ProbeResult.FAILED;
+        for (LLMEndpoint endpoint : LLMConfigService.getInstance().getEndpoints()) {
+            ConnectivityProbe.Result probe = new ConnectivityProbe((int) PROBE_TIMEOUT.toMillis()).probe(endpoint);
+            connectionStatus.put(endpoint.getUrl(), "probe " + probe);
+            if (probe.isSuccess()) {
+                return CircuitBreaker.ProbeResult.RECOVERED;
+            }
+            if (probe.getStatusCode() > 0 && probe.getStatusCode() < 500) {
+                result = CircuitBreaker.ProbeResult.UNKNOWN;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * LLM服务是否可用（未熔断）
+     */
+    public boolean isProviderAvailable() {
+        return circuitBreaker.isAvailable();
+    }
+    
+    /**
+     * 获取熔断器状态描述
+     */
+    @NotNull
+    public String getCircuitBreakerStatus() {
+        String status = "Circuit: " + circuitBreaker.getState();
+        if (circuitBreaker.getState() == CircuitBreaker.State.OPEN) {
+            status += ", next trial in " + circuitBreaker.getRetryInMillis() / 1000 + "s";
+        }
+        if (circuitBreaker.getLastError() != null) {
+            status += ", last error: " + circuitBreaker.getLastError();
+        }
+        return status;
+    }
+    
+    /**
+     * 等待重试间隔，期间调用方取消时返回false
+     */
+    private boolean sleep(long delayNanos, @Nullable StreamCallback callback) throws InterruptedException {
+        long wakeUp = System.nanoTime() + delayNanos;
+        long remaining;
+        while ((remaining = wakeUp - System.nanoTime()) > 0) {
+            if (callback != null && callback.isCancelled()) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(100)));
+        }
+        return true;
+    }
+    
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+    
+    /**
+     * 按当前配置获取限流许可
+     * 每次排队最多等待配置的排队时间，且不超过总的截止时间
+     */
+    private RateLimiter.Permit acquirePermit(long estimatedTokens, @NotNull LLMConfigService configService,
+                                             long deadline) throws IOException, InterruptedException {
+        rateLimiter.configure(configService.getRequestsPerMinute(), configService.getTokensPerMinute(),
+                configService.getMaxConcurrentRequests());
+        long maxWaitMillis = Math.min(TimeUnit.SECONDS.toMillis(Math.max(0, configService.getRateLimitMaxWaitSeconds())),
+                TimeUnit.NANOSECONDS.toMillis(Math.max(0, deadline - System.nanoTime())));
+        return rateLimiter.acquire(estimatedTokens, maxWaitMillis);
+    }
+    
+    /**
+     * 预计消耗的Token：提示词估算值加最大输出Token
+     */
+    private static long estimateTokens(@NotNull ReviewPrompt prompt, @NotNull LLMConfigService configService) {
+        return TokenEstimator.estimate(prompt.getPrefix()) + TokenEstimator.estimate(prompt.getBody())
+                + Math.max(0, configService.getMaxTokens());
+    }
+    
+    /**
+     * 累计响应中的Token用量
+     */
+    private void recordUsage(@Nullable TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        usageResponseCount.incrementAndGet();
+        promptTokenCount.addAndGet(usage.getPromptTokens());
+        cachedTokenCount.addAndGet(usage.getCachedTokens());
+        cacheWriteTokenCount.addAndGet(usage.getCacheWriteTokens());
+    }
+    
+    /**
+     * 获取提示词前缀缓存统计：返回了用量的响应数、提示词Token总数，以及其中命中和写入提供方缓存的Token数
      */
-    private String escapeJson(@NotNull String text) {
-        return text.replace("\\", "\\\\")
-                  .replace("\"", "\\\"")
-                  .replace("\n", "\\n")
-                  .replace("\r", "\\r")
-                  .replace("\t", "\\t");
+    @NotNull
+    public String getPromptCacheStatistics() {
+        long prompt = promptTokenCount.get();
+        long cached = cachedTokenCount.get();
+        return String.format("Responses with usage: %d, Prompt tokens: %d, Cached: %d (%.1f%%), Cache writes: %d",
+                usageResponseCount.get(), prompt, cached, prompt > 0 ? cached * 100.0 / prompt : 0.0,
+                cacheWriteTokenCount.get());
     }
     
     /**
-     * JSON字符串反转义
+     * 获取对冲请求统计：已发送的对冲请求数，以及其中比主端点先返回的次数
      */
-    private String unescapeJson(@NotNull String text) {
-        return text.replace("\\n", "\n")
-                  .replace("\\r", "\r")
-                  .replace("\\t", "\t")
-                  .replace("\\\"", "\"")
-                  .replace("\\\\", "\\");
+    @NotNull
+    public String getHedgingStatistics() {
+        return String.format("Hedged: %d, Hedge wins: %d, Latency samples: %d (streaming %d)",
+                hedgedCount.get(), hedgeWinCount.get(), completionLatency.getSampleCount(),
+                streamingLatency.getSampleCount());
+    }
+    
+    /**
+     * 获取各端点的负载均衡状态
+     */
+    @NotNull
+    public String getEndpointStatus() {
+        return endpointBalancer.getStatus(LLMConfigService.getInstance().getEndpoints());
+    }
+    
+    /**
+     * 获取限流器状态
+     */
+    @NotNull
+    public RateLimiter.Status getRateLimiterStatus() {
+        return rateLimiter.getStatus();
+    }
+    
+    /**
+     * 构建请求体，gzip为true时压缩请求体（需要网关支持 Content-Encoding: gzip）
+     */
+    private HttpRequest.BodyPublisher buildRequestBody(@NotNull ReviewPrompt prompt, @NotNull String model,
+                                                       @NotNull LLMConfigService configService,
+                                                       boolean stream, boolean streamUsage, boolean gzip) throws IOException {
+        // 启用前缀缓存时固定前缀单独作为system消息，各文件的请求共享完全相同的开头
+        ChatCompletionCodec.RequestBody body = configService.isEnablePromptCaching() && !prompt.getPrefix().isEmpty()
+                ? ChatCompletionCodec.writeRequest(model, prompt.getPrefix(), prompt.getBody(),
+                        configService.getMaxTokens(), configService.getTemperature(), stream, streamUsage,
+                        ChatCompletionCodec.supportsCacheControl(model))
+                : ChatCompletionCodec.writeRequest(model, null, prompt.toString(),
+                        configService.getMaxTokens(), configService.getTemperature(), stream, streamUsage, false);
+        return gzip ? body.toGzipBodyPublisher() : body.toBodyPublisher();
+    }
+    
+    /**
+     * 探测与主端点的连接：请求模型列表，不支持时只生成1个Token，不进行完整的审查
+     * 结果中分别给出DNS解析、TCP连接、TLS握手和首字节耗时
+     */
+    @NotNull
+    public ConnectivityProbe.Result probeConnection() {
+        LLMEndpoint endpoint = LLMConfigService.getInstance().getEndpoints().get(0);
+        return new ConnectivityProbe((int) PROBE_TIMEOUT.toMillis()).probe(endpoint);
     }
     
     /**
      * 测试连接
      */
     public boolean testConnection() {
-        try {
-            String testCode = "public class Test { public static void main(String[] args) { System.out.println(\"Hello\"); } }";
-            String result = reviewCode(testCode, "Test.java");
-            return result != null && !result.trim().isEmpty();
-        } catch (Exception e) {
-            return false;
-        }
+        return probeConnection().isSuccess();
     }
 }
\ No newline at end of file
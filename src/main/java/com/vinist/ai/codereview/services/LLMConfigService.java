@@ -6,9 +6,13 @@ import com.intellij.openapi.components.Service;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
 import com.intellij.util.xmlb.XmlSerializerUtil;
+import com.vinist.ai.codereview.llm.LLMEndpoint;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * LLM配置服务
  * 管理LLM相关的配置信息
@@ -28,6 +32,27 @@ public final class LLMConfigService implements PersistentStateComponent<LLMConfi
         public boolean enableProxy = false;
         public String proxyHost = "";
         public int proxyPort = 8080;
+        public boolean enableStreaming = false;
+        public int maxConcurrentRequests = 4;
+        public int fileGroupTokenBudget = 3000;
+        public int requestsPerMinute = 60;
+        public int tokensPerMinute = 0;
+        public int rateLimitMaxWaitSeconds = 30;
+        public int maxRetries = 3;
+        public int retryBaseDelayMillis = 500;
+        public int retryMaxDelayMillis = 8000;
+        public String additionalEndpoints = "";
+        public boolean enableHedging = false;
+        public int hedgePercentile = 95;
+        public String loadBalancingStrategy = "PRIORITY";
+        public boolean enableCircuitBreaker = true;
+        public int circuitBreakerFailureThreshold = 5;
+        public int circuitBreakerOpenSeconds = 30;
+        public boolean enableConnectionWarmup = true;
+        public int keepAliveIntervalSeconds = 0;
+        public boolean enableRequestCompression = false;
+        public boolean enablePromptCaching = true;
+        public boolean enableStreamUsage = true;
     }
     
     private State state = new State();
@@ -128,6 +153,177 @@ public final class LLMConfigService implements PersistentStateComponent<LLMConfi
         state.proxyPort = proxyPort;
     }
     
+    public boolean isEnableStreaming() {
+        return state.enableStreaming;
+    }
+    
+    public void setEnableStreaming(boolean enableStreaming) {
+        state.enableStreaming = enableStreaming;
+    }
+    
+    public int getMaxConcurrentRequests() {
+        return state.maxConcurrentRequests;
+    }
+    
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        state.maxConcurrentRequests = maxConcurrentRequests;
+    }
+    
+    public int getFileGroupTokenBudget() {
+        return state.fileGroupTokenBudget;
+    }
+    
+    public void setFileGroupTokenBudget(int fileGroupTokenBudget) {
+        state.fileGroupTokenBudget = fileGroupTokenBudget;
+    }
+    
+    public int getRequestsPerMinute() {
+        return state.requestsPerMinute;
+    }
+    
+    public void setRequestsPerMinute(int requestsPerMinute) {
+        state.requestsPerMinute = requestsPerMinute;
+    }
+    
+    public int getTokensPerMinute() {
+        return state.tokensPerMinute;
+    }
+    
+    public void setTokensPerMinute(int tokensPerMinute) {
+        state.tokensPerMinute = tokensPerMinute;
+    }
+    
+    public int getRateLimitMaxWaitSeconds() {
+        return state.rateLimitMaxWaitSeconds;
+    }
+    
+    public void setRateLimitMaxWaitSeconds(int rateLimitMaxWaitSeconds) {
+        state.rateLimitMaxWaitSeconds = rateLimitMaxWaitSeconds;
+    }
+    
+    public int getMaxRetries() {
+        return state.maxRetries;
+    }
+    
+    public void setMaxRetries(int maxRetries) {
+        state.maxRetries = maxRetries;
+    }
+    
+    public int getRetryBaseDelayMillis() {
+        return state.retryBaseDelayMillis;
+    }
+    
+    public void setRetryBaseDelayMillis(int retryBaseDelayMillis) {
+        state.retryBaseDelayMillis = retryBaseDelayMillis;
+    }
+    
+    public int getRetryMaxDelayMillis() {
+        return state.retryMaxDelayMillis;
+    }
+    
+    public void setRetryMaxDelayMillis(int retryMaxDelayMillis) {
+        state.retryMaxDelayMillis = retryMaxDelayMillis;
+    }
+    
+    public String getAdditionalEndpoints() {
+        return state.additionalEndpoints;
+    }
+    
+    public void setAdditionalEndpoints(String additionalEndpoints) {
+        state.additionalEndpoints = additionalEndpoints;
+    }
+    
+    public boolean isEnableHedging() {
+        return state.enableHedging;
+    }
+    
+    public void setEnableHedging(boolean enableHedging) {
+        state.enableHedging = enableHedging;
+    }
+    
+    public int getHedgePercentile() {
+        return state.hedgePercentile;
+    }
+    
+    public void setHedgePercentile(int hedgePercentile) {
+        state.hedgePercentile = hedgePercentile;
+    }
+    
+    public String getLoadBalancingStrategy() {
+        return state.loadBalancingStrategy;
+    }
+    
+    public void setLoadBalancingStrategy(String loadBalancingStrategy) {
+        state.loadBalancingStrategy = loadBalancingStrategy;
+    }
+    
+    public boolean isEnableCircuitBreaker() {
+        return state.enableCircuitBreaker;
+    }
+    
+    public void setEnableCircuitBreaker(boolean enableCircuitBreaker) {
+        state.enableCircuitBreaker = enableCircuitBreaker;
+    }
+    
+    public int getCircuitBreakerFailureThreshold() {
+        return state.circuitBreakerFailureThreshold;
+    }
+    
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        state.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+    
+    public int getCircuitBreakerOpenSeconds() {
+        return state.circuitBreakerOpenSeconds;
+    }
+    
+    public void setCircuitBreakerOpenSeconds(int circuitBreakerOpenSeconds) {
+        state.circuitBreakerOpenSeconds = circuitBreakerOpenSeconds;
+    }
+    
+    public boolean isEnableConnectionWarmup() {
+        return state.enableConnectionWarmup;
+    }
+    
+    public void setEnableConnectionWarmup(boolean enableConnectionWarmup) {
+        state.enableConnectionWarmup = enableConnectionWarmup;
+    }
+    
+    public int getKeepAliveIntervalSeconds() {
+        return state.keepAliveIntervalSeconds;
+    }
+    
+    public void setKeepAliveIntervalSeconds(int keepAliveIntervalSeconds) {
+        state.keepAliveIntervalSeconds = keepAliveIntervalSeconds;
+    }
+    
+    public boolean isEnableRequestCompression() {
+        return state.enableRequestCompression;
+    }
+    
+    public void setEnableRequestCompression(boolean enableRequestCompression) {
+        state.enableRequestCompression = enableRequestCompression;
+    }
+    
+    public boolean isEnablePromptCaching() {
+        return state.enablePromptCaching;
+    }
+    
+    public void setEnablePromptCaching(boolean enablePromptCaching) {
+        state.enablePromptCaching = enablePromptCaching;
+    }
+    
+    /**
+     * 流式请求是否附加 stream_options.include_usage 获取Token用量，端点返回400时自动去掉
+     */
+    public boolean isEnableStreamUsage() {
+        return state.enableStreamUsage;
+    }
+    
+    public void setEnableStreamUsage(boolean enableStreamUsage) {
+        state.enableStreamUsage = enableStreamUsage;
+    }
+    
     // 便利方法
     
     /**
@@ -151,7 +347,10 @@ public final class LLMConfigService implements PersistentStateComponent<LLMConfi
      * 获取完整的API URL
      */
     public String getFullApiUrl() {
-        String baseUrl = state.apiUrl;
+        return toFullApiUrl(state.apiUrl);
+    }
+    
+    private String toFullApiUrl(String baseUrl) {
         if (baseUrl == null || baseUrl.trim().isEmpty()) {
             return "";
         }
@@ -170,6 +369,65 @@ public final class LLMConfigService implements PersistentStateComponent<LLMConfi
         return baseUrl;
     }
     
+    /**
+     * 获取所有端点：主端点在前，其后是附加端点
+     * 附加端点每行一个，格式为 "API URL | 模型 | API密钥"，模型和密钥可省略（与主端点相同），#开头的行为注释
+     */
+    @NotNull
+    public List<LLMEndpoint> getEndpoints() {
+        List<LLMEndpoint> endpoints = new ArrayList<>();
+        endpoints.add(new LLMEndpoint(getFullApiUrl(), nullToEmpty(state.apiKey), nullToEmpty(state.model)));
+        
+        for (String[] fields : parseAdditionalEndpoints(state.additionalEndpoints)) {
+            String model = fields.length > 1 && !fields[1].isEmpty() ? fields[1] : nullToEmpty(state.model);
+            String apiKey = fields.length > 2 && !fields[2].isEmpty() ? fields[2] : nullToEmpty(state.apiKey);
+            LLMEndpoint endpoint = new LLMEndpoint(toFullApiUrl(fields[0]), apiKey, model);
+            if (!endpoints.contains(endpoint)) {
+                endpoints.add(endpoint);
+            }
+        }
+        return endpoints;
+    }
+    
+    /**
+     * 校验附加端点配置，有效时返回null
+     */
+    @Nullable
+    public static String validateAdditionalEndpoints(@Nullable String text) {
+        for (String[] fields : parseAdditionalEndpoints(text)) {
+            if (!fields[0].startsWith("http://") && !fields[0].startsWith("https://")) {
+                return "附加端点的API URL必须以http://或https://开头: " + fields[0];
+            }
+        }
+        return null;
+    }
+    
+    @NotNull
+    private static List<String[]> parseAdditionalEndpoints(@Nullable String text) {
+        List<String[]> result = new ArrayList<>();
+        if (text == null) {
+            return result;
+        }
+        
+        for (String line : text.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] fields = trimmed.split("\\|", -1);
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = fields[i].trim();
+            }
+            result.add(fields);
+        }
+        return result;
+    }
+    
+    @NotNull
+    private static String nullToEmpty(@Nullable String value) {
+        return value != null ? value : "";
+    }
+    
     /**
      * 重置为默认配置
      */
@@ -183,6 +441,27 @@ public final class LLMConfigService implements PersistentStateComponent<LLMConfi
         state.enableProxy = false;
         state.proxyHost = "";
         state.proxyPort = 8080;
+        state.enableStreaming = false;
+        state.maxConcurrentRequests = 4;
+        state.fileGroupTokenBudget = 3000;
+        state.requestsPerMinute = 60;
+        state.tokensPerMinute = 0;
+        state.rateLimitMaxWaitSeconds = 30;
+        state.maxRetries = 3;
+        state.retryBaseDelayMillis = 500;
+        state.retryMaxDelayMillis = 8000;
+        state.additionalEndpoints = "";
+        state.enableHedging = false;
+        state.hedgePercentile = 95;
+        state.loadBalancingStrategy = "PRIORITY";
+        state.enableCircuitBreaker = true;
+        state.circuitBreakerFailureThreshold = 5;
+        state.circuitBreakerOpenSeconds = 30;
+        state.enableConnectionWarmup = true;
+        state.keepAliveIntervalSeconds = 0;
+        state.enableRequestCompression = false;
+        state.enablePromptCaching = true;
+        state.enableStreamUsage = true;
         // 保留API密钥
     }
     
@@ -214,6 +493,48 @@ public final class LLMConfigService implements PersistentStateComponent<LLMConfi
             return "超时时间必须在1-300秒之间";
         }
         
+        if (state.maxConcurrentRequests <= 0 || state.maxConcurrentRequests > 32) {
+            return "最大并发请求数必须在1-32之间";
+        }
+        
+        if (state.requestsPerMinute < 0 || state.tokensPerMinute < 0) {
+            return "限流额度不能为负数";
+        }
+        
+        if (state.rateLimitMaxWaitSeconds < 0 || state.rateLimitMaxWaitSeconds > 600) {
+            return "限流排队时间必须在0-600秒之间";
+        }
+        
+        if (state.maxRetries < 0 || state.maxRetries > 10) {
+            return "最大重试次数必须在0-10之间";
+        }
+        
+        if (state.retryBaseDelayMillis < 50 || state.retryMaxDelayMillis < state.retryBaseDelayMillis
+                || state.retryMaxDelayMillis > 120000) {
+            return "重试间隔必须在50-120000毫秒之间，且最大间隔不小于初始间隔";
+        }
+        
+        if (state.hedgePercentile < 50 || state.hedgePercentile > 99) {
+            return "对冲请求触发百分位必须在50-99之间";
+        }
+        
+        String endpointError = validateAdditionalEndpoints(state.additionalEndpoints);
+        if (endpointError != null) {
+            return endpointError;
+        }
+        
+        if (state.circuitBreakerFailureThreshold < 1 || state.circuitBreakerFailureThreshold > 100) {
+            return "熔断失败阈值必须在1-100之间";
+        }
+        
+        if (state.circuitBreakerOpenSeconds < 1 || state.circuitBreakerOpenSeconds > 3600) {
+            return "熔断暂停时间必须在1-3600秒之间";
+        }
+        
+        if (state.keepAliveIntervalSeconds < 0 || state.keepAliveIntervalSeconds > 3600) {
+            return "连接保活间隔必须在0-3600秒之间";
+        }
+        
         return null; // 配置有效
     }
     
@@ -0,0 +1,502 @@
+package com.vinist.ai.codereview.services;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.vinist.ai.codereview.llm.TokenUsage;
+import com.vinist.ai.codereview.models.CodeIssue;
+import com.vinist.ai.codereview.models.IssueSeverity;
+import com.vinist.ai.codereview.models.ReviewReport;
+import com.vinist.ai.codereview.models.ReviewTarget;
+import com.vinist.ai.codereview.utils.CodeChunker;
+import com.vinist.ai.codereview.utils.PromptCompactor;
+import com.vinist.ai.codereview.utils.TokenEstimator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 并行审查服务
+ * 将提交中的文件按Token预算分组、超大文件按结构边界分块，每组作为独立请求并发审查，再合并为一份报告
+ */
+@Service
+public final class ParallelReviewService {
+
+    public static ParallelReviewService getInstance() {
+        return ApplicationManager.getApplication().getService(ParallelReviewService.class);
+    }
+
+    /**
+     * 审查进度监听接口
+     * 回调可能来自多个工作线程
+     */
+    public interface ReviewProgressListener {
+        default void onIssue(@NotNull CodeIssue issue) {
+        }
+
+        default void onProgress(int reviewedFiles, int totalFiles) {
+        }
+
+        /**
+         * 一个请求完成（包括失败和跳过），requestCount为本次审查的请求总数
+         */
+        default void onRequestComplete(@NotNull ReviewReport groupReport, int requestCount) {
+        }
+
+        /**
+         * 返回true时停止审查，尚未开始的请求不再发送，进行中的流式请求尽快断开
+         */
+        default boolean isCancelled() {
+            return false;
+        }
+
+        /**
+         * 返回true时即使未启用流式响应也以流式方式请求，以便isCancelled后能断开进行中的请求
+         */
+        default boolean isStreamingRequired() {
+            return false;
+        }
+    }
+
+    /**
+     * 一次审查请求包含的文件组
+     */
+    private static final class ReviewGroup {
+        private final List<ReviewTarget> targets = new ArrayList<>();
+        private final List<Integer> startLines = new ArrayList<>();
+        private int estimatedTokens;
+        private String content;
+
+        /**
+         * 分块时对应的原始文件，以及用于提示词的分块描述
+         */
+        private ReviewTarget source;
+        private String chunkLabel;
+
+        private String getLabel() {
+            if (chunkLabel != null) {
+                return chunkLabel;
+            }
+            return targets.stream().map(ReviewTarget::getFileName).collect(Collectors.joining(", "));
+        }
+
+        /**
+         * 获取请求内容，多个文件时以 "File: 文件名" 分隔，并记录每个文件内容在请求中的起始行
+         */
+        private String getContent() {
+            if (content != null) {
+                return content;
+            }
+
+            startLines.clear();
+            if (targets.size() == 1) {
+                startLines.add(1);
+                content = targets.get(0).getContent();
+                return content;
+            }
+
+            StringBuilder builder = new StringBuilder();
+            int lineCount = 0;
+            for (ReviewTarget target : targets) {
+                builder.append("File: ").append(target.getFileName()).append("\n");
+                lineCount++;
+                startLines.add(lineCount + 1);
+
+                String targetContent = target.getContent();
+                builder.append(targetContent);
+                if (!targetContent.endsWith("\n")) {
+                    builder.append("\n");
+                }
+                builder.append("\n");
+                lineCount += countLines(targetContent) + 1;
+            }
+            content = builder.toString();
+            return content;
+        }
+
+        /**
+         * 获取请求内容中某行所属的文件
+         */
+        @Nullable
+        private ReviewTarget getTargetAtLine(int line) {
+            getContent();
+            ReviewTarget result = null;
+            for (int i = 0; i < targets.size() && startLines.get(i) <= line; i++) {
+                result = targets.get(i);
+            }
+            return result;
+        }
+
+        /**
+         * 将请求内容中的行号换算为文件中的实际行号
+         */
+        private int toFileLine(@NotNull ReviewTarget target, int line) {
+            getContent();
+            int localLine = line - startLines.get(targets.indexOf(target)) + 1;
+            return localLine >= 1 ? target.mapLine(localLine) : line;
+        }
+
+        private static int countLines(@NotNull String text) {
+            int lines = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') {
+                    lines++;
+                }
+            }
+            return text.isEmpty() || text.endsWith("\n") ? lines : lines + 1;
+        }
+    }
+
+    /**
+     * 并发审查多个文件并合并结果，不需要审查的文件类型会被过滤
+     */
+    @NotNull
+    public ReviewReport reviewTargets(@NotNull List<ReviewTarget> targets, @Nullable ReviewProgressListener listener) {
+        CodeAnalysisService codeAnalysisService = CodeAnalysisService.getInstance();
+        List<ReviewTarget> reviewable = targets.stream()
+                .filter(target -> codeAnalysisService.shouldReviewFile(target.getFileName()))
+                .collect(Collectors.toList());
+        return reviewAll(reviewable, listener);
+    }
+
+    /**
+     * 审查单个文件，超出模型Token预算时分块并发审查
+     */
+    @NotNull
+    public ReviewReport reviewTarget(@NotNull ReviewTarget target, @Nullable ReviewProgressListener listener) {
+        return reviewAll(List.of(target), listener);
+    }
+
+    @NotNull
+    private ReviewReport reviewAll(@NotNull List<ReviewTarget> reviewable, @Nullable ReviewProgressListener listener) {
+        LLMConfigService configService = LLMConfigService.getInstance();
+        CodeAnalysisService codeAnalysisService = CodeAnalysisService.getInstance();
+        ReviewProgressListener progressListener = listener != null ? listener : new ReviewProgressListener() {};
+        CodeAnalysisService.IssueListener issueListener = new CodeAnalysisService.IssueListener() {
+            @Override
+            public void onIssue(@NotNull CodeIssue issue) {
+                progressListener.onIssue(issue);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return progressListener.isCancelled();
+            }
+
+            @Override
+            public boolean isStreamingRequired() {
+                return progressListener.isStreamingRequired();
+            }
+        };
+
+        // 本地预检识别出的简单变更（仅空白、导入顺序、版本号变化或生成的文件）直接得到空报告，不发送请求
+        List<ReviewReport> preScreened = new ArrayList<>();
+        List<ReviewTarget> targets = new ArrayList<>();
+        for (ReviewTarget target : reviewable) {
+            ReviewReport report = codeAnalysisService.preScreen(target);
+            if (report != null) {
+                preScreened.add(report);
+            } else {
+                targets.add(target);
+            }
+        }
+
+        // 启用缓存时逐文件请求，保证未修改的文件能单独命中缓存；合并分组也不能超出模型的输入预算
+        int chunkBudget = TokenEstimator.getInputTokenBudget(configService.getModel(), configService.getMaxTokens());
+        int tokenBudget = ReviewSettingsService.getInstance().isEnableReviewCache()
+                ? 0 : Math.min(configService.getFileGroupTokenBudget(), chunkBudget);
+        if (ReviewSettingsService.getInstance().isCompactPrompt()) {
+            targets = targets.stream().map(ParallelReviewService::compactTarget).collect(Collectors.toList());
+        }
+        List<ReviewGroup> groups = buildGroups(targets, tokenBudget, chunkBudget);
+
+        // 分块的文件在所有分块完成后才计为已审查
+        Map<ReviewTarget, AtomicInteger> pendingChunks = new IdentityHashMap<>();
+        for (ReviewGroup group : groups) {
+            if (group.source != null) {
+                pendingChunks.computeIfAbsent(group.source, source -> new AtomicInteger()).incrementAndGet();
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        int totalFiles = reviewable.size();
+        AtomicInteger reviewedFiles = new AtomicInteger(preScreened.size());
+        if (!preScreened.isEmpty()) {
+            progressListener.onProgress(preScreened.size(), totalFiles);
+        }
+        ExecutorService executor = LLMClientService.getInstance().createFanOutExecutor(
+                "AI Code Review Fan-out", configService.getMaxConcurrentRequests());
+
+        List<CompletableFuture<ReviewReport>> futures = new ArrayList<>();
+        try {
+            for (ReviewGroup group : groups) {
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    if (progressListener.isCancelled()) {
+                        ReviewReport cancelled = new ReviewReport(group.getLabel(), "");
+                        cancelled.setSummary(group.getLabel() + "：审查已取消");
+                        return cancelled;
+                    }
+
+                    ReviewReport groupReport = codeAnalysisService.analyzeCodeStreaming(
+                            group.getContent(), group.getLabel(), issueListener);
+                    attributeIssues(group, groupReport);
+
+                    int reviewed;
+                    if (group.source == null) {
+                        reviewed = reviewedFiles.addAndGet(group.targets.size());
+                    } else if (pendingChunks.get(group.source).decrementAndGet() == 0) {
+                        reviewed = reviewedFiles.incrementAndGet();
+                    } else {
+                        reviewed = reviewedFiles.get();
+                    }
+                    progressListener.onProgress(reviewed, totalFiles);
+                    progressListener.onRequestComplete(groupReport, groups.size());
+                    return groupReport;
+                }, executor));
+            }
+
+            List<ReviewReport> groupReports = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    groupReports.add(futures.get(i).join());
+                } catch (Exception e) {
+                    ReviewReport failed = new ReviewReport(groups.get(i).getLabel(), "");
+                    failed.setSummary(groups.get(i).getLabel() + "：审查失败");
+                    failed.addIssue(CodeAnalysisService.createFailureIssue(e));
+                    failed.addMetadata(CodeAnalysisService.METADATA_LLM_FAILED, true);
+                    attributeIssues(groups.get(i), failed);
+                    groupReports.add(failed);
+                }
+            }
+
+            ReviewReport merged = mergeReports(groupReports, preScreened, reviewable);
+            merged.setReviewDuration(System.currentTimeMillis() - startTime);
+            return merged;
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 构建请求分组：超出分块预算的文件拆分为多个分块各自成组，其余文件按分组预算合并
+     */
+    @NotNull
+    private List<ReviewGroup> buildGroups(@NotNull List<ReviewTarget> targets, int tokenBudget, int chunkBudget) {
+        List<ReviewGroup> groups = new ArrayList<>();
+        List<ReviewTarget> pending = new ArrayList<>();
+
+        for (ReviewTarget target : targets) {
+            if (TokenEstimator.estimate(target.getContent()) <= chunkBudget) {
+                pending.add(target);
+                continue;
+            }
+
+            groups.addAll(groupTargets(pending, tokenBudget));
+            pending.clear();
+            groups.addAll(chunkTarget(target, chunkBudget));
+        }
+        groups.addAll(groupTargets(pending, tokenBudget));
+        return groups;
+    }
+
+    /**
+     * 压缩文件内容以减少请求大小，压缩后的行号映射回原文件
+     */
+    @NotNull
+    private static ReviewTarget compactTarget(@NotNull ReviewTarget target) {
+        String content = target.getContent();
+        boolean diff = content.startsWith("@@ -") || content.contains("\n@@ -");
+        PromptCompactor.Result result = PromptCompactor.compact(content, diff);
+        if (result.getContent().length() == content.length()) {
+            return target;
+        }
+
+        int[] lineMapping = result.getLineMapping();
+        for (int i = 0; i < lineMapping.length; i++) {
+            lineMapping[i] = target.mapLine(lineMapping[i]);
+        }
+        return new ReviewTarget(target.getFileName(), target.getFilePath(), result.getContent(), lineMapping);
+    }
+
+    /**
+     * 将超大文件按结构边界分块，每个分块的行号映射回原文件
+     */
+    @NotNull
+    private List<ReviewGroup> chunkTarget(@NotNull ReviewTarget target, int chunkBudget) {
+        List<CodeChunker.Chunk> chunks = CodeChunker.split(target.getContent(), chunkBudget);
+        List<ReviewGroup> groups = new ArrayList<>();
+
+        for (int i = 0; i < chunks.size(); i++) {
+            CodeChunker.Chunk chunk = chunks.get(i);
+            int[] lineMapping = new int[chunk.getLineCount()];
+            for (int line = 0; line < lineMapping.length; line++) {
+                lineMapping[line] = target.mapLine(chunk.getStartLine() + line);
+            }
+
+            ReviewGroup group = new ReviewGroup();
+            group.targets.add(new ReviewTarget(target.getFileName(), target.getFilePath(), chunk.getContent(), lineMapping));
+            group.estimatedTokens = TokenEstimator.estimate(chunk.getContent());
+            group.source = target;
+            group.chunkLabel = String.format("%s (part %d/%d, lines %d-%d)", target.getFileName(), i + 1, chunks.size(),
+                    lineMapping[0], lineMapping[lineMapping.length - 1]);
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * 按Token预算将文件分组，小文件合并为一组以减少请求数，超出预算的文件单独成组
+     */
+    @NotNull
+    private List<ReviewGroup> groupTargets(@NotNull List<ReviewTarget> targets, int tokenBudget) {
+        List<ReviewGroup> groups = new ArrayList<>();
+        ReviewGroup current = new ReviewGroup();
+
+        for (ReviewTarget target : targets) {
+            int tokens = TokenEstimator.estimate(target.getContent());
+            if (!current.targets.isEmpty() && current.estimatedTokens + tokens > tokenBudget) {
+                groups.add(current);
+                current = new ReviewGroup();
+            }
+            current.targets.add(target);
+            current.estimatedTokens += tokens;
+        }
+
+        if (!current.targets.isEmpty()) {
+            groups.add(current);
+        }
+        return groups;
+    }
+
+    /**
+     * 为问题填写所属文件并换算行号：单文件组直接归属，多文件组按问题描述中出现的文件名或行号所在位置归属，
+     * 行号换算为文件中的实际行号（差异片段按行号映射还原）；无法归属时文件名保持为空
+     */
+    private void attributeIssues(@NotNull ReviewGroup group, @NotNull ReviewReport groupReport) {
+        for (CodeIssue issue : groupReport.getIssues()) {
+            if (issue.getFileName() != null) {
+                continue;
+            }
+
+            ReviewTarget target = null;
+            if (group.targets.size() == 1) {
+                target = group.targets.get(0);
+            } else {
+                String message = issue.getMessage() != null ? issue.getMessage() : "";
+                for (ReviewTarget candidate : group.targets) {
+                    if (message.contains(candidate.getFileName())) {
+                        target = candidate;
+                        break;
+                    }
+                }
+                if (target == null && issue.hasLineNumber()) {
+                    target = group.getTargetAtLine(issue.getLineNumber());
+                }
+            }
+
+            // 无法归属的问题不填写文件名，组描述不是文件名，不能用于定位
+            if (target != null) {
+                issue.setFileName(target.getFileName());
+                if (issue.hasLineNumber()) {
+                    issue.setLineNumber(group.toFileLine(target, issue.getLineNumber()));
+                }
+            }
+        }
+    }
+
+    /**
+     * 合并各组的审查报告，preScreened为本地预检跳过的文件的报告
+     */
+    @NotNull
+    private ReviewReport mergeReports(@NotNull List<ReviewReport> groupReports, @NotNull List<ReviewReport> preScreened,
+                                      @NotNull List<ReviewTarget> targets) {
+        String fileName = targets.size() == 1 ? targets.get(0).getFileName() : "commit-review (" + targets.size() + " files)";
+
+        StringBuilder summary = new StringBuilder();
+        List<CodeIssue> issues = new ArrayList<>();
+        for (ReviewReport groupReport : groupReports) {
+            issues.addAll(groupReport.getIssues());
+            appendSummary(summary, groupReport.getSummary());
+        }
+        for (ReviewReport preScreenedReport : preScreened) {
+            appendSummary(summary, preScreenedReport.getSummary());
+        }
+
+        ReviewReport report = new ReviewReport.Builder()
+                .fileName(fileName)
+                .filePath(targets.size() == 1 ? targets.get(0).getFilePath() : null)
+                .issues(issues)
+                .reviewTime(LocalDateTime.now())
+                .summary(summary.toString())
+                .addMetadata("fileCount", targets.size())
+                .addMetadata("preScreenedFileCount", preScreened.size())
+                .build();
+        recordRequests(report, groupReports, groupReports.size());
+        return report;
+    }
+
+    /**
+     * 将各请求的统计写入合并后的报告：请求总数、失败和跳过的请求数、尝试次数、耗时和Token用量。
+     * groupReports可以只包含已完成的请求（提前停止时），requestCount为请求总数
+     */
+    public static void recordRequests(@NotNull ReviewReport report, @NotNull Collection<ReviewReport> groupReports,
+                                      int requestCount) {
+        int attempts = 0;
+        int failedRequests = 0;
+        int skippedRequests = 0;
+        long latency = 0;
+        TokenUsage usage = null;
+        List<String> attemptLog = new ArrayList<>();
+        for (ReviewReport groupReport : groupReports) {
+            usage = TokenUsage.add(usage, CodeAnalysisService.getUsage(groupReport));
+            Map<String, Object> metadata = groupReport.getMetadata();
+            if (Boolean.TRUE.equals(metadata.get(CodeAnalysisService.METADATA_LLM_FAILED))) {
+                failedRequests++;
+            }
+            if (Boolean.TRUE.equals(metadata.get(CodeAnalysisService.METADATA_LLM_SKIPPED))) {
+                skippedRequests++;
+            }
+            if (metadata.get(CodeAnalysisService.METADATA_LLM_ATTEMPTS) instanceof Number) {
+                attempts += ((Number) metadata.get(CodeAnalysisService.METADATA_LLM_ATTEMPTS)).intValue();
+                latency += ((Number) metadata.get(CodeAnalysisService.METADATA_LLM_LATENCY)).longValue();
+                Object log = metadata.get(CodeAnalysisService.METADATA_LLM_ATTEMPT_LOG);
+                if (log instanceof List) {
+                    for (Object entry : (List<?>) log) {
+                        attemptLog.add(groupReport.getFileName() + " " + entry);
+                    }
+                }
+            }
+        }
+
+        report.addMetadata("requestCount", requestCount);
+        report.addMetadata("failedRequestCount", failedRequests);
+        report.addMetadata("skippedRequestCount", skippedRequests);
+        report.addMetadata(CodeAnalysisService.METADATA_LLM_ATTEMPTS, attempts);
+        report.addMetadata(CodeAnalysisService.METADATA_LLM_LATENCY, latency);
+        report.addMetadata(CodeAnalysisService.METADATA_LLM_ATTEMPT_LOG, attemptLog);
+        CodeAnalysisService.recordUsage(report, usage);
+    }
+
+    /**
+     * 追加一组的摘要，没有摘要（如LLM调用失败的报告）时跳过
+     */
+    private static void appendSummary(@NotNull StringBuilder summary, @Nullable String groupSummary) {
+        if (groupSummary == null || groupSummary.trim().isEmpty()) {
+            return;
+        }
+        if (summary.length() > 0) {
+            summary.append("\n");
+        }
+        summary.append(groupSummary);
+    }
+}
@@ -0,0 +1,264 @@
+package com.vinist.ai.codereview.services;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.vinist.ai.codereview.prompt.PromptTemplate;
+import com.vinist.ai.codereview.prompt.ReviewPrompt;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 提示词模板服务
+ * 按审查语言、审查重点和文件扩展名选择模板（用户模板优先，否则使用内置模板），编译后缓存，
+ * 审查设置变化时整体失效。模板可用的变量：
+ * ${fileName} 文件名，${code} 代码内容，${diffNote} 代码为差异片段时的说明，
+ * ${focus} 审查重点说明，${format} 输出格式说明，${extension} 文件扩展名，${language} 审查语言。
+ * 只由常量组成的开头几行是固定前缀，内置模板把审查说明放在最前面，文件名和代码放在后面
+ */
+@Service
+public final class PromptTemplateService {
+
+    /**
+     * 自定义模板键中匹配任意审查重点或扩展名的通配符
+     */
+    public static final String ANY = "*";
+
+    /**
+     * 结构化输出要求的JSON格式，由JsonIssueParser解析
+     */
+    private static final String JSON_FORMAT = "{\"issues\": [{\"severity\": \"ERROR\", \"line\": 12, \"category\": \"bugs\", "
+            + "\"message\": \"...\", \"suggestion\": \"...\", \"ruleId\": \"...\"}], \"summary\": \"...\"}\n";
+
+    private static final String DEFAULT_TEMPLATE_CN = "请对用户提供的代码进行详细的代码审查。\n\n"
+            + "审查重点：${focus}\n\n"
+            + "${format}文件名：${fileName}\n\n"
+            + "${diffNote}代码内容/Code content:\n```\n${code}\n```";
+
+    private static final String DEFAULT_TEMPLATE_EN = "Please conduct a detailed code review of the code provided by the user.\n\n"
+            + "Review focus: ${focus}\n\n"
+            + "${format}File name: ${fileName}\n\n"
+            + "${diffNote}代码内容/Code content:\n```\n${code}\n```";
+
+    private static final String FORMAT_TEXT_CN = "请按以下格式返回结果：\n"
+            + "1. 对于发现的问题，请以'ERROR:'、'WARNING:'、'INFO:'或'CRITICAL:'开头\n"
+            + "2. 每个问题单独一行\n"
+            + "3. 问题对应具体代码行时注明行号，如'Line 12'（按下方代码内容从第1行开始计数）\n"
+            + "4. 在最后提供总体评价\n\n";
+
+    private static final String FORMAT_JSON_CN = "请只返回一个JSON对象，不要包含其他内容，格式如下：\n"
+            + JSON_FORMAT
+            + "severity取值为INFO、WARNING、ERROR或CRITICAL；line为问题对应的行号（按下方代码内容从第1行开始计数），没有时省略；"
+            + "message和suggestion使用中文，summary为总体评价\n\n";
+
+    private static final String FORMAT_TEXT_EN = "Please return results in the following format:\n"
+            + "1. For issues found, please start with 'ERROR:', 'WARNING:', 'INFO:', or 'CRITICAL:'\n"
+            + "2. Each issue on a separate line\n"
+            + "3. When an issue refers to a specific line, include its line number, e.g. 'Line 12' (counting from the first line of the code below)\n"
+            + "4. Provide an overall assessment at the end\n\n";
+
+    private static final String FORMAT_JSON_EN = "Return only a single JSON object and nothing else, in the following format:\n"
+            + JSON_FORMAT
+            + "severity is one of INFO, WARNING, ERROR or CRITICAL; line is the line number of the issue (counting from the first line of the code below) and is omitted when not applicable; "
+            + "summary is the overall assessment\n\n";
+
+    private static final String DIFF_NOTE_CN = "代码为变更片段：以'@@'开头的行为变更块标记，'+'开头为新增行，'-'开头为删除行，其余为上下文。请重点审查新增和修改的代码。\n\n";
+
+    private static final String DIFF_NOTE_EN = "The code is a diff excerpt: lines starting with '@@' mark changed hunks, '+' lines were added, '-' lines were removed and the rest is context. Focus on the added and modified code.\n\n";
+
+    /**
+     * 已编译的模板，键为 "语言|审查重点|扩展名|输出格式"
+     */
+    private final Map<String, CompiledPrompt> compiled = new ConcurrentHashMap<>();
+    private volatile long compiledModificationCount = -1;
+
+    /**
+     * 已编译的提示词，customId为所用用户模板的标识，使用内置模板时为null
+     */
+    public static final class CompiledPrompt {
+        private final PromptTemplate template;
+        private final boolean chinese;
+        private final String customId;
+
+        private CompiledPrompt(@NotNull PromptTemplate template, boolean chinese, @Nullable String customId) {
+            this.template = template;
+            this.chinese = chinese;
+            this.customId = customId;
+        }
+
+        /**
+         * 渲染审查提示词
+         */
+        @NotNull
+        public String render(@NotNull String code, @NotNull String fileName) {
+            return template.render(values(code, fileName));
+        }
+
+        /**
+         * 渲染审查提示词，固定前缀与正文分开，前缀为同一个字符串实例
+         */
+        @NotNull
+        public ReviewPrompt renderParts(@NotNull String code, @NotNull String fileName) {
+            return new ReviewPrompt(template.getPrefix(), template.renderSuffix(values(code, fileName)));
+        }
+
+        @NotNull
+        private Function<String, String> values(@NotNull String code, @NotNull String fileName) {
+            boolean diff = isDiffSnippet(code);
+            return name -> {
+                switch (name) {
+                    case "code":
+                        return code;
+                    case "fileName":
+                        return fileName;
+                    case "diffNote":
+                        return diff ? (chinese ? DIFF_NOTE_CN : DIFF_NOTE_EN) : "";
+                    default:
+                        return null;
+                }
+            };
+        }
+
+        @Nullable
+        public String getCustomId() {
+            return customId;
+        }
+    }
+
+    public static PromptTemplateService getInstance() {
+        return ApplicationManager.getApplication().getService(PromptTemplateService.class);
+    }
+
+    /**
+     * 获取当前设置下对应文件的已编译提示词
+     */
+    @NotNull
+    public CompiledPrompt getPrompt(@NotNull String fileName) {
+        ReviewSettingsService settingsService = ReviewSettingsService.getInstance();
+        long modificationCount = settingsService.getModificationTracker().getModificationCount();
+        if (modificationCount != compiledModificationCount) {
+            compiled.clear();
+            compiledModificationCount = modificationCount;
+        }
+
+        String language = settingsService.getReviewLanguage();
+        String focus = settingsService.getReviewFocus();
+        boolean structured = settingsService.isStructuredOutput();
+        String extension = getExtension(fileName);
+        String key = language + "|" + focus + "|" + extension + "|" + (structured ? "json" : "text");
+        return compiled.computeIfAbsent(key, k -> compile(settingsService.getPromptTemplates(),
+                language, focus, extension, structured));
+    }
+
+    /**
+     * 内置模板
+     */
+    @NotNull
+    public static String getDefaultTemplate(@NotNull String language) {
+        return "Chinese".equals(language) ? DEFAULT_TEMPLATE_CN : DEFAULT_TEMPLATE_EN;
+    }
+
+    /**
+     * 自定义模板的键
+     */
+    @NotNull
+    public static String templateKey(@NotNull String language, @NotNull String focus, @NotNull String extension) {
+        return language + "|" + focus + "|" + extension.toLowerCase();
+    }
+
+    /**
+     * 检查模板，有错误时返回错误信息，否则返回null
+     */
+    @Nullable
+    public static String validateTemplate(@Nullable String source) {
+        if (source == null || source.trim().isEmpty()) {
+            return "模板不能为空";
+        }
+        String error = PromptTemplate.validate(source);
+        if (error != null) {
+            return error;
+        }
+        if (!source.contains("${code}")) {
+            return "模板必须包含 ${code}";
+        }
+        return null;
+    }
+
+    @NotNull
+    private static CompiledPrompt compile(@NotNull Map<String, String> templates, @NotNull String language,
+                                          @NotNull String focus, @NotNull String extension, boolean structured) {
+        boolean chinese = "Chinese".equals(language);
+
+        Map<String, String> constants = new HashMap<>();
+        constants.put("focus", getFocusDescription(focus, chinese));
+        constants.put("format", chinese ? (structured ? FORMAT_JSON_CN : FORMAT_TEXT_CN)
+                : (structured ? FORMAT_JSON_EN : FORMAT_TEXT_EN));
+        constants.put("extension", extension);
+        constants.put("language", language);
+
+        // 依次查找 精确匹配、任意重点、任意扩展名、任意重点和扩展名 的用户模板
+        String[] candidates = {
+                templateKey(language, focus, extension),
+                templateKey(language, ANY, extension),
+                templateKey(language, focus, ANY),
+                templateKey(language, ANY, ANY)
+        };
+        for (String candidate : candidates) {
+            String source = templates.get(candidate);
+            if (source != null && validateTemplate(source) == null) {
+                String customId = candidate + "#" + Integer.toHexString(source.hashCode());
+                return new CompiledPrompt(PromptTemplate.compile(source, constants), chinese, customId);
+            }
+        }
+        return new CompiledPrompt(PromptTemplate.compile(getDefaultTemplate(language), constants), chinese, null);
+    }
+
+    @NotNull
+    private static String getFocusDescription(@NotNull String focus, boolean chinese) {
+        switch (focus) {
+            case "security":
+                return chinese ? "安全性问题" : "Security issues";
+            case "performance":
+                return chinese ? "性能优化" : "Performance optimization";
+            case "maintainability":
+                return chinese ? "可维护性" : "Maintainability";
+            case "bugs":
+                return chinese ? "潜在错误" : "Potential bugs";
+            default:
+                return chinese ? "全面审查（包括安全性、性能、可维护性、潜在错误等）"
+                        : "Comprehensive review (including security, performance, maintainability, potential bugs, etc.)";
+        }
+    }
+
+    /**
+     * 文件扩展名（小写）；多个文件的审查请求取第一个文件，分块描述 "A.java (part 1/3, ...)" 取文件名部分，没有扩展名时返回空字符串
+     */
+    @NotNull
+    static String getExtension(@NotNull String fileName) {
+        int end = fileName.indexOf(',');
+        if (end < 0) {
+            end = fileName.length();
+        }
+        int part = fileName.indexOf(" (");
+        if (part >= 0 && part < end) {
+            end = part;
+        }
+        int dot = fileName.lastIndexOf('.', end - 1);
+        int slash = Math.max(fileName.lastIndexOf('/', end - 1), fileName.lastIndexOf('\\', end - 1));
+        if (dot < 0 || dot < slash || dot == end - 1) {
+            return "";
+        }
+        return fileName.substring(dot + 1, end).toLowerCase();
+    }
+
+    /**
+     * 判断代码内容是否为差异片段
+     */
+    private static boolean isDiffSnippet(@NotNull String code) {
+        return code.startsWith("@@ -") || code.contains("\n@@ -");
+    }
+}
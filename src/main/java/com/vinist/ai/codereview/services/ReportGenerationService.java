@@ -7,6 +7,7 @@ import com.intellij.openapi.ui.Messages;
 import com.vinist.ai.codereview.models.ReviewReport;
 import com.vinist.ai.codereview.models.CodeIssue;
 import com.vinist.ai.codereview.models.IssueSeverity;
+import com.vinist.ai.codereview.ui.ReviewReportDialog;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -37,6 +38,7 @@ public final class ReportGenerationService {
      */
     public void showReport(@NotNull Project project, @NotNull ReviewReport report) {
         ReviewSettingsService settingsService = ReviewSettingsService.getInstance();
+        TokenUsageLedgerService.getInstance(project).record(report);
         
         if (settingsService.isShowReviewDialog()) {
             showReportDialog(project, report);
@@ -51,6 +53,94 @@ public final class ReportGenerationService {
         }
     }
     
+    /**
+     * 开始实时显示审查结果
+     * 按设置打开非模态的报告对话框和控制台输出，流式审查中每解析出一个问题就追加显示；
+     * 审查完成后调用LiveReport.complete显示最终报告
+     */
+    @NotNull
+    public LiveReport startLiveReport(@NotNull Project project, @NotNull String fileName) {
+        ReviewSettingsService settingsService = ReviewSettingsService.getInstance();
+        
+        ReviewReportDialog dialog = null;
+        if (settingsService.isShowReviewDialog()) {
+            dialog = new ReviewReportDialog(project, fileName);
+            dialog.show();
+        }
+        
+        ConsoleOutputService console = null;
+        if (settingsService.isOutputToConsole()) {
+            console = new ConsoleOutputService(project);
+            console.startLiveReport(fileName);
+        }
+        
+        return new LiveReport(project, dialog, console);
+    }
+    
+    /**
+     * 实时审查结果，作为审查进度监听器传给ParallelReviewService
+     */
+    public final class LiveReport implements ParallelReviewService.ReviewProgressListener {
+        
+        private final Project project;
+        private final ReviewReportDialog dialog;
+        private final ConsoleOutputService console;
+        
+        private LiveReport(@NotNull Project project, @Nullable ReviewReportDialog dialog,
+                           @Nullable ConsoleOutputService console) {
+            this.project = project;
+            this.dialog = dialog;
+            this.console = console;
+        }
+        
+        @Override
+        public void onIssue(@NotNull CodeIssue issue) {
+            if (dialog != null) {
+                dialog.addIssue(issue);
+            }
+            if (console != null) {
+                console.outputIssue(issue);
+            }
+        }
+        
+        /**
+         * 只打开了对话框且已被用户关闭时停止审查
+         */
+        @Override
+        public boolean isCancelled() {
+            return dialog != null && dialog.isDisposed() && console == null;
+        }
+        
+        /**
+         * 审查完成，显示最终报告
+         */
+        public void complete(@NotNull ReviewReport report) {
+            TokenUsageLedgerService.getInstance(project).record(report);
+            if (dialog != null) {
+                dialog.complete(report);
+            }
+            if (console != null) {
+                console.outputReport(report);
+                outputToConsole(report);
+            }
+            if (ReviewSettingsService.getInstance().isSaveReports()) {
+                saveReportToFile(report);
+            }
+        }
+        
+        /**
+         * 审查失败
+         */
+        public void fail(@NotNull String error) {
+            if (dialog != null) {
+                dialog.addIssue(new CodeIssue("代码分析过程中发生错误: " + error, IssueSeverity.ERROR));
+            }
+            if (console != null) {
+                console.outputError("代码分析过程中发生错误: " + error);
+            }
+        }
+    }
+    
     /**
      * 显示报告对话框
      */
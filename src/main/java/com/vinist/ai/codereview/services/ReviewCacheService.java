@@ -0,0 +1,276 @@
+package com.vinist.ai.codereview.services;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.vinist.ai.codereview.cache.DiskReviewStore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 审查结果缓存服务
+ * 以代码内容哈希为键缓存LLM的审查结果，按LRU策略淘汰，未修改的文件无需重复请求。
+ * 内存缓存之下还有一层磁盘存储，IDE重启后仍可命中。
+ */
+@Service
+public final class ReviewCacheService implements Disposable {
+
+    /**
+     * 缓存占用的最大字符数（键与值合计）
+     */
+    private static final long MAX_TOTAL_CHARS = 8L * 1024 * 1024;
+
+    private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalChars;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong diskHitCount = new AtomicLong();
+    
+    private DiskReviewStore diskStore;
+    private boolean diskStoreFailed;
+
+    public static ReviewCacheService getInstance() {
+        return ApplicationManager.getApplication().getService(ReviewCacheService.class);
+    }
+
+    /**
+     * 生成缓存键
+     * 代码、文件名、模型、审查重点、语言和提示词版本任一变化都会得到不同的键
+     */
+    @NotNull
+    public static String buildKey(@NotNull String code, @NotNull String fileName, @Nullable String model,
+                                  @Nullable String focus, @Nullable String language, @NotNull String promptVersion) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : new String[]{promptVersion, model, focus, language, fileName, code}) {
+                if (part != null) {
+                    digest.update(part.getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) 0);
+            }
+
+            byte[] hash = digest.digest();
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 查询缓存，内存未命中时查询磁盘存储并提升到内存
+     */
+    @Nullable
+    public String get(@NotNull String key) {
+        String value;
+        synchronized (entries) {
+            value = entries.get(key);
+        }
+
+        if (value == null) {
+            value = getFromDisk(key);
+            if (value != null) {
+                diskHitCount.incrementAndGet();
+                putInMemory(key, value);
+            }
+        }
+
+        if (value != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * 写入缓存（内存和磁盘）
+     */
+    public void put(@NotNull String key, @NotNull String value) {
+        putInMemory(key, value);
+
+        DiskReviewStore store = getDiskStore();
+        if (store != null) {
+            try {
+                store.put(key, value);
+            } catch (IOException e) {
+                disableDiskStore();
+            }
+        }
+    }
+
+    /**
+     * 写入内存缓存，超出容量时淘汰最久未使用的条目
+     */
+    private void putInMemory(@NotNull String key, @NotNull String value) {
+        int maxEntries = Math.max(1, ReviewSettingsService.getInstance().getReviewCacheMaxEntries());
+
+        synchronized (entries) {
+            String previous = entries.put(key, value);
+            if (previous != null) {
+                totalChars -= key.length() + previous.length();
+            }
+            totalChars += key.length() + value.length();
+
+            Iterator<Map.Entry<String, String>> iterator = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || totalChars > MAX_TOTAL_CHARS) && iterator.hasNext()) {
+                Map.Entry<String, String> eldest = iterator.next();
+                if (eldest.getKey().equals(key)) {
+                    continue; // 不淘汰刚写入的条目
+                }
+                totalChars -= eldest.getKey().length() + eldest.getValue().length();
+                iterator.remove();
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 从磁盘存储读取
+     */
+    @Nullable
+    private String getFromDisk(@NotNull String key) {
+        DiskReviewStore store = getDiskStore();
+        if (store == null) {
+            return null;
+        }
+
+        try {
+            return store.get(key);
+        } catch (IOException e) {
+            disableDiskStore();
+            return null;
+        }
+    }
+
+    /**
+     * 获取磁盘存储，位于IDE系统目录下，首次使用时打开，之后每次使用时应用最新的容量设置；
+     * 未启用或打开失败时返回null
+     */
+    @Nullable
+    private synchronized DiskReviewStore getDiskStore() {
+        ReviewSettingsService settingsService = ReviewSettingsService.getInstance();
+        if (!settingsService.isEnableDiskCache() || diskStoreFailed) {
+            return null;
+        }
+
+        long maxBytes = Math.max(1, settingsService.getDiskCacheMaxMegabytes()) * 1024L * 1024L;
+        try {
+            if (diskStore == null) {
+                diskStore = new DiskReviewStore(Paths.get(PathManager.getSystemPath(), "ai-code-review", "review-cache"), maxBytes);
+            } else {
+                diskStore.setMaxDataBytes(maxBytes);
+            }
+        } catch (IOException e) {
+            disableDiskStore();
+        }
+        return diskStore;
+    }
+
+    /**
+     * 磁盘存储出错后关闭并在本次会话中停用，不影响内存缓存
+     */
+    private synchronized void disableDiskStore() {
+        diskStoreFailed = true;
+        if (diskStore != null) {
+            try {
+                diskStore.close();
+            } catch (IOException e) {
+                // 忽略异常
+            }
+            diskStore = null;
+        }
+    }
+
+    /**
+     * 清空缓存（包括磁盘存储）和统计信息
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            totalChars = 0;
+        }
+
+        DiskReviewStore store = getDiskStore();
+        if (store != null) {
+            try {
+                store.clear();
+            } catch (IOException e) {
+                disableDiskStore();
+            }
+        }
+
+        hitCount.set(0);
+        missCount.set(0);
+        evictionCount.set(0);
+        diskHitCount.set(0);
+    }
+
+    @Override
+    public synchronized void dispose() {
+        if (diskStore != null) {
+            try {
+                diskStore.close();
+            } catch (IOException e) {
+                // 忽略异常
+            }
+            diskStore = null;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getDiskHitCount() {
+        return diskHitCount.get();
+    }
+
+    /**
+     * 获取命中率（0-1）
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * 获取统计信息描述
+     */
+    @NotNull
+    public String getStatistics() {
+        return String.format("Entries: %d, Hits: %d (disk: %d), Misses: %d, Evictions: %d, Hit rate: %.1f%%",
+                size(), getHitCount(), getDiskHitCount(), getMissCount(), getEvictionCount(), getHitRate() * 100);
+    }
+}
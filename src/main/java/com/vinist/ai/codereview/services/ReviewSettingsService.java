@@ -5,11 +5,16 @@ import com.intellij.openapi.components.PersistentStateComponent;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.SimpleModificationTracker;
 import com.intellij.util.xmlb.XmlSerializerUtil;
 import com.vinist.ai.codereview.models.IssueSeverity;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * 审查设置服务
  * 管理代码审查相关的设置
@@ -33,10 +38,29 @@ public final class ReviewSettingsService implements PersistentStateComponent<Rev
         public boolean enableSoundNotification = false;
         public boolean autoSaveReports = false;
         public String reportSavePath = "";
+        public boolean enableReviewCache = true;
+        public int reviewCacheMaxEntries = 500;
+        public boolean enableDiskCache = true;
+        public int diskCacheMaxMegabytes = 64;
+        public boolean diffOnlyReview = false;
+        public int diffContextLines = 3;
+        public boolean compactPrompt = false;
+        public boolean structuredOutput = false;
+        public boolean stopOnBlockingIssue = false;
+        public boolean localPreScreen = true;
+        /**
+         * 用户自定义的提示词模板，键为 "语言|审查重点|扩展名"，重点和扩展名可以为 "*"
+         */
+        public Map<String, String> promptTemplates = new HashMap<>();
     }
     
     private State state = new State();
     
+    /**
+     * 影响提示词的设置变化时递增，用于使已编译的提示词模板失效
+     */
+    private final SimpleModificationTracker modificationTracker = new SimpleModificationTracker();
+    
     public static ReviewSettingsService getInstance() {
         return ApplicationManager.getApplication().getService(ReviewSettingsService.class);
     }
@@ -49,6 +73,15 @@ public final class ReviewSettingsService implements PersistentStateComponent<Rev
     @Override
     public void loadState(@NotNull State state) {
         XmlSerializerUtil.copyBean(state, this.state);
+        modificationTracker.incModificationCount();
+    }
+    
+    /**
+     * 提示词相关设置（语言、审查重点、输出格式、模板）的修改计数
+     */
+    @NotNull
+    public ModificationTracker getModificationTracker() {
+        return modificationTracker;
     }
     
     // Getters and Setters
@@ -83,6 +116,7 @@ public final class ReviewSettingsService implements PersistentStateComponent<Rev
     
     public void setReviewLanguage(String reviewLanguage) {
         state.reviewLanguage = reviewLanguage;
+        modificationTracker.incModificationCount();
     }
     
     public String getReviewFocus() {
@@ -91,6 +125,7 @@ public final class ReviewSettingsService implements PersistentStateComponent<Rev
     
     public void setReviewFocus(String reviewFocus) {
         state.reviewFocus = reviewFocus;
+        modificationTracker.incModificationCount();
     }
     
     public String getMinSeverityLevel() {
@@ -165,6 +200,87 @@ public final class ReviewSettingsService implements PersistentStateComponent<Rev
         state.reportSavePath = reportSavePath;
     }
     
+    public boolean isEnableReviewCache() {
+        return state.enableReviewCache;
+    }
+    
+    public void setEnableReviewCache(boolean enableReviewCache) {
+        state.enableReviewCache = enableReviewCache;
+    }
+    
+    public int getReviewCacheMaxEntries() {
+        return state.reviewCacheMaxEntries;
+    }
+    
+    public void setReviewCacheMaxEntries(int reviewCacheMaxEntries) {
+        state.reviewCacheMaxEntries = reviewCacheMaxEntries;
+    }
+    
+    public boolean isEnableDiskCache() {
+        return state.enableDiskCache;
+    }
+    
+    public void setEnableDiskCache(boolean enableDiskCache) {
+        state.enableDiskCache = enableDiskCache;
+    }
+    
+    public int getDiskCacheMaxMegabytes() {
+        return state.diskCacheMaxMegabytes;
+    }
+    
+    public void setDiskCacheMaxMegabytes(int diskCacheMaxMegabytes) {
+        state.diskCacheMaxMegabytes = diskCacheMaxMegabytes;
+    }
+    
+    public boolean isDiffOnlyReview() {
+        return state.diffOnlyReview;
+    }
+    
+    public void setDiffOnlyReview(boolean diffOnlyReview) {
+        state.diffOnlyReview = diffOnlyReview;
+    }
+    
+    public int getDiffContextLines() {
+        return state.diffContextLines;
+    }
+    
+    public void setDiffContextLines(int diffContextLines) {
+        state.diffContextLines = diffContextLines;
+    }
+    
+    public boolean isCompactPrompt() {
+        return state.compactPrompt;
+    }
+    
+    public void setCompactPrompt(boolean compactPrompt) {
+        state.compactPrompt = compactPrompt;
+    }
+    
+    public boolean isStructuredOutput() {
+        return state.structuredOutput;
+    }
+    
+    public void setStructuredOutput(boolean structuredOutput) {
+        state.structuredOutput = structuredOutput;
+        modificationTracker.incModificationCount();
+    }
+    
+    public boolean isStopOnBlockingIssue() {
+        return state.stopOnBlockingIssue;
+    }
+    
+    public void setStopOnBlockingIssue(boolean stopOnBlockingIssue) {
+        state.stopOnBlockingIssue = stopOnBlockingIssue;
+    }
+    
+    public boolean isLocalPreScreen() {
+        return state.localPreScreen;
+    }
+    
+    public void setLocalPreScreen(boolean localPreScreen) {
+        state.localPreScreen = localPreScreen;
+    }
+    
     // 添加缺失的方法
     public boolean isShowLineNumbers() {
         return state.enableLineNumbers;
@@ -216,6 +332,16 @@ public final class ReviewSettingsService implements PersistentStateComponent<Rev
         return state.excludedCategories.split(",");
     }
     
+    @NotNull
+    public Map<String, String> getPromptTemplates() {
+        return new HashMap<>(state.promptTemplates);
+    }
+    
+    public void setPromptTemplates(@NotNull Map<String, String> promptTemplates) {
+        state.promptTemplates = new HashMap<>(promptTemplates);
+        modificationTracker.incModificationCount();
+    }
+    
     /**
      * 检查类别是否被排除
      */
@@ -251,6 +377,18 @@ public final class ReviewSettingsService implements PersistentStateComponent<Rev
         state.enableSoundNotification = false;
         state.autoSaveReports = false;
         state.reportSavePath = "";
+        state.enableReviewCache = true;
+        state.reviewCacheMaxEntries = 500;
+        state.enableDiskCache = true;
+        state.diskCacheMaxMegabytes = 64;
+        state.diffOnlyReview = false;
+        state.diffContextLines = 3;
+        state.compactPrompt = false;
+        state.structuredOutput = false;
+        state.stopOnBlockingIssue = false;
+        state.localPreScreen = true;
+        state.promptTemplates = new HashMap<>();
+        modificationTracker.incModificationCount();
     }
     
     /**
@@ -261,10 +399,29 @@ public final class ReviewSettingsService implements PersistentStateComponent<Rev
             return "每个文件的最大问题数量必须在1-1000之间";
         }
         
+        if (state.reviewCacheMaxEntries <= 0 || state.reviewCacheMaxEntries > 10000) {
+            return "审查缓存条目数必须在1-10000之间";
+        }
+        
+        if (state.diskCacheMaxMegabytes <= 0 || state.diskCacheMaxMegabytes > 1024) {
+            return "磁盘缓存大小必须在1-1024MB之间";
+        }
+        
+        if (state.diffContextLines < 0 || state.diffContextLines > 100) {
+            return "差异上下文行数必须在0-100之间";
+        }
+        
         if (state.autoSaveReports && (state.reportSavePath == null || state.reportSavePath.trim().isEmpty())) {
             return "启用自动保存报告时，必须指定保存路径";
         }
         
+        for (Map.Entry<String, String> entry : state.promptTemplates.entrySet()) {
+            String error = PromptTemplateService.validateTemplate(entry.getValue());
+            if (error != null) {
+                return "提示词模板 " + entry.getKey() + " 无效：" + error;
+            }
+        }
+        
         return null; // 设置有效
     }
 }
\ No newline at end of file
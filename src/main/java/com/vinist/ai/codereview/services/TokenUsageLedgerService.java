@@ -0,0 +1,184 @@
+package com.vinist.ai.codereview.services;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
+import com.intellij.openapi.project.Project;
+import com.vinist.ai.codereview.llm.TokenUsage;
+import com.vinist.ai.codereview.models.ReviewReport;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token用量台账
+ * 按天汇总项目中每次审查的请求数、Token用量和LLM耗时，保存在项目的工作区文件中，保留最近RETENTION_DAYS天。
+ * 用于评估限流配置和发现提示词长度的异常增长
+ */
+@Service(Service.Level.PROJECT)
+@State(name = "AICodeReviewTokenUsage", storages = @Storage(StoragePathMacros.WORKSPACE_FILE))
+public final class TokenUsageLedgerService implements PersistentStateComponent<TokenUsageLedgerService.State> {
+
+    /**
+     * 保留的天数
+     */
+    static final int RETENTION_DAYS = 90;
+
+    /**
+     * 一天的汇总
+     */
+    public static class DailyUsage {
+        public String date = "";
+        public int reviews;
+        public int requests;
+        public int failedRequests;
+        public long promptTokens;
+        public long completionTokens;
+        public long cachedTokens;
+        public long cacheWriteTokens;
+        public long latencyMillis;
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d reviews, %d requests (%d failed), prompt %d (cached %d), completion %d, LLM %dms",
+                    date, reviews, requests, failedRequests, promptTokens, cachedTokens, completionTokens, latencyMillis);
+        }
+    }
+
+    public static class State {
+        /**
+         * 按日期升序排列
+         */
+        public List<DailyUsage> days = new ArrayList<>();
+    }
+
+    private State state = new State();
+
+    public static TokenUsageLedgerService getInstance(@NotNull Project project) {
+        return project.getService(TokenUsageLedgerService.class);
+    }
+
+    @Override
+    public synchronized @Nullable State getState() {
+        return state;
+    }
+
+    @Override
+    public synchronized void loadState(@NotNull State state) {
+        this.state = state;
+        if (this.state.days == null) {
+            this.state.days = new ArrayList<>();
+        }
+    }
+
+    /**
+     * 记录一次审查，命中审查缓存（没有发出请求）时不记录
+     */
+    public void record(@NotNull ReviewReport report) {
+        Object attempts = report.getMetadata().get(CodeAnalysisService.METADATA_LLM_ATTEMPTS);
+        if (!(attempts instanceof Number) || ((Number) attempts).intValue() == 0) {
+            return;
+        }
+        Object latency = report.getMetadata().get(CodeAnalysisService.METADATA_LLM_LATENCY);
+        Object failedRequestCount = report.getMetadata().get("failedRequestCount");
+        boolean failed = Boolean.TRUE.equals(report.getMetadata().get(CodeAnalysisService.METADATA_LLM_FAILED));
+        TokenUsage usage = CodeAnalysisService.getUsage(report);
+
+        synchronized (this) {
+            DailyUsage day = getOrCreateDay(LocalDate.now().toString());
+            day.reviews++;
+            // 按实际发出的请求计数，包括重试，与限流器的计数一致
+            day.requests += ((Number) attempts).intValue();
+            // 合并报告中为失败的审查请求数，单个请求的报告中只有是否失败
+            day.failedRequests += failedRequestCount instanceof Number
+                    ? ((Number) failedRequestCount).intValue() : failed ? 1 : 0;
+            day.latencyMillis += latency instanceof Number ? ((Number) latency).longValue() : 0;
+            if (usage != null) {
+                day.promptTokens += usage.getPromptTokens();
+                day.completionTokens += usage.getCompletionTokens();
+                day.cachedTokens += usage.getCachedTokens();
+                day.cacheWriteTokens += usage.getCacheWriteTokens();
+            }
+        }
+    }
+
+    /**
+     * 最近days天的每日汇总（副本），按日期升序
+     */
+    @NotNull
+    public synchronized List<DailyUsage> getDailyUsage(int days) {
+        String since = LocalDate.now().minusDays(Math.max(0, days - 1)).toString();
+        List<DailyUsage> result = new ArrayList<>();
+        for (DailyUsage day : state.days) {
+            if (day.date.compareTo(since) >= 0) {
+                result.add(copy(day));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 最近days天的合计，date为起始日期
+     */
+    @NotNull
+    public DailyUsage getTotal(int days) {
+        DailyUsage total = new DailyUsage();
+        total.date = LocalDate.now().minusDays(Math.max(0, days - 1)).toString();
+        for (DailyUsage day : getDailyUsage(days)) {
+            total.reviews += day.reviews;
+            total.requests += day.requests;
+            total.failedRequests += day.failedRequests;
+            total.promptTokens += day.promptTokens;
+            total.completionTokens += day.completionTokens;
+            total.cachedTokens += day.cachedTokens;
+            total.cacheWriteTokens += day.cacheWriteTokens;
+            total.latencyMillis += day.latencyMillis;
+        }
+        return total;
+    }
+
+    /**
+     * 清空台账
+     */
+    public synchronized void clear() {
+        state.days.clear();
+    }
+
+    /**
+     * 获取当天的汇总，没有时追加，并删除超过保留期的记录
+     */
+    @NotNull
+    private DailyUsage getOrCreateDay(@NotNull String date) {
+        List<DailyUsage> days = state.days;
+        if (!days.isEmpty() && date.equals(days.get(days.size() - 1).date)) {
+            return days.get(days.size() - 1);
+        }
+
+        DailyUsage day = new DailyUsage();
+        day.date = date;
+        days.add(day);
+        String oldest = LocalDate.now().minusDays(RETENTION_DAYS - 1).toString();
+        days.removeIf(existing -> existing.date.compareTo(oldest) < 0);
+        return day;
+    }
+
+    @NotNull
+    private static DailyUsage copy(@NotNull DailyUsage day) {
+        DailyUsage copy = new DailyUsage();
+        copy.date = day.date;
+        copy.reviews = day.reviews;
+        copy.requests = day.requests;
+        copy.failedRequests = day.failedRequests;
+        copy.promptTokens = day.promptTokens;
+        copy.completionTokens = day.completionTokens;
+        copy.cachedTokens = day.cachedTokens;
+        copy.cacheWriteTokens = day.cacheWriteTokens;
+        copy.latencyMillis = day.latencyMillis;
+        return copy;
+    }
+}
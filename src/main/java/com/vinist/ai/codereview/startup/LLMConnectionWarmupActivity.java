@@ -0,0 +1,18 @@
+package com.vinist.ai.codereview.startup;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import com.vinist.ai.codereview.services.LLMClientService;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 项目打开后预热LLM连接
+ * 第一次提交审查时无需再等待DNS解析和TCP、TLS握手
+ */
+public class LLMConnectionWarmupActivity implements StartupActivity.DumbAware {
+    
+    @Override
+    public void runActivity(@NotNull Project project) {
+        LLMClientService.getInstance().warmUp();
+    }
+}
@@ -1,10 +1,15 @@
 package com.vinist.ai.codereview.ui;
 
 import com.intellij.openapi.options.ConfigurationException;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.ComboBox;
+import com.vinist.ai.codereview.llm.ConnectivityProbe;
 import com.vinist.ai.codereview.models.IssueSeverity;
+import com.vinist.ai.codereview.services.LLMClientService;
 import com.vinist.ai.codereview.services.LLMConfigService;
+import com.vinist.ai.codereview.services.PromptTemplateService;
+import com.vinist.ai.codereview.services.ReviewCacheService;
 import com.vinist.ai.codereview.services.ReviewSettingsService;
 import org.jetbrains.annotations.NotNull;
 
@@ -12,6 +17,10 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -30,6 +39,27 @@ public class AICodeReviewSettingsPanel {
     private JSpinner temperatureSpinner;
     private JSpinner timeoutSpinner;
     private JTextField proxyField;
+    private JCheckBox enableStreamingCheckBox;
+    private JSpinner maxConcurrentRequestsSpinner;
+    private JSpinner fileGroupTokenBudgetSpinner;
+    private JSpinner requestsPerMinuteSpinner;
+    private JSpinner tokensPerMinuteSpinner;
+    private JSpinner rateLimitMaxWaitSpinner;
+    private JSpinner maxRetriesSpinner;
+    private JSpinner retryBaseDelaySpinner;
+    private JSpinner retryMaxDelaySpinner;
+    private JCheckBox enableHedgingCheckBox;
+    private JSpinner hedgePercentileSpinner;
+    private JTextArea additionalEndpointsArea;
+    private JComboBox<String> loadBalancingStrategyComboBox;
+    private JCheckBox enableCircuitBreakerCheckBox;
+    private JSpinner circuitBreakerThresholdSpinner;
+    private JSpinner circuitBreakerOpenSecondsSpinner;
+    private JCheckBox enableConnectionWarmupCheckBox;
+    private JSpinner keepAliveIntervalSpinner;
+    private JCheckBox enableRequestCompressionCheckBox;
+    private JCheckBox enablePromptCachingCheckBox;
+    private JCheckBox enableStreamUsageCheckBox;
     
     // 审查设置字段
     private JCheckBox enableAutoReviewCheckBox;
@@ -44,6 +74,27 @@ public class AICodeReviewSettingsPanel {
     private JSpinner maxIssuesPerFileSpinner;
     private JCheckBox enableSoundNotificationCheckBox;
     private JCheckBox saveReportsCheckBox;
+    private JCheckBox enableReviewCacheCheckBox;
+    private JCheckBox enableDiskCacheCheckBox;
+    private JCheckBox diffOnlyReviewCheckBox;
+    private JSpinner diffContextLinesSpinner;
+    private JCheckBox compactPromptCheckBox;
+    private JCheckBox structuredOutputCheckBox;
+    private JCheckBox stopOnBlockingIssueCheckBox;
+    private JCheckBox localPreScreenCheckBox;
+    
+    // 提示词模板字段
+    private JComboBox<String> templateLanguageComboBox;
+    private JComboBox<String> templateFocusComboBox;
+    private JTextField templateExtensionField;
+    private JTextArea promptTemplateArea;
+    private JButton restoreTemplateButton;
+    
+    /**
+     * 编辑中的自定义模板，与内置模板相同的不保存
+     */
+    private final Map<String, String> promptTemplates = new HashMap<>();
+    private String editingTemplateKey;
     
     // 测试按钮
     private JButton testConnectionButton;
@@ -79,6 +130,10 @@ public class AICodeReviewSettingsPanel {
         JPanel reviewPanel = createReviewSettingsPanel();
         tabbedPane.addTab("审查设置", reviewPanel);
         
+        // 提示词模板选项卡
+        JPanel templatePanel = createPromptTemplatePanel();
+        tabbedPane.addTab("提示词模板", templatePanel);
+        
         mainPanel.add(tabbedPane, BorderLayout.CENTER);
         
         // 底部按钮面板
@@ -151,6 +206,148 @@ public class AICodeReviewSettingsPanel {
         proxyField = new JTextField(30);
         panel.add(proxyField, gbc);
         
+        // 流式响应
+        gbc.gridx = 0; gbc.gridy = 8; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.NONE;
+        enableStreamingCheckBox = new JCheckBox("启用流式响应 (SSE)");
+        panel.add(enableStreamingCheckBox, gbc);
+        
+        // 最大并发请求数
+        gbc.gridx = 0; gbc.gridy = 9; gbc.gridwidth = 1; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("最大并发请求数:"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        maxConcurrentRequestsSpinner = new JSpinner(new SpinnerNumberModel(4, 1, 32, 1));
+        panel.add(maxConcurrentRequestsSpinner, gbc);
+        
+        // 每个请求的文件Token预算
+        gbc.gridx = 0; gbc.gridy = 10; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("单次请求Token预算:"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        fileGroupTokenBudgetSpinner = new JSpinner(new SpinnerNumberModel(3000, 500, 100000, 500));
+        panel.add(fileGroupTokenBudgetSpinner, gbc);
+        
+        // 限流：每分钟请求数
+        gbc.gridx = 0; gbc.gridy = 11; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("每分钟请求数 (0不限制):"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        requestsPerMinuteSpinner = new JSpinner(new SpinnerNumberModel(60, 0, 100000, 10));
+        requestsPerMinuteSpinner.setToolTipText(LLMClientService.getInstance().getRateLimiterStatus().toString());
+        panel.add(requestsPerMinuteSpinner, gbc);
+        
+        // 限流：每分钟Token数
+        gbc.gridx = 0; gbc.gridy = 12; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("每分钟Token数 (0不限制):"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        tokensPerMinuteSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 100000000, 10000));
+        panel.add(tokensPerMinuteSpinner, gbc);
+        
+        // 限流：最长排队时间
+        gbc.gridx = 0; gbc.gridy = 13; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("限流排队时间(秒):"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        rateLimitMaxWaitSpinner = new JSpinner(new SpinnerNumberModel(30, 0, 600, 5));
+        panel.add(rateLimitMaxWaitSpinner, gbc);
+        
+        // 重试：最大重试次数
+        gbc.gridx = 0; gbc.gridy = 14; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("最大重试次数:"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        maxRetriesSpinner = new JSpinner(new SpinnerNumberModel(3, 0, 10, 1));
+        maxRetriesSpinner.setToolTipText("408/429/5xx及连接失败时自动重试，总时长不超过超时时间");
+        panel.add(maxRetriesSpinner, gbc);
+        
+        // 重试：初始间隔
+        gbc.gridx = 0; gbc.gridy = 15; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("重试初始间隔(毫秒):"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        retryBaseDelaySpinner = new JSpinner(new SpinnerNumberModel(500, 50, 120000, 100));
+        panel.add(retryBaseDelaySpinner, gbc);
+        
+        // 重试：最大间隔
+        gbc.gridx = 0; gbc.gridy = 16; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("重试最大间隔(毫秒):"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        retryMaxDelaySpinner = new JSpinner(new SpinnerNumberModel(8000, 50, 120000, 1000));
+        panel.add(retryMaxDelaySpinner, gbc);
+        
+        // 对冲请求
+        gbc.gridx = 0; gbc.gridy = 17; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.NONE;
+        enableHedgingCheckBox = new JCheckBox("启用对冲请求 (主端点响应慢时向备用端点发送相同请求，采用先返回的结果)");
+        enableHedgingCheckBox.setToolTipText(LLMClientService.getInstance().getHedgingStatistics());
+        panel.add(enableHedgingCheckBox, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 18; gbc.gridwidth = 1; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("对冲触发延迟百分位 (p):"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        hedgePercentileSpinner = new JSpinner(new SpinnerNumberModel(95, 50, 99, 1));
+        panel.add(hedgePercentileSpinner, gbc);
+        
+        // 附加端点
+        gbc.gridx = 0; gbc.gridy = 19; gbc.fill = GridBagConstraints.NONE; gbc.anchor = GridBagConstraints.NORTHWEST;
+        panel.add(new JLabel("附加端点:"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL; gbc.anchor = GridBagConstraints.WEST;
+        additionalEndpointsArea = new JTextArea(3, 30);
+        additionalEndpointsArea.setToolTipText("每行一个: API URL | 模型(可选) | API密钥(可选)，用于故障转移和对冲请求");
+        panel.add(new JScrollPane(additionalEndpointsArea), gbc);
+        
+        // 负载均衡策略
+        gbc.gridx = 0; gbc.gridy = 20; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("负载均衡策略:"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        loadBalancingStrategyComboBox = new ComboBox<>(new String[]{"PRIORITY", "LEAST_OUTSTANDING", "EWMA"});
+        loadBalancingStrategyComboBox.setToolTipText("<html>PRIORITY: 优先使用主端点，附加端点用于故障转移<br>"
+                + "LEAST_OUTSTANDING: 进行中请求最少的端点<br>EWMA: 延迟加权最小的端点<br><pre>"
+                + LLMClientService.getInstance().getEndpointStatus() + "</pre></html>");
+        panel.add(loadBalancingStrategyComboBox, gbc);
+        
+        // 熔断
+        gbc.gridx = 0; gbc.gridy = 21; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.NONE;
+        enableCircuitBreakerCheckBox = new JCheckBox("启用熔断 (LLM服务连续故障时暂停请求，提交时跳过审查)");
+        enableCircuitBreakerCheckBox.setToolTipText(LLMClientService.getInstance().getCircuitBreakerStatus());
+        panel.add(enableCircuitBreakerCheckBox, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 22; gbc.gridwidth = 1; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("熔断连续失败阈值:"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        circuitBreakerThresholdSpinner = new JSpinner(new SpinnerNumberModel(5, 1, 100, 1));
+        panel.add(circuitBreakerThresholdSpinner, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 23; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("熔断暂停时间 (秒):"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        circuitBreakerOpenSecondsSpinner = new JSpinner(new SpinnerNumberModel(30, 1, 3600, 5));
+        circuitBreakerOpenSecondsSpinner.setToolTipText("暂停到期后放行一个请求试探，试探失败时暂停时间翻倍，最长5分钟");
+        panel.add(circuitBreakerOpenSecondsSpinner, gbc);
+        
+        // 连接预热
+        gbc.gridx = 0; gbc.gridy = 24; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.NONE;
+        enableConnectionWarmupCheckBox = new JCheckBox("启动时预热连接 (提前完成DNS解析和TLS握手)");
+        enableConnectionWarmupCheckBox.setToolTipText("<html><pre>" + LLMClientService.getInstance().getConnectionStatus() + "</pre></html>");
+        panel.add(enableConnectionWarmupCheckBox, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 25; gbc.gridwidth = 1; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("连接保活间隔 (秒):"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        keepAliveIntervalSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 3600, 30));
+        keepAliveIntervalSpinner.setToolTipText("连接空闲超过该时间时发送一次HEAD请求保持连接，默认0表示不保活");
+        panel.add(keepAliveIntervalSpinner, gbc);
+        
+        // 请求压缩
+        gbc.gridx = 0; gbc.gridy = 26; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.NONE;
+        enableRequestCompressionCheckBox = new JCheckBox("gzip压缩请求体 (需要API网关支持 Content-Encoding: gzip)");
+        panel.add(enableRequestCompressionCheckBox, gbc);
+        
+        // 提示词前缀缓存
+        gbc.gridx = 0; gbc.gridy = 27; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.NONE;
+        enablePromptCachingCheckBox = new JCheckBox("提示词前缀缓存 (固定的审查说明作为system消息发送，Claude模型附加cache_control)");
+        enablePromptCachingCheckBox.setToolTipText(LLMClientService.getInstance().getPromptCacheStatistics());
+        panel.add(enablePromptCachingCheckBox, gbc);
+        
+        // 流式响应的Token用量
+        gbc.gridx = 0; gbc.gridy = 28; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.NONE;
+        enableStreamUsageCheckBox = new JCheckBox("流式响应返回Token用量 (stream_options.include_usage)");
+        enableStreamUsageCheckBox.setToolTipText("端点不支持该参数返回400时，自动去掉该参数重试，本次会话中不再发送");
+        panel.add(enableStreamUsageCheckBox, gbc);
+        
         return panel;
     }
     
@@ -203,15 +400,26 @@ public class AICodeReviewSettingsPanel {
         saveReportsCheckBox = new JCheckBox("保存报告到文件");
         panel.add(saveReportsCheckBox, gbc);
         
+        // 审查结果缓存
+        gbc.gridy = 8;
+        enableReviewCacheCheckBox = new JCheckBox("缓存未修改文件的审查结果");
+        enableReviewCacheCheckBox.setToolTipText(ReviewCacheService.getInstance().getStatistics());
+        panel.add(enableReviewCacheCheckBox, gbc);
+        
+        // 磁盘缓存
+        gbc.gridy = 9;
+        enableDiskCacheCheckBox = new JCheckBox("重启IDE后保留缓存（磁盘缓存）");
+        panel.add(enableDiskCacheCheckBox, gbc);
+        
         // 审查语言
-        gbc.gridx = 0; gbc.gridy = 8; gbc.gridwidth = 1;
+        gbc.gridx = 0; gbc.gridy = 10; gbc.gridwidth = 1;
         panel.add(new JLabel("审查语言:"), gbc);
         gbc.gridx = 1;
         reviewLanguageComboBox = new ComboBox<>(new String[]{"Chinese", "English"});
         panel.add(reviewLanguageComboBox, gbc);
         
         // 审查重点
-        gbc.gridx = 0; gbc.gridy = 9;
+        gbc.gridx = 0; gbc.gridy = 11;
         panel.add(new JLabel("审查重点:"), gbc);
         gbc.gridx = 1;
         reviewFocusComboBox = new ComboBox<>(new String[]{
@@ -220,19 +428,105 @@ public class AICodeReviewSettingsPanel {
         panel.add(reviewFocusComboBox, gbc);
         
         // 最小严重程度
-        gbc.gridx = 0; gbc.gridy = 10;
+        gbc.gridx = 0; gbc.gridy = 12;
         panel.add(new JLabel("最小严重程度:"), gbc);
         gbc.gridx = 1;
         minSeverityComboBox = new ComboBox<>(IssueSeverity.values());
         panel.add(minSeverityComboBox, gbc);
         
         // 每个文件最大问题数
-        gbc.gridx = 0; gbc.gridy = 11;
+        gbc.gridx = 0; gbc.gridy = 13;
         panel.add(new JLabel("每个文件最大问题数:"), gbc);
         gbc.gridx = 1;
         maxIssuesPerFileSpinner = new JSpinner(new SpinnerNumberModel(50, 1, 200, 5));
         panel.add(maxIssuesPerFileSpinner, gbc);
         
+        // 差异模式
+        gbc.gridx = 0; gbc.gridy = 14; gbc.gridwidth = 2;
+        diffOnlyReviewCheckBox = new JCheckBox("仅审查变更部分（差异模式）");
+        panel.add(diffOnlyReviewCheckBox, gbc);
+        
+        // 差异上下文行数
+        gbc.gridx = 0; gbc.gridy = 15; gbc.gridwidth = 1;
+        panel.add(new JLabel("差异上下文行数:"), gbc);
+        gbc.gridx = 1;
+        diffContextLinesSpinner = new JSpinner(new SpinnerNumberModel(3, 0, 100, 1));
+        panel.add(diffContextLinesSpinner, gbc);
+        
+        // 精简提示词
+        gbc.gridx = 0; gbc.gridy = 16; gbc.gridwidth = 2;
+        compactPromptCheckBox = new JCheckBox("精简提示词（去掉许可证头、导入语句和多余空白，减少Token消耗）");
+        panel.add(compactPromptCheckBox, gbc);
+        
+        // 结构化输出
+        gbc.gridx = 0; gbc.gridy = 17; gbc.gridwidth = 2;
+        structuredOutputCheckBox = new JCheckBox("结构化输出（要求模型以JSON返回问题，解析失败时按文本解析）");
+        panel.add(structuredOutputCheckBox, gbc);
+        
+        // 提交检查发现严重问题时立即停止
+        gbc.gridx = 0; gbc.gridy = 18; gbc.gridwidth = 2;
+        stopOnBlockingIssueCheckBox = new JCheckBox("提交前审查发现ERROR/CRITICAL问题时立即停止，不再等待其余结果");
+        stopOnBlockingIssueCheckBox.setToolTipText("启用后提交前审查总是使用流式响应，以便停止时断开进行中的请求");
+        panel.add(stopOnBlockingIssueCheckBox, gbc);
+        
+        // 本地预检
+        gbc.gridx = 0; gbc.gridy = 19; gbc.gridwidth = 2;
+        localPreScreenCheckBox = new JCheckBox("本地预检（仅空白、导入顺序、版本号变化和生成的文件不调用AI审查）");
+        panel.add(localPreScreenCheckBox, gbc);
+        
+        return panel;
+    }
+    
+    /**
+     * 创建提示词模板面板
+     */
+    private JPanel createPromptTemplatePanel() {
+        JPanel panel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.anchor = GridBagConstraints.WEST;
+        
+        // 模板语言
+        gbc.gridx = 0; gbc.gridy = 0;
+        panel.add(new JLabel("审查语言:"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        templateLanguageComboBox = new ComboBox<>(new String[]{"Chinese", "English"});
+        panel.add(templateLanguageComboBox, gbc);
+        
+        // 模板审查重点
+        gbc.gridx = 0; gbc.gridy = 1; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("审查重点:"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        templateFocusComboBox = new ComboBox<>(new String[]{
+            PromptTemplateService.ANY, "comprehensive", "security", "performance", "maintainability", "bugs"
+        });
+        panel.add(templateFocusComboBox, gbc);
+        
+        // 文件扩展名
+        gbc.gridx = 0; gbc.gridy = 2; gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("文件扩展名:"), gbc);
+        gbc.gridx = 1; gbc.fill = GridBagConstraints.HORIZONTAL;
+        templateExtensionField = new JTextField(PromptTemplateService.ANY, 10);
+        templateExtensionField.setToolTipText("如 java、kt，* 表示任意文件类型");
+        panel.add(templateExtensionField, gbc);
+        
+        // 模板内容
+        gbc.gridx = 0; gbc.gridy = 3; gbc.gridwidth = 2;
+        gbc.fill = GridBagConstraints.BOTH; gbc.weightx = 1.0; gbc.weighty = 1.0;
+        promptTemplateArea = new JTextArea(16, 60);
+        promptTemplateArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, promptTemplateArea.getFont().getSize()));
+        panel.add(new JScrollPane(promptTemplateArea), gbc);
+        
+        // 可用变量说明
+        gbc.gridy = 4; gbc.fill = GridBagConstraints.HORIZONTAL; gbc.weighty = 0;
+        panel.add(new JLabel("<html>可用变量: ${fileName} 文件名, ${code} 代码内容（必需）, ${diffNote} 差异片段说明, "
+                + "${focus} 审查重点, ${format} 输出格式说明, ${extension} 扩展名, ${language} 审查语言; $$ 表示 $。<br>"
+                + "按 语言+重点+扩展名、任意重点、任意扩展名 的顺序匹配，都没有时使用内置模板</html>"), gbc);
+        
+        gbc.gridy = 5; gbc.fill = GridBagConstraints.NONE; gbc.anchor = GridBagConstraints.EAST;
+        restoreTemplateButton = new JButton("恢复默认");
+        panel.add(restoreTemplateButton, gbc);
+        
         return panel;
     }
     
@@ -278,6 +572,70 @@ public class AICodeReviewSettingsPanel {
                 resetToDefaults();
             }
         });
+        
+        // 切换编辑的提示词模板
+        templateLanguageComboBox.addActionListener(e -> switchPromptTemplate());
+        templateFocusComboBox.addActionListener(e -> switchPromptTemplate());
+        templateExtensionField.addActionListener(e -> switchPromptTemplate());
+        templateExtensionField.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                switchPromptTemplate();
+            }
+        });
+        restoreTemplateButton.addActionListener(e -> promptTemplateArea.setText(
+                PromptTemplateService.getDefaultTemplate((String) templateLanguageComboBox.getSelectedItem())));
+    }
+    
+    /**
+     * 保存正在编辑的模板，并切换到当前选择的语言、重点和扩展名对应的模板
+     */
+    private void switchPromptTemplate() {
+        String key = getSelectedTemplateKey();
+        if (key.equals(editingTemplateKey)) {
+            return;
+        }
+        storeEditingTemplate();
+        editingTemplateKey = key;
+        String language = (String) templateLanguageComboBox.getSelectedItem();
+        promptTemplateArea.setText(promptTemplates.getOrDefault(key, PromptTemplateService.getDefaultTemplate(language)));
+        promptTemplateArea.setCaretPosition(0);
+    }
+    
+    /**
+     * 把编辑中的模板写入工作副本，与内置模板相同或为空时视为未自定义
+     */
+    private void storeEditingTemplate() {
+        if (editingTemplateKey == null) {
+            return;
+        }
+        String language = editingTemplateKey.substring(0, editingTemplateKey.indexOf('|'));
+        String text = promptTemplateArea.getText();
+        if (text.trim().isEmpty() || text.equals(PromptTemplateService.getDefaultTemplate(language))) {
+            promptTemplates.remove(editingTemplateKey);
+        } else {
+            promptTemplates.put(editingTemplateKey, text);
+        }
+    }
+    
+    private String getSelectedTemplateKey() {
+        String extension = templateExtensionField.getText().trim();
+        if (extension.startsWith(".")) {
+            extension = extension.substring(1);
+        }
+        if (extension.isEmpty()) {
+            extension = PromptTemplateService.ANY;
+        }
+        return PromptTemplateService.templateKey((String) templateLanguageComboBox.getSelectedItem(),
+                (String) templateFocusComboBox.getSelectedItem(), extension);
+    }
+    
+    /**
+     * 面板中的全部自定义模板
+     */
+    private Map<String, String> collectPromptTemplates() {
+        storeEditingTemplate();
+        return new HashMap<>(promptTemplates);
     }
     
     /**
@@ -310,13 +668,16 @@ public class AICodeReviewSettingsPanel {
             // 先应用当前设置
             applySettings();
             
-            // 测试连接
-            boolean success = llmConfigService.testConnection();
+            // 请求模型列表或只生成1个Token，不进行完整的审查
+            ConnectivityProbe.Result result = ProgressManager.getInstance().runProcessWithProgressSynchronously(
+                    () -> LLMClientService.getInstance().probeConnection(), "测试连接", true, project);
             
-            if (success) {
-                JOptionPane.showMessageDialog(mainPanel, "连接测试成功！", "测试结果", JOptionPane.INFORMATION_MESSAGE);
+            if (result.isSuccess()) {
+                JOptionPane.showMessageDialog(mainPanel, "连接测试成功！\n" + result, "测试结果", JOptionPane.INFORMATION_MESSAGE);
+            } else if (result.getStatusCode() == 401 || result.getStatusCode() == 403) {
+                JOptionPane.showMessageDialog(mainPanel, "API密钥无效或无权限。\n" + result, "测试结果", JOptionPane.ERROR_MESSAGE);
             } else {
-                JOptionPane.showMessageDialog(mainPanel, "连接测试失败，请检查配置。", "测试结果", JOptionPane.ERROR_MESSAGE);
+                JOptionPane.showMessageDialog(mainPanel, "连接测试失败，请检查配置。\n" + result, "测试结果", JOptionPane.ERROR_MESSAGE);
             }
             
         } catch (Exception e) {
@@ -355,6 +716,27 @@ public class AICodeReviewSettingsPanel {
         temperatureSpinner.setValue(llmConfigService.getTemperature());
         timeoutSpinner.setValue(llmConfigService.getTimeout());
         proxyField.setText(llmConfigService.getProxy());
+        enableStreamingCheckBox.setSelected(llmConfigService.isEnableStreaming());
+        maxConcurrentRequestsSpinner.setValue(llmConfigService.getMaxConcurrentRequests());
+        fileGroupTokenBudgetSpinner.setValue(llmConfigService.getFileGroupTokenBudget());
+        requestsPerMinuteSpinner.setValue(llmConfigService.getRequestsPerMinute());
+        tokensPerMinuteSpinner.setValue(llmConfigService.getTokensPerMinute());
+        rateLimitMaxWaitSpinner.setValue(llmConfigService.getRateLimitMaxWaitSeconds());
+        maxRetriesSpinner.setValue(llmConfigService.getMaxRetries());
+        retryBaseDelaySpinner.setValue(llmConfigService.getRetryBaseDelayMillis());
+        retryMaxDelaySpinner.setValue(llmConfigService.getRetryMaxDelayMillis());
+        enableHedgingCheckBox.setSelected(llmConfigService.isEnableHedging());
+        hedgePercentileSpinner.setValue(llmConfigService.getHedgePercentile());
+        additionalEndpointsArea.setText(llmConfigService.getAdditionalEndpoints());
+        loadBalancingStrategyComboBox.setSelectedItem(llmConfigService.getLoadBalancingStrategy());
+        enableCircuitBreakerCheckBox.setSelected(llmConfigService.isEnableCircuitBreaker());
+        circuitBreakerThresholdSpinner.setValue(llmConfigService.getCircuitBreakerFailureThreshold());
+        circuitBreakerOpenSecondsSpinner.setValue(llmConfigService.getCircuitBreakerOpenSeconds());
+        enableConnectionWarmupCheckBox.setSelected(llmConfigService.isEnableConnectionWarmup());
+        keepAliveIntervalSpinner.setValue(llmConfigService.getKeepAliveIntervalSeconds());
+        enableRequestCompressionCheckBox.setSelected(llmConfigService.isEnableRequestCompression());
+        enablePromptCachingCheckBox.setSelected(llmConfigService.isEnablePromptCaching());
+        enableStreamUsageCheckBox.setSelected(llmConfigService.isEnableStreamUsage());
         
         // 加载审查设置
         enableAutoReviewCheckBox.setSelected(reviewSettingsService.isEnableAutoReview());
@@ -369,6 +751,20 @@ public class AICodeReviewSettingsPanel {
         maxIssuesPerFileSpinner.setValue(reviewSettingsService.getMaxIssuesPerFile());
         enableSoundNotificationCheckBox.setSelected(reviewSettingsService.isEnableSoundNotification());
         saveReportsCheckBox.setSelected(reviewSettingsService.isSaveReports());
+        enableReviewCacheCheckBox.setSelected(reviewSettingsService.isEnableReviewCache());
+        enableDiskCacheCheckBox.setSelected(reviewSettingsService.isEnableDiskCache());
+        diffOnlyReviewCheckBox.setSelected(reviewSettingsService.isDiffOnlyReview());
+        diffContextLinesSpinner.setValue(reviewSettingsService.getDiffContextLines());
+        compactPromptCheckBox.setSelected(reviewSettingsService.isCompactPrompt());
+        structuredOutputCheckBox.setSelected(reviewSettingsService.isStructuredOutput());
+        stopOnBlockingIssueCheckBox.setSelected(reviewSettingsService.isStopOnBlockingIssue());
+        localPreScreenCheckBox.setSelected(reviewSettingsService.isLocalPreScreen());
+        
+        // 加载提示词模板
+        promptTemplates.clear();
+        promptTemplates.putAll(reviewSettingsService.getPromptTemplates());
+        editingTemplateKey = null;
+        switchPromptTemplate();
     }
     
     /**
@@ -385,6 +781,27 @@ public class AICodeReviewSettingsPanel {
             llmConfigService.setTemperature((Double) temperatureSpinner.getValue());
             llmConfigService.setTimeout((Integer) timeoutSpinner.getValue());
             llmConfigService.setProxy(proxyField.getText());
+            llmConfigService.setEnableStreaming(enableStreamingCheckBox.isSelected());
+            llmConfigService.setMaxConcurrentRequests((Integer) maxConcurrentRequestsSpinner.getValue());
+            llmConfigService.setFileGroupTokenBudget((Integer) fileGroupTokenBudgetSpinner.getValue());
+            llmConfigService.setRequestsPerMinute((Integer) requestsPerMinuteSpinner.getValue());
+            llmConfigService.setTokensPerMinute((Integer) tokensPerMinuteSpinner.getValue());
+            llmConfigService.setRateLimitMaxWaitSeconds((Integer) rateLimitMaxWaitSpinner.getValue());
+            llmConfigService.setMaxRetries((Integer) maxRetriesSpinner.getValue());
+            llmConfigService.setRetryBaseDelayMillis((Integer) retryBaseDelaySpinner.getValue());
+            llmConfigService.setRetryMaxDelayMillis((Integer) retryMaxDelaySpinner.getValue());
+            llmConfigService.setEnableHedging(enableHedgingCheckBox.isSelected());
+            llmConfigService.setHedgePercentile((Integer) hedgePercentileSpinner.getValue());
+            llmConfigService.setAdditionalEndpoints(additionalEndpointsArea.getText());
+            llmConfigService.setLoadBalancingStrategy((String) loadBalancingStrategyComboBox.getSelectedItem());
+            llmConfigService.setEnableCircuitBreaker(enableCircuitBreakerCheckBox.isSelected());
+            llmConfigService.setCircuitBreakerFailureThreshold((Integer) circuitBreakerThresholdSpinner.getValue());
+            llmConfigService.setCircuitBreakerOpenSeconds((Integer) circuitBreakerOpenSecondsSpinner.getValue());
+            llmConfigService.setEnableConnectionWarmup(enableConnectionWarmupCheckBox.isSelected());
+            llmConfigService.setKeepAliveIntervalSeconds((Integer) keepAliveIntervalSpinner.getValue());
+            llmConfigService.setEnableRequestCompression(enableRequestCompressionCheckBox.isSelected());
+            llmConfigService.setEnablePromptCaching(enablePromptCachingCheckBox.isSelected());
+            llmConfigService.setEnableStreamUsage(enableStreamUsageCheckBox.isSelected());
             
             // 应用审查设置
             reviewSettingsService.setEnableAutoReview(enableAutoReviewCheckBox.isSelected());
@@ -399,11 +816,36 @@ public class AICodeReviewSettingsPanel {
             reviewSettingsService.setMaxIssuesPerFile((Integer) maxIssuesPerFileSpinner.getValue());
             reviewSettingsService.setEnableSoundNotification(enableSoundNotificationCheckBox.isSelected());
             reviewSettingsService.setSaveReports(saveReportsCheckBox.isSelected());
+            reviewSettingsService.setEnableReviewCache(enableReviewCacheCheckBox.isSelected());
+            reviewSettingsService.setEnableDiskCache(enableDiskCacheCheckBox.isSelected());
+            reviewSettingsService.setDiffOnlyReview(diffOnlyReviewCheckBox.isSelected());
+            reviewSettingsService.setDiffContextLines((Integer) diffContextLinesSpinner.getValue());
+            reviewSettingsService.setCompactPrompt(compactPromptCheckBox.isSelected());
+            reviewSettingsService.setStructuredOutput(structuredOutputCheckBox.isSelected());
+            reviewSettingsService.setStopOnBlockingIssue(stopOnBlockingIssueCheckBox.isSelected());
+            reviewSettingsService.setLocalPreScreen(localPreScreenCheckBox.isSelected());
+            
+            // 应用提示词模板
+            Map<String, String> templates = collectPromptTemplates();
+            for (Map.Entry<String, String> entry : templates.entrySet()) {
+                String templateError = PromptTemplateService.validateTemplate(entry.getValue());
+                if (templateError != null) {
+                    throw new ConfigurationException("提示词模板 " + entry.getKey() + " 无效：" + templateError);
+                }
+            }
+            reviewSettingsService.setPromptTemplates(templates);
             
             // 验证配置
             if (!llmConfigService.isConfigured()) {
                 throw new ConfigurationException("LLM配置不完整，请检查API密钥和URL设置。");
             }
+            String endpointError = LLMConfigService.validateAdditionalEndpoints(additionalEndpointsArea.getText());
+            if (endpointError != null) {
+                throw new ConfigurationException(endpointError);
+            }
+            
+            // 端点可能已变更，重新预热连接
+            LLMClientService.getInstance().warmUp();
             
         } catch (Exception e) {
             throw new ConfigurationException("保存配置时发生错误: " + e.getMessage());
@@ -422,7 +864,28 @@ public class AICodeReviewSettingsPanel {
             !Objects.equals(llmConfigService.getMaxTokens(), (Integer) maxTokensSpinner.getValue()) ||
             !Objects.equals(llmConfigService.getTemperature(), (Double) temperatureSpinner.getValue()) ||
             !Objects.equals(llmConfigService.getTimeout(), (Integer) timeoutSpinner.getValue()) ||
-            !llmConfigService.getProxy().equals(proxyField.getText())) {
+            !llmConfigService.getProxy().equals(proxyField.getText()) ||
+            llmConfigService.isEnableStreaming() != enableStreamingCheckBox.isSelected() ||
+            !Objects.equals(llmConfigService.getMaxConcurrentRequests(), (Integer) maxConcurrentRequestsSpinner.getValue()) ||
+            !Objects.equals(llmConfigService.getFileGroupTokenBudget(), (Integer) fileGroupTokenBudgetSpinner.getValue()) ||
+            !Objects.equals(llmConfigService.getRequestsPerMinute(), (Integer) requestsPerMinuteSpinner.getValue()) ||
+            !Objects.equals(llmConfigService.getTokensPerMinute(), (Integer) tokensPerMinuteSpinner.getValue()) ||
+            !Objects.equals(llmConfigService.getRateLimitMaxWaitSeconds(), (Integer) rateLimitMaxWaitSpinner.getValue()) ||
+            !Objects.equals(llmConfigService.getMaxRetries(), (Integer) maxRetriesSpinner.getValue()) ||
+            !Objects.equals(llmConfigService.getRetryBaseDelayMillis(), (Integer) retryBaseDelaySpinner.getValue()) ||
+            !Objects.equals(llmConfigService.getRetryMaxDelayMillis(), (Integer) retryMaxDelaySpinner.getValue()) ||
+            llmConfigService.isEnableHedging() != enableHedgingCheckBox.isSelected() ||
+            !Objects.equals(llmConfigService.getHedgePercentile(), (Integer) hedgePercentileSpinner.getValue()) ||
+            !Objects.equals(llmConfigService.getAdditionalEndpoints(), additionalEndpointsArea.getText()) ||
+            !Objects.equals(llmConfigService.getLoadBalancingStrategy(), loadBalancingStrategyComboBox.getSelectedItem()) ||
+            llmConfigService.isEnableCircuitBreaker() != enableCircuitBreakerCheckBox.isSelected() ||
+            !Objects.equals(llmConfigService.getCircuitBreakerFailureThreshold(), (Integer) circuitBreakerThresholdSpinner.getValue()) ||
+            !Objects.equals(llmConfigService.getCircuitBreakerOpenSeconds(), (Integer) circuitBreakerOpenSecondsSpinner.getValue()) ||
+            llmConfigService.isEnableConnectionWarmup() != enableConnectionWarmupCheckBox.isSelected() ||
+            !Objects.equals(llmConfigService.getKeepAliveIntervalSeconds(), (Integer) keepAliveIntervalSpinner.getValue()) ||
+            llmConfigService.isEnableRequestCompression() != enableRequestCompressionCheckBox.isSelected() ||
+            llmConfigService.isEnablePromptCaching() != enablePromptCachingCheckBox.isSelected() ||
+            llmConfigService.isEnableStreamUsage() != enableStreamUsageCheckBox.isSelected()) {
             return true;
         }
         
@@ -438,7 +901,16 @@ public class AICodeReviewSettingsPanel {
             reviewSettingsService.isEnableCategoryFiltering() != enableCategoryFilteringCheckBox.isSelected() ||
             !Objects.equals(reviewSettingsService.getMaxIssuesPerFile(), (Integer) maxIssuesPerFileSpinner.getValue()) ||
             reviewSettingsService.isEnableSoundNotification() != enableSoundNotificationCheckBox.isSelected() ||
-            reviewSettingsService.isSaveReports() != saveReportsCheckBox.isSelected()) {
+            reviewSettingsService.isSaveReports() != saveReportsCheckBox.isSelected() ||
+            reviewSettingsService.isEnableReviewCache() != enableReviewCacheCheckBox.isSelected() ||
+            reviewSettingsService.isEnableDiskCache() != enableDiskCacheCheckBox.isSelected() ||
+            reviewSettingsService.isDiffOnlyReview() != diffOnlyReviewCheckBox.isSelected() ||
+            !Objects.equals(reviewSettingsService.getDiffContextLines(), (Integer) diffContextLinesSpinner.getValue()) ||
+            reviewSettingsService.isCompactPrompt() != compactPromptCheckBox.isSelected() ||
+            reviewSettingsService.isStructuredOutput() != structuredOutputCheckBox.isSelected() ||
+            reviewSettingsService.isStopOnBlockingIssue() != stopOnBlockingIssueCheckBox.isSelected() ||
+            reviewSettingsService.isLocalPreScreen() != localPreScreenCheckBox.isSelected() ||
+            !collectPromptTemplates().equals(reviewSettingsService.getPromptTemplates())) {
             return true;
         }
         
@@ -9,10 +9,16 @@ import com.intellij.openapi.vcs.changes.CommitContext;
 import com.intellij.openapi.vcs.ui.RefreshableOnComponent;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.util.ui.JBUI;
+import com.vinist.ai.codereview.models.CodeIssue;
 import com.vinist.ai.codereview.models.ReviewReport;
+import com.vinist.ai.codereview.models.ReviewTarget;
 import com.vinist.ai.codereview.services.CodeAnalysisService;
+import com.vinist.ai.codereview.services.LLMClientService;
 import com.vinist.ai.codereview.services.LLMConfigService;
+import com.vinist.ai.codereview.services.ParallelReviewService;
 import com.vinist.ai.codereview.services.ReportGenerationService;
+import com.vinist.ai.codereview.services.ReviewSettingsService;
+import com.vinist.ai.codereview.utils.GitUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -21,8 +27,10 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Git提交窗口的AI评审小图标组件
@@ -35,6 +43,7 @@ public class CommitReviewIconComponent implements RefreshableOnComponent {
     private final LLMConfigService llmConfigService;
     private final CodeAnalysisService codeAnalysisService;
     private final ReportGenerationService reportGenerationService;
+    private final ParallelReviewService parallelReviewService;
     private final AtomicBoolean reviewInProgress = new AtomicBoolean(false);
     
     private JPanel mainPanel;
@@ -48,6 +57,7 @@ public class CommitReviewIconComponent implements RefreshableOnComponent {
         this.llmConfigService = LLMConfigService.getInstance();
         this.codeAnalysisService = CodeAnalysisService.getInstance();
         this.reportGenerationService = ReportGenerationService.getInstance();
+        this.parallelReviewService = ParallelReviewService.getInstance();
         
         initializeUI();
     }
@@ -153,35 +163,34 @@ public class CommitReviewIconComponent implements RefreshableOnComponent {
         
         CompletableFuture.supplyAsync(() -> {
             try {
-                // 构建要分析的代码内容
-                StringBuilder codeContent = new StringBuilder();
-                for (Change change : changes) {
-                    if (change.getAfterRevision() != null && change.getAfterRevision().getFile() != null) {
-                        String fileName = change.getAfterRevision().getFile().getName();
-                        if (codeAnalysisService.shouldReviewFile(fileName)) {
-                            try {
-                                String content = change.getAfterRevision().getContent();
-                                if (content != null) {
-                                    codeContent.append("File: ").append(fileName).append("\n");
-                                    codeContent.append(content).append("\n\n");
-                                }
-                            } catch (Exception e) {
-                                // 忽略单个文件的错误
-                            }
-                        }
-                    }
-                }
-                
-                if (codeContent.length() == 0) {
+                // 收集要审查的文件
+                ReviewSettingsService reviewSettingsService = ReviewSettingsService.getInstance();
+                List<ReviewTarget> targets = GitUtils.getReviewTargets(changes,
+                        reviewSettingsService.isDiffOnlyReview(), reviewSettingsService.getDiffContextLines(),
+                        reviewSettingsService.isLocalPreScreen());
+                if (targets.stream().noneMatch(target -> codeAnalysisService.shouldReviewFile(target.getFileName()))) {
                     throw new RuntimeException("No reviewable files found");
                 }
                 
-                return codeAnalysisService.analyzeCode(codeContent.toString(), "commit-review");
+                // 按文件并发审查，每完成一组文件或发现一个问题就刷新状态栏
+                AtomicInteger issueCount = new AtomicInteger();
+                return parallelReviewService.reviewTargets(targets, new ParallelReviewService.ReviewProgressListener() {
+                    @Override
+                    public void onIssue(@NotNull CodeIssue issue) {
+                        showLoadingState("Analyzing code... " + issueCount.incrementAndGet() + " issue(s) found");
+                    }
+                    
+                    @Override
+                    public void onProgress(int reviewedFiles, int totalFiles) {
+                        showLoadingState("Reviewed " + reviewedFiles + "/" + totalFiles + " files, "
+                                + issueCount.get() + " issue(s) found");
+                    }
+                });
                 
             } catch (Exception e) {
                 throw new RuntimeException("Code analysis failed: " + e.getMessage(), e);
             }
-        }).whenComplete((report, throwable) -> {
+        }, LLMClientService.getInstance().getAsyncExecutor()).whenComplete((report, throwable) -> {
             SwingUtilities.invokeLater(() -> {
                 hideLoadingState();
                 reviewInProgress.set(false);
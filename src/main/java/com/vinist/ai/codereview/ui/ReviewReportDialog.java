@@ -1,12 +1,17 @@
 package com.vinist.ai.codereview.ui;
 
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.DialogWrapper;
 import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.table.JBTable;
+import com.vinist.ai.codereview.llm.TokenUsage;
 import com.vinist.ai.codereview.models.IssueSeverity;
 import com.vinist.ai.codereview.models.CodeIssue;
 import com.vinist.ai.codereview.models.ReviewReport;
+import com.vinist.ai.codereview.services.CodeAnalysisService;
+import com.vinist.ai.codereview.services.TokenUsageLedgerService;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -29,17 +34,21 @@ import java.util.List;
 public class ReviewReportDialog extends DialogWrapper {
     
     private final Project project;
-    private final ReviewReport report;
+    private ReviewReport report;
+    private final List<CodeIssue> issues;
     private JBTable issuesTable;
     private IssueTableModel tableModel;
     private JTextArea summaryArea;
+    private JScrollPane summaryScroll;
     private JLabel statisticsLabel;
+    private JLabel usageLabel;
     private JComboBox<SeverityFilter> severityFilterCombo;
     
     public ReviewReportDialog(@NotNull Project project, @NotNull ReviewReport report) {
         super(project);
         this.project = project;
         this.report = report;
+        this.issues = new ArrayList<>(report.getIssues());
         
         setTitle("AI Code Review Report");
         setModal(true);
@@ -49,6 +58,50 @@ public class ReviewReportDialog extends DialogWrapper {
         updateStatistics();
     }
     
+    /**
+     * 实时报告对话框：非模态，审查过程中通过addIssue追加问题，审查完成后调用complete显示最终结果
+     */
+    public ReviewReportDialog(@NotNull Project project, @NotNull String fileName) {
+        this(project, new ReviewReport(fileName, ""));
+        setModal(false);
+        setTitle("AI Code Review Report - Reviewing...");
+    }
+    
+    /**
+     * 追加一个问题，可以在任意线程调用
+     */
+    public void addIssue(@NotNull CodeIssue issue) {
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (isDisposed()) {
+                return;
+            }
+            issues.add(issue);
+            SeverityFilter filter = (SeverityFilter) severityFilterCombo.getSelectedItem();
+            if (filter == null || filter.accepts(issue.getSeverity())) {
+                tableModel.addIssue(issue);
+            }
+            updateStatistics();
+        }, ModalityState.any());
+    }
+    
+    /**
+     * 审查完成，以最终报告（已换算行号并合并）替换实时追加的问题，并显示总结，可以在任意线程调用
+     */
+    public void complete(@NotNull ReviewReport finalReport) {
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (isDisposed()) {
+                return;
+            }
+            report = finalReport;
+            issues.clear();
+            issues.addAll(finalReport.getIssues());
+            applyFilter();
+            setSummary(finalReport.getSummary());
+            updateUsage();
+            setTitle("AI Code Review Report");
+        }, ModalityState.any());
+    }
+    
     @Nullable
     @Override
     protected JComponent createCenterPanel() {
@@ -118,23 +171,28 @@ public class ReviewReportDialog extends DialogWrapper {
         
         panel.add(infoPanel, BorderLayout.WEST);
         
-        // 摘要
-        if (report.getSummary() != null && !report.getSummary().trim().isEmpty()) {
-            summaryArea = new JTextArea(3, 40);
-            summaryArea.setText(report.getSummary());
-            summaryArea.setEditable(false);
-            summaryArea.setLineWrap(true);
-            summaryArea.setWrapStyleWord(true);
-            summaryArea.setBackground(panel.getBackground());
-            
-            JScrollPane summaryScroll = new JBScrollPane(summaryArea);
-            summaryScroll.setBorder(BorderFactory.createTitledBorder("Summary"));
-            panel.add(summaryScroll, BorderLayout.CENTER);
-        }
+        // 摘要，实时报告在审查完成后才有
+        summaryArea = new JTextArea(3, 40);
+        summaryArea.setEditable(false);
+        summaryArea.setLineWrap(true);
+        summaryArea.setWrapStyleWord(true);
+        summaryArea.setBackground(panel.getBackground());
+        
+        summaryScroll = new JBScrollPane(summaryArea);
+        summaryScroll.setBorder(BorderFactory.createTitledBorder("Summary"));
+        panel.add(summaryScroll, BorderLayout.CENTER);
+        setSummary(report.getSummary());
         
         return panel;
     }
     
+    private void setSummary(@Nullable String summary) {
+        boolean hasSummary = summary != null && !summary.trim().isEmpty();
+        summaryArea.setText(hasSummary ? summary : "");
+        summaryScroll.setVisible(hasSummary);
+        summaryScroll.revalidate();
+    }
+    
     /**
      * 创建问题列表面板
      */
@@ -239,6 +297,10 @@ public class ReviewReportDialog extends DialogWrapper {
         statisticsLabel = new JLabel();
         panel.add(statisticsLabel);
         
+        usageLabel = new JLabel();
+        panel.add(usageLabel);
+        updateUsage();
+        
         return panel;
     }
     
@@ -250,7 +312,7 @@ public class ReviewReportDialog extends DialogWrapper {
         if (filter != null) {
             List<CodeIssue> filteredIssues = new ArrayList<>();
             
-            for (CodeIssue issue : report.getIssues()) {
+            for (CodeIssue issue : issues) {
                 if (filter.accepts(issue.getSeverity())) {
                     filteredIssues.add(issue);
                 }
@@ -330,6 +392,34 @@ public class ReviewReportDialog extends DialogWrapper {
         statisticsLabel.setText(stats.toString());
     }
     
+    /**
+     * 更新本次审查的Token用量和LLM耗时，提示中显示项目今天和最近7天的合计
+     */
+    private void updateUsage() {
+        TokenUsage usage = CodeAnalysisService.getUsage(report);
+        Object attempts = report.getMetadata().get(CodeAnalysisService.METADATA_LLM_ATTEMPTS);
+        Object latency = report.getMetadata().get(CodeAnalysisService.METADATA_LLM_LATENCY);
+        
+        StringBuilder text = new StringBuilder();
+        if (usage != null) {
+            text.append("Tokens: prompt ").append(usage.getPromptTokens());
+            if (usage.getCachedTokens() > 0) {
+                text.append(" (cached ").append(usage.getCachedTokens()).append(")");
+            }
+            text.append(", completion ").append(usage.getCompletionTokens());
+        }
+        if (attempts instanceof Number && ((Number) attempts).intValue() > 0) {
+            text.append(text.length() > 0 ? " | " : "").append("Requests: ").append(attempts);
+            if (latency instanceof Number) {
+                text.append(", LLM time: ").append(latency).append("ms");
+            }
+        }
+        usageLabel.setText(text.toString());
+        
+        TokenUsageLedgerService ledger = TokenUsageLedgerService.getInstance(project);
+        usageLabel.setToolTipText("<html>今天: " + ledger.getTotal(1) + "<br>最近7天: " + ledger.getTotal(7) + "</html>");
+    }
+    
     @NotNull
     @Override
     protected Action[] createActions() {
@@ -356,6 +446,11 @@ public class ReviewReportDialog extends DialogWrapper {
             fireTableDataChanged();
         }
         
+        public void addIssue(@NotNull CodeIssue issue) {
+            issues.add(issue);
+            fireTableRowsInserted(issues.size() - 1, issues.size() - 1);
+        }
+        
         public List<CodeIssue> getIssues() {
             return issues;
         }
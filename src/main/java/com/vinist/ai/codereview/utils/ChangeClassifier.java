@@ -0,0 +1,373 @@
+package com.vinist.ai.codereview.utils;
+
+import com.vinist.ai.codereview.models.TrivialChange;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 变更预检工具类
+ * 根据文件名和变更前后的内容在本地识别无需LLM审查的简单变更：生成的文件、内容未变化、仅空白变化、
+ * 仅导入语句重新排序、仅版本声明或依赖坐标中的版本号变化。判断偏保守，不确定时按需要审查处理：
+ * 换行始终有意义（行注释在行尾结束，JS、Kotlin等语言的换行会影响语句划分），只有行内和行首尾的空白可以忽略。
+ * 只有CodeAnalysisService.shouldReviewFile接受的源文件会经过预检
+ */
+public class ChangeClassifier {
+
+    /**
+     * 生成文件的后缀（小写）
+     */
+    private static final String[] GENERATED_SUFFIXES = {
+            ".min.js", ".pb.go", ".pb.h", "_pb2.py", "_pb2_grpc.py", ".designer.cs", ".g.cs", ".generated.cs",
+            ".generated.ts"};
+
+    /**
+     * 生成文件所在的目录（小写）
+     */
+    private static final String[] GENERATED_DIRECTORIES = {
+            "/build/generated/", "/generated-sources/", "/generated-test-sources/", "/__generated__/", "/node_modules/"};
+
+    /**
+     * 文件开头的生成标记，只识别各工具约定的整行写法：Go的 "// Code generated ... DO NOT EDIT."、
+     * 注释开头的@generated、.NET的 "// <auto-generated>"
+     */
+    private static final Pattern GENERATED_MARKER = Pattern.compile(
+            "^\\s*//\\s*Code generated .* DO NOT EDIT\\.\\s*$"
+                    + "|^\\s*(?://+|#+|/\\*+|\\*|<!--)\\s*@generated\\b"
+                    + "|^\\s*//\\s*<auto-generated\\b", Pattern.MULTILINE);
+
+    /**
+     * 只检查文件开头的行数
+     */
+    private static final int HEADER_LINES = 10;
+
+    /**
+     * 版本声明或依赖坐标中的版本号。第1组是版本号前的上下文，只有以下写法中的版本号会被识别：
+     * 名称含version的赋值或键（version = "1.2.3"、__version__ = '1.2.3'、"version": "1.2.3"），
+     * XML的<version>，依赖坐标 "group:artifact:1.2.3"，依赖约束 "name>=1.2.3"。
+     * 版本号至少两段数字，可带v前缀和预发布或构建后缀，如 2.0.0-RC1、5.3.1.RELEASE、v1.0.0-beta.2
+     */
+    private static final Pattern VERSION_PATTERN = Pattern.compile(
+            "((?i:\\b\\w*version\\w*)[\"']?\\s*[:=]\\s*[\"']?|<version>|[\"'][\\w.-]+:[\\w.-]+:"
+                    + "|[\"'][\\w.-]+\\s*(?:==|>=|<=|~=|!=)\\s*)"
+                    + "v?\\d+(?:\\.\\d+)+(?:[-+.][0-9A-Za-z]+(?:[.-][0-9A-Za-z]+)*)?(?![\\w.])");
+
+    private static final String VERSION_REPLACEMENT = "$1\uFFFF";
+
+    /**
+     * 导入语句，与PromptCompactor识别的范围一致
+     */
+    private static final Pattern IMPORT_PATTERN = Pattern.compile(
+            "(?:import\\s.*|from\\s+\\S+\\s+import\\s.*|using\\s+[\\w.]+\\s*;|#include\\s.*|use\\s+[\\w:{}, ]+;)");
+
+    /**
+     * 缩进有语义的文件（小写扩展名），比较时保留行首缩进
+     */
+    private static final Set<String> INDENT_SENSITIVE = Set.of(
+            "py", "yaml", "yml", "haml", "pug", "slim", "sass", "styl", "coffee", "nim", "mk", "md");
+
+    /**
+     * 使用 // 行注释和块注释的文件（小写扩展名）
+     */
+    private static final Set<String> SLASH_COMMENTS = Set.of(
+            "java", "kt", "kts", "scala", "groovy", "gradle", "js", "jsx", "mjs", "cjs", "ts", "tsx", "c", "h",
+            "cc", "cpp", "hpp", "cs", "go", "rs", "swift", "dart", "php", "css", "scss", "less");
+
+    /**
+     * 使用 # 注释的文件（小写扩展名）
+     */
+    private static final Set<String> HASH_COMMENTS = Set.of(
+            "py", "rb", "sh", "bash", "zsh", "yaml", "yml", "toml", "properties", "r", "pl", "cfg", "conf");
+
+    /**
+     * 识别简单变更
+     *
+     * @param fileName 文件名或路径
+     * @param before   变更前的内容，新文件为null
+     * @param after    变更后的内容
+     * @return 简单变更的类型，需要审查时返回null
+     */
+    @Nullable
+    public static TrivialChange classify(@NotNull String fileName, @Nullable String before, @NotNull String after) {
+        if (isGenerated(fileName, after)) {
+            return TrivialChange.GENERATED;
+        }
+        if (before == null) {
+            return null;
+        }
+        if (before.equals(after)) {
+            return TrivialChange.UNCHANGED;
+        }
+
+        String extension = getExtension(fileName);
+        if (isWhitespaceOnly(before, after, extension)) {
+            return TrivialChange.WHITESPACE_ONLY;
+        }
+        if (isImportsOnly(before, after, extension)) {
+            return TrivialChange.IMPORTS_ONLY;
+        }
+        if (isVersionBumpOnly(before, after)) {
+            return TrivialChange.VERSION_BUMP;
+        }
+        return null;
+    }
+
+    /**
+     * 判断是否为生成的文件：生成文件的后缀或目录，或文件开头带有生成标记
+     */
+    public static boolean isGenerated(@NotNull String fileName, @NotNull String content) {
+        String path = fileName.replace('\\', '/').toLowerCase(Locale.ROOT);
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        for (String suffix : GENERATED_SUFFIXES) {
+            if (name.endsWith(suffix)) {
+                return true;
+            }
+        }
+        for (String directory : GENERATED_DIRECTORIES) {
+            if (path.contains(directory)) {
+                return true;
+            }
+        }
+
+        int end = -1;
+        for (int i = 0; i < HEADER_LINES; i++) {
+            end = content.indexOf('\n', end + 1);
+            if (end < 0) {
+                break;
+            }
+        }
+        String header = end < 0 ? content : content.substring(0, end);
+        return GENERATED_MARKER.matcher(header).find();
+    }
+
+    /**
+     * 判断两个版本是否只有空白不同：忽略行内空白、行首尾空白和空行，换行和字符串字面量中的空白保持原样；
+     * 缩进有语义的文件保留行首缩进
+     */
+    static boolean isWhitespaceOnly(@NotNull String before, @NotNull String after, @NotNull String extension) {
+        return normalizeWhitespace(before, extension).equals(normalizeWhitespace(after, extension));
+    }
+
+    /**
+     * 判断两个版本是否只有导入语句的顺序（及空白）不同：导入语句的集合相同，其余行依次相同
+     */
+    static boolean isImportsOnly(@NotNull String before, @NotNull String after, @NotNull String extension) {
+        boolean keepIndentation = INDENT_SENSITIVE.contains(extension);
+        List<String> beforeImports = new ArrayList<>();
+        List<String> afterImports = new ArrayList<>();
+        List<String> beforeCode = splitImports(before, beforeImports, keepIndentation);
+        List<String> afterCode = splitImports(after, afterImports, keepIndentation);
+        if (beforeImports.isEmpty() || !beforeCode.equals(afterCode)) {
+            return false;
+        }
+        Collections.sort(beforeImports);
+        Collections.sort(afterImports);
+        return beforeImports.equals(afterImports);
+    }
+
+    /**
+     * 判断两个版本是否只有版本号不同：行数相同，变化的行把版本声明和依赖坐标中的版本号替换掉之后相同
+     */
+    static boolean isVersionBumpOnly(@NotNull String before, @NotNull String after) {
+        String[] beforeLines = before.replace("\r\n", "\n").split("\n", -1);
+        String[] afterLines = after.replace("\r\n", "\n").split("\n", -1);
+        if (beforeLines.length != afterLines.length) {
+            return false;
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < beforeLines.length; i++) {
+            if (beforeLines[i].equals(afterLines[i])) {
+                continue;
+            }
+            String beforeLine = VERSION_PATTERN.matcher(beforeLines[i]).replaceAll(VERSION_REPLACEMENT).trim();
+            String afterLine = VERSION_PATTERN.matcher(afterLines[i]).replaceAll(VERSION_REPLACEMENT).trim();
+            if (!beforeLine.equals(afterLine) || beforeLine.indexOf('\uFFFF') < 0) {
+                return false;
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * 分离导入语句（去掉首尾空白）与其余非空行
+     */
+    @NotNull
+    private static List<String> splitImports(@NotNull String content, @NotNull List<String> imports, boolean keepIndentation) {
+        List<String> code = new ArrayList<>();
+        boolean goImportBlock = false;
+        for (String line : content.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (goImportBlock) {
+                if (trimmed.equals(")")) {
+                    goImportBlock = false;
+                    code.add(trimmed);
+                } else {
+                    imports.add(trimmed);
+                }
+            } else if (trimmed.equals("import (")) {
+                goImportBlock = true;
+                code.add(trimmed);
+            } else if (IMPORT_PATTERN.matcher(trimmed).matches()) {
+                imports.add(trimmed.replaceAll("\\s+", " "));
+            } else {
+                code.add(keepIndentation ? line.stripTrailing() : trimmed);
+            }
+        }
+        return code;
+    }
+
+    /**
+     * 去掉不影响语义的空白：行内两个标识符字符或两个运算符字符之间的空白合并为一个空格，其余行内空白和空行删除，
+     * 换行保留；缩进有语义的文件保留行首缩进。字符串字面量原样保留，注释中的引号不作为字符串处理
+     */
+    @NotNull
+    static String normalizeWhitespace(@NotNull String content, @NotNull String extension) {
+        boolean keepIndentation = INDENT_SENSITIVE.contains(extension);
+        boolean slashComments = SLASH_COMMENTS.contains(extension);
+        boolean hashComments = HASH_COMMENTS.contains(extension);
+        // Rust的生命周期参数 'a 不是字符字面量
+        boolean singleQuotes = !"rs".equals(extension);
+
+        StringBuilder result = new StringBuilder(content.length());
+        int length = content.length();
+        int lineBegin = 0;
+        boolean lineStart = true;
+        boolean pendingSpace = false;
+        int i = 0;
+        while (i < length) {
+            char c = content.charAt(i);
+
+            if (c == '\n' || c == '\r') {
+                if (!lineStart) {
+                    result.append('\n');
+                }
+                lineBegin = i + 1;
+                lineStart = true;
+                pendingSpace = false;
+                i++;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                pendingSpace = !lineStart;
+                i++;
+                continue;
+            }
+
+            // 缩进在遇到行内第一个非空白字符时才写入，只有空白的行整行丢弃
+            if (keepIndentation && lineStart) {
+                result.append(content, lineBegin, i);
+            } else if (pendingSpace && result.length() > 0 && needsSeparator(result.charAt(result.length() - 1), c)) {
+                result.append(' ');
+            }
+            pendingSpace = false;
+            lineStart = false;
+
+            // 注释：其中的空白同样忽略，但不识别引号
+            int commentEnd = -1;
+            char next = i + 1 < length ? content.charAt(i + 1) : 0;
+            if (slashComments && c == '/' && next == '/' || hashComments && c == '#') {
+                commentEnd = content.indexOf('\n', i);
+                commentEnd = commentEnd < 0 ? length : commentEnd;
+            } else if (slashComments && c == '/' && next == '*') {
+                commentEnd = content.indexOf("*/", i + 2);
+                commentEnd = commentEnd < 0 ? length : commentEnd + 2;
+            }
+            if (commentEnd >= 0) {
+                appendWithoutWhitespace(result, content, i, commentEnd);
+                i = commentEnd;
+                continue;
+            }
+
+            // 字符串：三引号和反引号可以跨行，单引号和双引号到行尾结束
+            String delimiter = null;
+            if ((c == '"' || c == '\'') && content.startsWith(String.valueOf(c).repeat(3), i)) {
+                delimiter = String.valueOf(c).repeat(3);
+            } else if (c == '"' || c == '`' || c == '\'' && singleQuotes) {
+                delimiter = String.valueOf(c);
+            }
+            if (delimiter != null) {
+                int end = findStringEnd(content, i + delimiter.length(), delimiter);
+                result.append(content, i, end);
+                i = end;
+                continue;
+            }
+
+            result.append(c);
+            i++;
+        }
+        return result.toString();
+    }
+
+    private static void appendWithoutWhitespace(@NotNull StringBuilder result, @NotNull String content,
+                                                int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = content.charAt(i);
+            if (c == '\n') {
+                result.append('\n');
+            } else if (!Character.isWhitespace(c)) {
+                result.append(c);
+            }
+        }
+    }
+
+    /**
+     * 查找字符串的结束位置（结束引号之后），反斜杠转义下一个字符；单字符引号的字符串在行尾结束
+     */
+    private static int findStringEnd(@NotNull String content, int start, @NotNull String delimiter) {
+        boolean multiline = delimiter.length() == 3 || delimiter.equals("`");
+        int i = start;
+        while (i < content.length()) {
+            char c = content.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (content.startsWith(delimiter, i)) {
+                return i + delimiter.length();
+            } else if (c == '\n' && !multiline) {
+                return i;
+            } else {
+                i++;
+            }
+        }
+        return content.length();
+    }
+
+    /**
+     * 两个字符之间的空白是否不能省略：都是标识符字符（如 "int x"），或都是运算符字符（如 "a - -b"）
+     */
+    private static boolean needsSeparator(char previous, char next) {
+        return isWordChar(previous) && isWordChar(next) || isOperatorChar(previous) && isOperatorChar(next);
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static boolean isOperatorChar(char c) {
+        return "+-*/%&|^!~<>=?:.".indexOf(c) >= 0;
+    }
+
+    /**
+     * 文件扩展名（小写），没有扩展名时返回文件名，用于识别Makefile等
+     */
+    @NotNull
+    private static String getExtension(@NotNull String fileName) {
+        String path = fileName.replace('\\', '/').toLowerCase(Locale.ROOT);
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        if (name.equals("makefile")) {
+            return "mk";
+        }
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? name : name.substring(dot + 1);
+    }
+}
@@ -0,0 +1,198 @@
+package com.vinist.ai.codereview.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 代码分块工具类
+ * 将超出Token预算的代码按结构边界（顶层声明、花括号深度、空行）拆分为多个块，每块记录起始行号
+ */
+public class CodeChunker {
+
+    /**
+     * 声明的开头：修饰符、类型声明关键字、常见语言的函数关键字或注解
+     */
+    private static final Pattern DECLARATION_PATTERN = Pattern.compile(
+            "\\s*(?:(?:public|private|protected|internal|static|final|abstract|sealed|open|data|override|"
+                    + "class|interface|enum|record|object|trait|impl|struct|def|fun|func|fn|function|async|export)\\b|@\\w)");
+
+    /**
+     * 代码块
+     */
+    public static final class Chunk {
+        private final String content;
+        private final int startLine;
+        private final int lineCount;
+
+        private Chunk(@NotNull String content, int startLine, int lineCount) {
+            this.content = content;
+            this.startLine = startLine;
+            this.lineCount = lineCount;
+        }
+
+        @NotNull
+        public String getContent() {
+            return content;
+        }
+
+        /**
+         * 块的第一行在原内容中的行号（从1开始）
+         */
+        public int getStartLine() {
+            return startLine;
+        }
+
+        public int getLineCount() {
+            return lineCount;
+        }
+
+        public int getEndLine() {
+            return startLine + lineCount - 1;
+        }
+    }
+
+    /**
+     * 按Token预算拆分代码，未超出预算时返回只包含完整内容的单个块
+     */
+    @NotNull
+    public static List<Chunk> split(@NotNull String content, int maxTokens) {
+        List<Integer> lineOffsets = new ArrayList<>();
+        lineOffsets.add(0);
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == '\n' && i + 1 < content.length()) {
+                lineOffsets.add(i + 1);
+            }
+        }
+        int lineCount = lineOffsets.size();
+        lineOffsets.add(content.length());
+
+        if (TokenEstimator.estimate(content) <= maxTokens || lineCount <= 1) {
+            return Collections.singletonList(new Chunk(content, 1, lineCount));
+        }
+
+        int[] tokens = new int[lineCount];
+        String[] lines = new String[lineCount];
+        for (int i = 0; i < lineCount; i++) {
+            lines[i] = content.substring(lineOffsets.get(i), lineOffsets.get(i + 1));
+            tokens[i] = TokenEstimator.estimate(lines[i]);
+        }
+        int[] priorities = computeBoundaryPriorities(lines);
+
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < lineCount) {
+            int cut = findCut(tokens, priorities, start, Math.max(1, maxTokens));
+            chunks.add(new Chunk(content.substring(lineOffsets.get(start), lineOffsets.get(cut)), start + 1, cut - start));
+            start = cut;
+        }
+        return chunks;
+    }
+
+    /**
+     * 从start开始寻找切分位置（切分在返回的行之前）
+     * 优先选择预算后3/4范围内优先级最高且最靠后的边界，其次是前1/4内的边界，都没有时在预算用尽处硬切分
+     */
+    private static int findCut(@NotNull int[] tokens, @NotNull int[] priorities, int start, int maxTokens) {
+        int used = 0;
+        int end = start;
+        int bestLate = -1;
+        int bestEarly = -1;
+
+        while (end < tokens.length && (end == start || used + tokens[end] <= maxTokens)) {
+            if (end > start && priorities[end] > 0) {
+                if (used >= maxTokens / 4) {
+                    if (bestLate < 0 || priorities[end] >= priorities[bestLate]) {
+                        bestLate = end;
+                    }
+                } else if (bestEarly < 0 || priorities[end] >= priorities[bestEarly]) {
+                    bestEarly = end;
+                }
+            }
+            used += tokens[end];
+            end++;
+        }
+
+        if (end == tokens.length) {
+            return end;
+        }
+        if (bestLate > 0) {
+            return bestLate;
+        }
+        if (bestEarly > 0) {
+            return bestEarly;
+        }
+        return end;
+    }
+
+    /**
+     * 计算在每一行之前切分的优先级，0表示不适合切分
+     * 差异块标记和顶层声明最高，其次是顶层代码、类成员之间的空行，最后是任意空行
+     */
+    @NotNull
+    private static int[] computeBoundaryPriorities(@NotNull String[] lines) {
+        int[] priorities = new int[lines.length];
+        int depth = 0;
+        boolean inBlockComment = false;
+
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            String trimmed = line.trim();
+            String previous = i > 0 ? lines[i - 1].trim() : "";
+            boolean previousBlank = i > 0 && previous.isEmpty();
+            boolean attachedToPrevious = previous.startsWith("@") || previous.endsWith("*/")
+                    || previous.startsWith("*") || previous.startsWith("//") || previous.startsWith("#");
+            boolean indented = !line.isEmpty() && Character.isWhitespace(line.charAt(0));
+
+            int priority = 0;
+            if (line.startsWith("@@ -")) {
+                priority = 5;
+            } else if (!trimmed.isEmpty() && !inBlockComment) {
+                boolean declaration = DECLARATION_PATTERN.matcher(line).lookingAt();
+                if (depth == 0 && !indented) {
+                    priority = declaration && !attachedToPrevious ? 4 : 3;
+                } else if (depth <= 1 && declaration && !attachedToPrevious) {
+                    priority = 2;
+                }
+            }
+            if (previousBlank) {
+                priority = Math.max(priority, depth <= 1 ? 2 : 1);
+            }
+            priorities[i] = priority;
+
+            // 更新花括号深度，跳过字符串、字符字面量和注释
+            char quote = 0;
+            for (int j = 0; j < line.length(); j++) {
+                char c = line.charAt(j);
+                char next = j + 1 < line.length() ? line.charAt(j + 1) : 0;
+                if (inBlockComment) {
+                    if (c == '*' && next == '/') {
+                        inBlockComment = false;
+                        j++;
+                    }
+                } else if (quote != 0) {
+                    if (c == '\\') {
+                        j++;
+                    } else if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '/' && next == '/') {
+                    break;
+                } else if (c == '/' && next == '*') {
+                    inBlockComment = true;
+                    j++;
+                } else if (c == '"' || c == '\'' || c == '`') {
+                    quote = c;
+                } else if (c == '{') {
+                    depth++;
+                } else if (c == '}') {
+                    depth = Math.max(0, depth - 1);
+                }
+            }
+        }
+        return priorities;
+    }
+}
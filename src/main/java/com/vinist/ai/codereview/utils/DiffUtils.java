@@ -0,0 +1,371 @@
+package com.vinist.ai.codereview.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 差异工具类
+ * 基于Myers算法计算行级差异，并生成只包含变更块及上下文的代码片段
+ */
+public class DiffUtils {
+
+    /**
+     * Myers算法的最大编辑距离，超出时把剩余区间整体视为替换，避免差异过大时占用过多内存
+     */
+    private static final int MAX_EDIT_DISTANCE = 2000;
+
+    private enum LineType {
+        EQUAL, INSERT, DELETE
+    }
+
+    /**
+     * 差异中的一行
+     */
+    private static final class DiffLine {
+        private final LineType type;
+        private final String text;
+        private final int oldLine;
+        private final int newLine;
+
+        private DiffLine(LineType type, String text, int oldLine, int newLine) {
+            this.type = type;
+            this.text = text;
+            this.oldLine = oldLine;
+            this.newLine = newLine;
+        }
+    }
+
+    /**
+     * 差异片段
+     * content为片段文本，lineMapping[i]为片段第i+1行对应的新文件行号（从1开始）
+     */
+    public static final class DiffSnippet {
+        private final String content;
+        private final int[] lineMapping;
+        private final int changedLines;
+
+        private DiffSnippet(@NotNull String content, @NotNull int[] lineMapping, int changedLines) {
+            this.content = content;
+            this.lineMapping = lineMapping;
+            this.changedLines = changedLines;
+        }
+
+        @NotNull
+        public String getContent() {
+            return content;
+        }
+
+        @NotNull
+        public int[] getLineMapping() {
+            return lineMapping.clone();
+        }
+
+        /**
+         * 新增和删除的行数
+         */
+        public int getChangedLines() {
+            return changedLines;
+        }
+    }
+
+    /**
+     * 生成差异片段：每个变更块以 "@@ -旧起始,行数 +新起始,行数 @@" 开头，
+     * 随后是带 ' '、'+'、'-' 前缀的行，变更前后各保留contextLines行上下文。
+     * 两个版本内容相同时返回null
+     */
+    @Nullable
+    public static DiffSnippet createSnippet(@NotNull String before, @NotNull String after, int contextLines) {
+        String[] oldLines = splitLines(before);
+        String[] newLines = splitLines(after);
+        List<DiffLine> diff = diffLines(oldLines, newLines);
+
+        int context = Math.max(0, contextLines);
+        StringBuilder content = new StringBuilder();
+        List<Integer> mapping = new ArrayList<>();
+        int changedLines = 0;
+
+        int index = 0;
+        while (index < diff.size()) {
+            // 找到下一个变更
+            int changeStart = index;
+            while (changeStart < diff.size() && diff.get(changeStart).type == LineType.EQUAL) {
+                changeStart++;
+            }
+            if (changeStart == diff.size()) {
+                break;
+            }
+
+            // 向后扩展变更块，相距不超过两倍上下文的变更合并到同一块
+            int hunkEnd = changeStart;
+            int equalRun = 0;
+            int scan = changeStart;
+            while (scan < diff.size()) {
+                if (diff.get(scan).type == LineType.EQUAL) {
+                    equalRun++;
+                    if (equalRun > context * 2) {
+                        break;
+                    }
+                } else {
+                    equalRun = 0;
+                    hunkEnd = scan;
+                }
+                scan++;
+            }
+
+            int from = Math.max(index, changeStart - context);
+            int to = Math.min(diff.size() - 1, hunkEnd + context);
+            changedLines += appendHunk(diff, from, to, newLines.length, content, mapping);
+            index = to + 1;
+        }
+
+        if (changedLines == 0) {
+            return null;
+        }
+
+        int[] lineMapping = new int[mapping.size()];
+        for (int i = 0; i < lineMapping.length; i++) {
+            lineMapping[i] = mapping.get(i);
+        }
+        return new DiffSnippet(content.toString(), lineMapping, changedLines);
+    }
+
+    /**
+     * 输出一个变更块，返回其中的变更行数
+     */
+    private static int appendHunk(@NotNull List<DiffLine> diff, int from, int to, int newLineCount,
+                                  @NotNull StringBuilder content, @NotNull List<Integer> mapping) {
+        int oldStart = 0;
+        int newStart = 0;
+        int oldCount = 0;
+        int newCount = 0;
+        int changed = 0;
+
+        for (int i = from; i <= to; i++) {
+            DiffLine line = diff.get(i);
+            if (line.type != LineType.INSERT) {
+                if (oldStart == 0) {
+                    oldStart = line.oldLine;
+                }
+                oldCount++;
+            }
+            if (line.type != LineType.DELETE) {
+                if (newStart == 0) {
+                    newStart = line.newLine;
+                }
+                newCount++;
+            }
+            if (line.type != LineType.EQUAL) {
+                changed++;
+            }
+        }
+
+        // 纯删除的块没有新行，头部按统一差异格式写删除位置之前的行号，映射定位到删除位置之后的行
+        int following = newStart > 0 ? newStart : nextNewLine(diff, to);
+        int anchor = newStart > 0 ? newStart : Math.max(1, Math.min(following, newLineCount));
+
+        content.append("@@ -").append(oldStart).append(',').append(oldCount)
+                .append(" +").append(newStart > 0 ? newStart : following - 1).append(',').append(newCount)
+                .append(" @@\n");
+        mapping.add(anchor);
+
+        int lastNewLine = anchor;
+        for (int i = from; i <= to; i++) {
+            DiffLine line = diff.get(i);
+            switch (line.type) {
+                case INSERT:
+                    content.append('+');
+                    break;
+                case DELETE:
+                    content.append('-');
+                    break;
+                default:
+                    content.append(' ');
+            }
+            content.append(line.text).append('\n');
+
+            if (line.type == LineType.DELETE) {
+                mapping.add(Math.max(1, Math.min(nextNewLine(diff, i), newLineCount)));
+            } else {
+                lastNewLine = line.newLine;
+                mapping.add(lastNewLine);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 获取指定位置之后第一个新文件行的行号
+     */
+    private static int nextNewLine(@NotNull List<DiffLine> diff, int index) {
+        for (int i = index + 1; i < diff.size(); i++) {
+            if (diff.get(i).type != LineType.DELETE) {
+                return diff.get(i).newLine;
+            }
+        }
+        // 位于文件末尾
+        for (int i = index; i >= 0; i--) {
+            if (diff.get(i).type != LineType.DELETE) {
+                return diff.get(i).newLine + 1;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * 计算行级差异，先去掉公共前后缀，再对中间部分运行Myers算法
+     */
+    @NotNull
+    private static List<DiffLine> diffLines(@NotNull String[] oldLines, @NotNull String[] newLines) {
+        int prefix = 0;
+        int maxPrefix = Math.min(oldLines.length, newLines.length);
+        while (prefix < maxPrefix && oldLines[prefix].equals(newLines[prefix])) {
+            prefix++;
+        }
+
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix
+                && oldLines[oldLines.length - 1 - suffix].equals(newLines[newLines.length - 1 - suffix])) {
+            suffix++;
+        }
+
+        List<DiffLine> result = new ArrayList<>(Math.max(oldLines.length, newLines.length) + 16);
+        for (int i = 0; i < prefix; i++) {
+            result.add(new DiffLine(LineType.EQUAL, newLines[i], i + 1, i + 1));
+        }
+
+        myers(oldLines, prefix, oldLines.length - suffix, newLines, prefix, newLines.length - suffix, result);
+
+        for (int i = suffix; i > 0; i--) {
+            int oldIndex = oldLines.length - i;
+            int newIndex = newLines.length - i;
+            result.add(new DiffLine(LineType.EQUAL, newLines[newIndex], oldIndex + 1, newIndex + 1));
+        }
+        return result;
+    }
+
+    /**
+     * Myers O(ND) 差异算法
+     * 每一步只保存 [-d, d] 范围内的V数组用于回溯，内存为O(D^2)
+     */
+    private static void myers(@NotNull String[] a, int aStart, int aEnd, @NotNull String[] b, int bStart, int bEnd,
+                              @NotNull List<DiffLine> result) {
+        int n = aEnd - aStart;
+        int m = bEnd - bStart;
+        if (n == 0 && m == 0) {
+            return;
+        }
+
+        int max = Math.min(n + m, MAX_EDIT_DISTANCE);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<>();
+        int found = -1;
+
+        for (int d = 0; d <= max && found < 0; d++) {
+            int[] snapshot = new int[2 * d + 1];
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a[aStart + x].equals(b[bStart + y])) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    found = d;
+                }
+            }
+            for (int k = -d; k <= d; k++) {
+                snapshot[k + d] = v[offset + k];
+            }
+            trace.add(snapshot);
+        }
+
+        if (found < 0) {
+            // 差异过大，整体视为替换
+            for (int i = aStart; i < aEnd; i++) {
+                result.add(new DiffLine(LineType.DELETE, a[i], i + 1, 0));
+            }
+            for (int j = bStart; j < bEnd; j++) {
+                result.add(new DiffLine(LineType.INSERT, b[j], 0, j + 1));
+            }
+            return;
+        }
+
+        // 回溯得到编辑脚本（逆序）
+        List<DiffLine> reversed = new ArrayList<>();
+        int x = n;
+        int y = m;
+        for (int d = found; d > 0; d--) {
+            int[] previous = trace.get(d - 1);
+            int k = x - y;
+            int prevK;
+            if (k == -d || (k != d && get(previous, d - 1, k - 1) < get(previous, d - 1, k + 1))) {
+                prevK = k + 1;
+            } else {
+                prevK = k - 1;
+            }
+            int prevX = get(previous, d - 1, prevK);
+            int prevY = prevX - prevK;
+
+            while (x > prevX && y > prevY) {
+                x--;
+                y--;
+                reversed.add(new DiffLine(LineType.EQUAL, b[bStart + y], aStart + x + 1, bStart + y + 1));
+            }
+            if (x == prevX) {
+                y--;
+                reversed.add(new DiffLine(LineType.INSERT, b[bStart + y], 0, bStart + y + 1));
+            } else {
+                x--;
+                reversed.add(new DiffLine(LineType.DELETE, a[aStart + x], aStart + x + 1, 0));
+            }
+        }
+        while (x > 0 && y > 0) {
+            x--;
+            y--;
+            reversed.add(new DiffLine(LineType.EQUAL, b[bStart + y], aStart + x + 1, bStart + y + 1));
+        }
+
+        for (int i = reversed.size() - 1; i >= 0; i--) {
+            result.add(reversed.get(i));
+        }
+    }
+
+    private static int get(@NotNull int[] snapshot, int d, int k) {
+        if (k < -d || k > d) {
+            return 0;
+        }
+        return snapshot[k + d];
+    }
+
+    /**
+     * 按行拆分文本，忽略行尾的\r和末尾换行产生的空行
+     */
+    @NotNull
+    private static String[] splitLines(@NotNull String text) {
+        if (text.isEmpty()) {
+            return new String[0];
+        }
+
+        String[] lines = text.split("\n", -1);
+        int length = lines[lines.length - 1].isEmpty() ? lines.length - 1 : lines.length;
+        String[] result = Arrays.copyOf(lines, length);
+        for (int i = 0; i < result.length; i++) {
+            if (result[i].endsWith("\r")) {
+                result[i] = result[i].substring(0, result[i].length() - 1);
+            }
+        }
+        return result;
+    }
+}
@@ -6,6 +6,8 @@ import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.changes.ChangeListManager;
 import com.intellij.openapi.vcs.changes.ContentRevision;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.vinist.ai.codereview.models.ReviewTarget;
+import com.vinist.ai.codereview.models.TrivialChange;
 import git4idea.GitUtil;
 import git4idea.GitLocalBranch;
 import git4idea.commands.Git;
@@ -196,6 +198,69 @@ public class GitUtils {
         return null;
     }
     
+    /**
+     * 将变更转换为审查目标（使用新版本内容，已删除的文件会被跳过）
+     */
+    @NotNull
+    public static List<ReviewTarget> getReviewTargets(@NotNull Collection<Change> changes) {
+        return getReviewTargets(changes, false, 0);
+    }
+    
+    /**
+     * 将变更转换为审查目标
+     * diffOnly为true时，已修改的文件只保留变更块及contextLines行上下文；
+     * 新文件或片段不比完整文件小时仍使用完整内容，内容未变化的文件（如仅重命名）会被跳过
+     */
+    @NotNull
+    public static List<ReviewTarget> getReviewTargets(@NotNull Collection<Change> changes, boolean diffOnly, int contextLines) {
+        return getReviewTargets(changes, diffOnly, contextLines, false);
+    }
+    
+    /**
+     * 将变更转换为审查目标
+     * preScreen为true时按变更前后的内容在本地预检，识别出的简单变更（仅空白、导入顺序、版本号变化或生成的文件）
+     * 记录在审查目标上，由审查服务跳过LLM调用
+     */
+    @NotNull
+    public static List<ReviewTarget> getReviewTargets(@NotNull Collection<Change> changes, boolean diffOnly,
+                                                      int contextLines, boolean preScreen) {
+        List<ReviewTarget> targets = new ArrayList<>();
+        
+        for (Change change : changes) {
+            ContentRevision afterRevision = change.getAfterRevision();
+            if (afterRevision == null) {
+                continue;
+            }
+            
+            String content = getChangeContent(change);
+            if (content == null) {
+                continue;
+            }
+            
+            String fileName = afterRevision.getFile().getName();
+            String filePath = afterRevision.getFile().getPath();
+            String beforeContent = (diffOnly || preScreen) && isModifiedFile(change) ? getChangeBeforeContent(change) : null;
+            TrivialChange trivialChange = preScreen ? ChangeClassifier.classify(filePath, beforeContent, content) : null;
+            if (beforeContent == null || !diffOnly) {
+                targets.add(new ReviewTarget(fileName, filePath, content, null, trivialChange));
+                continue;
+            }
+            
+            DiffUtils.DiffSnippet snippet = DiffUtils.createSnippet(beforeContent, content, contextLines);
+            if (snippet == null) {
+                continue;
+            }
+            
+            if (snippet.getContent().length() < content.length()) {
+                targets.add(new ReviewTarget(fileName, filePath, snippet.getContent(), snippet.getLineMapping(), trivialChange));
+            } else {
+                targets.add(new ReviewTarget(fileName, filePath, content, null, trivialChange));
+            }
+        }
+        
+        return targets;
+    }
+    
     /**
      * 检查文件是否被修改
      */
@@ -0,0 +1,285 @@
+package com.vinist.ai.codereview.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 提示词压缩工具类
+ * 去掉行尾空白、合并连续空行、缩进统一为每级一个空格，并删除文件开头的许可证注释和导入语句块，减少请求字节数和计费Token。
+ * 压缩后的每一行都记录了原始行号，模型返回的行号可以换算回原文件。差异片段只去掉行尾空白，保留变更标记和所有行
+ */
+public class PromptCompactor {
+
+    /**
+     * 导入语句：Java/Kotlin/Python/JS/Go等的import，Python的from ... import，C#的using，C/C++的#include
+     */
+    private static final Pattern IMPORT_PATTERN = Pattern.compile(
+            "(?:import\\b|from\\s+\\S+\\s+import\\b|using\\s+[\\w.]+\\s*;|#include\\b).*");
+
+    private static final Pattern LICENSE_PATTERN = Pattern.compile("copyright|licen[sc]e|spdx-license-identifier");
+
+    /**
+     * Tab按4列计算缩进
+     */
+    private static final int TAB_WIDTH = 4;
+
+    /**
+     * 压缩结果
+     */
+    public static final class Result {
+        private final String content;
+        private final int[] lineMapping;
+
+        private Result(@NotNull String content, @NotNull int[] lineMapping) {
+            this.content = content;
+            this.lineMapping = lineMapping;
+        }
+
+        @NotNull
+        public String getContent() {
+            return content;
+        }
+
+        /**
+         * lineMapping[i]为压缩后第i+1行对应的原始行号
+         */
+        @NotNull
+        public int[] getLineMapping() {
+            return lineMapping.clone();
+        }
+    }
+
+    /**
+     * 压缩代码
+     *
+     * @param diff 内容是否为差异片段
+     */
+    @NotNull
+    public static Result compact(@NotNull String code, boolean diff) {
+        String[] lines = code.split("\n", -1);
+        int lineCount = code.endsWith("\n") ? lines.length - 1 : lines.length;
+        for (int i = 0; i < lineCount; i++) {
+            lines[i] = stripTrailing(lines[i], diff ? 1 : 0);
+        }
+
+        boolean[] dropped = new boolean[lineCount];
+        int importMarker = -1;
+        int importCount = 0;
+        if (!diff) {
+            int header = dropLicenseHeader(lines, lineCount, dropped);
+            int first = dropImports(lines, header, lineCount, dropped);
+            if (first >= 0) {
+                importMarker = first;
+                for (int i = first; i < lineCount && (dropped[i] || lines[i].isEmpty()); i++) {
+                    if (dropped[i]) {
+                        importCount++;
+                    }
+                }
+            }
+        }
+        int indentUnit = diff ? 0 : detectIndentUnit(lines, lineCount, dropped);
+
+        List<String> output = new ArrayList<>();
+        List<Integer> mapping = new ArrayList<>();
+        boolean previousBlank = true;
+        for (int i = 0; i < lineCount; i++) {
+            if (i == importMarker) {
+                output.add("(" + importCount + " import lines omitted)");
+                mapping.add(i + 1);
+                previousBlank = false;
+            }
+            if (dropped[i] || lines[i].isEmpty() && previousBlank) {
+                continue;
+            }
+            previousBlank = lines[i].isEmpty();
+            output.add(indentUnit > 1 ? reindent(lines[i], indentUnit) : lines[i]);
+            mapping.add(i + 1);
+        }
+        while (!output.isEmpty() && output.get(output.size() - 1).isEmpty()) {
+            output.remove(output.size() - 1);
+            mapping.remove(mapping.size() - 1);
+        }
+
+        StringBuilder result = new StringBuilder(code.length());
+        for (String line : output) {
+            result.append(line).append('\n');
+        }
+        if (!code.endsWith("\n") && result.length() > 0) {
+            result.setLength(result.length() - 1);
+        }
+
+        return new Result(result.toString(), mapping.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * 去掉行尾空白，keep为行首必须保留的字符数（差异片段的变更标记）
+     */
+    @NotNull
+    private static String stripTrailing(@NotNull String line, int keep) {
+        int end = line.length();
+        while (end > keep && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        return end == line.length() ? line : line.substring(0, end);
+    }
+
+    /**
+     * 删除文件开头包含版权或许可证声明的注释块，返回注释块之后的行索引
+     */
+    private static int dropLicenseHeader(@NotNull String[] lines, int lineCount, @NotNull boolean[] dropped) {
+        int start = 0;
+        while (start < lineCount && (lines[start].isEmpty() || lines[start].startsWith("#!"))) {
+            start++;
+        }
+        if (start >= lineCount) {
+            return start;
+        }
+
+        String first = lines[start].trim();
+        int end = -1;
+        if (first.startsWith("/*")) {
+            for (int i = start; i < lineCount; i++) {
+                if (lines[i].contains("*/")) {
+                    end = i;
+                    break;
+                }
+            }
+        } else if (isLineComment(first)) {
+            end = start;
+            while (end + 1 < lineCount && isLineComment(lines[end + 1].trim())) {
+                end++;
+            }
+        }
+        if (end < 0) {
+            return start;
+        }
+
+        StringBuilder comment = new StringBuilder();
+        for (int i = start; i <= end; i++) {
+            comment.append(lines[i]).append('\n');
+        }
+        if (!LICENSE_PATTERN.matcher(comment.toString().toLowerCase(Locale.ROOT)).find()) {
+            return start;
+        }
+        for (int i = start; i <= end; i++) {
+            dropped[i] = true;
+        }
+        return end + 1;
+    }
+
+    private static boolean isLineComment(@NotNull String trimmed) {
+        return trimmed.startsWith("//") || trimmed.startsWith("#") && !trimmed.startsWith("#include")
+                && !trimmed.startsWith("#!");
+    }
+
+    /**
+     * 删除文件头部（package声明、注释和空行之间）连续的导入语句，多行导入（如Go的import (...)）整体删除。
+     * 返回第一条被删除的导入语句的行索引，没有时返回-1
+     */
+    private static int dropImports(@NotNull String[] lines, int start, int lineCount, @NotNull boolean[] dropped) {
+        int first = -1;
+        int depth = 0;
+        for (int i = start; i < lineCount; i++) {
+            String trimmed = lines[i].trim();
+            if (depth > 0) {
+                dropped[i] = true;
+                depth += bracketDelta(trimmed);
+                continue;
+            }
+            if (trimmed.isEmpty() || trimmed.startsWith("package ") || trimmed.startsWith("//")
+                    || trimmed.startsWith("/*") || trimmed.startsWith("*")) {
+                continue;
+            }
+            if (!IMPORT_PATTERN.matcher(trimmed).matches()) {
+                break;
+            }
+            if (first < 0) {
+                first = i;
+            }
+            dropped[i] = true;
+            depth = Math.max(0, bracketDelta(trimmed));
+        }
+        return first;
+    }
+
+    private static int bracketDelta(@NotNull String line) {
+        int delta = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '(' || c == '{') {
+                delta++;
+            } else if (c == ')' || c == '}') {
+                delta--;
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * 推断缩进单位：4、3、2中最大的、至少90%的缩进行都是其整数倍的宽度（注释续行 " * " 除外），都不满足时返回0，不调整缩进。
+     * 其余的行多为续行对齐，换算后保留多出的空格
+     */
+    private static int detectIndentUnit(@NotNull String[] lines, int lineCount, @NotNull boolean[] dropped) {
+        int indented = 0;
+        int[] multiples = new int[5];
+        for (int i = 0; i < lineCount; i++) {
+            if (dropped[i] || isCommentContinuation(lines[i])) {
+                continue;
+            }
+            int width = indentWidth(lines[i]);
+            if (width > 0) {
+                indented++;
+                for (int unit = 2; unit <= 4; unit++) {
+                    if (width % unit == 0) {
+                        multiples[unit]++;
+                    }
+                }
+            }
+        }
+        for (int unit = 4; unit >= 2; unit--) {
+            if (indented > 0 && multiples[unit] >= indented * 0.9) {
+                return unit;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isCommentContinuation(@NotNull String line) {
+        return line.trim().startsWith("*");
+    }
+
+    private static int indentWidth(@NotNull String line) {
+        int width = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == ' ') {
+                width++;
+            } else if (c == '\t') {
+                width += TAB_WIDTH - width % TAB_WIDTH;
+            } else {
+                return width;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 每级缩进改为一个空格，多出的对齐空格保留
+     */
+    @NotNull
+    private static String reindent(@NotNull String line, int unit) {
+        int width = indentWidth(line);
+        if (width == 0) {
+            return line;
+        }
+        int start = 0;
+        while (start < line.length() && (line.charAt(start) == ' ' || line.charAt(start) == '\t')) {
+            start++;
+        }
+        return " ".repeat(width / unit + width % unit) + line.substring(start);
+    }
+}
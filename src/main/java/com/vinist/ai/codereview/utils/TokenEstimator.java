@@ -0,0 +1,116 @@
+package com.vinist.ai.codereview.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Token估算工具类
+ * 不依赖具体分词器，按字符类别粗略估算Token数量，并提供各模型的上下文窗口大小
+ */
+public class TokenEstimator {
+
+    /**
+     * 未知模型使用的保守上下文窗口
+     */
+    private static final int DEFAULT_CONTEXT_WINDOW = 8192;
+
+    /**
+     * 提示词模板（审查要求、格式说明等）占用的Token预留
+     */
+    private static final int PROMPT_OVERHEAD_TOKENS = 800;
+
+    /**
+     * 单次请求的代码Token上限，上下文窗口再大，过长的输入也会降低审查质量并容易超时
+     */
+    private static final int MAX_INPUT_TOKENS = 16000;
+
+    /**
+     * 单次请求的代码Token下限
+     */
+    private static final int MIN_INPUT_TOKENS = 500;
+
+    /**
+     * 模型名前缀到上下文窗口的映射，按顺序匹配，较具体的前缀在前
+     */
+    private static final Map<String, Integer> CONTEXT_WINDOWS = new LinkedHashMap<>();
+
+    /**
+     * 模型名中显式标注的窗口大小，如 moonshot-v1-32k、gpt-4-32k
+     */
+    private static final Pattern WINDOW_SUFFIX_PATTERN = Pattern.compile("-(\\d+)k\\b");
+
+    static {
+        CONTEXT_WINDOWS.put("gpt-4.1", 1000000);
+        CONTEXT_WINDOWS.put("gpt-4o", 128000);
+        CONTEXT_WINDOWS.put("gpt-4-turbo", 128000);
+        CONTEXT_WINDOWS.put("gpt-4", 8192);
+        CONTEXT_WINDOWS.put("gpt-3.5-turbo", 16385);
+        CONTEXT_WINDOWS.put("o1", 128000);
+        CONTEXT_WINDOWS.put("o3", 200000);
+        CONTEXT_WINDOWS.put("o4", 200000);
+        CONTEXT_WINDOWS.put("claude", 200000);
+        CONTEXT_WINDOWS.put("gemini", 1000000);
+        CONTEXT_WINDOWS.put("deepseek", 64000);
+        CONTEXT_WINDOWS.put("qwen", 32768);
+        CONTEXT_WINDOWS.put("glm-4", 128000);
+        CONTEXT_WINDOWS.put("llama", 8192);
+    }
+
+    /**
+     * 估算文本的Token数量
+     * ASCII字符约4个一个Token，其他字符（如中文）约每个字符一个Token
+     */
+    public static int estimate(@NotNull CharSequence text) {
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 128) {
+                ascii++;
+            } else if (!Character.isLowSurrogate(c)) {
+                other++;
+            }
+        }
+        return (ascii + 3) / 4 + other;
+    }
+
+    /**
+     * 获取模型的上下文窗口大小（Token）
+     */
+    public static int getContextWindow(@Nullable String model) {
+        if (model == null || model.trim().isEmpty()) {
+            return DEFAULT_CONTEXT_WINDOW;
+        }
+
+        String normalized = model.trim().toLowerCase(Locale.ROOT);
+        Matcher matcher = WINDOW_SUFFIX_PATTERN.matcher(normalized);
+        if (matcher.find()) {
+            try {
+                return Integer.parseInt(matcher.group(1)) * 1024;
+            } catch (NumberFormatException e) {
+                // 忽略，按前缀匹配
+            }
+        }
+
+        for (Map.Entry<String, Integer> entry : CONTEXT_WINDOWS.entrySet()) {
+            if (normalized.startsWith(entry.getKey()) || normalized.contains("/" + entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return DEFAULT_CONTEXT_WINDOW;
+    }
+
+    /**
+     * 获取单次请求可用于代码内容的Token预算：上下文窗口减去输出Token和提示词预留
+     */
+    public static int getInputTokenBudget(@Nullable String model, int maxOutputTokens) {
+        int budget = getContextWindow(model) - Math.max(0, maxOutputTokens) - PROMPT_OVERHEAD_TOKENS;
+        return Math.max(MIN_INPUT_TOKENS, Math.min(MAX_INPUT_TOKENS, budget));
+    }
+}
@@ -0,0 +1,191 @@
+package com.vinist.ai.codereview.cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class DiskReviewStoreTest {
+
+    private static final long LARGE = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripSurvivesReopen() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("cache");
+        try (DiskReviewStore store = new DiskReviewStore(directory, LARGE)) {
+            store.put(key("a"), "{\"issues\":[]}");
+            store.put(key("b"), "审查结果 ✓");
+            assertEquals("{\"issues\":[]}", store.get(key("a")));
+            assertNull(store.get(key("missing")));
+        }
+
+        try (DiskReviewStore store = new DiskReviewStore(directory, LARGE)) {
+            assertEquals(2, store.size());
+            assertEquals("{\"issues\":[]}", store.get(key("a")));
+            assertEquals("审查结果 ✓", store.get(key("b")));
+        }
+    }
+
+    @Test
+    public void latestValueWins() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (DiskReviewStore store = new DiskReviewStore(directory, LARGE)) {
+            store.put(key("a"), "first");
+            store.put(key("a"), "second");
+            assertEquals("second", store.get(key("a")));
+        }
+
+        try (DiskReviewStore store = new DiskReviewStore(directory, LARGE)) {
+            assertEquals(1, store.size());
+            assertEquals("second", store.get(key("a")));
+        }
+    }
+
+    @Test
+    public void compactionKeepsRecentlyUsedEntries() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        String value = "x".repeat(1000);
+        try (DiskReviewStore store = new DiskReviewStore(directory, 8 * 1024)) {
+            for (int i = 0; i < 6; i++) {
+                store.put(key("k" + i), value + i);
+            }
+            // 读取使最早写入的条目变为最近使用
+            assertEquals(value + 0, store.get(key("k0")));
+            for (int i = 6; i < 10; i++) {
+                store.put(key("k" + i), value + i);
+            }
+
+            assertTrue(store.getDataSize() <= 8 * 1024);
+            assertEquals(value + 0, store.get(key("k0")));
+            assertEquals(value + 9, store.get(key("k9")));
+            assertNull(store.get(key("k1")));
+        }
+
+        try (DiskReviewStore store = new DiskReviewStore(directory, 8 * 1024)) {
+            assertEquals(value + 0, store.get(key("k0")));
+            assertEquals(value + 9, store.get(key("k9")));
+            assertNull(store.get(key("k1")));
+            assertTrue(Files.notExists(directory.resolve("reviews.dat.tmp")));
+        }
+    }
+
+    @Test
+    public void loweringLimitCompactsImmediately() throws Exception {
+        try (DiskReviewStore store = new DiskReviewStore(folder.getRoot().toPath(), LARGE)) {
+            for (int i = 0; i < 20; i++) {
+                store.put(key("k" + i), "y".repeat(1000));
+            }
+            assertTrue(store.getDataSize() > 16 * 1024);
+
+            store.setMaxDataBytes(8 * 1024);
+            assertTrue(store.getDataSize() <= 4 * 1024);
+            assertEquals("y".repeat(1000), store.get(key("k19")));
+            assertNull(store.get(key("k0")));
+        }
+    }
+
+    @Test
+    public void oversizedNewestEntryIsKept() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        String large = "z".repeat(9000);
+        try (DiskReviewStore store = new DiskReviewStore(directory, 8 * 1024)) {
+            store.put(key("small"), "s");
+            store.put(key("large"), large);
+
+            assertEquals(large, store.get(key("large")));
+            assertNull(store.get(key("small")));
+        }
+        try (DiskReviewStore store = new DiskReviewStore(directory, 8 * 1024)) {
+            assertEquals(1, store.size());
+            assertEquals(large, store.get(key("large")));
+        }
+    }
+
+    @Test
+    public void oversizedOlderEntryIsSkippedDuringCompaction() throws Exception {
+        String large = "z".repeat(3000);
+        try (DiskReviewStore store = new DiskReviewStore(folder.getRoot().toPath(), 8 * 1024)) {
+            store.put(key("old"), "o");
+            store.put(key("large"), large);
+            for (int i = 0; i < 5; i++) {
+                store.put(key("k" + i), "x".repeat(1000));
+            }
+
+            // 保留最近的3条后放不下大条目，但更早的小条目仍然保留
+            assertTrue(store.getDataSize() <= 4 * 1024);
+            assertNull(store.get(key("large")));
+            assertNull(store.get(key("k1")));
+            assertEquals("x".repeat(1000), store.get(key("k4")));
+            assertEquals("o", store.get(key("old")));
+            assertEquals(4, store.size());
+        }
+    }
+
+    @Test
+    public void incompleteTrailingWritesAreIgnored() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (DiskReviewStore store = new DiskReviewStore(directory, LARGE)) {
+            store.put(key("a"), "complete");
+            store.put(key("b"), "truncated value");
+        }
+        // 模拟写入中途崩溃：数据记录被截断，索引只写了一半
+        Path data = directory.resolve("reviews.dat");
+        Files.write(data, Arrays.copyOf(Files.readAllBytes(data), (int) Files.size(data) - 4));
+        Files.write(directory.resolve("reviews.idx"), new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (DiskReviewStore store = new DiskReviewStore(directory, LARGE)) {
+            assertEquals("complete", store.get(key("a")));
+            assertNull(store.get(key("b")));
+            store.put(key("c"), "after restart");
+        }
+        try (DiskReviewStore store = new DiskReviewStore(directory, LARGE)) {
+            assertEquals("complete", store.get(key("a")));
+            assertEquals("after restart", store.get(key("c")));
+            assertNull(store.get(key("b")));
+        }
+    }
+
+    @Test
+    public void clearRemovesEverything() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (DiskReviewStore store = new DiskReviewStore(directory, LARGE)) {
+            store.put(key("a"), "value");
+            store.clear();
+            assertEquals(0, store.size());
+            assertEquals(0, store.getDataSize());
+        }
+        try (DiskReviewStore store = new DiskReviewStore(directory, LARGE)) {
+            assertNull(store.get(key("a")));
+        }
+    }
+
+    @Test
+    public void rejectsNonHashKeys() throws Exception {
+        try (DiskReviewStore store = new DiskReviewStore(folder.getRoot().toPath(), LARGE)) {
+            assertThrows(IllegalArgumentException.class, () -> store.put("not-a-hash", "value"));
+        }
+    }
+
+    private static String key(String text) throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
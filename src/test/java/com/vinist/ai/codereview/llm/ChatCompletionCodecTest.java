@@ -0,0 +1,200 @@
+package com.vinist.ai.codereview.llm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Flow;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class ChatCompletionCodecTest {
+
+    private static final String OPENAI_COMPLETION = "{\"id\": \"chatcmpl-1\", \"object\": \"chat.completion\","
+            + " \"choices\": [{\"index\": 0, \"message\": {\"role\": \"assistant\", \"content\": \"ERROR: Line 3 - \\\"泄漏\\\"\\n总体良好\","
+            + " \"tool_calls\": [{\"content\": \"ignored\"}]}, \"finish_reason\": \"stop\"},"
+            + " {\"index\": 1, \"message\": {\"content\": \"second choice\"}}],"
+            + " \"usage\": {\"prompt_tokens\": 1200, \"completion_tokens\": 80, \"total_tokens\": 1280,"
+            + " \"prompt_tokens_details\": {\"cached_tokens\": 1024, \"audio_tokens\": 0}}}";
+
+    @Test
+    public void readsFirstChoiceContentAndUsage() throws IOException {
+        ChatCompletionCodec.Completion completion = readCompletion(OPENAI_COMPLETION);
+
+        assertEquals("ERROR: Line 3 - \"泄漏\"\n总体良好", completion.getContent());
+        TokenUsage usage = completion.getUsage();
+        assertNotNull(usage);
+        assertEquals(1200, usage.getPromptTokens());
+        assertEquals(80, usage.getCompletionTokens());
+        assertEquals(1024, usage.getCachedTokens());
+        assertEquals(0, usage.getCacheWriteTokens());
+    }
+
+    @Test
+    public void completionWithoutUsageHasNullUsage() throws IOException {
+        ChatCompletionCodec.Completion completion = readCompletion("{\"choices\": [{\"message\": {\"content\": \"\"}}]}");
+
+        assertEquals("", completion.getContent());
+        assertNull(completion.getUsage());
+    }
+
+    @Test
+    public void readsAnthropicAndDeepSeekUsageFields() throws IOException {
+        TokenUsage anthropic = readCompletion("{\"usage\": {\"input_tokens\": 20, \"output_tokens\": 5,"
+                + " \"cache_read_input_tokens\": 300, \"cache_creation_input_tokens\": 100},"
+                + " \"choices\": [{\"message\": {\"content\": \"ok\"}}]}").getUsage();
+        assertNotNull(anthropic);
+        // input_tokens不包括读取和写入缓存的Token
+        assertEquals(420, anthropic.getPromptTokens());
+        assertEquals(5, anthropic.getCompletionTokens());
+        assertEquals(300, anthropic.getCachedTokens());
+        assertEquals(100, anthropic.getCacheWriteTokens());
+
+        TokenUsage deepSeek = readCompletion("{\"choices\": [{\"message\": {\"content\": \"ok\"}}],"
+                + " \"usage\": {\"prompt_tokens\": 500, \"completion_tokens\": 7, \"prompt_cache_hit_tokens\": 448,"
+                + " \"prompt_cache_miss_tokens\": 52, \"note\": \"x\", \"extra\": {\"cached_tokens\": 1}}}").getUsage();
+        assertNotNull(deepSeek);
+        assertEquals(500, deepSeek.getPromptTokens());
+        assertEquals(448, deepSeek.getCachedTokens());
+    }
+
+    @Test
+    public void errorResponseIsMalformed() {
+        MalformedResponseException objectError = assertThrows(MalformedResponseException.class,
+                () -> readCompletion("{\"error\": {\"message\": \"Rate limit reached\", \"type\": \"requests\", \"code\": 429}}"));
+        assertTrue(objectError.getMessage().contains("Rate limit reached"));
+
+        MalformedResponseException stringError = assertThrows(MalformedResponseException.class,
+                () -> readCompletion("{\"error\": \"model not found\"}"));
+        assertTrue(stringError.getMessage().contains("model not found"));
+    }
+
+    @Test
+    public void responseWithoutContentIsMalformed() {
+        assertThrows(MalformedResponseException.class, () -> readCompletion("[]"));
+        assertThrows(MalformedResponseException.class, () -> readCompletion(""));
+        assertThrows(MalformedResponseException.class, () -> readCompletion("{\"choices\": []}"));
+        assertThrows(MalformedResponseException.class,
+                () -> readCompletion("{\"choices\": [{\"message\": {\"content\": null, \"refusal\": \"no\"}}]}"));
+        assertThrows(MalformedResponseException.class,
+                () -> readCompletion("{\"choices\": [{\"delta\": {\"content\": \"stream chunk\"}}]}"));
+    }
+
+    @Test
+    public void nonJsonResponseIsParseError() {
+        // RetryPolicy和CircuitBreaker把JsonProcessingException与MalformedResponseException同样对待
+        assertThrows(JsonProcessingException.class, () -> readCompletion("<html>502 Bad Gateway</html>"));
+        assertThrows(JsonProcessingException.class,
+                () -> readCompletion("{\"choices\": [{\"message\": {\"content\": \"trunc"));
+    }
+
+    @Test
+    public void readsStreamChunks() throws IOException {
+        ChatCompletionCodec.StreamChunk delta = ChatCompletionCodec.readStreamChunk(
+                "{\"id\": \"1\", \"choices\": [{\"index\": 0, \"delta\": {\"role\": \"assistant\", \"content\": \"ERR\"},"
+                        + " \"finish_reason\": null}]}");
+        assertNotNull(delta);
+        assertEquals("ERR", delta.getDelta());
+        assertNull(delta.getUsage());
+
+        ChatCompletionCodec.StreamChunk role = ChatCompletionCodec.readStreamChunk(
+                "{\"choices\": [{\"delta\": {\"role\": \"assistant\"}}]}");
+        assertNull(role);
+
+        ChatCompletionCodec.StreamChunk usage = ChatCompletionCodec.readStreamChunk(
+                "{\"choices\": [], \"usage\": {\"prompt_tokens\": 10, \"completion_tokens\": 3}}");
+        assertNotNull(usage);
+        assertNull(usage.getDelta());
+        assertNotNull(usage.getUsage());
+        assertEquals(13, usage.getUsage().getTotalTokens());
+    }
+
+    @Test
+    public void unparsableStreamChunksAreIgnored() throws IOException {
+        assertNull(ChatCompletionCodec.readStreamChunk("[DONE]"));
+        assertNull(ChatCompletionCodec.readStreamChunk(": keep-alive"));
+        assertNull(ChatCompletionCodec.readStreamChunk("{\"choices\": [{\"delta\": {\"content\": \"tr"));
+        assertNull(ChatCompletionCodec.readStreamChunk("{}"));
+    }
+
+    @Test
+    public void writesRequestWithCachedPrefix() throws IOException {
+        ChatCompletionCodec.RequestBody body = ChatCompletionCodec.writeRequest("claude-sonnet", "审查说明\n",
+                "代码 \"A\"", 2000, 0.2, true, true, true);
+        String json = new String(body.toByteArray(), StandardCharsets.UTF_8);
+
+        assertEquals("{\"model\":\"claude-sonnet\",\"messages\":["
+                + "{\"role\":\"system\",\"content\":[{\"type\":\"text\",\"text\":\"审查说明\\n\",\"cache_control\":{\"type\":\"ephemeral\"}}]},"
+                + "{\"role\":\"user\",\"content\":\"代码 \\\"A\\\"\"}],"
+                + "\"max_tokens\":2000,\"temperature\":0.2,\"stream\":true,\"stream_options\":{\"include_usage\":true}}", json);
+    }
+
+    @Test
+    public void writesPlainRequestWithoutPrefix() throws IOException {
+        String json = new String(ChatCompletionCodec.writeRequest("gpt-4o", "prompt", 100, 0.0, false).toByteArray(),
+                StandardCharsets.UTF_8);
+
+        assertEquals("{\"model\":\"gpt-4o\",\"messages\":[{\"role\":\"user\",\"content\":\"prompt\"}],"
+                + "\"max_tokens\":100,\"temperature\":0.0}", json);
+    }
+
+    @Test
+    public void gzipBodyRoundTrips() throws IOException {
+        ChatCompletionCodec.RequestBody body = ChatCompletionCodec.writeRequest("gpt-4o", "系统说明",
+                "class A {}\n".repeat(500), 4000, 0.3, true, false, false);
+        byte[] plain = body.toByteArray();
+
+        assertArrayEquals(plain, publishedBytes(body.toBodyPublisher()));
+        byte[] compressed = publishedBytes(body.toGzipBodyPublisher());
+        assertTrue(compressed.length < plain.length / 4);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertArrayEquals(plain, gzip.readAllBytes());
+        }
+    }
+
+    private static ChatCompletionCodec.Completion readCompletion(String json) throws IOException {
+        return ChatCompletionCodec.readCompletion(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 订阅请求体，收集发送的全部字节；ofByteArray在request时同步发布
+     */
+    private static byte[] publishedBytes(HttpRequest.BodyPublisher publisher) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                byte[] chunk = new byte[item.remaining()];
+                item.get(chunk);
+                bytes.write(chunk, 0, chunk.length);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new AssertionError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertEquals(bytes.size(), publisher.contentLength());
+        return bytes.toByteArray();
+    }
+}
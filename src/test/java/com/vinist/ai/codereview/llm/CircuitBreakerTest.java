@@ -0,0 +1,201 @@
+package com.vinist.ai.codereview.llm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private static final long PROBE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private volatile long now;
+    private volatile CircuitBreaker.ProbeResult probeResult;
+    private CircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        now = 1_000_000;
+        breaker = new CircuitBreaker() {
+            @Override
+            long currentTimeMillis() {
+                return now;
+            }
+        };
+        breaker.configure(true, 2, 1000);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void opensAfterConsecutiveProviderFailures() throws Exception {
+        breaker.onError(new IOException("connection reset"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onError(new LLMApiException(503, "", 0));
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.isAvailable());
+        assertThrows(CircuitBreaker.OpenException.class, breaker::checkAllowed);
+    }
+
+    @Test
+    public void clientErrorsAndMalformedResponsesDoNotOpen() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            breaker.checkAllowed();
+            breaker.onError(new LLMApiException(401, "", 0));
+            breaker.onError(new MalformedResponseException("no content"));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void admitsOneTrialRequestAfterOpenInterval() throws Exception {
+        open();
+        now += 999;
+        assertThrows(CircuitBreaker.OpenException.class, breaker::checkAllowed);
+
+        now += 1;
+        breaker.checkAllowed();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertThrows(CircuitBreaker.OpenException.class, breaker::checkAllowed);
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.checkAllowed();
+    }
+
+    @Test
+    public void failedTrialReopensWithLongerInterval() throws Exception {
+        open();
+        now += 1000;
+        breaker.checkAllowed();
+        breaker.onError(new IOException("timeout"));
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2000, breaker.getRetryInMillis());
+        now += 2000;
+        assertTrue(breaker.isAvailable());
+    }
+
+    @Test
+    public void cancelledTrialReleasesTheSlot() throws Exception {
+        open();
+        now += 1000;
+        breaker.checkAllowed();
+        breaker.onIgnored();
+        breaker.checkAllowed();
+    }
+
+    @Test
+    public void waitingRequestsProceedAfterSuccessfulTrial() throws Exception {
+        open();
+        now += 1000;
+        breaker.checkAllowed();
+
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> {
+            try {
+                breaker.awaitAllowed(TimeUnit.SECONDS.toMillis(5), () -> false);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse("试探进行中时应等待结果", waiting.isDone());
+
+        breaker.onSuccess();
+        waiting.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void waitingRequestsAreRejectedAfterFailedTrial() throws Exception {
+        open();
+        now += 1000;
+        breaker.checkAllowed();
+
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> {
+            try {
+                breaker.awaitAllowed(TimeUnit.SECONDS.toMillis(5), () -> false);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        breaker.onError(new IOException("timeout"));
+
+        Exception e = assertThrows(Exception.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause().getCause() instanceof CircuitBreaker.OpenException);
+    }
+
+    @Test
+    public void successfulProbeClosesWithoutTrialRequest() throws Exception {
+        useProbe();
+        open();
+        now += PROBE_INTERVAL;
+        // 探测完成前保持OPEN，提交不会成为试探请求
+        assertFalse(breaker.isAvailable());
+
+        probeResult = CircuitBreaker.ProbeResult.RECOVERED;
+        breaker.runProbe();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.checkAllowed();
+        breaker.checkAllowed();
+    }
+
+    @Test
+    public void failedProbeReopensWithLongerInterval() throws Exception {
+        useProbe();
+        open();
+        now += PROBE_INTERVAL;
+
+        probeResult = CircuitBreaker.ProbeResult.FAILED;
+        breaker.runProbe();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2 * PROBE_INTERVAL, breaker.getRetryInMillis());
+    }
+
+    @Test
+    public void inconclusiveProbeFallsBackToTrialRequest() throws Exception {
+        useProbe();
+        open();
+        now += PROBE_INTERVAL;
+
+        probeResult = CircuitBreaker.ProbeResult.UNKNOWN;
+        breaker.runProbe();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.checkAllowed();
+        assertThrows(CircuitBreaker.OpenException.class, breaker::checkAllowed);
+    }
+
+    /**
+     * 使用后台探测，探测间隔远大于测试时间，由测试直接调用runProbe
+     */
+    private void useProbe() {
+        breaker = new CircuitBreaker(scheduler, () -> probeResult) {
+            @Override
+            long currentTimeMillis() {
+                return now;
+            }
+        };
+        breaker.configure(true, 2, PROBE_INTERVAL);
+    }
+
+    private void open() {
+        breaker.onFailure("down");
+        breaker.onFailure("down");
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
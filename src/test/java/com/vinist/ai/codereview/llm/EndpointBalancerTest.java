@@ -0,0 +1,282 @@
+package com.vinist.ai.codereview.llm;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EndpointBalancerTest {
+
+    private final List<StubServer> servers = new ArrayList<>();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private long offsetNanos;
+    private EndpointBalancer balancer;
+
+    @Before
+    public void setUp() {
+        balancer = new EndpointBalancer() {
+            @Override
+            long nanoTime() {
+                return System.nanoTime() + offsetNanos;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        for (StubServer server : servers) {
+            server.release.countDown();
+            server.server.stop(0);
+            server.executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void leastOutstandingAvoidsBusyEndpoint() throws Exception {
+        balancer.setStrategy(EndpointBalancer.Strategy.LEAST_OUTSTANDING);
+        StubServer busy = start(0);
+        StubServer idle = start(0);
+        busy.blocking = true;
+        List<LLMEndpoint> endpoints = List.of(busy.endpoint, idle.endpoint);
+
+        CompletableFuture<Integer> pending = sendAsync(busy.endpoint);
+        assertTrue(busy.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(idle.endpoint, balancer.select(endpoints, Collections.emptySet()));
+        }
+
+        busy.release.countDown();
+        assertEquals(200, (int) pending.get(5, TimeUnit.SECONDS));
+        List<LLMEndpoint> selected = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            selected.add(balancer.select(endpoints, Collections.emptySet()));
+        }
+        assertTrue(selected.contains(busy.endpoint));
+        assertTrue(selected.contains(idle.endpoint));
+    }
+
+    @Test
+    public void ewmaPrefersFasterEndpoint() throws Exception {
+        balancer.setStrategy(EndpointBalancer.Strategy.EWMA);
+        StubServer slow = start(150);
+        StubServer fast = start(0);
+        List<LLMEndpoint> endpoints = List.of(slow.endpoint, fast.endpoint);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, send(slow.endpoint));
+            assertEquals(200, send(fast.endpoint));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(fast.endpoint, balancer.select(endpoints, Collections.emptySet()));
+        }
+    }
+
+    @Test
+    public void failingEndpointIsEjectedAndRecoversAfterProbe() throws Exception {
+        balancer.setStrategy(EndpointBalancer.Strategy.LEAST_OUTSTANDING);
+        StubServer flaky = start(0);
+        StubServer healthy = start(0);
+        List<LLMEndpoint> endpoints = List.of(flaky.endpoint, healthy.endpoint);
+
+        flaky.status = 503;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(503, send(flaky.endpoint));
+        }
+        assertTrue(balancer.isEjected(flaky.endpoint));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(healthy.endpoint, balancer.select(endpoints, Collections.emptySet()));
+        }
+
+        // 摘除到期后只放行一个试探请求，试探结束前其他请求继续发往健康端点
+        offsetNanos += TimeUnit.SECONDS.toNanos(31);
+        assertFalse(balancer.isEjected(flaky.endpoint));
+        flaky.status = 200;
+        flaky.blocking = true;
+        LLMEndpoint probe = selectUntil(endpoints, flaky.endpoint);
+        CompletableFuture<Integer> pending = sendAsync(probe);
+        assertTrue(flaky.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(healthy.endpoint, balancer.select(endpoints, Collections.emptySet()));
+        }
+
+        flaky.release.countDown();
+        assertEquals(200, (int) pending.get(5, TimeUnit.SECONDS));
+        selectUntil(endpoints, flaky.endpoint);
+        selectUntil(endpoints, flaky.endpoint);
+    }
+
+    @Test
+    public void failedProbeEjectsAgain() throws Exception {
+        StubServer flaky = start(0);
+        StubServer healthy = start(0);
+        List<LLMEndpoint> endpoints = List.of(flaky.endpoint, healthy.endpoint);
+
+        flaky.status = 503;
+        for (int i = 0; i < 3; i++) {
+            send(flaky.endpoint);
+        }
+        offsetNanos += TimeUnit.SECONDS.toNanos(31);
+        assertEquals(flaky.endpoint, balancer.select(endpoints, Collections.emptySet()));
+        assertEquals(503, send(flaky.endpoint));
+
+        assertTrue(balancer.isEjected(flaky.endpoint));
+        assertEquals(healthy.endpoint, balancer.select(endpoints, Collections.emptySet()));
+        offsetNanos += TimeUnit.SECONDS.toNanos(31);
+        assertTrue("摘除时间应当翻倍", balancer.isEjected(flaky.endpoint));
+    }
+
+    @Test
+    public void unstartedProbeDoesNotBlockOtherRequests() throws Exception {
+        StubServer flaky = start(0);
+        StubServer healthy = start(0);
+        List<LLMEndpoint> endpoints = List.of(flaky.endpoint, healthy.endpoint);
+
+        flaky.status = 503;
+        for (int i = 0; i < 3; i++) {
+            send(flaky.endpoint);
+        }
+        offsetNanos += TimeUnit.SECONDS.toNanos(31);
+        assertEquals(flaky.endpoint, balancer.select(endpoints, Collections.emptySet()));
+        assertEquals(healthy.endpoint, balancer.select(endpoints, Collections.emptySet()));
+
+        // 选中后没有发出的试探名额过期后释放
+        offsetNanos += TimeUnit.MINUTES.toNanos(5);
+        assertEquals(flaky.endpoint, balancer.select(endpoints, Collections.emptySet()));
+    }
+
+    @Test
+    public void cancelledSelectionReleasesProbe() throws Exception {
+        StubServer flaky = start(0);
+        StubServer healthy = start(0);
+        List<LLMEndpoint> endpoints = List.of(flaky.endpoint, healthy.endpoint);
+
+        flaky.status = 503;
+        for (int i = 0; i < 3; i++) {
+            send(flaky.endpoint);
+        }
+        offsetNanos += TimeUnit.SECONDS.toNanos(31);
+        assertEquals(flaky.endpoint, balancer.select(endpoints, Collections.emptySet()));
+        assertEquals(healthy.endpoint, balancer.select(endpoints, Collections.emptySet()));
+
+        balancer.cancel(flaky.endpoint);
+        assertEquals(flaky.endpoint, balancer.select(endpoints, Collections.emptySet()));
+    }
+
+    @Test
+    public void allEjectedFallsBackToEjectedEndpoints() throws Exception {
+        StubServer a = start(0);
+        StubServer b = start(0);
+        List<LLMEndpoint> endpoints = List.of(a.endpoint, b.endpoint);
+        a.status = 503;
+        b.status = 503;
+        for (int i = 0; i < 3; i++) {
+            send(a.endpoint);
+            send(b.endpoint);
+        }
+
+        assertTrue(balancer.isEjected(a.endpoint));
+        assertTrue(balancer.isEjected(b.endpoint));
+        assertEquals(a.endpoint, balancer.select(endpoints, Collections.emptySet()));
+        assertEquals(b.endpoint, balancer.select(endpoints, Collections.singleton(a.endpoint)));
+    }
+
+    private LLMEndpoint selectUntil(List<LLMEndpoint> endpoints, LLMEndpoint expected) {
+        for (int i = 0; i < endpoints.size(); i++) {
+            LLMEndpoint selected = balancer.select(endpoints, Collections.emptySet());
+            if (selected.equals(expected)) {
+                return selected;
+            }
+        }
+        throw new AssertionError("未选中 " + expected.getUrl());
+    }
+
+    /**
+     * 与LLMClientService相同的方式记录请求结果：200为成功，429和5xx为端点故障
+     */
+    private int send(LLMEndpoint endpoint) throws Exception {
+        return sendAsync(endpoint).get(10, TimeUnit.SECONDS);
+    }
+
+    private CompletableFuture<Integer> sendAsync(LLMEndpoint endpoint) {
+        EndpointBalancer.Call call = balancer.begin(endpoint);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(endpoint.getUrl())).GET().build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).handle((response, error) -> {
+            if (error != null) {
+                call.failed();
+                return -1;
+            }
+            int status = response.statusCode();
+            if (status == 200) {
+                call.succeeded();
+            } else if (status == 429 || status >= 500) {
+                call.failed();
+            } else {
+                call.released();
+            }
+            return status;
+        });
+    }
+
+    private StubServer start(long delayMillis) throws IOException {
+        StubServer stub = new StubServer(delayMillis);
+        servers.add(stub);
+        return stub;
+    }
+
+    private static final class StubServer {
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final LLMEndpoint endpoint;
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile int status = 200;
+        private volatile boolean blocking;
+
+        private StubServer(long delayMillis) throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(executor);
+            server.createContext("/", exchange -> {
+                try {
+                    if (blocking) {
+                        entered.countDown();
+                        release.await(10, TimeUnit.SECONDS);
+                    }
+                    if (delayMillis > 0) {
+                        Thread.sleep(delayMillis);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            endpoint = new LLMEndpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions",
+                    "key", "model");
+        }
+    }
+}
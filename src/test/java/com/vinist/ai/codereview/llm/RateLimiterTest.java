@@ -0,0 +1,219 @@
+package com.vinist.ai.codereview.llm;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.http.HttpHeaders;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+    private static final HttpHeaders NO_HEADERS = headers();
+
+    private volatile long now;
+    private RateLimiter limiter;
+
+    @Before
+    public void setUp() {
+        now = TimeUnit.HOURS.toNanos(1);
+        limiter = new RateLimiter() {
+            @Override
+            long nanoTime() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void unlimitedByDefault() throws Exception {
+        limiter.configure(0, 0, 10);
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire(100_000, 0).close();
+        }
+        assertEquals(0, limiter.getStatus().getWaitedCount());
+    }
+
+    @Test
+    public void requestBucketRefillsContinuously() throws Exception {
+        limiter.configure(60, 0, 100);
+        for (int i = 0; i < 60; i++) {
+            assertNotNull(limiter.tryAcquire(0));
+        }
+        assertNull(limiter.tryAcquire(0));
+
+        // 每分钟60个请求，每秒补充一个
+        advanceMillis(500);
+        assertNull(limiter.tryAcquire(0));
+        advanceMillis(500);
+        assertNotNull(limiter.tryAcquire(0));
+        assertNull(limiter.tryAcquire(0));
+
+        advanceMillis(TimeUnit.MINUTES.toMillis(10));
+        assertEquals(60, limiter.getStatus().getAvailableRequests(), 0.001);
+    }
+
+    @Test
+    public void tokenBucketAllowsRequestLargerThanCapacityOnceFull() throws Exception {
+        limiter.configure(0, 1000, 10);
+        assertNotNull(limiter.tryAcquire(5000));
+        assertNull(limiter.tryAcquire(1));
+
+        // 超过容量的请求等到桶满即可
+        advanceMillis(TimeUnit.SECONDS.toMillis(59));
+        assertNull(limiter.tryAcquire(5000));
+        advanceMillis(TimeUnit.SECONDS.toMillis(300));
+        assertNotNull(limiter.tryAcquire(5000));
+    }
+
+    @Test
+    public void acquireFailsFastWhenRefillExceedsMaxWait() {
+        limiter.configure(1, 0, 10);
+        assertNotNull(limiter.tryAcquire(0));
+
+        long start = System.nanoTime();
+        RateLimiter.QueueTimeoutException e = assertThrows(RateLimiter.QueueTimeoutException.class,
+                () -> limiter.acquire(0, 1000));
+        assertTrue(e.getMessage().contains("排队等待超时"));
+        assertTrue("额度恢复超出等待上限时不应等待", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void retryAfterPausesAllRequests() throws Exception {
+        limiter.configure(0, 0, 10);
+        limiter.onResponse(429, headers("retry-after", "2"));
+
+        assertNull(limiter.tryAcquire(0));
+        assertThrows(RateLimiter.QueueTimeoutException.class, () -> limiter.acquire(0, 1000));
+        assertEquals(1, limiter.getStatus().getThrottledCount());
+        assertEquals(2000, limiter.getStatus().getBlockedMillis());
+
+        advanceMillis(2000);
+        assertNotNull(limiter.tryAcquire(0));
+    }
+
+    @Test
+    public void throttleWithoutRetryAfterUsesDefaultPause() {
+        limiter.configure(0, 0, 10);
+        limiter.onResponse(429, NO_HEADERS);
+        assertNull(limiter.tryAcquire(0));
+
+        advanceMillis(1000);
+        assertNotNull(limiter.tryAcquire(0));
+    }
+
+    @Test
+    public void unavailableWithoutRetryAfterDoesNotPause() {
+        limiter.configure(0, 0, 10);
+        limiter.onResponse(503, NO_HEADERS);
+        assertNotNull(limiter.tryAcquire(0));
+    }
+
+    @Test
+    public void exhaustedServerQuotaPausesUntilReset() throws Exception {
+        limiter.configure(0, 0, 10);
+        limiter.onResponse(200, headers(
+                "x-ratelimit-limit-requests", "60",
+                "x-ratelimit-remaining-requests", "0",
+                "x-ratelimit-reset-requests", "6s"));
+
+        RateLimiter.Status status = limiter.getStatus();
+        assertEquals(60, status.getRequestsPerMinute());
+        assertEquals(6000, status.getBlockedMillis());
+        assertNull(limiter.tryAcquire(0));
+
+        // 重置时刻本地补充进度追上服务端，恢复满额度
+        advanceMillis(6000);
+        assertEquals(60, limiter.getStatus().getAvailableRequests(), 0.001);
+        assertNotNull(limiter.tryAcquire(0));
+    }
+
+    @Test
+    public void serverRemainingClampsLocalQuota() {
+        limiter.configure(100, 0, 100);
+        limiter.onResponse(200, headers("x-ratelimit-remaining-requests", "2"));
+
+        assertNotNull(limiter.tryAcquire(0));
+        assertNotNull(limiter.tryAcquire(0));
+        assertNull(limiter.tryAcquire(0));
+    }
+
+    @Test
+    public void serverLimitBelowConfiguredCapacityWins() {
+        limiter.configure(100, 0, 100);
+        limiter.onResponse(200, headers("anthropic-ratelimit-requests-limit", "10"));
+        assertEquals(10, limiter.getStatus().getRequestsPerMinute());
+        assertEquals(10, limiter.getStatus().getAvailableRequests(), 0.001);
+    }
+
+    @Test
+    public void concurrencyLimitQueuesUntilPermitClosed() throws Exception {
+        limiter.configure(0, 0, 1);
+        RateLimiter.Permit first = limiter.acquire(0, 0);
+        assertNull(limiter.tryAcquire(0));
+
+        CompletableFuture<RateLimiter.Permit> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limiter.acquire(0, TimeUnit.MINUTES.toMillis(1));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (limiter.getStatus().getQueued() == 0) {
+            Thread.sleep(1);
+        }
+        assertFalse(second.isDone());
+
+        first.close();
+        second.get(5, TimeUnit.SECONDS).close();
+        assertEquals(0, limiter.getStatus().getInFlight());
+        assertEquals(1, limiter.getStatus().getWaitedCount());
+    }
+
+    @Test
+    public void concurrencyLimitTimesOutAtDeadline() throws Exception {
+        limiter.configure(0, 0, 1);
+        RateLimiter.Permit permit = limiter.acquire(0, 0);
+        assertThrows(RateLimiter.QueueTimeoutException.class, () -> limiter.acquire(0, 0));
+
+        permit.close();
+        permit.close();
+        assertEquals(0, limiter.getStatus().getInFlight());
+    }
+
+    @Test
+    public void parsesResetDurations() {
+        assertEquals(Long.valueOf(TimeUnit.SECONDS.toNanos(360)), RateLimiter.parseReset("6m0s"));
+        assertEquals(Long.valueOf(TimeUnit.MILLISECONDS.toNanos(20)), RateLimiter.parseReset("20ms"));
+        assertEquals(Long.valueOf(TimeUnit.MILLISECONDS.toNanos(1500)), RateLimiter.parseReset("1.5s"));
+        assertNull(RateLimiter.parseReset("soon"));
+    }
+
+    @Test
+    public void parsesRetryAfterSeconds() {
+        assertEquals(Long.valueOf(TimeUnit.MILLISECONDS.toNanos(2500)), RateLimiter.parseRetryAfter("2.5"));
+        assertNull(RateLimiter.parseRetryAfter(" "));
+    }
+
+    private void advanceMillis(long millis) {
+        now += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static HttpHeaders headers(String... namesAndValues) {
+        Map<String, List<String>> map = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            map.put(namesAndValues[i], List.of(namesAndValues[i + 1]));
+        }
+        return HttpHeaders.of(map, (name, value) -> true);
+    }
+}
@@ -0,0 +1,153 @@
+package com.vinist.ai.codereview.parser;
+
+import com.vinist.ai.codereview.models.CodeIssue;
+import com.vinist.ai.codereview.models.IssueSeverity;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalIssueParserTest {
+
+    private static final String JSON = "```json\n"
+            + "{\"issues\": [\n"
+            + "  {\"severity\": \"ERROR\", \"line\": 4, \"message\": \"会话未关闭\", \"suggestion\": \"使用try-with-resources\"},\n"
+            + "  {\"severity\": \"WARNING\", \"line\": \"9\", \"message\": \"魔法数字 \\\"42\\\"\"}\n"
+            + "], \"summary\": \"整体良好\"}\n"
+            + "```\n";
+
+    private static final String TEXT = "ERROR: Line 4 - 会话未关闭\n"
+            + "WARNING: Line 9 - 魔法数字\n"
+            + "整体良好";
+
+    private final List<CodeIssue> issues = new ArrayList<>();
+
+    @Test
+    public void textIssuesAreEmittedWhenLineEnds() {
+        IncrementalIssueParser parser = new IncrementalIssueParser(false, issues::add);
+        parser.feed("ERROR: Line 4 - 会话");
+        assertTrue(issues.isEmpty());
+        parser.feed("未关闭\nWARN");
+        assertEquals(1, issues.size());
+        assertEquals("ERROR: Line 4 - 会话未关闭", issues.get(0).getMessage());
+
+        parser.feed("ING: Line 9 - 魔法数字\n整体良好");
+        parser.finish(false);
+        assertText(parser);
+    }
+
+    @Test
+    public void textSplitAtEveryPosition() {
+        for (int split = 0; split <= TEXT.length(); split++) {
+            issues.clear();
+            IncrementalIssueParser parser = new IncrementalIssueParser(false, issues::add);
+            parser.feed(TEXT.substring(0, split));
+            parser.feed(TEXT.substring(split));
+            parser.finish(false);
+            assertText(parser);
+        }
+    }
+
+    @Test
+    public void jsonSplitAtEveryPositionIncludingStringsAndFence() {
+        for (int split = 0; split <= JSON.length(); split++) {
+            issues.clear();
+            IncrementalIssueParser parser = new IncrementalIssueParser(true, issues::add);
+            parser.feed(JSON.substring(0, split));
+            parser.feed(JSON.substring(split));
+            parser.finish(false);
+
+            assertFalse("split at " + split, parser.isTextMode());
+            assertEquals("split at " + split, 2, issues.size());
+            assertEquals("会话未关闭", issues.get(0).getMessage());
+            assertEquals("使用try-with-resources", issues.get(0).getSuggestion());
+            assertEquals("魔法数字 \"42\"", issues.get(1).getMessage());
+            assertEquals(9, issues.get(1).getLineNumber());
+            assertEquals("整体良好", parser.getSummary());
+        }
+    }
+
+    @Test
+    public void jsonIssueIsEmittedWhenObjectCloses() {
+        IncrementalIssueParser parser = new IncrementalIssueParser(true, issues::add);
+        parser.feed("{\"issues\": [{\"severity\": \"ERROR\", \"message\": \"a\"");
+        assertTrue(issues.isEmpty());
+        parser.feed("}, {\"severity\": ");
+        assertEquals(1, issues.size());
+    }
+
+    @Test
+    public void cancelledTextResponseDropsTruncatedLine() {
+        IncrementalIssueParser parser = new IncrementalIssueParser(false, issues::add);
+        parser.feed("ERROR: Line 4 - 会话未关闭\nERROR: Line 9 - 资源");
+        parser.finish(true);
+
+        assertEquals(1, issues.size());
+        assertEquals("ERROR: Line 4 - 会话未关闭", issues.get(0).getMessage());
+        parser.feed("泄漏\n");
+        assertEquals(1, issues.size());
+    }
+
+    @Test
+    public void cancelledJsonResponseDoesNotFallBackToText() {
+        IncrementalIssueParser parser = new IncrementalIssueParser(true, issues::add);
+        parser.feed("{\"issues\": [{\"severity\": \"ERROR\", \"message\": \"a\"}, {\"severity\": \"ERR");
+        parser.finish(true);
+
+        assertFalse(parser.isTextMode());
+        assertEquals(1, issues.size());
+    }
+
+    @Test
+    public void proseResponseFallsBackToText() {
+        IncrementalIssueParser parser = new IncrementalIssueParser(true, issues::add);
+        parser.feed("ERROR: Line 4 - 会话未关闭\nWARNING: Li");
+        // 还没有出现JSON对象，可能在等待代码块之后的内容
+        assertTrue(issues.isEmpty());
+        parser.feed("ne 9 - 魔法数字\n整体良好");
+        parser.finish(false);
+
+        assertTrue(parser.isTextMode());
+        assertText(parser);
+    }
+
+    @Test
+    public void brokenJsonBeforeAnyIssueReparsesEverythingAsText() {
+        IncrementalIssueParser parser = new IncrementalIssueParser(true, issues::add);
+        parser.feed("{\"issues\": [\n  ERROR: Line 4 - 会话未关闭\n");
+        parser.feed("WARNING: Line 9 - 魔法数字\n整体良好");
+        parser.finish(false);
+
+        assertTrue(parser.isTextMode());
+        assertEquals(2, issues.size());
+        assertEquals(IssueSeverity.WARNING, issues.get(1).getSeverity());
+    }
+
+    @Test
+    public void brokenJsonAfterIssuesSkipsPartialLine() {
+        IncrementalIssueParser parser = new IncrementalIssueParser(true, issues::add);
+        parser.feed("{\"issues\": [{\"severity\": \"ERROR\", \"message\": \"a\"}, ");
+        parser.feed("ERROR: half of this line was JSON\nWARNING: Line 9 - 魔法数字\n");
+        parser.finish(false);
+
+        assertTrue(parser.isTextMode());
+        assertEquals(2, issues.size());
+        assertEquals("a", issues.get(0).getMessage());
+        assertEquals("WARNING: Line 9 - 魔法数字", issues.get(1).getMessage());
+        assertNull(parser.getSummary());
+    }
+
+    private void assertText(IncrementalIssueParser parser) {
+        assertEquals(2, issues.size());
+        assertEquals(IssueSeverity.ERROR, issues.get(0).getSeverity());
+        assertEquals(4, issues.get(0).getLineNumber());
+        assertEquals(IssueSeverity.WARNING, issues.get(1).getSeverity());
+        assertEquals(9, issues.get(1).getLineNumber());
+        assertEquals("整体良好", parser.getSummary());
+    }
+}
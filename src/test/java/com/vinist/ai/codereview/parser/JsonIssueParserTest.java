@@ -0,0 +1,140 @@
+package com.vinist.ai.codereview.parser;
+
+import com.vinist.ai.codereview.models.CodeIssue;
+import com.vinist.ai.codereview.models.IssueSeverity;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JsonIssueParserTest {
+
+    private final List<CodeIssue> issues = new ArrayList<>();
+
+    @Test
+    public void parsesFencedJsonBlock() {
+        JsonIssueParser parser = parse("```json\n"
+                + "{\"issues\": [{\"severity\": \"error\", \"line\": 12, \"category\": \"bugs\", \"message\": \" 空指针 \","
+                + " \"suggestion\": \"先判空\", \"ruleId\": \"NPE\", \"code\": \"a.b()\"}],\n"
+                + " \"summary\": \"需要修复\"}\n"
+                + "```");
+
+        assertFalse(parser.isFailed());
+        assertTrue(parser.isFinished());
+        assertEquals(1, issues.size());
+        CodeIssue issue = issues.get(0);
+        assertEquals(IssueSeverity.ERROR, issue.getSeverity());
+        assertEquals(12, issue.getLineNumber());
+        assertEquals("bugs", issue.getCategory());
+        assertEquals("空指针", issue.getMessage());
+        assertEquals("先判空", issue.getSuggestion());
+        assertEquals("NPE", issue.getRuleId());
+        assertEquals("a.b()", issue.getCodeSnippet());
+        assertEquals("需要修复", parser.getSummary());
+    }
+
+    @Test
+    public void leadingProseWithBracesIsSkipped() {
+        JsonIssueParser parser = parse("The method {@code close()} is never called, and `{}` is returned for "
+                + "empty maps. Result:\n"
+                + "{\"issues\": [{\"severity\": \"WARNING\", \"message\": \"资源未关闭\"}], \"summary\": \"ok\"}");
+
+        assertFalse(parser.isFailed());
+        assertEquals(1, issues.size());
+        assertEquals("资源未关闭", issues.get(0).getMessage());
+        assertEquals("ok", parser.getSummary());
+    }
+
+    @Test
+    public void leadingProseWithBracesSplitAcrossChunks() {
+        String content = "Use {@link Foo} here {\n{\"issues\": [{\"severity\": \"INFO\", \"message\": \"m\"}]}";
+        for (int split = 0; split <= content.length(); split++) {
+            issues.clear();
+            JsonIssueParser parser = new JsonIssueParser(issues::add);
+            parser.feed(content.substring(0, split));
+            parser.feed(content.substring(split));
+            parser.finish();
+
+            assertFalse("split at " + split, parser.isFailed());
+            assertEquals("split at " + split, 1, issues.size());
+        }
+    }
+
+    @Test
+    public void unknownOrMissingSeverityIsRejected() {
+        JsonIssueParser parser = parse("{\"issues\": ["
+                + "{\"severity\": \"BLOCKER\", \"message\": \"a\"},"
+                + "{\"message\": \"b\"},"
+                + "{\"severity\": \"WARNING\"},"
+                + "{\"severity\": \"WARNING\", \"message\": \"  \"},"
+                + "{\"severity\": \"Critical\", \"message\": \"e\"}"
+                + "]}");
+
+        assertFalse(parser.isFailed());
+        assertEquals(1, issues.size());
+        assertEquals(IssueSeverity.CRITICAL, issues.get(0).getSeverity());
+        assertEquals(1, parser.getIssueCount());
+        assertEquals(4, parser.getRejectedCount());
+    }
+
+    @Test
+    public void outOfRangeLineRejectsOnlyThatIssue() {
+        JsonIssueParser parser = parse("{\"issues\": ["
+                + "{\"severity\": \"ERROR\", \"line\": 99999999999, \"message\": \"a\"},"
+                + "{\"severity\": \"ERROR\", \"line\": \"123456789012345678901234567890\", \"message\": \"b\"},"
+                + "{\"severity\": \"ERROR\", \"line\": 7, \"message\": \"c\"},"
+                + "{\"severity\": \"ERROR\", \"line\": 0, \"message\": \"d\"},"
+                + "{\"severity\": \"ERROR\", \"line\": \"n/a\", \"message\": \"e\"}"
+                + "], \"summary\": \"s\"}");
+
+        assertFalse(parser.isFailed());
+        assertEquals(2, parser.getRejectedCount());
+        assertEquals(3, issues.size());
+        assertEquals(7, issues.get(0).getLineNumber());
+        assertEquals(-1, issues.get(1).getLineNumber());
+        assertEquals(-1, issues.get(2).getLineNumber());
+        assertEquals("s", parser.getSummary());
+    }
+
+    @Test
+    public void nestedObjectsInsideIssueAreIgnored() {
+        JsonIssueParser parser = parse("{\"issues\": [{\"severity\": \"ERROR\", "
+                + "\"location\": {\"line\": 99, \"message\": \"nested\", \"issues\": [{\"severity\": \"INFO\"}]}, "
+                + "\"tags\": [\"a\", {\"message\": \"x\"}], "
+                + "\"line\": 5, \"message\": \"outer\"}], "
+                + "\"meta\": {\"summary\": \"nested summary\"}, \"summary\": \"top\"}");
+
+        assertFalse(parser.isFailed());
+        assertEquals(1, issues.size());
+        assertEquals("outer", issues.get(0).getMessage());
+        assertEquals(5, issues.get(0).getLineNumber());
+        assertEquals(0, parser.getRejectedCount());
+        assertEquals("top", parser.getSummary());
+    }
+
+    @Test
+    public void proseWithoutJsonFails() {
+        JsonIssueParser parser = parse("ERROR: Line 3 - bug\nLooks fine otherwise.");
+
+        assertTrue(parser.isFailed());
+        assertTrue(issues.isEmpty());
+        assertNull(parser.getSummary());
+    }
+
+    @Test
+    public void truncatedObjectFails() {
+        JsonIssueParser parser = parse("{\"issues\": [{\"severity\": \"ERROR\", \"message\": \"a\"}, {\"sev");
+
+        assertTrue(parser.isFailed());
+        assertEquals(1, issues.size());
+    }
+
+    private JsonIssueParser parse(String content) {
+        return JsonIssueParser.parse(content, issues::add);
+    }
+}
@@ -0,0 +1,126 @@
+package com.vinist.ai.codereview.parser;
+
+import com.vinist.ai.codereview.models.CodeIssue;
+import com.vinist.ai.codereview.models.IssueSeverity;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ReviewTextScannerTest {
+
+    @Test
+    public void severityPrefixesInBothLanguages() {
+        assertSeverity(IssueSeverity.ERROR, "ERROR: null dereference");
+        assertSeverity(IssueSeverity.WARNING, "- **Warning**: unused variable");
+        assertSeverity(IssueSeverity.CRITICAL, "2. [CRITICAL] SQL injection");
+        assertSeverity(IssueSeverity.INFO, "info - consider a constant");
+        assertSeverity(IssueSeverity.CRITICAL, "严重：密码明文存储");
+        assertSeverity(IssueSeverity.ERROR, "1、错误：空指针");
+        assertSeverity(IssueSeverity.WARNING, "【警告】资源未关闭");
+        assertSeverity(IssueSeverity.INFO, "信息: 可以使用常量");
+        assertSeverity(IssueSeverity.INFO, "建议：提取方法");
+    }
+
+    @Test
+    public void issueMessageIsTrimmedLine() {
+        List<CodeIssue> issues = scan("  ERROR: Line 3 - leak  \r\n").issues;
+
+        assertEquals(1, issues.size());
+        assertEquals("ERROR: Line 3 - leak", issues.get(0).getMessage());
+    }
+
+    @Test
+    public void extractsLineNumbers() {
+        assertLine(12, "ERROR: Line 12 - leak");
+        assertLine(3, "WARNING: lines 3-5 duplicate code");
+        assertLine(7, "WARNING: line: 7 unused");
+        assertLine(9, "WARNING: line #9 unused");
+        assertLine(123, "INFO: rename the field at L123");
+        assertLine(45, "错误：第 45 行可能为空");
+        assertLine(-1, "ERROR: L2Cache is misconfigured");
+        assertLine(-1, "ERROR: Pipeline 4 fails");
+        assertLine(-1, "ERROR: no location");
+    }
+
+    @Test
+    public void indentedAndLabelledLinesContinueSuggestion() {
+        Result result = scan("ERROR: Line 12 - stream is never closed\n"
+                + "  Use try-with-resources\n"
+                + "  so it closes on exceptions\n"
+                + "WARNING: Line 20 - magic number\n"
+                + "**Suggestion**: extract a constant\n"
+                + "错误：第30行空指针\n"
+                + "   建议：先判空\n"
+                + "\n"
+                + "  Overall the change is fine.\n");
+
+        assertEquals(3, result.issues.size());
+        assertEquals("Use try-with-resources\nso it closes on exceptions", result.issues.get(0).getSuggestion());
+        assertEquals("extract a constant", result.issues.get(1).getSuggestion());
+        assertEquals("先判空", result.issues.get(2).getSuggestion());
+        assertEquals(IssueSeverity.ERROR, result.issues.get(2).getSeverity());
+        // 空行结束续行，之后的缩进行属于总体评价
+        assertEquals("Overall the change is fine.", result.summary);
+    }
+
+    @Test
+    public void indentedIssueLineIsNotContinuation() {
+        Result result = scan("ERROR: first\n  - WARNING: second\n");
+
+        assertEquals(2, result.issues.size());
+        assertNull(result.issues.get(0).getSuggestion());
+        assertEquals(IssueSeverity.WARNING, result.issues.get(1).getSeverity());
+    }
+
+    @Test
+    public void nonIssueLinesFormSummary() {
+        Result result = scan("## Review\n\nERROR: Line 1 - bug\n\nOverall good.\nTests are missing.");
+
+        assertEquals(1, result.issues.size());
+        assertEquals("## Review\nOverall good.\nTests are missing.", result.summary);
+    }
+
+    @Test
+    public void sentencesMentioningSeverityAreNotIssues() {
+        Result result = scan("Error handling looks fine.\n"
+                + "The ERROR constant is unused\n"
+                + "Errors: none\n"
+                + "Warnings are acceptable\n"
+                + "INFORMATION: see docs\n"
+                + "Critical path is covered\n"
+                + "错误处理很完善\n"
+                + "1.5 ERROR: version\n");
+
+        assertEquals(0, result.issues.size());
+        assertEquals(8, result.summary.split("\n").length);
+    }
+
+    private static void assertSeverity(IssueSeverity expected, String line) {
+        List<CodeIssue> issues = scan(line).issues;
+        assertEquals(line, 1, issues.size());
+        assertEquals(line, expected, issues.get(0).getSeverity());
+    }
+
+    private static void assertLine(int expected, String line) {
+        List<CodeIssue> issues = scan(line).issues;
+        assertEquals(line, 1, issues.size());
+        assertEquals(line, expected, issues.get(0).getLineNumber());
+    }
+
+    private static Result scan(String text) {
+        Result result = new Result();
+        StringBuilder summary = new StringBuilder();
+        ReviewTextScanner.scan(text, result.issues::add, summary);
+        result.summary = summary.toString();
+        return result;
+    }
+
+    private static final class Result {
+        private final List<CodeIssue> issues = new ArrayList<>();
+        private String summary;
+    }
+}
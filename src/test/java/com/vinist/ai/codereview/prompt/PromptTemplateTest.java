@@ -0,0 +1,91 @@
+package com.vinist.ai.codereview.prompt;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class PromptTemplateTest {
+
+    @Test
+    public void doubleDollarIsLiteralDollar() {
+        PromptTemplate template = PromptTemplate.compile("cost: $$5, var: $${name}, ${name}$$", Collections.emptyMap());
+
+        assertEquals(Collections.singleton("name"), template.getVariables());
+        assertEquals("cost: $5, var: ${name}, x$", template.render(Map.of("name", "x")));
+    }
+
+    @Test
+    public void singleDollarWithoutBraceIsKept() {
+        PromptTemplate template = PromptTemplate.compile("$a $ ${b}$", Collections.emptyMap());
+
+        assertEquals("$a $ 1$", template.render(Map.of("b", "1")));
+    }
+
+    @Test
+    public void unclosedVariableIsRejected() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> PromptTemplate.compile("File: ${fileName\n${code}", Collections.emptyMap()));
+        assertTrue(e.getMessage().contains("${fileName"));
+
+        assertNotNull(PromptTemplate.validate("code ${"));
+        assertNull(PromptTemplate.validate("code ${code} $$ {"));
+    }
+
+    @Test
+    public void constantsAreInlinedAndMissingValuesAreEmpty() {
+        PromptTemplate template = PromptTemplate.compile("${ focus }|${code}|${other}", Map.of("focus", "bugs"));
+
+        assertEquals(Set.of("code", "other"), template.getVariables());
+        assertEquals("bugs|c|", template.render(Map.of("code", "c")));
+    }
+
+    @Test
+    public void prefixPlusSuffixEqualsRender() {
+        Map<String, String> constants = new HashMap<>();
+        constants.put("focus", "security");
+        constants.put("format", "Line per issue\n\n");
+        PromptTemplate template = PromptTemplate.compile("Review the code.\n\nFocus: ${focus}\n\n"
+                + "${format}File: ${fileName}\n```\n${code}\n```", constants);
+        Map<String, String> values = Map.of("fileName", "A.java", "code", "class A {}");
+
+        assertEquals("Review the code.\n\nFocus: security\n\nLine per issue\n\n", template.getPrefix());
+        assertEquals(template.render(values), template.getPrefix() + template.renderSuffix(values::get));
+        assertEquals("File: A.java\n```\nclass A {}\n```", template.renderSuffix(values::get));
+    }
+
+    @Test
+    public void prefixEndsAtLastCompleteLineBeforeFirstVariable() {
+        PromptTemplate template = PromptTemplate.compile("one\ntwo ${code}\nthree", Collections.emptyMap());
+        Map<String, String> values = Map.of("code", "x");
+
+        assertEquals("one\n", template.getPrefix());
+        assertEquals("two x\nthree", template.renderSuffix(values::get));
+        assertEquals(template.render(values), template.getPrefix() + template.renderSuffix(values::get));
+    }
+
+    @Test
+    public void variableOnFirstLineGivesEmptyPrefix() {
+        PromptTemplate template = PromptTemplate.compile("Review ${fileName}:\n${code}", Collections.emptyMap());
+        Map<String, String> values = Map.of("fileName", "A.java", "code", "x");
+
+        assertEquals("", template.getPrefix());
+        assertEquals(template.render(values), template.renderSuffix(values::get));
+    }
+
+    @Test
+    public void templateWithoutVariablesHasNoPrefix() {
+        PromptTemplate template = PromptTemplate.compile("static\ntext\n", Collections.emptyMap());
+
+        assertEquals("", template.getPrefix());
+        assertEquals("static\ntext\n", template.renderSuffix(name -> null));
+    }
+}
@@ -0,0 +1,40 @@
+package com.vinist.ai.codereview.services;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class PromptTemplateServiceTest {
+
+    @Test
+    public void extensionOfPlainFileName() {
+        assertEquals("java", PromptTemplateService.getExtension("A.java"));
+        assertEquals("kt", PromptTemplateService.getExtension("src/main/Foo.KT"));
+        assertEquals("", PromptTemplateService.getExtension("Makefile"));
+        assertEquals("", PromptTemplateService.getExtension("file."));
+        assertEquals("", PromptTemplateService.getExtension("a.dir/README"));
+        assertEquals("", PromptTemplateService.getExtension("a.dir\\README"));
+    }
+
+    @Test
+    public void extensionOfChunkLabelIgnoresPartDescription() {
+        assertEquals("java", PromptTemplateService.getExtension("A.java (part 1/3, lines 1-80)"));
+        assertEquals("", PromptTemplateService.getExtension("Dockerfile (part 2/2, lines 81-120)"));
+    }
+
+    @Test
+    public void extensionOfGroupLabelUsesFirstFile() {
+        assertEquals("kt", PromptTemplateService.getExtension("a.kt, b.java"));
+        assertEquals("", PromptTemplateService.getExtension("README, b.java"));
+    }
+
+    @Test
+    public void templateValidation() {
+        assertNull(PromptTemplateService.validateTemplate("Review ${fileName}\n${code}"));
+        assertNotNull(PromptTemplateService.validateTemplate("  "));
+        assertNotNull(PromptTemplateService.validateTemplate("Review ${fileName}"));
+        assertNotNull(PromptTemplateService.validateTemplate("Review ${code"));
+    }
+}
@@ -0,0 +1,177 @@
+package com.vinist.ai.codereview.utils;
+
+import com.vinist.ai.codereview.models.TrivialChange;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ChangeClassifierTest {
+
+    private static final String JAVA = "package a;\n"
+            + "\n"
+            + "import java.util.List;\n"
+            + "import java.util.Map;\n"
+            + "\n"
+            + "public class A {\n"
+            + "    int x = 1; // don't\n"
+            + "    String s = \"a  b\";\n"
+            + "}\n";
+
+    private static final String PYTHON = "def f(x):\n"
+            + "    if x:\n"
+            + "        return 1\n"
+            + "    return 2\n";
+
+    @Test
+    public void unchangedContent() {
+        assertEquals(TrivialChange.UNCHANGED, ChangeClassifier.classify("A.java", JAVA, JAVA));
+    }
+
+    @Test
+    public void newFileNeedsReview() {
+        assertNull(ChangeClassifier.classify("A.java", null, JAVA));
+    }
+
+    @Test
+    public void reindentAndSpacingIsWhitespaceOnly() {
+        String after = JAVA.replace("    int x = 1;", "\tint x=1;").replace("\n}", "\n\n}\r");
+        assertEquals(TrivialChange.WHITESPACE_ONLY, ChangeClassifier.classify("A.java", JAVA, after));
+    }
+
+    @Test
+    public void whitespaceInsideCommentIsWhitespaceOnly() {
+        String after = JAVA.replace("// don't", "//   don't");
+        assertEquals(TrivialChange.WHITESPACE_ONLY, ChangeClassifier.classify("A.java", JAVA, after));
+    }
+
+    @Test
+    public void whitespaceInsideStringLiteralNeedsReview() {
+        assertNull(ChangeClassifier.classify("A.java", JAVA, JAVA.replace("a  b", "a b")));
+    }
+
+    @Test
+    public void joiningIdentifiersNeedsReview() {
+        assertNull(ChangeClassifier.classify("A.java", JAVA, JAVA.replace("int x", "intx")));
+        assertNull(ChangeClassifier.classify("A.java", "int x;\n", "int\nx;\n"));
+    }
+
+    @Test
+    public void separatedOperatorsNeedReview() {
+        assertNull(ChangeClassifier.classify("A.java", "a = b - -c;\n", "a = b --c;\n"));
+    }
+
+    @Test
+    public void commentingOutCodeNeedsReview() {
+        assertNull(ChangeClassifier.classify("A.java", "// guard\ncheck();\n", "// guard check();\n"));
+    }
+
+    @Test
+    public void lineBreakAfterReturnNeedsReview() {
+        assertNull(ChangeClassifier.classify("a.js", "return x;\n", "return\n    x;\n"));
+    }
+
+    @Test
+    public void lineBreakBeforeOperatorNeedsReview() {
+        assertNull(ChangeClassifier.classify("A.kt", "val a = b - c\n", "val a = b\n    - c\n"));
+    }
+
+    @Test
+    public void lineBreakAfterPreprocessorDirectiveNeedsReview() {
+        assertNull(ChangeClassifier.classify("a.c", "#define X 1\nint y;\n", "#define X 1 int y;\n"));
+    }
+
+    @Test
+    public void pythonTrailingWhitespaceAndSpacingIsWhitespaceOnly() {
+        String after = PYTHON.replace("return 1", "return 1   ").replace("if x:", "if  x :") + "\n\n";
+        assertEquals(TrivialChange.WHITESPACE_ONLY, ChangeClassifier.classify("a.py", PYTHON, after));
+    }
+
+    @Test
+    public void pythonIndentationNeedsReview() {
+        String after = PYTHON.replace("    return 2", "        return 2");
+        assertNull(ChangeClassifier.classify("a.py", PYTHON, after));
+    }
+
+    @Test
+    public void pythonTripleQuotedStringNeedsReview() {
+        assertNull(ChangeClassifier.classify("a.py", "s = '''a\n  b'''\n", "s = '''a\n b'''\n"));
+    }
+
+    @Test
+    public void rustLifetimeIsNotACharLiteral() {
+        assertEquals(TrivialChange.WHITESPACE_ONLY, ChangeClassifier.classify("a.rs",
+                "fn f<'a>(x: &'a str) {  }\n", "fn f<'a>(x: &'a str) {}\n"));
+    }
+
+    @Test
+    public void reorderedImportsAreImportsOnly() {
+        String after = JAVA.replace("import java.util.List;\nimport java.util.Map;",
+                "import java.util.Map;\n\nimport java.util.List;");
+        assertEquals(TrivialChange.IMPORTS_ONLY, ChangeClassifier.classify("A.java", JAVA, after));
+    }
+
+    @Test
+    public void reorderedGoImportBlockIsImportsOnly() {
+        assertEquals(TrivialChange.IMPORTS_ONLY, ChangeClassifier.classify("a.go",
+                "package a\n\nimport (\n\t\"fmt\"\n\t\"os\"\n)\n",
+                "package a\n\nimport (\n\t\"os\"\n\t\"fmt\"\n)\n"));
+    }
+
+    @Test
+    public void removedImportNeedsReview() {
+        assertNull(ChangeClassifier.classify("A.java", JAVA, JAVA.replace("import java.util.Map;\n", "")));
+    }
+
+    @Test
+    public void versionDeclarationIsVersionBump() {
+        assertEquals(TrivialChange.VERSION_BUMP, ChangeClassifier.classify("setup.py",
+                "setup(name=\"x\", version=\"1.2.3\")\n", "setup(name=\"x\", version=\"1.3.0-rc.1\")\n"));
+        assertEquals(TrivialChange.VERSION_BUMP, ChangeClassifier.classify("a/__init__.py",
+                "__version__ = '0.9.1'\n", "__version__ = '0.10.0'\n"));
+    }
+
+    @Test
+    public void dependencyCoordinatesAreVersionBump() {
+        assertEquals(TrivialChange.VERSION_BUMP, ChangeClassifier.classify("Deps.kt",
+                "val jackson = \"com.fasterxml.jackson.core:jackson-core:2.15.2\"\n",
+                "val jackson = \"com.fasterxml.jackson.core:jackson-core:2.16.1\"\n"));
+        assertEquals(TrivialChange.VERSION_BUMP, ChangeClassifier.classify("setup.py",
+                "install_requires=[\"requests>=2.31.0\"]\n", "install_requires=[\"requests>=2.32.3\"]\n"));
+    }
+
+    @Test
+    public void dottedNumberOutsideVersionContextNeedsReview() {
+        assertNull(ChangeClassifier.classify("setup.py", "ratio = 0.75\n", "ratio = 0.25\n"));
+        assertNull(ChangeClassifier.classify("A.java", "String v = \"1.2\";\n", "String v = \"1.3\";\n"));
+    }
+
+    @Test
+    public void changedArtifactNeedsReview() {
+        assertNull(ChangeClassifier.classify("Deps.kt", "val x = \"g:a:1.0.0\"\n", "val x = \"g:b:1.0.1\"\n"));
+    }
+
+    @Test
+    public void generatedFileNames() {
+        assertEquals(TrivialChange.GENERATED, ChangeClassifier.classify("/p/web/app.min.js", "a", "b"));
+        assertEquals(TrivialChange.GENERATED, ChangeClassifier.classify("/p/api/service.pb.go", null, "package api\n"));
+        assertEquals(TrivialChange.GENERATED, ChangeClassifier.classify("/p/build/generated/sources/A.java", "a", "b"));
+    }
+
+    @Test
+    public void generatedMarkers() {
+        assertEquals(TrivialChange.GENERATED, ChangeClassifier.classify("a.go", null,
+                "// Code generated by protoc-gen-go. DO NOT EDIT.\npackage a\n"));
+        assertEquals(TrivialChange.GENERATED, ChangeClassifier.classify("A.java", null,
+                "/*\n * @generated by codegen\n */\nclass A {}\n"));
+        assertEquals(TrivialChange.GENERATED, ChangeClassifier.classify("A.cs", null,
+                "// <auto-generated>\n//     This code was generated by a tool.\n// </auto-generated>\nclass A {}\n"));
+    }
+
+    @Test
+    public void doNotEditCommentIsNotAGeneratedMarker() {
+        String content = "// DO NOT EDIT the order below\nenum Order { A, B }\n";
+        assertNull(ChangeClassifier.classify("Order.java", null, content));
+        assertNull(ChangeClassifier.classify("Order.java", content, content.replace("A, B", "B, A")));
+    }
+}
@@ -0,0 +1,190 @@
+package com.vinist.ai.codereview.utils;
+
+import com.vinist.ai.codereview.models.ReviewTarget;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class CodeChunkerTest {
+
+    @Test
+    public void contentWithinBudgetIsSingleChunk() {
+        String content = javaClass(3);
+        List<CodeChunker.Chunk> chunks = CodeChunker.split(content, TokenEstimator.estimate(content));
+
+        assertEquals(1, chunks.size());
+        assertEquals(content, chunks.get(0).getContent());
+        assertEquals(1, chunks.get(0).getStartLine());
+        assertEquals(lines(content).length, chunks.get(0).getEndLine());
+    }
+
+    @Test
+    public void chunksCoverEveryLineExactlyOnce() {
+        String content = javaClass(40);
+        List<CodeChunker.Chunk> chunks = CodeChunker.split(content, TokenEstimator.estimate(content) / 6);
+
+        assertTrue(chunks.size() > 3);
+        assertCoversExactlyOnce(content, chunks);
+    }
+
+    @Test
+    public void chunksCoverContentWithoutTrailingNewline() {
+        String content = javaClass(40).trim();
+        List<CodeChunker.Chunk> chunks = CodeChunker.split(content, TokenEstimator.estimate(content) / 6);
+
+        assertTrue(chunks.size() > 1);
+        assertCoversExactlyOnce(content, chunks);
+    }
+
+    @Test
+    public void chunksStayWithinBudgetAndStartAtMemberBoundaries() {
+        String content = javaClass(40);
+        int budget = TokenEstimator.estimate(content) / 6;
+        List<CodeChunker.Chunk> chunks = CodeChunker.split(content, budget);
+
+        for (int i = 0; i < chunks.size(); i++) {
+            CodeChunker.Chunk chunk = chunks.get(i);
+            assertTrue(TokenEstimator.estimate(chunk.getContent()) <= budget);
+            if (i > 0) {
+                String first = chunk.getContent().substring(0, chunk.getContent().indexOf('\n')).trim();
+                assertTrue("不应在方法体中切分: " + first, first.startsWith("/**") || first.startsWith("}"));
+            }
+        }
+    }
+
+    @Test
+    public void linesWithoutBoundariesAreHardCut() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("        total += compute(").append(i).append(");\n");
+        }
+        String content = sb.toString();
+        List<CodeChunker.Chunk> chunks = CodeChunker.split(content, 100);
+
+        assertTrue(chunks.size() > 1);
+        assertCoversExactlyOnce(content, chunks);
+    }
+
+    @Test
+    public void lineLongerThanBudgetGetsOwnChunk() {
+        String longLine = "String s = \"" + "x".repeat(2000) + "\";\n";
+        String content = "int a = 1;\n" + longLine + "int b = 2;\n";
+        List<CodeChunker.Chunk> chunks = CodeChunker.split(content, 50);
+
+        assertCoversExactlyOnce(content, chunks);
+        boolean found = false;
+        for (CodeChunker.Chunk chunk : chunks) {
+            if (chunk.getContent().equals(longLine)) {
+                found = true;
+                assertEquals(2, chunk.getStartLine());
+                assertEquals(1, chunk.getLineCount());
+            }
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void chunkLinesMapBackToFileLines() {
+        String content = javaClass(40);
+        String[] fileLines = lines(content);
+        ReviewTarget target = new ReviewTarget("A.java", "/p/A.java", content);
+
+        for (CodeChunker.Chunk chunk : CodeChunker.split(content, TokenEstimator.estimate(content) / 6)) {
+            ReviewTarget chunkTarget = chunkTarget(target, chunk);
+            String[] chunkLines = lines(chunk.getContent());
+            for (int line = 1; line <= chunkLines.length; line++) {
+                assertEquals(chunkLines[line - 1], fileLines[chunkTarget.mapLine(line) - 1]);
+            }
+        }
+    }
+
+    @Test
+    public void chunkedDiffLinesMapBackToNewFileLines() {
+        String before = javaClass(60);
+        String after = before.replace("return value0 + 1;", "return value0 + 2;")
+                .replace("int value30 = 30;\n", "int value30 = 30;\n        int extra = 0;\n")
+                .replace("return value55 + 1;", "return value55 - 1;");
+        String[] fileLines = lines(after);
+        DiffUtils.DiffSnippet snippet = DiffUtils.createSnippet(before, after, 40);
+        assertNotNull(snippet);
+        ReviewTarget target = new ReviewTarget("A.java", "/p/A.java", snippet.getContent(), snippet.getLineMapping());
+
+        List<CodeChunker.Chunk> chunks = CodeChunker.split(snippet.getContent(),
+                TokenEstimator.estimate(snippet.getContent()) / 4);
+        assertTrue(chunks.size() > 1);
+        for (CodeChunker.Chunk chunk : chunks) {
+            ReviewTarget chunkTarget = chunkTarget(target, chunk);
+            String[] chunkLines = lines(chunk.getContent());
+            for (int line = 1; line <= chunkLines.length; line++) {
+                String text = chunkLines[line - 1];
+                if (text.startsWith(" ") || text.startsWith("+")) {
+                    assertEquals(text.substring(1), fileLines[chunkTarget.mapLine(line) - 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 与ParallelReviewService相同的方式组合分块和原目标的行号映射
+     */
+    private static ReviewTarget chunkTarget(ReviewTarget target, CodeChunker.Chunk chunk) {
+        int[] lineMapping = new int[chunk.getLineCount()];
+        for (int line = 0; line < lineMapping.length; line++) {
+            lineMapping[line] = target.mapLine(chunk.getStartLine() + line);
+        }
+        return new ReviewTarget(target.getFileName(), target.getFilePath(), chunk.getContent(), lineMapping);
+    }
+
+    private static void assertCoversExactlyOnce(String content, List<CodeChunker.Chunk> chunks) {
+        String[] fileLines = lines(content);
+        StringBuilder joined = new StringBuilder();
+        int nextLine = 1;
+        for (CodeChunker.Chunk chunk : chunks) {
+            assertEquals(nextLine, chunk.getStartLine());
+            assertTrue(chunk.getLineCount() > 0);
+            assertFalse(chunk.getContent().isEmpty());
+
+            String[] chunkLines = lines(chunk.getContent());
+            assertEquals(chunk.getLineCount(), chunkLines.length);
+            for (int i = 0; i < chunkLines.length; i++) {
+                assertEquals(fileLines[chunk.getStartLine() - 1 + i], chunkLines[i]);
+            }
+            joined.append(chunk.getContent());
+            nextLine = chunk.getEndLine() + 1;
+        }
+        assertEquals(fileLines.length, nextLine - 1);
+        assertEquals(content, joined.toString());
+    }
+
+    /**
+     * 按行拆分，保留空行，忽略末尾换行
+     */
+    private static String[] lines(String content) {
+        String[] lines = content.split("\n", -1);
+        return content.endsWith("\n") ? Arrays.copyOf(lines, lines.length - 1) : lines;
+    }
+
+    private static String javaClass(int methods) {
+        StringBuilder sb = new StringBuilder("package a;\n\npublic class A {\n");
+        for (int i = 0; i < methods; i++) {
+            sb.append('\n')
+                    .append("    /**\n")
+                    .append("     * Method ").append(i).append('\n')
+                    .append("     */\n")
+                    .append("    public int method").append(i).append("(int input) {\n")
+                    .append("        int value").append(i).append(" = ").append(i).append(";\n")
+                    .append("        if (input > value").append(i).append(") {\n")
+                    .append("            return input;\n")
+                    .append("        }\n")
+                    .append("        return value").append(i).append(" + 1;\n")
+                    .append("    }\n");
+        }
+        return sb.append("}\n").toString();
+    }
+}
@@ -0,0 +1,189 @@
+package com.vinist.ai.codereview.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DiffUtilsTest {
+
+    private static final String FIVE_LINES = "a\nb\nc\nd\ne\n";
+
+    @Test
+    public void identicalContentHasNoSnippet() {
+        assertNull(DiffUtils.createSnippet(FIVE_LINES, FIVE_LINES, 3));
+        assertNull(DiffUtils.createSnippet(FIVE_LINES, FIVE_LINES.replace("\n", "\r\n"), 3));
+    }
+
+    @Test
+    public void insertOnly() {
+        String after = "a\nb\nc\nX\nd\ne\n";
+        DiffUtils.DiffSnippet snippet = DiffUtils.createSnippet(FIVE_LINES, after, 1);
+
+        assertNotNull(snippet);
+        assertEquals("@@ -3,2 +3,3 @@\n c\n+X\n d\n", snippet.getContent());
+        assertArrayEquals(new int[]{3, 3, 4, 5}, snippet.getLineMapping());
+        assertEquals(1, snippet.getChangedLines());
+        assertMappedLinesMatch(snippet, after);
+    }
+
+    @Test
+    public void deleteOnly() {
+        String after = "a\nb\nd\ne\n";
+        DiffUtils.DiffSnippet snippet = DiffUtils.createSnippet(FIVE_LINES, after, 1);
+
+        assertNotNull(snippet);
+        assertEquals("@@ -2,3 +2,2 @@\n b\n-c\n d\n", snippet.getContent());
+        // 删除行映射到删除位置之后的新行
+        assertArrayEquals(new int[]{2, 2, 3, 3}, snippet.getLineMapping());
+        assertEquals(1, snippet.getChangedLines());
+    }
+
+    @Test
+    public void deleteOnlyWithoutContextUsesUnifiedDiffHeader() {
+        DiffUtils.DiffSnippet snippet = DiffUtils.createSnippet(FIVE_LINES, "a\nb\nd\ne\n", 0);
+
+        assertNotNull(snippet);
+        assertEquals("@@ -3,1 +2,0 @@\n-c\n", snippet.getContent());
+        assertArrayEquals(new int[]{3, 3}, snippet.getLineMapping());
+    }
+
+    @Test
+    public void deleteAtEndOfFileMapsToLastLine() {
+        DiffUtils.DiffSnippet snippet = DiffUtils.createSnippet(FIVE_LINES, "a\nb\nc\nd\n", 0);
+
+        assertNotNull(snippet);
+        assertEquals("@@ -5,1 +4,0 @@\n-e\n", snippet.getContent());
+        assertArrayEquals(new int[]{4, 4}, snippet.getLineMapping());
+    }
+
+    @Test
+    public void deletingWholeFile() {
+        DiffUtils.DiffSnippet snippet = DiffUtils.createSnippet("a\nb\n", "", 3);
+
+        assertNotNull(snippet);
+        assertEquals("@@ -1,2 +0,0 @@\n-a\n-b\n", snippet.getContent());
+        assertArrayEquals(new int[]{1, 1, 1}, snippet.getLineMapping());
+    }
+
+    @Test
+    public void newFileIsSingleInsertHunk() {
+        DiffUtils.DiffSnippet snippet = DiffUtils.createSnippet("", "x\ny\n", 3);
+
+        assertNotNull(snippet);
+        assertEquals("@@ -0,0 +1,2 @@\n+x\n+y\n", snippet.getContent());
+        assertArrayEquals(new int[]{1, 1, 2}, snippet.getLineMapping());
+        assertEquals(2, snippet.getChangedLines());
+    }
+
+    @Test
+    public void nearbyChangesShareOneHunk() {
+        String before = numberedLines(20);
+        String after = before.replace("l5\n", "X5\n").replace("l9\n", "X9\n");
+        DiffUtils.DiffSnippet snippet = DiffUtils.createSnippet(before, after, 2);
+
+        assertNotNull(snippet);
+        // 两处变更之间只隔3行，不超过两倍上下文
+        assertEquals(1, countHunks(snippet));
+        assertTrue(snippet.getContent().startsWith("@@ -3,9 +3,9 @@\n l3\n l4\n"));
+        assertTrue(snippet.getContent().endsWith(" l10\n l11\n"));
+        assertEquals(4, snippet.getChangedLines());
+        assertMappedLinesMatch(snippet, after);
+    }
+
+    @Test
+    public void distantChangesGetSeparateHunks() {
+        String before = numberedLines(20);
+        String after = before.replace("l5\n", "X5\n").replace("l12\n", "X12\n");
+        DiffUtils.DiffSnippet snippet = DiffUtils.createSnippet(before, after, 2);
+
+        assertNotNull(snippet);
+        assertEquals(2, countHunks(snippet));
+        assertTrue(snippet.getContent().startsWith("@@ -3,5 +3,5 @@\n"));
+        assertTrue(snippet.getContent().contains(" l7\n@@ -10,5 +10,5 @@\n l10\n"));
+        assertFalse(snippet.getContent().contains(" l8\n"));
+        assertMappedLinesMatch(snippet, after);
+    }
+
+    @Test
+    public void lineCountChangesShiftLaterHunkHeaders() {
+        String before = numberedLines(20);
+        String after = before.replace("l2\n", "l2\nN1\nN2\n").replace("l15\n", "");
+        DiffUtils.DiffSnippet snippet = DiffUtils.createSnippet(before, after, 1);
+
+        assertNotNull(snippet);
+        assertTrue(snippet.getContent().startsWith("@@ -2,2 +2,4 @@\n l2\n+N1\n+N2\n l3\n"));
+        assertTrue(snippet.getContent().contains("@@ -14,3 +16,2 @@\n l14\n-l15\n l16\n"));
+        assertMappedLinesMatch(snippet, after);
+    }
+
+    @Test
+    public void minimalDiffKeepsSharedLine() {
+        DiffUtils.DiffSnippet snippet = DiffUtils.createSnippet(uniqueLines("o", 999) + "shared\n",
+                "shared\n" + uniqueLines("n", 999), 0);
+
+        assertNotNull(snippet);
+        assertEquals(1998, snippet.getChangedLines());
+        assertFalse(snippet.getContent().contains("-shared\n"));
+    }
+
+    @Test
+    public void editDistanceAboveLimitFallsBackToReplacement() {
+        String after = "shared\n" + uniqueLines("n", 1001);
+        DiffUtils.DiffSnippet snippet = DiffUtils.createSnippet(uniqueLines("o", 1001) + "shared\n", after, 0);
+
+        assertNotNull(snippet);
+        // 最短编辑距离2002超过上限，整体视为替换，公共行也作为删除和新增输出
+        assertEquals(2004, snippet.getChangedLines());
+        assertTrue(snippet.getContent().startsWith("@@ -1,1002 +1,1002 @@\n-o0\n"));
+        assertTrue(snippet.getContent().contains("-shared\n+shared\n"));
+        assertMappedLinesMatch(snippet, after);
+    }
+
+    /**
+     * 片段中的上下文行和新增行都应映射到新文件中内容相同的行
+     */
+    private static void assertMappedLinesMatch(DiffUtils.DiffSnippet snippet, String after) {
+        String[] snippetLines = snippet.getContent().split("\n");
+        String[] afterLines = after.split("\n");
+        int[] mapping = snippet.getLineMapping();
+        assertEquals(snippetLines.length, mapping.length);
+        for (int i = 0; i < snippetLines.length; i++) {
+            String line = snippetLines[i];
+            assertTrue(mapping[i] >= 1 && mapping[i] <= afterLines.length);
+            if (line.startsWith(" ") || line.startsWith("+")) {
+                assertEquals(line.substring(1), afterLines[mapping[i] - 1]);
+            }
+        }
+    }
+
+    private static int countHunks(DiffUtils.DiffSnippet snippet) {
+        int count = 0;
+        for (String line : snippet.getContent().split("\n")) {
+            if (line.startsWith("@@ ")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String numberedLines(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= count; i++) {
+            sb.append('l').append(i).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String uniqueLines(String prefix, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(prefix).append(i).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,171 @@
+package com.vinist.ai.codereview.utils;
+
+import com.vinist.ai.codereview.models.ReviewTarget;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class PromptCompactorTest {
+
+    private static final String SOURCE = "/*\n"
+            + " * Copyright 2024 Example\n"
+            + " * Licensed under the Apache License, Version 2.0\n"
+            + " */\n"
+            + "package a;\n"
+            + "\n"
+            + "import java.util.List;\n"
+            + "import java.util.Map;\n"
+            + "\n"
+            + "public class A {   \n"
+            + "\n"
+            + "\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Sum\n"
+            + "     */\n"
+            + "    public int sum(List<Integer> values) {\n"
+            + "        int total = 0;\t\n"
+            + "        for (int value : values) {\n"
+            + "            total += value;\n"
+            + "        }\n"
+            + "        return total;\n"
+            + "    }\n"
+            + "}\n"
+            + "\n"
+            + "\n";
+
+    @Test
+    public void compactedLinesMapBackToSourceLines() {
+        PromptCompactor.Result result = PromptCompactor.compact(SOURCE, false);
+        String[] sourceLines = lines(SOURCE);
+        String[] compactLines = lines(result.getContent());
+        int[] mapping = result.getLineMapping();
+
+        assertEquals(compactLines.length, mapping.length);
+        for (int i = 0; i < compactLines.length; i++) {
+            if (i > 0) {
+                assertTrue("行号应递增", mapping[i] > mapping[i - 1]);
+            }
+            if (!compactLines[i].startsWith("(")) {
+                assertEquals(sourceLines[mapping[i] - 1].trim(), compactLines[i].trim());
+            }
+        }
+    }
+
+    @Test
+    public void dropsLicenseHeaderImportsAndExtraBlankLines() {
+        PromptCompactor.Result result = PromptCompactor.compact(SOURCE, false);
+        String content = result.getContent();
+
+        assertFalse(content.contains("Copyright"));
+        assertFalse(content.contains("import java"));
+        assertFalse(content.contains("\n\n\n"));
+        assertTrue(content.endsWith("}\n"));
+        assertTrue(content.startsWith("package a;\n\n(2 import lines omitted)\n\npublic class A {\n"));
+        // 导入语句的占位行指向第一条导入语句
+        assertEquals(7, result.getLineMapping()[2]);
+        assertTrue(content.contains("\n   total += value;\n"));
+    }
+
+    @Test
+    public void mappingPointsToEveryKeptLine() {
+        PromptCompactor.Result result = PromptCompactor.compact(SOURCE, false);
+
+        assertArrayEquals(new int[]{5, 6, 7, 9, 10, 11, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24},
+                result.getLineMapping());
+    }
+
+    @Test
+    public void contentWithoutTrailingNewlineStaysWithoutIt() {
+        PromptCompactor.Result result = PromptCompactor.compact("int a = 1;  \n\n\n  int b = 2;", false);
+
+        assertEquals("int a = 1;\n\n int b = 2;", result.getContent());
+        assertArrayEquals(new int[]{1, 2, 4}, result.getLineMapping());
+    }
+
+    @Test
+    public void diffKeepsEveryLineAndMarker() {
+        String diff = "@@ -1,4 +1,4 @@  \n"
+                + " class A {\n"
+                + "-    int a = 1;   \n"
+                + "+    int a = 2;\t\n"
+                + "+    \n"
+                + " }\n";
+        PromptCompactor.Result result = PromptCompactor.compact(diff, true);
+
+        assertEquals("@@ -1,4 +1,4 @@\n"
+                + " class A {\n"
+                + "-    int a = 1;\n"
+                + "+    int a = 2;\n"
+                + "+\n"
+                + " }\n", result.getContent());
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5, 6}, result.getLineMapping());
+    }
+
+    @Test
+    public void compactedDiffLinesMapBackToNewFileLines() {
+        String before = SOURCE.replace("total += value;", "total = total + value;");
+        String after = SOURCE.replace("int total = 0;", "long total = 0;")
+                .replace("        return total;\n", "\n\n        return total;   \n");
+        String[] fileLines = lines(after);
+        DiffUtils.DiffSnippet snippet = DiffUtils.createSnippet(before, after, 3);
+        assertNotNull(snippet);
+        ReviewTarget target = new ReviewTarget("A.java", "/p/A.java", snippet.getContent(), snippet.getLineMapping());
+
+        ReviewTarget compacted = compactTarget(target, true);
+        assertTrue(compacted.getContent().length() < target.getContent().length());
+        String[] compactLines = lines(compacted.getContent());
+        for (int line = 1; line <= compactLines.length; line++) {
+            String text = compactLines[line - 1];
+            if (text.startsWith(" ") || text.startsWith("+")) {
+                assertEquals(text.substring(1), fileLines[compacted.mapLine(line) - 1].replaceAll("\\s+$", ""));
+            }
+        }
+    }
+
+    @Test
+    public void compactedChunkLinesMapBackToFileLines() {
+        String[] fileLines = lines(SOURCE);
+        // 从第10行开始的分块
+        String chunk = String.join("\n", Arrays.copyOfRange(fileLines, 9, fileLines.length)) + "\n";
+        int[] chunkMapping = new int[lines(chunk).length];
+        for (int i = 0; i < chunkMapping.length; i++) {
+            chunkMapping[i] = 10 + i;
+        }
+        ReviewTarget target = new ReviewTarget("A.java", "/p/A.java", chunk, chunkMapping);
+
+        ReviewTarget compacted = compactTarget(target, false);
+        String[] compactLines = lines(compacted.getContent());
+        assertEquals("public class A {", compactLines[0]);
+        for (int line = 1; line <= compactLines.length; line++) {
+            assertEquals(fileLines[compacted.mapLine(line) - 1].trim(), compactLines[line - 1].trim());
+        }
+        assertEquals(20, compacted.mapLine(Arrays.asList(compactLines).indexOf("   total += value;") + 1));
+    }
+
+    /**
+     * 与ParallelReviewService相同的方式组合压缩结果和原目标的行号映射
+     */
+    private static ReviewTarget compactTarget(ReviewTarget target, boolean diff) {
+        PromptCompactor.Result result = PromptCompactor.compact(target.getContent(), diff);
+        int[] lineMapping = result.getLineMapping();
+        for (int i = 0; i < lineMapping.length; i++) {
+            lineMapping[i] = target.mapLine(lineMapping[i]);
+        }
+        return new ReviewTarget(target.getFileName(), target.getFilePath(), result.getContent(), lineMapping);
+    }
+
+    /**
+     * 按行拆分，保留空行，忽略末尾换行
+     */
+    private static String[] lines(String content) {
+        String[] lines = content.split("\n", -1);
+        return content.endsWith("\n") ? Arrays.copyOf(lines, lines.length - 1) : lines;
+    }
+}